@@ -17,10 +17,8 @@
 package org.apache.wicket;
 
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.regex.Pattern;
 
 import org.apache.wicket.behavior.AttributeAppender;
 import org.apache.wicket.util.string.Strings;
@@ -31,8 +29,6 @@ import org.apache.wicket.util.string.Strings;
  */
 public abstract class ClassAttributeModifier extends AttributeAppender
 {
-	private static final Pattern SPLITTER = Pattern.compile("\\s+");
-
 	/**
 	 * Constructor.
 	 */
@@ -44,22 +40,17 @@ public abstract class ClassAttributeModifier extends AttributeAppender
 	@Override
 	protected Serializable newValue(String currentValue, String appendValue)
 	{
-		String[] classes;
-		if (Strings.isEmpty(currentValue))
-		{
-			classes = new String[0];
-		}
-		else
+		Set<String> oldClasses = new TreeSet<>();
+		if (Strings.isEmpty(currentValue) == false)
 		{
-			classes = SPLITTER.split(currentValue.trim());
+			split(currentValue.trim(), oldClasses);
 		}
-		Set<String> oldClasses = new TreeSet<>();
-		Collections.addAll(oldClasses, classes);
 
 		Set<String> newClasses = update(oldClasses);
 
 		String separator = getSeparator();
-		StringBuilder result = new StringBuilder();
+		StringBuilder result = new StringBuilder(currentValue != null ? currentValue.length() + 16
+			: 16);
 		for (String cls : newClasses)
 		{
 			if (result.length() > 0)
@@ -71,6 +62,50 @@ public abstract class ClassAttributeModifier extends AttributeAppender
 		return result.length() > 0 ? result.toString() : VALUELESS_ATTRIBUTE_REMOVE;
 	}
 
+	/**
+	 * Splits the value at whitespace, like {@code value.split("\\s+")} would do, but without
+	 * compiling a regular expression.
+	 * 
+	 * @param value
+	 *            the trimmed value
+	 * @param classes
+	 *            the set to add the class values to
+	 */
+	private static void split(String value, Set<String> classes)
+	{
+		if (value.isEmpty())
+		{
+			classes.add(value);
+			return;
+		}
+
+		int start = 0;
+		for (int i = 0, length = value.length(); i < length; i++)
+		{
+			if (isWhitespace(value.charAt(i)))
+			{
+				if (start < i)
+				{
+					classes.add(value.substring(start, i));
+				}
+				start = i + 1;
+			}
+		}
+		if (start < value.length())
+		{
+			classes.add(value.substring(start));
+		}
+	}
+
+	/**
+	 * @param c
+	 * @return true if the char is matched by the regular expression {@code \\s}
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
 	/**
 	 * Callback to update the CSS class values for a tag.
 	 *
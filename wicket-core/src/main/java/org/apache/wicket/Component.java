@@ -35,6 +35,7 @@ import org.apache.wicket.core.request.handler.BookmarkableListenerRequestHandler
 import org.apache.wicket.core.request.handler.ListenerRequestHandler;
 import org.apache.wicket.core.request.handler.PageAndComponentProvider;
 import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.core.util.model.ModelPreloader;
 import org.apache.wicket.core.util.string.ComponentStrings;
 import org.apache.wicket.event.Broadcast;
 import org.apache.wicket.event.IEvent;
@@ -2228,6 +2229,11 @@ public abstract class Component
 	 */
 	public void internalPrepareForRender(boolean setRenderingFlag)
 	{
+		if (setRenderingFlag)
+		{
+			ModelPreloader.preload(this);
+		}
+
 		beforeRender();
 
 		if (setRenderingFlag)
@@ -24,9 +24,13 @@ import org.apache.wicket.page.PageStoreManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.AsynchronousPageStore;
 import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.pageStore.MappedDataStore;
+import org.apache.wicket.pageStore.OffHeapPageCache;
+import org.apache.wicket.pageStore.PerSessionPageStore;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.settings.StoreSettings;
 import org.apache.wicket.util.lang.Args;
@@ -58,18 +62,28 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 		StoreSettings storeSettings = getStoreSettings();
 
+		int maxDeltaChainLength = storeSettings.getMaxDeltaChainLength();
+		if (maxDeltaChainLength > 0)
+		{
+			dataStore = new DeltaDataStore(dataStore, maxDeltaChainLength,
+				storeSettings.getMaxSizePerSession());
+		}
+
 		IPageStore pageStore;
 
 		if (dataStore.canBeAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int workers = storeSettings.getAsynchronousWorkerCount();
+			dataStore = new AsynchronousDataStore(dataStore, capacity,
+				storeSettings.getAsynchronousBatchSize(), storeSettings.getAsynchronousBatchWait(),
+				workers);
 
 			pageStore = newPageStore(dataStore);
 
 			if (pageStore.canBeAsynchronous())
 			{
-				pageStore = new AsynchronousPageStore(pageStore, capacity);
+				pageStore = new AsynchronousPageStore(pageStore, capacity, workers);
 			}
 		}
 		else
@@ -83,8 +97,21 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
-		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
+		StoreSettings storeSettings = getStoreSettings();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
+		Bytes offHeapCacheSize = storeSettings.getOffHeapCacheSize();
+		if (offHeapCacheSize.bytes() > 0)
+		{
+			return new DefaultPageStore(pageSerializer, dataStore, new OffHeapPageCache(
+				offHeapCacheSize, storeSettings.getOffHeapCacheSizePerSession()));
+		}
+		int perSessionPageCacheSize = storeSettings.getPerSessionPageCacheSize();
+		if (perSessionPageCacheSize > 0)
+		{
+			return new PerSessionPageStore(pageSerializer, dataStore, perSessionPageCacheSize,
+				storeSettings.getPerSessionPageCacheMaxSize());
+		}
+		int inmemoryCacheSize = storeSettings.getInmemoryCacheSize();
 		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
 	}
 
@@ -94,7 +121,17 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		Bytes maxSizePerSession = storeSettings.getMaxSizePerSession();
 		File fileStoreFolder = storeSettings.getFileStoreFolder();
 
-		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession);
+		int segments = storeSettings.getMappedDataStoreSegments();
+		if (segments > 0)
+		{
+			return new MappedDataStore(application.getName(), fileStoreFolder, maxSizePerSession,
+				storeSettings.getMappedDataStoreSegmentSize(), segments);
+		}
+
+		int fileChannelPoolCapacity = storeSettings.getFileChannelPoolCapacity();
+
+		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession,
+			fileChannelPoolCapacity);
 	}
 
 	StoreSettings getStoreSettings()
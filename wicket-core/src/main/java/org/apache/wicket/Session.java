@@ -16,6 +16,8 @@
  */
 package org.apache.wicket;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,6 +27,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
 import org.apache.wicket.application.IClassResolver;
@@ -191,6 +195,12 @@ public abstract class Session implements IClusterable, IEventSink
 	/** Application level meta data. */
 	private MetaDataEntry<?>[] metaData;
 
+	/**
+	 * Guards {@link #metaData}. A lock rather than the session's monitor, so that virtual threads
+	 * are not pinned to their carrier while contending for it.
+	 */
+	private transient ReadWriteLock metaDataLock = new ReentrantReadWriteLock();
+
 	/** True, if session has been invalidated */
 	private transient volatile boolean sessionInvalidated = false;
 
@@ -419,9 +429,17 @@ public abstract class Session implements IClusterable, IEventSink
 	 * @return The metadata
 	 * @see MetaDataKey
 	 */
-	public synchronized final <M extends Serializable> M getMetaData(final MetaDataKey<M> key)
+	public final <M extends Serializable> M getMetaData(final MetaDataKey<M> key)
 	{
-		return key.get(metaData);
+		metaDataLock.readLock().lock();
+		try
+		{
+			return key.get(metaData);
+		}
+		finally
+		{
+			metaDataLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -603,9 +621,17 @@ public abstract class Session implements IClusterable, IEventSink
 	 * @throws IllegalArgumentException
 	 * @see MetaDataKey
 	 */
-	public final synchronized <M extends Serializable> Session setMetaData(final MetaDataKey<M> key, final M object)
+	public final <M extends Serializable> Session setMetaData(final MetaDataKey<M> key, final M object)
 	{
-		metaData = key.set(metaData, object);
+		metaDataLock.writeLock().lock();
+		try
+		{
+			metaData = key.set(metaData, object);
+		}
+		finally
+		{
+			metaDataLock.writeLock().unlock();
+		}
 		dirty();
 		return this;
 	}
@@ -940,6 +966,12 @@ public abstract class Session implements IClusterable, IEventSink
 		return new PageAccessSynchronizer(timeout);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		metaDataLock = new ReentrantReadWriteLock();
+	}
+
 	private final class PageAccessSynchronizerProvider extends LazyInitializer<PageAccessSynchronizer>
 	{
 		private static final long serialVersionUID = 1L;
@@ -155,8 +155,11 @@ public class AttributeAppender extends AttributeModifier
 		{
 			return currentValue;
 		}
-		StringBuilder sb = new StringBuilder(currentValue);
-		sb.append((getSeparator() == null ? "" : getSeparator()));
+		String separator = getSeparator() == null ? "" : getSeparator();
+		StringBuilder sb = new StringBuilder(currentValue.length() + separator.length() +
+			appendValue.length());
+		sb.append(currentValue);
+		sb.append(separator);
 		sb.append(appendValue);
 		return sb.toString();
 	}
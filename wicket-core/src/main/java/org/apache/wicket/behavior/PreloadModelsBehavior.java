@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.behavior;
+
+/**
+ * Marks a component whose models do not depend on other components, so that they can be loaded in
+ * parallel with the models of other marked components.
+ * <p>
+ * If an executor is configured with
+ * {@link org.apache.wicket.settings.RequestCycleSettings#setModelPreloadExecutor(java.util.concurrent.Executor)},
+ * all {@link org.apache.wicket.model.LoadableDetachableModel}s of the marked components and their
+ * children are loaded on that executor before the page or the Ajax updated components are
+ * prepared for render. The render thread waits for all of them, and rendering itself stays
+ * sequential, so the output does not change. Without an executor this behavior does nothing and
+ * the models are loaded lazily as usual.
+ * <p>
+ * Only models of components which exist when the rendering starts are preloaded. Components added
+ * later in {@code onBeforeRender()} load their models on the render thread, except for the item
+ * models of {@link org.apache.wicket.markup.repeater.RefreshingView}s and
+ * {@link org.apache.wicket.markup.html.list.ListView}s inside a marked component, which are
+ * preloaded before the items are populated.
+ * <p>
+ * <strong>Thread confinement:</strong> {@code load()} of the preloaded models runs on a thread of
+ * the executor. The {@link org.apache.wicket.Application}, {@link org.apache.wicket.Session} and
+ * {@link org.apache.wicket.request.cycle.RequestCycle} of the request are available there through
+ * their {@code get()} methods, but only for reading: {@code load()} must not modify components,
+ * the request cycle (e.g. its meta data or response), the page or session state other than the
+ * session's meta data, nor report feedback messages. A model whose loading fails is loaded again
+ * on the render thread, where the failure is handled as usual.
+ * 
+ * <pre>
+ * Panel orders = new OrdersPanel(&quot;orders&quot;, new LoadableDetachableModel&lt;List&lt;Order&gt;&gt;()
+ * {
+ * 	protected List&lt;Order&gt; load()
+ * 	{
+ * 		return orderService.findRecentOrders();
+ * 	}
+ * });
+ * orders.add(new PreloadModelsBehavior());
+ * </pre>
+ */
+public class PreloadModelsBehavior extends Behavior
+{
+	private static final long serialVersionUID = 1L;
+}
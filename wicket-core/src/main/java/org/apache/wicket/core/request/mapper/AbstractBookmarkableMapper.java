@@ -17,6 +17,7 @@
 package org.apache.wicket.core.request.mapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -54,6 +55,51 @@ import org.apache.wicket.util.lang.Args;
  */
 public abstract class AbstractBookmarkableMapper extends AbstractComponentMapper
 {
+	/**
+	 * Whether a mapper class overrides one of the methods matching the mount path against the url
+	 * or deciding which requests are mapped, so its static mount segments do not tell which urls
+	 * it maps. The mappers of this package match their mount path as expected.
+	 */
+	private static final ClassValue<Boolean> CUSTOM_SEGMENT_MATCHING = new ClassValue<Boolean>()
+	{
+		@Override
+		protected Boolean computeValue(Class<?> type)
+		{
+			for (Class<?> current = type; isFrameworkMapper(current) == false;
+				current = current.getSuperclass())
+			{
+				if (declares(current, "urlStartsWithMountedSegments", Url.class) ||
+					declares(current, "getMatchedSegmentSizes", Url.class) ||
+					declares(current, "segmentsMatch", String.class, String.class) ||
+					declares(current, "mapRequest", Request.class) ||
+					declares(current, "parseRequest", Request.class))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isFrameworkMapper(Class<?> type)
+		{
+			return type == AbstractBookmarkableMapper.class || type == MountedMapper.class ||
+				type == HomePageMapper.class || type == PackageMapper.class ||
+				type == ResourceMapper.class;
+		}
+
+		private boolean declares(Class<?> type, String name, Class<?>... parameterTypes)
+		{
+			try
+			{
+				type.getDeclaredMethod(name, parameterTypes);
+				return true;
+			}
+			catch (NoSuchMethodException e)
+			{
+				return false;
+			}
+		}
+	};
 
 	/**
 	 * A flag that is used when comparing the mounted paths' segments against
@@ -712,12 +758,36 @@ public abstract class AbstractBookmarkableMapper extends AbstractComponentMapper
 		return ret;
 	}
 
+	/**
+	 * Returns the leading segments of the mount path up to the first placeholder.
+	 * 
+	 * @return the static segments of the mount path, or {@code null} if a subclass overrides how
+	 *         the mount path is matched against the url
+	 * @see org.apache.wicket.request.mapper.IMountedRequestMapper#getMountPrefix()
+	 */
+	protected String[] getStaticMountSegments()
+	{
+		if (CUSTOM_SEGMENT_MATCHING.get(getClass()))
+		{
+			return null;
+		}
+
+		int length = 0;
+		while (length < mountSegments.length && getPlaceholder(mountSegments[length]) == null &&
+			getOptionalPlaceholder(mountSegments[length]) == null)
+		{
+			length++;
+		}
+		return Arrays.copyOf(mountSegments, length);
+	}
+
 	/**
 	 * Decides whether a segment from the mounted path matches with a segment
 	 * from the requested url.
 	 *
 	 * A custom implementation of this class may use more complex logic to handle
-	 * spelling errors
+	 * spelling errors. Mappers doing so report no mount prefix to the
+	 * {@link org.apache.wicket.request.mapper.CompoundRequestMapper}.
 	 *
 	 * @param mountedSegment
 	 *          the segment from the mounted path
@@ -17,16 +17,20 @@
 package org.apache.wicket.core.request.mapper;
 
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Supplier;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.core.request.handler.RequestSettingRequestHandler;
 import org.apache.wicket.protocol.http.PageExpiredException;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.IRequestMapper;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.mapper.IRequestMapperDelegate;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.util.crypt.ICrypt;
@@ -101,6 +105,20 @@ public class CryptoMapper implements IRequestMapperDelegate
 
 	private static final String ENCRYPTED_URL_MARKER_PREFIX = "crypt.";
 
+	/**
+	 * The default maximum number of encrypted URLs cached per request
+	 */
+	public static final int DEFAULT_ENCRYPTION_CACHE_SIZE = 1000;
+
+	/**
+	 * The recently encrypted texts of the current request, least recently used first
+	 */
+	private static final MetaDataKey<LinkedHashMap<EncryptionKey, String>> ENCRYPTION_CACHE =
+		new MetaDataKey<LinkedHashMap<EncryptionKey, String>>()
+		{
+			private static final long serialVersionUID = 1L;
+		};
+
 	private final IRequestMapper wrappedMapper;
 	private final Supplier<ICrypt> cryptProvider;
 
@@ -109,6 +127,11 @@ public class CryptoMapper implements IRequestMapperDelegate
 	 */
 	private boolean markEncryptedUrls = false;
 
+	/**
+	 * The maximum number of encrypted URLs cached per request
+	 */
+	private int encryptionCacheSize = DEFAULT_ENCRYPTION_CACHE_SIZE;
+
 	/**
 	 * Encrypt with {@link org.apache.wicket.settings.SecuritySettings#getCryptFactory()}.
 	 * <p>
@@ -171,6 +194,69 @@ public class CryptoMapper implements IRequestMapperDelegate
 		return this;
 	}
 
+	/**
+	 * Sets the maximum number of encrypted texts which are cached for the current request, so
+	 * that repeated URLs, e.g. several links to the same page, are not encrypted again. The least
+	 * recently used texts are dropped first. The texts are cached per {@link ICrypt} instance, so
+	 * this requires a crypt provider which does not create a new {@link ICrypt} for every URL.
+	 * 
+	 * @param encryptionCacheSize
+	 *            the maximum number of cached texts, {@code 0} disables the cache
+	 * @return this
+	 */
+	public CryptoMapper setEncryptionCacheSize(int encryptionCacheSize)
+	{
+		this.encryptionCacheSize = Args.withinRange(0, Integer.MAX_VALUE, encryptionCacheSize,
+			"encryptionCacheSize");
+		return this;
+	}
+
+	/**
+	 * Encrypts a text with the current crypt, looking it up in the cache first.
+	 * 
+	 * @param text
+	 *            the text to encrypt
+	 * @return the encrypted text
+	 */
+	private String encrypt(final String text)
+	{
+		ICrypt crypt = getCrypt();
+		RequestCycle requestCycle = RequestCycle.get();
+		if (encryptionCacheSize == 0 || requestCycle == null)
+		{
+			return crypt.encryptUrlSafe(text);
+		}
+
+		// the cache is confined to the request, so it needs no locking and does not keep the
+		// crypts of other sessions
+		LinkedHashMap<EncryptionKey, String> encryptionCache = requestCycle
+			.getMetaData(ENCRYPTION_CACHE);
+		if (encryptionCache == null)
+		{
+			encryptionCache = new LinkedHashMap<>(16, 0.75f, true);
+			requestCycle.setMetaData(ENCRYPTION_CACHE, encryptionCache);
+		}
+
+		EncryptionKey key = new EncryptionKey(crypt, text);
+		String encrypted = encryptionCache.get(key);
+		if (encrypted == null)
+		{
+			encrypted = crypt.encryptUrlSafe(text);
+			if (encrypted != null)
+			{
+				encryptionCache.put(key, encrypted);
+
+				Iterator<EncryptionKey> eldest = encryptionCache.keySet().iterator();
+				while (encryptionCache.size() > encryptionCacheSize)
+				{
+					eldest.next();
+					eldest.remove();
+				}
+			}
+		}
+		return encrypted;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -297,7 +383,7 @@ public class CryptoMapper implements IRequestMapperDelegate
 	 */
 	protected Url encryptEntireUrl(final Url url)
 	{
-		String encryptedUrlString = getCrypt().encryptUrlSafe(url.toString());
+		String encryptedUrlString = encrypt(url.toString());
 
 		Url encryptedUrl = new Url(url.getCharset());
 
@@ -339,7 +425,7 @@ public class CryptoMapper implements IRequestMapperDelegate
 			if (MapperUtils.parsePageComponentInfoParameter(qp) != null)
 			{
 				it.remove();
-				String encryptedParameterValue = getCrypt().encryptUrlSafe(qp.getName());
+				String encryptedParameterValue = encrypt(qp.getName());
 				Url.QueryParameter encryptedParameter
 					= new Url.QueryParameter(ENCRYPTED_PAGE_COMPONENT_INFO_PARAMETER, encryptedParameterValue);
 				encryptedUrl.getQueryParameters().add(0, encryptedParameter);
@@ -616,6 +702,43 @@ public class CryptoMapper implements IRequestMapperDelegate
 		return url;
 	}
 
+	/**
+	 * Identifies a text encrypted by a crypt
+	 */
+	private static class EncryptionKey
+	{
+		private final ICrypt crypt;
+
+		private final String text;
+
+		private EncryptionKey(ICrypt crypt, String text)
+		{
+			this.crypt = crypt;
+			this.text = text;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof EncryptionKey) == false)
+			{
+				return false;
+			}
+			EncryptionKey rhs = (EncryptionKey)obj;
+			return crypt == rhs.crypt && text.equals(rhs.text);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(System.identityHashCode(crypt), text);
+		}
+	}
+
 	/**
 	 * A generator of hashed segments.
 	 */
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.core.request.mapper;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +28,7 @@ import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.apache.wicket.request.mapper.IMountedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.INamedParameters;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
@@ -70,7 +72,7 @@ import org.apache.wicket.util.string.Strings;
  *
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractBookmarkableMapper
+public class ResourceMapper extends AbstractBookmarkableMapper implements IMountedRequestMapper
 {
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
@@ -197,6 +199,19 @@ public class ResourceMapper extends AbstractBookmarkableMapper
 		return score;
 	}
 
+	@Override
+	public String[] getMountPrefix()
+	{
+		String[] prefix = getStaticMountSegments();
+		if (prefix == null)
+		{
+			return null;
+		}
+		// the caching decoration may alter the last segment
+		int length = Math.min(prefix.length, Math.max(0, mountSegments.length - 1));
+		return Arrays.copyOf(prefix, length);
+	}
+
 	@Override
 	public Url mapHandler(IRequestHandler requestHandler)
 	{
@@ -18,7 +18,15 @@ package org.apache.wicket.core.util.crypt;
 
 import java.security.Provider;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.Session;
@@ -33,6 +41,10 @@ import org.apache.wicket.util.lang.Args;
  * attacks.
  * <br>
  * Note that the use of this crypt factory will result in an immediate creation of a session.
+ * <br>
+ * The crypts of the most recently used sessions are cached, so the secret key of a session is not
+ * generated again for every encrypted url. Looking up a crypt does not lock; once there are too
+ * many crypts, the least recently used ones are evicted in a batch by a single thread.
  *
  * @author igor.vaynberg
  */
@@ -44,8 +56,24 @@ public class KeyInSessionSunJceCryptFactory implements ICryptFactory
 		private static final long serialVersionUID = 1L;
 	};
 
+	/**
+	 * The default maximum number of cached crypts
+	 */
+	public static final int DEFAULT_MAX_CACHED_CRYPTS = 1000;
+
 	private final String cryptMethod;
 
+	private final int maxCachedCrypts;
+
+	/** the crypts by their key */
+	private final ConcurrentMap<String, CachedCrypt> crypts = new ConcurrentHashMap<>();
+
+	/** counts the lookups of crypts, the count is the access time of a crypt */
+	private final AtomicLong lookups = new AtomicLong();
+
+	/** whether a thread is evicting crypts, the others do not wait for it */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
 	/**
 	 * Constructor using {@link javax.crypto.Cipher} {@value org.apache.wicket.util.crypt.SunJceCrypt#DEFAULT_CRYPT_METHOD}
 	 */
@@ -61,8 +89,24 @@ public class KeyInSessionSunJceCryptFactory implements ICryptFactory
 	 *              the name of the crypt method (cipher)
 	 */
 	public KeyInSessionSunJceCryptFactory(String cryptMethod)
+	{
+		this(cryptMethod, DEFAULT_MAX_CACHED_CRYPTS);
+	}
+
+	/**
+	 * Constructor that uses a custom {@link javax.crypto.Cipher} and caches the crypts of at most
+	 * the given number of sessions.
+	 *
+	 * @param cryptMethod
+	 *              the name of the crypt method (cipher)
+	 * @param maxCachedCrypts
+	 *              the maximum number of cached crypts, {@code 0} creates a new crypt every time
+	 */
+	public KeyInSessionSunJceCryptFactory(String cryptMethod, int maxCachedCrypts)
 	{
 		this.cryptMethod = Args.notNull(cryptMethod, "Crypt method");
+		this.maxCachedCrypts = Args.withinRange(0, Integer.MAX_VALUE, maxCachedCrypts,
+			"maxCachedCrypts");
 
 		if (Security.getProviders("Cipher." + cryptMethod).length == 0)
 		{
@@ -96,17 +140,89 @@ public class KeyInSessionSunJceCryptFactory implements ICryptFactory
 			session.setMetaData(KEY, key);
 		}
 
-		// build the crypt based on session key
+		if (maxCachedCrypts == 0)
+		{
+			return newCrypt(key);
+		}
+
+		CachedCrypt cached = crypts.get(key);
+		if (cached == null)
+		{
+			cached = new CachedCrypt(newCrypt(key));
+			CachedCrypt existing = crypts.putIfAbsent(key, cached);
+			if (existing != null)
+			{
+				cached = existing;
+			}
+			else if (crypts.size() > maxCachedCrypts)
+			{
+				evict();
+			}
+		}
+		cached.accessTime = lookups.incrementAndGet();
+		return cached.crypt;
+	}
+
+	/**
+	 * Builds the crypt based on session key
+	 */
+	private ICrypt newCrypt(String key)
+	{
 		ICrypt crypt = createCrypt();
 		crypt.setKey(key);
 		return crypt;
 	}
 
 	/**
-	 * @return the {@link org.apache.wicket.util.crypt.ICrypt} to use
+	 * Evicts the least recently used crypts, a tenth of the maximum at once so the crypts are
+	 * not sorted for every new session.
+	 */
+	private void evict()
+	{
+		if (evicting.compareAndSet(false, true) == false)
+		{
+			return;
+		}
+		try
+		{
+			List<Map.Entry<String, CachedCrypt>> entries = new ArrayList<>(crypts.entrySet());
+			int count = entries.size() - maxCachedCrypts + maxCachedCrypts / 10;
+			if (count > 0)
+			{
+				entries.sort(Comparator.comparingLong(entry -> entry.getValue().accessTime));
+				for (Map.Entry<String, CachedCrypt> entry : entries.subList(0, count))
+				{
+					crypts.remove(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		finally
+		{
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * @return the {@link org.apache.wicket.util.crypt.ICrypt} to use, it is shared by all
+	 *         requests of a session and has to be thread safe
 	 */
 	protected ICrypt createCrypt()
 	{
 		return new SunJceCrypt(cryptMethod);
 	}
+
+	/**
+	 * A cached crypt with the time it was used last
+	 */
+	private static class CachedCrypt
+	{
+		private final ICrypt crypt;
+
+		private volatile long accessTime;
+
+		private CachedCrypt(ICrypt crypt)
+		{
+			this.crypt = crypt;
+		}
+	}
 }
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.core.util.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.behavior.PreloadModelsBehavior;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the models of components marked with {@link PreloadModelsBehavior} in parallel.
+ * <p>
+ * <strong>This class is not part of the public API and may change without notice.</strong>
+ * 
+ * @see PreloadModelsBehavior
+ */
+public final class ModelPreloader
+{
+	private static final Logger log = LoggerFactory.getLogger(ModelPreloader.class);
+
+	private ModelPreloader()
+	{
+	}
+
+	/**
+	 * Loads the detached models of all marked components in the given hierarchy on the configured
+	 * executor, and waits for them.
+	 * 
+	 * @param root
+	 *            the component about to be rendered
+	 */
+	public static void preload(final Component root)
+	{
+		final Executor executor = getExecutor(root);
+		if (executor == null)
+		{
+			return;
+		}
+
+		final List<LoadableDetachableModel<?>> models = collectModels(root);
+		if (models.isEmpty())
+		{
+			return;
+		}
+
+		loadInParallel(root, models, executor);
+	}
+
+	/**
+	 * Loads the given models in parallel on the configured executor and waits for them, if the
+	 * component or one of its parents is marked. Used by repeaters for the models of items which
+	 * are created after the rendering started.
+	 * 
+	 * @param component
+	 *            the component the models are created for
+	 * @param models
+	 *            the models, only the detached {@link LoadableDetachableModel}s are loaded
+	 */
+	public static void preload(final Component component,
+		final Collection<? extends IModel<?>> models)
+	{
+		if (isActive(component) == false)
+		{
+			return;
+		}
+
+		final Map<LoadableDetachableModel<?>, Boolean> detached = new IdentityHashMap<>();
+		for (IModel<?> model : models)
+		{
+			collectModel(model, detached);
+		}
+		if (detached.isEmpty() == false)
+		{
+			loadInParallel(component, new ArrayList<>(detached.keySet()), getExecutor(component));
+		}
+	}
+
+	/**
+	 * Whether models created for the given component are loaded in parallel, i.e. an executor is
+	 * configured and the component or one of its parents is marked. Repeaters check this before
+	 * they collect the models of their items for {@link #preload(Component, Collection)}.
+	 * 
+	 * @param component
+	 *            the component the models are created for
+	 * @return {@code true} if the models are preloaded
+	 */
+	public static boolean isActive(final Component component)
+	{
+		return getExecutor(component) != null && isMarkedOrInMarked(component);
+	}
+
+	private static Executor getExecutor(final Component component)
+	{
+		return component.getApplication().getRequestCycleSettings().getModelPreloadExecutor();
+	}
+
+	private static void loadInParallel(final Component component,
+		final List<LoadableDetachableModel<?>> models, final Executor executor)
+	{
+		// captured on this thread, a session must not be created on another thread
+		final Application application = component.getApplication();
+		final Session session = component.getSession();
+		final RequestCycle requestCycle = component.getRequestCycle();
+
+		CompletableFuture<?>[] loads = new CompletableFuture<?>[models.size()];
+		for (int i = 0; i < loads.length; i++)
+		{
+			final LoadableDetachableModel<?> model = models.get(i);
+			loads[i] = CompletableFuture.runAsync(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					load(model, application, session, requestCycle);
+				}
+			}, executor);
+		}
+		CompletableFuture.allOf(loads).join();
+	}
+
+	private static void load(final LoadableDetachableModel<?> model,
+		final Application application, final Session session, final RequestCycle requestCycle)
+	{
+		ThreadContext previous = ThreadContext.detach();
+		try
+		{
+			ThreadContext.setApplication(application);
+			ThreadContext.setSession(session);
+			ThreadContext.setRequestCycle(requestCycle);
+
+			model.getObject();
+		}
+		catch (RuntimeException e)
+		{
+			// the model stays detached and is loaded again when it is rendered
+			log.debug("Could not preload model {}", model, e);
+			model.detach();
+		}
+		finally
+		{
+			ThreadContext.restore(previous);
+		}
+	}
+
+	/**
+	 * @return the distinct detached models of the marked components in the hierarchy
+	 */
+	private static List<LoadableDetachableModel<?>> collectModels(final Component root)
+	{
+		final Map<LoadableDetachableModel<?>, Boolean> models = new IdentityHashMap<>();
+
+		if (isMarked(root))
+		{
+			collectAllModels(root, models);
+		}
+		else if (root instanceof MarkupContainer)
+		{
+			((MarkupContainer)root).visitChildren(new IVisitor<Component, Void>()
+			{
+				@Override
+				public void component(Component component, IVisit<Void> visit)
+				{
+					if (isMarked(component))
+					{
+						collectAllModels(component, models);
+						visit.dontGoDeeper();
+					}
+				}
+			});
+		}
+
+		return new ArrayList<>(models.keySet());
+	}
+
+	private static boolean isMarked(final Component component)
+	{
+		return component.getBehaviors(PreloadModelsBehavior.class).isEmpty() == false;
+	}
+
+	/**
+	 * Collects the detached models of the component and all its children.
+	 */
+	private static void collectAllModels(final Component component,
+		final Map<LoadableDetachableModel<?>, Boolean> models)
+	{
+		collectModel(component, models);
+		if (component instanceof MarkupContainer)
+		{
+			((MarkupContainer)component).visitChildren(new IVisitor<Component, Void>()
+			{
+				@Override
+				public void component(Component child, IVisit<Void> visit)
+				{
+					collectModel(child, models);
+				}
+			});
+		}
+	}
+
+	private static boolean isMarkedOrInMarked(final Component component)
+	{
+		for (Component current = component; current != null; current = current.getParent())
+		{
+			if (isMarked(current))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void collectModel(final Component component,
+		final Map<LoadableDetachableModel<?>, Boolean> models)
+	{
+		collectModel(component.getDefaultModel(), models);
+	}
+
+	private static void collectModel(final IModel<?> model,
+		final Map<LoadableDetachableModel<?>, Boolean> models)
+	{
+		if (model instanceof LoadableDetachableModel &&
+			((LoadableDetachableModel<?>)model).isAttached() == false)
+		{
+			models.put((LoadableDetachableModel<?>)model, Boolean.TRUE);
+		}
+	}
+}
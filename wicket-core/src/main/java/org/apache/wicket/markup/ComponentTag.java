@@ -17,6 +17,7 @@
 package org.apache.wicket.markup;
 
 import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,6 +32,7 @@ import org.apache.wicket.markup.parser.XmlTag;
 import org.apache.wicket.markup.parser.XmlTag.TagType;
 import org.apache.wicket.markup.parser.filter.HtmlHandler;
 import org.apache.wicket.request.Response;
+import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Generics;
 import org.apache.wicket.util.string.AppendingStringBuffer;
@@ -126,6 +128,12 @@ public class ComponentTag extends MarkupElement
 
 	private IAutoComponentFactory autoComponentFactory;
 
+	/** If mutable, the immutable tag of the markup this tag is a copy of */
+	private ComponentTag markupTag;
+
+	/** The output of this immutable tag, encoded in the charset of the last response written to */
+	private volatile EncodedMarkup encodedOutput;
+
 	/**
 	 * Automatically create a XmlTag, assign the name and the type, and construct a ComponentTag
 	 * based on this XmlTag.
@@ -285,7 +293,7 @@ public class ComponentTag extends MarkupElement
 	 */
 	public final String getAttribute(String name)
 	{
-		return xmlTag.getAttributes().getString(name);
+		return xmlTag.getAttributesForReading().getString(name);
 	}
 
 	/**
@@ -450,6 +458,7 @@ public class ComponentTag extends MarkupElement
 		dest.id = id;
 		dest.flags = flags;
 		dest.autoComponentFactory = autoComponentFactory;
+		dest.markupTag = xmlTag.isMutable() ? markupTag : this;
 
 		if (markupClassRef != null)
 		{
@@ -705,7 +714,8 @@ public class ComponentTag extends MarkupElement
 	}
 
 	/**
-	 * Write the tag to the response
+	 * Write the tag to the response. A tag of the markup, or an unchanged copy of it, is written as
+	 * bytes if the response accepts them.
 	 * 
 	 * @param response
 	 *            The response to write to
@@ -716,6 +726,67 @@ public class ComponentTag extends MarkupElement
 	 */
 	public final void writeOutput(final Response response, final boolean stripWicketAttributes,
 		final String namespace)
+	{
+		Charset charset = EncodedMarkup.getEncodingCharset(response);
+		if (charset != null)
+		{
+			ComponentTag tag = getUnchangedMarkupTag();
+			if (tag != null)
+			{
+				response.write(tag.getEncodedOutput(charset, stripWicketAttributes, namespace));
+				return;
+			}
+		}
+
+		writeText(response, stripWicketAttributes, namespace);
+	}
+
+	/**
+	 * @return the immutable tag this tag renders like, or {@code null} if it was changed
+	 */
+	private ComponentTag getUnchangedMarkupTag()
+	{
+		if (xmlTag.isMutable() == false)
+		{
+			return this;
+		}
+		if ((markupTag != null) && xmlTag.isUnchangedCopyOf(markupTag.xmlTag))
+		{
+			return markupTag;
+		}
+		return null;
+	}
+
+	/**
+	 * @param charset
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 * @return the output of this immutable tag encoded in the given charset
+	 */
+	private byte[] getEncodedOutput(final Charset charset, final boolean stripWicketAttributes,
+		final String namespace)
+	{
+		EncodedMarkup output = encodedOutput;
+		if ((output == null) || !output.matches(charset, stripWicketAttributes, namespace))
+		{
+			StringResponse response = new StringResponse();
+			writeText(response, stripWicketAttributes, namespace);
+			output = new EncodedMarkup(response.getBuffer(), charset, stripWicketAttributes,
+				namespace);
+			encodedOutput = output;
+		}
+		return output.getBytes();
+	}
+
+	/**
+	 * Writes the tag as text.
+	 * 
+	 * @param response
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 */
+	private void writeText(final Response response, final boolean stripWicketAttributes,
+		final String namespace)
 	{
 		response.write("<");
 
@@ -732,32 +803,32 @@ public class ComponentTag extends MarkupElement
 
 		response.write(getName());
 
-		String namespacePrefix = null;
-		if (stripWicketAttributes == true)
-		{
-			namespacePrefix = namespace + ":";
-		}
-
-		if (getAttributes().size() > 0)
+		// the attributes are not copied if the tag shares them with the markup
+		final IValueMap attributes = xmlTag.getAttributesForReading();
+		if (attributes.size() > 0)
 		{
-			for (String key : getAttributes().keySet())
+			final String namespacePrefix = String.valueOf(namespace);
+			for (String key : attributes.keySet())
 			{
 				if (key == null)
 				{
 					continue;
 				}
 
-				if ((namespacePrefix == null) || (key.startsWith(namespacePrefix) == false))
+				if ((stripWicketAttributes == false) || !isNamespaced(key, namespacePrefix))
 				{
 					response.write(" ");
 					response.write(key);
-					CharSequence value = getAttribute(key);
+					CharSequence value = attributes.getCharSequence(key);
 
 					// attributes without values are possible, e.g.' disabled'
 					if (value != null)
 					{
 						response.write("=\"");
-						value = Strings.escapeMarkup(value);
+						if (needsEscaping(value))
+						{
+							value = Strings.escapeMarkup(value);
+						}
 						response.write(value);
 						response.write("\"");
 					}
@@ -773,6 +844,45 @@ public class ComponentTag extends MarkupElement
 		response.write(">");
 	}
 
+	/**
+	 * @param key
+	 * @param namespace
+	 * @return true if the key is in the given namespace, e.g. "wicket:id"
+	 */
+	private static boolean isNamespaced(final String key, final String namespace)
+	{
+		final int length = namespace.length();
+		return (key.length() > length) && (key.charAt(length) == ':') &&
+			key.startsWith(namespace);
+	}
+
+	/**
+	 * @param value
+	 * @return true if {@link Strings#escapeMarkup(CharSequence)} would change the value
+	 */
+	private static boolean needsEscaping(final CharSequence value)
+	{
+		for (int i = 0, length = value.length(); i < length; i++)
+		{
+			final char c = value.charAt(i);
+			switch (c)
+			{
+				case '<' :
+				case '>' :
+				case '&' :
+				case '"' :
+				case '\'' :
+					return true;
+				default :
+					if ((c < 32) && (c != '\t') && (c != '\n') && (c != '\r'))
+					{
+						return true;
+					}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Converts this object to a string representation including useful information for debugging
 	 * 
@@ -969,6 +1079,22 @@ public class ComponentTag extends MarkupElement
 		userData.put(key, value);
 	}
 
+	/**
+	 * @return All user data of this tag, null if none has been set
+	 */
+	final Map<String, Object> getUserData()
+	{
+		return userData;
+	}
+
+	/**
+	 * @return All flags of this tag
+	 */
+	final int getFlags()
+	{
+		return flags;
+	}
+
 	/**
 	 * For subclasses to override. Gets called just before a Component gets rendered. It is
 	 * guaranteed that the markupStream is set on the Component and determineVisibility is not yet
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * The bytes of static markup in a charset, cached by the markup element which renders it. Static
+ * markup is written as these bytes to responses which accept bytes mixed with text.
+ * 
+ * @see WebResponse#getEncodingCharset()
+ */
+final class EncodedMarkup
+{
+	private final Charset charset;
+
+	private final boolean stripWicketAttributes;
+
+	private final String namespace;
+
+	private final byte[] bytes;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param markup
+	 *            the markup
+	 * @param charset
+	 *            the charset to encode the markup in
+	 * @param stripWicketAttributes
+	 *            whether wicket attributes were stripped from the markup
+	 * @param namespace
+	 *            the wicket namespace
+	 */
+	EncodedMarkup(final CharSequence markup, final Charset charset,
+		final boolean stripWicketAttributes, final String namespace)
+	{
+		this.charset = charset;
+		this.stripWicketAttributes = stripWicketAttributes;
+		this.namespace = namespace;
+
+		ByteBuffer encoded = charset.encode(CharBuffer.wrap(markup));
+		bytes = new byte[encoded.remaining()];
+		encoded.get(bytes);
+	}
+
+	/**
+	 * @param charset
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 * @return whether these bytes are the markup rendered in the given way
+	 */
+	boolean matches(final Charset charset, final boolean stripWicketAttributes,
+		final String namespace)
+	{
+		return this.charset.equals(charset) &&
+			(this.stripWicketAttributes == stripWicketAttributes) &&
+			Objects.equal(this.namespace, namespace);
+	}
+
+	/**
+	 * @return the encoded markup
+	 */
+	byte[] getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Gets the charset markup can be written to the response as bytes in.
+	 * 
+	 * @param response
+	 * @return the charset or {@code null} if markup has to be written as text
+	 */
+	static Charset getEncodingCharset(final Response response)
+	{
+		if (response instanceof WebResponse)
+		{
+			return ((WebResponse)response).getEncodingCharset();
+		}
+		return null;
+	}
+}
@@ -16,15 +16,22 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.watch.IModifiable;
 import org.apache.wicket.util.watch.IModificationWatcher;
 import org.apache.wicket.util.watch.ModificationWatcher;
@@ -40,6 +47,9 @@ import org.slf4j.LoggerFactory;
  * <p>
  * MarkupCache is registered with {@link MarkupFactory} which in turn is registered with
  * {@link org.apache.wicket.settings.MarkupSettings} and thus can be replaced with a sub-classed version.
+ * <p>
+ * By default the cache is not bounded. Override {@link #newCacheImplementation()} to return a
+ * {@link BoundedCacheImplementation} to limit the memory used by the cached markup.
  * 
  * @see org.apache.wicket.settings.MarkupSettings
  * @see MarkupFactory
@@ -72,6 +82,18 @@ public class MarkupCache implements IMarkupCache
 	 */
 	private final Application application;
 
+	/** Number of lookups which found the markup in the cache */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/** Number of lookups which did not find the markup in the cache */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/** Number of times the markup was loaded */
+	private final AtomicLong loadCount = new AtomicLong();
+
+	/** Nanoseconds spent loading markup */
+	private final AtomicLong loadTime = new AtomicLong();
+
 	/**
 	 * A convenient helper to get the markup cache registered with the application.
 	 * 
@@ -265,6 +287,39 @@ public class MarkupCache implements IMarkupCache
 		return markupCache;
 	}
 
+	/**
+	 * @return the number of lookups which found the markup in the cache
+	 */
+	public final long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find the markup in the cache
+	 */
+	public final long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of times markup was loaded, including the lookups of markup which does
+	 *         not exist
+	 */
+	public final long getLoadCount()
+	{
+		return loadCount.get();
+	}
+
+	/**
+	 * @return the total time spent loading markup
+	 */
+	public final Duration getTotalLoadTime()
+	{
+		return Duration.milliseconds(loadTime.get() / 1000000);
+	}
+
 	@Override
 	public final Markup getMarkup(final MarkupContainer container, final Class<?> clazz,
 		final boolean enforceReload)
@@ -281,6 +336,7 @@ public class MarkupCache implements IMarkupCache
 		if ((enforceReload == false) && (cacheKey != null))
 		{
 			markup = getMarkupFromCache(cacheKey, container);
+			(markup != null ? hitCount : missCount).incrementAndGet();
 		}
 
 		// If markup not found in cache or cache disabled, than ...
@@ -290,6 +346,7 @@ public class MarkupCache implements IMarkupCache
 			{
 				log.debug("Load markup: cacheKey=" + cacheKey);
 			}
+			final long start = System.nanoTime();
 
 			// Get the markup resource stream for the container
 			final MarkupResourceStream resourceStream = MarkupFactory.get()
@@ -307,6 +364,9 @@ public class MarkupCache implements IMarkupCache
 			{
 				markup = onMarkupNotFound(cacheKey, container, Markup.NO_MARKUP);
 			}
+
+			loadCount.incrementAndGet();
+			loadTime.addAndGet(System.nanoTime() - start);
 		}
 
 		// NO_MARKUP should only be used inside the Cache.
@@ -737,4 +797,302 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * A cache which is bounded by the estimated size of its entries. If the cache grows beyond its
+	 * maximum size, the least recently used entries are evicted until it uses no more than 90% of
+	 * the maximum size. {@link Markup#NO_MARKUP}, which flags markup not found, may expire after
+	 * some time, so markup added later on is found.
+	 * <p>
+	 * The size of markup is estimated from the length of its text, see
+	 * {@link #estimateSize(Object)}.
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 */
+	public static class BoundedCacheImplementation<K, V> implements ICache<K, V>
+	{
+		private final ConcurrentHashMap<K, Entry<V>> cache = new ConcurrentHashMap<K, Entry<V>>();
+
+		private final long maximumSize;
+
+		private final Duration noMarkupTimeToLive;
+
+		/** The estimated size of all entries */
+		private final AtomicLong size = new AtomicLong();
+
+		private final AtomicLong evictionCount = new AtomicLong();
+
+		/**
+		 * Construct.
+		 * 
+		 * @param maximumSize
+		 *            the maximum estimated size of all entries
+		 * @param noMarkupTimeToLive
+		 *            how long {@link Markup#NO_MARKUP} is cached, {@code null} to cache it until
+		 *            it is evicted
+		 */
+		public BoundedCacheImplementation(final Bytes maximumSize, final Duration noMarkupTimeToLive)
+		{
+			this.maximumSize = Args.notNull(maximumSize, "maximumSize").bytes();
+			this.noMarkupTimeToLive = noMarkupTimeToLive;
+		}
+
+		@Override
+		public void clear()
+		{
+			Iterator<V> iter = getValues().iterator();
+			while (iter.hasNext())
+			{
+				iter.next();
+				iter.remove();
+			}
+		}
+
+		@Override
+		public boolean containsKey(final Object key)
+		{
+			return get(key) != null;
+		}
+
+		@Override
+		public V get(final Object key)
+		{
+			if (key == null)
+			{
+				return null;
+			}
+			Entry<V> entry = cache.get(key);
+			if (entry == null)
+			{
+				return null;
+			}
+			if (entry.isExpired())
+			{
+				removeEntry(key, entry);
+				return null;
+			}
+			entry.accessed = System.nanoTime();
+			return entry.value;
+		}
+
+		@Override
+		public Collection<K> getKeys()
+		{
+			return cache.keySet();
+		}
+
+		@Override
+		public Collection<V> getValues()
+		{
+			return new AbstractCollection<V>()
+			{
+				@Override
+				public Iterator<V> iterator()
+				{
+					final Iterator<Map.Entry<K, Entry<V>>> iter = cache.entrySet().iterator();
+					return new Iterator<V>()
+					{
+						private Map.Entry<K, Entry<V>> current;
+
+						@Override
+						public boolean hasNext()
+						{
+							return iter.hasNext();
+						}
+
+						@Override
+						public V next()
+						{
+							current = iter.next();
+							return current.getValue().value;
+						}
+
+						@Override
+						public void remove()
+						{
+							removeEntry(current.getKey(), current.getValue());
+						}
+					};
+				}
+
+				@Override
+				public int size()
+				{
+					return cache.size();
+				}
+			};
+		}
+
+		@Override
+		public void put(final K key, final V value)
+		{
+			long expires = Long.MAX_VALUE;
+			if ((value == Markup.NO_MARKUP) && (noMarkupTimeToLive != null))
+			{
+				expires = System.currentTimeMillis() + noMarkupTimeToLive.getMilliseconds();
+			}
+
+			Entry<V> entry = new Entry<V>(value, estimateSize(key) + estimateSize(value), expires);
+			Entry<V> previous = cache.put(key, entry);
+			size.addAndGet(entry.size - (previous != null ? previous.size : 0));
+
+			if (size.get() > maximumSize)
+			{
+				evict();
+			}
+		}
+
+		@Override
+		public boolean remove(final K key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			Entry<V> entry = cache.remove(key);
+			if (entry == null)
+			{
+				return false;
+			}
+			size.addAndGet(-entry.size);
+			return true;
+		}
+
+		@Override
+		public int size()
+		{
+			return cache.size();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			clear();
+		}
+
+		/**
+		 * @return the estimated size of all entries
+		 */
+		public final Bytes getSize()
+		{
+			return Bytes.bytes(size.get());
+		}
+
+		/**
+		 * @return the number of entries evicted because the cache was full
+		 */
+		public final long getEvictionCount()
+		{
+			return evictionCount.get();
+		}
+
+		/**
+		 * Estimates the memory used by a key or value, including the markup elements of a
+		 * {@link Markup}. Their text is counted three times: once for its characters and once for
+		 * the encoded bytes which are cached when the markup is rendered.
+		 * 
+		 * @param object
+		 *            the key or value
+		 * @return the estimated size in bytes
+		 */
+		protected long estimateSize(final Object object)
+		{
+			if ((object instanceof Markup) && (object != Markup.NO_MARKUP))
+			{
+				Markup markup = (Markup)object;
+				long estimate = 64;
+				for (int i = 0; i < markup.size(); i++)
+				{
+					MarkupElement element = markup.get(i);
+					if (element instanceof ComponentTag)
+					{
+						estimate += 160 + 3L * ((ComponentTag)element).getLength();
+					}
+					else if (element instanceof RawMarkup)
+					{
+						estimate += 48 + 3L * element.toCharSequence().length();
+					}
+					else
+					{
+						estimate += 64;
+					}
+				}
+				return estimate;
+			}
+			else if (object instanceof CharSequence)
+			{
+				return 40 + 2L * ((CharSequence)object).length();
+			}
+			return 16;
+		}
+
+		private void removeEntry(final Object key, final Entry<V> entry)
+		{
+			if (cache.remove(key, entry))
+			{
+				size.addAndGet(-entry.size);
+			}
+		}
+
+		/**
+		 * Evicts the least recently used entries.
+		 */
+		private synchronized void evict()
+		{
+			final long target = maximumSize / 10 * 9;
+			if (size.get() <= target)
+			{
+				return;
+			}
+
+			List<Map.Entry<K, Entry<V>>> entries = new ArrayList<>(cache.entrySet());
+			entries.sort((e1, e2) -> Long.compare(e1.getValue().accessed, e2.getValue().accessed));
+			for (Map.Entry<K, Entry<V>> entry : entries)
+			{
+				if (size.get() <= target)
+				{
+					break;
+				}
+				if (cache.remove(entry.getKey(), entry.getValue()))
+				{
+					size.addAndGet(-entry.getValue().size);
+					evictionCount.incrementAndGet();
+
+					if (log.isDebugEnabled())
+					{
+						log.debug("Evicted from cache: " + entry.getKey());
+					}
+				}
+			}
+		}
+
+		/**
+		 * A cached value.
+		 * 
+		 * @param <V>
+		 */
+		private static final class Entry<V>
+		{
+			private final V value;
+
+			private final long size;
+
+			private final long expires;
+
+			private volatile long accessed = System.nanoTime();
+
+			private Entry(final V value, final long size, final long expires)
+			{
+				this.value = value;
+				this.size = size;
+				this.expires = expires;
+			}
+
+			private boolean isExpired()
+			{
+				return (expires != Long.MAX_VALUE) && (System.currentTimeMillis() > expires);
+			}
+		}
+	}
 }
@@ -0,0 +1,649 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.markup.ComponentTag.IAutoComponentFactory;
+import org.apache.wicket.markup.parser.IMarkupFilter;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.markup.parser.filter.WicketTagIdentifier;
+import org.apache.wicket.settings.MarkupSettings;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+
+/**
+ * Writes parsed {@link Markup} in a compact binary format and reads it back, without running the
+ * {@link MarkupParser} again. See {@link org.apache.wicket.markup.loader.MarkupPrecompiler} and
+ * {@link org.apache.wicket.markup.loader.PrecompiledMarkupLoader}.
+ * <p>
+ * Along with the markup elements a checksum of the markup resource and a fingerprint of the parser
+ * setup are written: the markup factory, the container class, the markup filters and the markup
+ * settings affecting the parser. If any of them has changed, {@link #read(MarkupResourceStream,
+ * InputStream)} returns {@code null} and the markup has to be parsed.
+ * <p>
+ * Behaviors, auto component factories and user data of tags are written as a reference to the
+ * static field holding them, or else with java serialization. Markup with tags holding other
+ * objects can not be written.
+ * <p>
+ * <strong>This class is not part of the public API and may change without notice.</strong>
+ */
+public final class MarkupSerializer
+{
+	/** Appended to the name of a markup file to get the name of its precompiled markup file */
+	public static final String EXTENSION = ".precompiled";
+
+	/** "WMK" and the version of the format */
+	private static final int MAGIC = 0x574d4b01;
+
+	private static final byte RAW_MARKUP = 0;
+
+	private static final byte COMPONENT_TAG = 1;
+
+	private static final byte WICKET_TAG = 2;
+
+	private static final byte NULL = 0;
+
+	private static final byte STATIC_FIELD = 1;
+
+	private static final byte SERIALIZED = 2;
+
+	private static final byte CONTAINER_INFO = 3;
+
+	private static final byte CACHE_KEY = 4;
+
+	private MarkupSerializer()
+	{
+	}
+
+	/**
+	 * Writes the markup.
+	 * 
+	 * @param markup
+	 *            the parsed markup
+	 * @param out
+	 *            the stream to write to, not closed by this method
+	 * @throws NotSerializableException
+	 *             if the markup holds anything which can not be written
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 *             if the markup resource can not be read to compute its checksum
+	 */
+	public static void write(final Markup markup, final OutputStream out) throws IOException,
+		ResourceStreamNotFoundException
+	{
+		Args.notNull(markup, "markup");
+		Args.notNull(out, "out");
+
+		MarkupResourceStream markupResourceStream = markup.getMarkupResourceStream();
+
+		ObjectOutputStream output = new ObjectOutputStream(out);
+		output.writeInt(MAGIC);
+		writeString(output, fingerprint(markupResourceStream));
+		output.writeLong(checksum(markupResourceStream.getResource()));
+
+		writeString(output, markupResourceStream.getEncoding());
+		writeString(output, markupResourceStream.getDoctype());
+		writeString(output, markupResourceStream.getWicketNamespace());
+
+		Map<Object, Integer> indexes = new IdentityHashMap<>();
+		output.writeInt(markup.size());
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			if (element.getClass() == RawMarkup.class)
+			{
+				output.writeByte(RAW_MARKUP);
+				writeString(output, element.toCharSequence());
+			}
+			else if (element.getClass() == ComponentTag.class ||
+				element.getClass() == WicketTag.class)
+			{
+				ComponentTag tag = (ComponentTag)element;
+				indexes.put(tag, i);
+				indexes.putIfAbsent(tag.getXmlTag(), i);
+
+				output.writeByte(tag instanceof WicketTag ? WICKET_TAG : COMPONENT_TAG);
+				writeTag(output, tag, indexes, markupResourceStream);
+			}
+			else
+			{
+				throw new NotSerializableException(element.getClass().getName());
+			}
+		}
+		output.flush();
+	}
+
+	/**
+	 * Reads markup written by {@link #write(Markup, OutputStream)}.
+	 * 
+	 * @param markupResourceStream
+	 *            the resource the markup was parsed from
+	 * @param in
+	 *            the stream to read from, not closed by this method
+	 * @return the markup, or {@code null} if the markup resource or the parser setup has changed
+	 *         since the markup was written
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 *             if the markup resource can not be read to compute its checksum
+	 */
+	public static Markup read(final MarkupResourceStream markupResourceStream,
+		final InputStream in) throws IOException, ResourceStreamNotFoundException
+	{
+		Args.notNull(markupResourceStream, "markupResourceStream");
+		Args.notNull(in, "in");
+
+		ObjectInputStream input = new ResolvingObjectInputStream(in);
+		if (input.readInt() != MAGIC)
+		{
+			return null;
+		}
+		if (fingerprint(markupResourceStream).equals(readString(input)) == false)
+		{
+			return null;
+		}
+		if (input.readLong() != checksum(markupResourceStream.getResource()))
+		{
+			return null;
+		}
+
+		String encoding = readString(input);
+		String doctype = readString(input);
+		String wicketNamespace = readString(input);
+
+		Markup markup = new Markup(markupResourceStream);
+		int size = input.readInt();
+		List<ComponentTag> tags = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+		{
+			byte type = input.readByte();
+			if (type == RAW_MARKUP)
+			{
+				markup.addMarkupElement(new RawMarkup(readString(input)));
+				tags.add(null);
+			}
+			else if (type == COMPONENT_TAG || type == WICKET_TAG)
+			{
+				ComponentTag tag = readTag(input, type == WICKET_TAG, tags, markupResourceStream);
+				markup.addMarkupElement(tag);
+				tags.add(tag);
+			}
+			else
+			{
+				throw new StreamCorruptedException("Unknown markup element type " + type);
+			}
+		}
+
+		markupResourceStream.setEncoding(encoding);
+		if (doctype != null)
+		{
+			markupResourceStream.setDoctype("!DOCTYPE " + doctype);
+		}
+		if (wicketNamespace != null)
+		{
+			markupResourceStream.setWicketNamespace(wicketNamespace);
+		}
+
+		markup.makeImmutable();
+		return markup;
+	}
+
+	private static void writeTag(final ObjectOutputStream output, final ComponentTag tag,
+		final Map<Object, Integer> indexes, final MarkupResourceStream markupResourceStream)
+		throws IOException
+	{
+		XmlTag xmlTag = tag.getXmlTag();
+		writeString(output, xmlTag.getName());
+		writeString(output, xmlTag.getNamespace());
+		output.writeByte(xmlTag.getType().ordinal());
+
+		// the text is kept by tags without attributes only, see XmlTag#makeImmutable()
+		boolean hasText = xmlTag.getLength() > 0;
+		output.writeBoolean(hasText);
+		if (hasText)
+		{
+			writeString(output, xmlTag.toCharSequence());
+			output.writeInt(xmlTag.getPos());
+			output.writeInt(xmlTag.getLineNumber());
+			output.writeInt(xmlTag.getColumnNumber());
+		}
+
+		if (xmlTag.hasAttributes())
+		{
+			output.writeInt(xmlTag.getAttributes().size());
+			for (Map.Entry<String, Object> attribute : xmlTag.getAttributes().entrySet())
+			{
+				writeString(output, attribute.getKey());
+				writeString(output, Objects.toString(attribute.getValue(), null));
+			}
+		}
+		else
+		{
+			output.writeInt(0);
+		}
+
+		output.writeInt(indexOf(xmlTag.getOpenTag(), indexes));
+		output.writeInt(indexOf(tag.getOpenTag(), indexes));
+
+		writeString(output, tag.getId());
+		output.writeInt(tag.getFlags());
+		Class<? extends Component> markupClass = tag.getMarkupClass();
+		writeString(output, markupClass != null ? markupClass.getName() : null);
+
+		List<Behavior> behaviors = new ArrayList<>();
+		if (tag.hasBehaviors())
+		{
+			for (Iterator<? extends Behavior> it = tag.getBehaviors(); it.hasNext();)
+			{
+				behaviors.add(it.next());
+			}
+		}
+		output.writeInt(behaviors.size());
+		for (Behavior behavior : behaviors)
+		{
+			writeObject(output, behavior);
+		}
+
+		writeObject(output, tag.getAutoComponentFactory());
+
+		Map<String, Object> userData = tag.getUserData();
+		output.writeInt(userData != null ? userData.size() : 0);
+		if (userData != null)
+		{
+			for (Map.Entry<String, Object> entry : userData.entrySet())
+			{
+				String key = entry.getKey();
+				Object value = entry.getValue();
+				writeString(output, key);
+
+				// these refer to the resource the markup is parsed from, so take them from the
+				// resource the markup is read for
+				if (WicketTagIdentifier.CONTAINER_INFO.equals(key) &&
+					value == markupResourceStream.getContainerInfo())
+				{
+					output.writeByte(CONTAINER_INFO);
+				}
+				else if (WicketTagIdentifier.MARKUP_CACHE_KEY.equals(key) &&
+					Objects.equals(value, markupResourceStream.getCacheKey()))
+				{
+					output.writeByte(CACHE_KEY);
+				}
+				else
+				{
+					writeObject(output, value);
+				}
+			}
+		}
+	}
+
+	private static ComponentTag readTag(final ObjectInputStream input, final boolean wicketTag,
+		final List<ComponentTag> tags, final MarkupResourceStream markupResourceStream)
+		throws IOException
+	{
+		String name = readString(input);
+		String namespace = readString(input);
+		TagType type = TagType.values()[input.readByte()];
+
+		XmlTag xmlTag;
+		if (input.readBoolean())
+		{
+			xmlTag = new XmlTag(readString(input), input.readInt(), input.readInt(),
+				input.readInt(), type);
+		}
+		else
+		{
+			xmlTag = new XmlTag();
+			xmlTag.setType(type);
+		}
+		if (name != null)
+		{
+			xmlTag.setName(name);
+		}
+		xmlTag.setNamespace(namespace);
+
+		int attributes = input.readInt();
+		for (int i = 0; i < attributes; i++)
+		{
+			xmlTag.put(readString(input), readString(input));
+		}
+
+		int xmlOpenTag = input.readInt();
+		int openTag = input.readInt();
+
+		// open-close tags close themselves
+		ComponentTag tag = wicketTag ? new WicketTag(xmlTag) : new ComponentTag(xmlTag);
+		if (openTag != -1)
+		{
+			tag.setOpenTag(openTag == tags.size() ? tag : tags.get(openTag));
+		}
+		if (xmlOpenTag == -1)
+		{
+			xmlTag.setOpenTag(null);
+		}
+		else
+		{
+			xmlTag.setOpenTag(xmlOpenTag == tags.size() ? xmlTag : tags.get(xmlOpenTag)
+				.getXmlTag());
+		}
+
+		tag.setId(readString(input));
+		tag.setFlag(input.readInt(), true);
+		String markupClass = readString(input);
+		if (markupClass != null)
+		{
+			tag.setMarkupClass(WicketObjects.<Component> resolveClass(markupClass));
+			if (tag.getMarkupClass() == null)
+			{
+				throw new InvalidClassException(markupClass, "Class not found");
+			}
+		}
+
+		int behaviors = input.readInt();
+		for (int i = 0; i < behaviors; i++)
+		{
+			tag.addBehavior((Behavior)readObject(input));
+		}
+
+		tag.setAutoComponentFactory((IAutoComponentFactory)readObject(input));
+
+		int userData = input.readInt();
+		for (int i = 0; i < userData; i++)
+		{
+			String key = readString(input);
+			byte valueType = input.readByte();
+			if (valueType == CONTAINER_INFO)
+			{
+				tag.setUserData(key, markupResourceStream.getContainerInfo());
+			}
+			else if (valueType == CACHE_KEY)
+			{
+				tag.setUserData(key, markupResourceStream.getCacheKey());
+			}
+			else
+			{
+				tag.setUserData(key, readObject(input, valueType));
+			}
+		}
+		return tag;
+	}
+
+	private static int indexOf(final Object element, final Map<Object, Integer> indexes)
+		throws NotSerializableException
+	{
+		if (element == null)
+		{
+			return -1;
+		}
+
+		Integer index = indexes.get(element);
+		if (index == null)
+		{
+			throw new NotSerializableException("Close tag refers to a tag not part of the markup");
+		}
+		return index;
+	}
+
+	private static void writeObject(final ObjectOutputStream output, final Object object)
+		throws IOException
+	{
+		if (object == null)
+		{
+			output.writeByte(NULL);
+			return;
+		}
+
+		Field field = findStaticField(object);
+		if (field != null)
+		{
+			output.writeByte(STATIC_FIELD);
+			writeString(output, field.getDeclaringClass().getName());
+			writeString(output, field.getName());
+		}
+		else if (object instanceof Serializable)
+		{
+			output.writeByte(SERIALIZED);
+			output.writeObject(object);
+		}
+		else
+		{
+			throw new NotSerializableException(object.getClass().getName());
+		}
+	}
+
+	private static Object readObject(final ObjectInputStream input) throws IOException
+	{
+		return readObject(input, input.readByte());
+	}
+
+	private static Object readObject(final ObjectInputStream input, final byte type)
+		throws IOException
+	{
+		switch (type)
+		{
+			case NULL :
+				return null;
+
+			case STATIC_FIELD :
+				String className = readString(input);
+				String fieldName = readString(input);
+				Class<?> clazz = WicketObjects.resolveClass(className);
+				if (clazz == null)
+				{
+					throw new InvalidClassException(className, "Class not found");
+				}
+				try
+				{
+					Field field = clazz.getDeclaredField(fieldName);
+					field.setAccessible(true);
+					return field.get(null);
+				}
+				catch (NoSuchFieldException | IllegalAccessException e)
+				{
+					throw new InvalidClassException(className, e.getMessage());
+				}
+
+			case SERIALIZED :
+				try
+				{
+					return input.readObject();
+				}
+				catch (ClassNotFoundException e)
+				{
+					throw new InvalidClassException(e.getMessage());
+				}
+
+			default :
+				throw new StreamCorruptedException("Unknown object type " + type);
+		}
+	}
+
+	/**
+	 * Finds the static final field holding the object, in its class or any enclosing class, e.g.
+	 * {@link org.apache.wicket.markup.parser.filter.RelativePathPrefixHandler#RELATIVE_PATH_BEHAVIOR}
+	 * 
+	 * @param object
+	 * @return the field or {@code null}
+	 */
+	private static Field findStaticField(final Object object)
+	{
+		for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getEnclosingClass())
+		{
+			for (Field field : clazz.getDeclaredFields())
+			{
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) &&
+					field.getType().isPrimitive() == false)
+				{
+					try
+					{
+						field.setAccessible(true);
+						if (field.get(null) == object)
+						{
+							return field;
+						}
+					}
+					catch (IllegalAccessException | RuntimeException e)
+					{
+						// not accessible, keep on searching
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param markupResourceStream
+	 * @return a description of everything besides the markup resource affecting the result of
+	 *         parsing it
+	 */
+	private static String fingerprint(final MarkupResourceStream markupResourceStream)
+	{
+		MarkupFactory markupFactory = MarkupFactory.get();
+		StringBuilder fingerprint = new StringBuilder(markupFactory.getClass().getName());
+
+		ContainerInfo containerInfo = markupResourceStream.getContainerInfo();
+		fingerprint.append(';');
+		if (containerInfo != null)
+		{
+			fingerprint.append(containerInfo.getContainerClass().getName());
+		}
+
+		MarkupParser parser = markupFactory.newMarkupParser(markupResourceStream);
+		for (IMarkupFilter filter : parser.getMarkupFilters())
+		{
+			fingerprint.append(';').append(filter.getClass().getName());
+		}
+
+		Application application = Application.get();
+		MarkupSettings settings = application.getMarkupSettings();
+		fingerprint.append(';').append(settings.getDefaultMarkupEncoding());
+		fingerprint.append(';').append(settings.getAutomaticLinking());
+		fingerprint.append(';').append(settings.getCompressWhitespace());
+		fingerprint.append(';').append(settings.getStripComments());
+		fingerprint.append(';').append(settings.getThrowExceptionOnMissingXmlDeclaration());
+		fingerprint.append(';').append(application.usesDevelopmentConfig());
+		return fingerprint.toString();
+	}
+
+	private static long checksum(final IResourceStream resource) throws IOException,
+		ResourceStreamNotFoundException
+	{
+		// start from the beginning, even if the resource has been read before
+		resource.close();
+
+		CRC32 checksum = new CRC32();
+		try
+		{
+			InputStream in = resource.getInputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				checksum.update(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			resource.close();
+		}
+		return checksum.getValue();
+	}
+
+	private static void writeString(final ObjectOutputStream output, final CharSequence string)
+		throws IOException
+	{
+		if (string == null)
+		{
+			output.writeInt(-1);
+		}
+		else
+		{
+			byte[] bytes = string.toString().getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static String readString(final ObjectInputStream input) throws IOException
+	{
+		int length = input.readInt();
+		if (length == -1)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Resolves classes with the application's class resolver too.
+	 */
+	private static class ResolvingObjectInputStream extends ObjectInputStream
+	{
+		private ResolvingObjectInputStream(final InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			try
+			{
+				return super.resolveClass(desc);
+			}
+			catch (ClassNotFoundException e)
+			{
+				Class<?> clazz = WicketObjects.resolveClass(desc.getName());
+				if (clazz == null)
+				{
+					throw e;
+				}
+				return clazz;
+			}
+		}
+	}
+}
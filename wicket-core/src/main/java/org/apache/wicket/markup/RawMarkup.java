@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.markup;
 
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+
 /**
  * This class is for framework purposes only, which is why the class is (default) protected.
  * <p>
@@ -29,6 +33,9 @@ public class RawMarkup extends MarkupElement
 	/** The raw markup string * */
 	private final CharSequence string;
 
+	/** The markup encoded in the charset of the last response it was written to */
+	private volatile EncodedMarkup encoded;
+
 	/**
 	 * Create a RawMarkup element referencing an uninterpreted markup string.
 	 * 
@@ -87,6 +94,30 @@ public class RawMarkup extends MarkupElement
 		return string.hashCode();
 	}
 
+	/**
+	 * Writes the markup to the response, as bytes if the response accepts them.
+	 * 
+	 * @param response
+	 *            The response to write to
+	 */
+	public void writeOutput(final Response response)
+	{
+		Charset charset = EncodedMarkup.getEncodingCharset(response);
+		if (charset == null)
+		{
+			response.write(string);
+			return;
+		}
+
+		EncodedMarkup markup = encoded;
+		if ((markup == null) || !markup.matches(charset, false, null))
+		{
+			markup = new EncodedMarkup(string, charset, false, null);
+			encoded = markup;
+		}
+		response.write(markup.getBytes());
+	}
+
 	/**
 	 * @see org.apache.wicket.markup.MarkupElement#toCharSequence()
 	 */
@@ -34,6 +34,7 @@ import org.apache.wicket.markup.head.internal.HeaderResponse;
 import org.apache.wicket.markup.html.TransparentWebMarkupContainer;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.renderStrategy.AbstractHeaderRenderStrategy;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.response.StringResponse;
 
@@ -313,6 +314,22 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 		return true;
 	}
 
+	/**
+	 * Renders the header and lets a streaming response send everything rendered so far, so the
+	 * client can fetch the header resources while the rest of the page is rendered.
+	 */
+	@Override
+	protected void onRender()
+	{
+		super.onRender();
+
+		Response response = getResponse();
+		if (response instanceof StreamingWebResponse)
+		{
+			((StreamingWebResponse)response).stream();
+		}
+	}
+
 	@Override
 	protected void onAfterRender() {
 		super.onAfterRender();
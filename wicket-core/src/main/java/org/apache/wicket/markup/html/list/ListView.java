@@ -17,13 +17,17 @@
 package org.apache.wicket.markup.html.list;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.behavior.PreloadModelsBehavior;
+import org.apache.wicket.core.util.model.ModelPreloader;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.markup.repeater.AbstractRepeater;
+import org.apache.wicket.model.BatchLoadableDetachableModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.util.collections.ReadOnlyIterator;
@@ -464,7 +468,6 @@ public abstract class ListView<T> extends AbstractRepeater
 	/**
 	 * @see org.apache.wicket.markup.repeater.AbstractRepeater#onPopulate()
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected final void onPopulate()
 	{
@@ -498,30 +501,38 @@ public abstract class ListView<T> extends AbstractRepeater
 			}
 
 			boolean hasChildren = size() != 0;
-			// Loop through the markup in this container for each item
+			// Collect the models of all items which do not already exist
+			final List<Integer> indices = new ArrayList<>();
+			final List<IModel<T>> models = new ArrayList<>();
 			for (int i = 0; i < size; i++)
 			{
 				// Get index
 				final int index = firstIndex + i;
 
-				ListItem<T> item = null;
-				if (hasChildren)
+				if (hasChildren == false || get(Integer.toString(index)) == null)
 				{
-					// If this component does not already exist, populate it
-					item = (ListItem<T>)get(Integer.toString(index));
+					indices.add(index);
+					models.add(getListItemModel(getModel(), index));
 				}
-				if (item == null)
-				{
-					// Create item for index
-					item = newItem(index, getListItemModel(getModel(), index));
+			}
 
-					// Add list item
-					add(item);
+			if (models.isEmpty() == false)
+			{
+				preloadItemModels(models);
+			}
 
-					// Populate the list item
-					onBeginPopulateItem(item);
-					populateItem(item);
-				}
+			// Create and populate the missing items
+			for (int i = 0; i < indices.size(); i++)
+			{
+				// Create item for index
+				ListItem<T> item = newItem(indices.get(i), models.get(i));
+
+				// Add list item
+				add(item);
+
+				// Populate the list item
+				onBeginPopulateItem(item);
+				populateItem(item);
 			}
 		}
 		else
@@ -531,6 +542,26 @@ public abstract class ListView<T> extends AbstractRepeater
 
 	}
 
+	/**
+	 * Loads the models of the items which are about to be created, before they are populated. Useful
+	 * if {@link #getListItemModel(IModel, int)} is overridden to return models which load their
+	 * objects one by one, e.g. {@link org.apache.wicket.model.BatchLoadableDetachableModel}s.
+	 * <p>
+	 * By default all {@link org.apache.wicket.model.BatchLoadableDetachableModel}s are loaded with
+	 * one call per model class, and the other models are loaded in parallel if this view or one of
+	 * its parents is marked with a {@link PreloadModelsBehavior} and an executor is configured for
+	 * it.
+	 * 
+	 * @param models
+	 *            the models of the new items
+	 */
+	protected void preloadItemModels(final List<IModel<T>> models)
+	{
+		BatchLoadableDetachableModel.loadAll(models);
+
+		ModelPreloader.preload(this, models);
+	}
+
 	/**
 	 * Comes handy for ready made ListView based components which must implement populateItem() but
 	 * you don't want to lose compile time error checking reminding the user to implement abstract
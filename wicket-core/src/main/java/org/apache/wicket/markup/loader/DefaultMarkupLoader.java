@@ -18,6 +18,7 @@ package org.apache.wicket.markup.loader;
 
 import java.io.IOException;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.markup.Markup;
 import org.apache.wicket.markup.MarkupResourceStream;
@@ -25,7 +26,8 @@ import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 
 /**
  * This is Wickets default markup loader. It uses the {@link InheritedMarkupMarkupLoader} and
- * {@link SimpleMarkupLoader} to load the markup associated with a {@link MarkupContainer}.
+ * {@link SimpleMarkupLoader} to load the markup associated with a {@link MarkupContainer}, the
+ * latter wrapped by a {@link PrecompiledMarkupLoader} if enabled in the markup settings.
  * 
  * @author Juergen Donnerstag
  */
@@ -49,7 +51,11 @@ public class DefaultMarkupLoader implements IMarkupLoader
 		final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
 	{
 		IMarkupLoader loader = new InheritedMarkupMarkupLoader();
-		return loader.loadMarkup(container, markupResourceStream, new SimpleMarkupLoader(),
-			enforceReload);
+		IMarkupLoader simpleLoader = new SimpleMarkupLoader();
+		if (Application.get().getMarkupSettings().getLoadPrecompiledMarkup())
+		{
+			simpleLoader = new PrecompiledMarkupLoader(simpleLoader);
+		}
+		return loader.loadMarkup(container, markupResourceStream, simpleLoader, enforceReload);
 	}
 }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.ContainerInfo;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.MarkupSerializer;
+import org.apache.wicket.markup.MarkupType;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Precompiles the markup files below a directory, usually the output directory of the application
+ * classes, so they don't have to be parsed at runtime. It can be run at build time, e.g. by the
+ * exec-maven-plugin in the {@code process-classes} phase:
+ * 
+ * <pre>
+ * java org.apache.wicket.markup.loader.MarkupPrecompiler target/classes com.example.MyApplication
+ * </pre>
+ * 
+ * Each html file named after a {@link MarkupContainer} class, including its locale, style and
+ * variation specific variants, is parsed like at runtime and written next to it by the
+ * {@link MarkupSerializer}, to be read by the {@link PrecompiledMarkupLoader}. Markup which can't be
+ * written is skipped and will be parsed at runtime.
+ * <p>
+ * The application must be configured like at runtime, e.g. with the same configuration type and
+ * markup settings. Otherwise the precompiled markup is ignored as being out of date. The
+ * precompiled markup is only used if enabled with
+ * {@link org.apache.wicket.settings.MarkupSettings#setLoadPrecompiledMarkup(boolean)}.
+ */
+public class MarkupPrecompiler
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupPrecompiler.class);
+
+	private final MarkupType markupType = MarkupType.HTML_MARKUP_TYPE;
+
+	/**
+	 * Precompiles the markup files in the directory and its subdirectories. The application has
+	 * to be attached to the current thread.
+	 * 
+	 * @param directory
+	 *            the root of the class path the markup files are in
+	 * @return the number of precompiled markup files
+	 * @throws IOException
+	 *             if the directory can not be read
+	 */
+	public int precompile(final File directory) throws IOException
+	{
+		Args.notNull(directory, "directory");
+
+		Path root = directory.toPath();
+		String extension = "." + markupType.getExtension();
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(root))
+		{
+			files = paths.filter(path -> path.toString().endsWith(extension))
+				.collect(Collectors.toList());
+		}
+
+		int count = 0;
+		for (Path file : files)
+		{
+			if (precompile(root, file))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Precompiles a single markup file.
+	 * 
+	 * @param root
+	 *            the root of the class path
+	 * @param file
+	 *            the markup file
+	 * @return {@code true} if the markup has been precompiled
+	 * @throws IOException
+	 *             if an outdated precompiled markup file can not be removed
+	 */
+	protected boolean precompile(final Path root, final Path file) throws IOException
+	{
+		Path precompiled = file.resolveSibling(file.getFileName() + MarkupSerializer.EXTENSION);
+
+		Class<?> containerClass = getContainerClass(root.relativize(file));
+		if (containerClass == null)
+		{
+			log.debug("Skipping {}, it does not belong to a markup container", file);
+			Files.deleteIfExists(precompiled);
+			return false;
+		}
+
+		MarkupResourceStream markupResourceStream = new MarkupResourceStream(
+			new FileResourceStream(file.toFile()), new ContainerInfo(containerClass, null, null,
+				null, markupType), containerClass);
+		try
+		{
+			Markup markup = MarkupFactory.get().newMarkupParser(markupResourceStream).parse();
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(precompiled)))
+			{
+				MarkupSerializer.write(markup, out);
+			}
+			return true;
+		}
+		catch (Exception e)
+		{
+			log.info("Skipping {}, it can not be precompiled: {}", file, e.toString());
+			Files.deleteIfExists(precompiled);
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the container class of a markup file, e.g. {@code com.example.MyPanel} for
+	 * {@code com/example/MyPanel_de.html}.
+	 * 
+	 * @param path
+	 *            the path of the markup file relative to the root of the class path
+	 * @return the container class or {@code null}
+	 */
+	protected Class<?> getContainerClass(final Path path)
+	{
+		String name = path.toString().replace(File.separatorChar, '.');
+		name = name.substring(0, name.length() - markupType.getExtension().length() - 1);
+
+		while (true)
+		{
+			try
+			{
+				Class<?> clazz = Application.get()
+					.getApplicationSettings()
+					.getClassResolver()
+					.resolveClass(name);
+				return MarkupContainer.class.isAssignableFrom(clazz) ? clazz : null;
+			}
+			catch (ClassNotFoundException | LinkageError e)
+			{
+				// strip the locale, style or variation
+				int index = name.lastIndexOf('_');
+				if (index <= name.lastIndexOf('.'))
+				{
+					return null;
+				}
+				name = name.substring(0, index);
+			}
+		}
+	}
+
+	/**
+	 * Precompiles the markup files below a directory.
+	 * 
+	 * @param args
+	 *            the directory and optionally the class name of the {@link WebApplication}
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception
+	{
+		if (args.length < 1 || args.length > 2)
+		{
+			throw new IllegalArgumentException(
+				"Usage: MarkupPrecompiler <classes directory> [<application class>]");
+		}
+
+		WebApplication application = args.length > 1 ? (WebApplication)Class.forName(args[1])
+			.getDeclaredConstructor()
+			.newInstance() : new MockApplication();
+		BaseWicketTester tester = new BaseWicketTester(application);
+		try
+		{
+			int count = new MarkupPrecompiler().precompile(new File(args[0]));
+			log.info("Precompiled {} markup files in {}", count, args[0]);
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+}
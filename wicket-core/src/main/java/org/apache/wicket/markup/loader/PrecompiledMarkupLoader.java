@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.MarkupSerializer;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.IFixedLocationResourceStream;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads markup written by the {@link MarkupPrecompiler} instead of parsing it. The precompiled
+ * markup is looked up next to the markup resource, with {@link MarkupSerializer#EXTENSION} appended
+ * to its name. If there is none, or it is out of date, the markup is loaded by the fallback loader.
+ * <p>
+ * The precompiled markup is deserialized, so it must only be enabled if the precompiled files on
+ * the classpath are trusted like the classes next to them.
+ * 
+ * @see org.apache.wicket.settings.MarkupSettings#setLoadPrecompiledMarkup(boolean)
+ */
+public class PrecompiledMarkupLoader implements IMarkupLoader
+{
+	private static final Logger log = LoggerFactory.getLogger(PrecompiledMarkupLoader.class);
+
+	private final IMarkupLoader fallbackLoader;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param fallbackLoader
+	 *            the loader for markup which has not been precompiled
+	 */
+	public PrecompiledMarkupLoader(final IMarkupLoader fallbackLoader)
+	{
+		this.fallbackLoader = Args.notNull(fallbackLoader, "fallbackLoader");
+	}
+
+	@Override
+	public Markup loadMarkup(final MarkupContainer container,
+		final MarkupResourceStream markupResourceStream, final IMarkupLoader baseLoader,
+		final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
+	{
+		Markup markup = loadPrecompiledMarkup(markupResourceStream);
+		if (markup == null)
+		{
+			markup = fallbackLoader.loadMarkup(container, markupResourceStream, baseLoader,
+				enforceReload);
+		}
+		return markup;
+	}
+
+	/**
+	 * Reads the precompiled markup.
+	 * 
+	 * @param markupResourceStream
+	 *            the markup resource
+	 * @return the markup, or {@code null} if there is no up to date precompiled markup
+	 */
+	protected Markup loadPrecompiledMarkup(final MarkupResourceStream markupResourceStream)
+	{
+		URL url = getPrecompiledMarkupUrl(markupResourceStream.getResource());
+		if (url == null)
+		{
+			return null;
+		}
+
+		InputStream in;
+		try
+		{
+			in = url.openStream();
+		}
+		catch (IOException e)
+		{
+			// not precompiled
+			return null;
+		}
+
+		try (InputStream precompiled = in)
+		{
+			Markup markup = MarkupSerializer.read(markupResourceStream, precompiled);
+			if (markup == null)
+			{
+				log.debug("Precompiled markup {} is out of date", url);
+			}
+			return markup;
+		}
+		catch (IOException | ResourceStreamNotFoundException | RuntimeException e)
+		{
+			log.warn("Failed to read precompiled markup " + url + ", parsing the markup instead",
+				e);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the location of the precompiled markup for a markup resource.
+	 * 
+	 * @param resource
+	 *            the markup resource
+	 * @return the url of the precompiled markup, or {@code null} if the resource has no fixed
+	 *         location
+	 */
+	protected URL getPrecompiledMarkupUrl(final IResourceStream resource)
+	{
+		if (resource instanceof IFixedLocationResourceStream)
+		{
+			String location = ((IFixedLocationResourceStream)resource).locationAsString();
+			if (location != null)
+			{
+				location += MarkupSerializer.EXTENSION;
+				try
+				{
+					return new URL(location);
+				}
+				catch (MalformedURLException e)
+				{
+					// a file path
+					try
+					{
+						return new File(location).toURI().toURL();
+					}
+					catch (MalformedURLException e1)
+					{
+						return null;
+					}
+				}
+			}
+		}
+		return null;
+	}
+}
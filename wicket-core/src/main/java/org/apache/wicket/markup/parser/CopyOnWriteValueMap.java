@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.wicket.util.value.IValueMap;
+import org.apache.wicket.util.value.ValueMap;
+
+/**
+ * The attributes of a mutable copy of a tag. They are read from the immutable attributes of the
+ * original tag until they are changed or their views are requested for the first time, only then
+ * they are copied.
+ * 
+ * @see XmlTag#mutable()
+ */
+final class CopyOnWriteValueMap extends ValueMap
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The immutable attributes of the original tag, {@code null} once copied */
+	private IValueMap original;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param original
+	 *            the immutable attributes of the original tag
+	 */
+	CopyOnWriteValueMap(final IValueMap original)
+	{
+		this.original = original;
+	}
+
+	/**
+	 * @param attributes
+	 * @return true if these are still the given attributes
+	 */
+	boolean isShared(final IValueMap attributes)
+	{
+		return (original != null) && (original == attributes);
+	}
+
+	/**
+	 * @return the attributes to read from, which must not be modified
+	 */
+	IValueMap getReadOnly()
+	{
+		return original != null ? original : this;
+	}
+
+	private void copyOriginal()
+	{
+		if (original != null)
+		{
+			super.putAll(original);
+			original = null;
+		}
+	}
+
+	@Override
+	public Object get(final Object key)
+	{
+		return original != null ? original.get(key) : super.get(key);
+	}
+
+	@Override
+	public Object getOrDefault(final Object key, final Object defaultValue)
+	{
+		return original != null ? original.getOrDefault(key, defaultValue) : super.getOrDefault(
+			key, defaultValue);
+	}
+
+	@Override
+	public boolean containsKey(final Object key)
+	{
+		return original != null ? original.containsKey(key) : super.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(final Object value)
+	{
+		return original != null ? original.containsValue(value) : super.containsValue(value);
+	}
+
+	@Override
+	public int size()
+	{
+		return original != null ? original.size() : super.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return original != null ? original.isEmpty() : super.isEmpty();
+	}
+
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super Object> action)
+	{
+		if (original != null)
+		{
+			original.forEach(action);
+		}
+		else
+		{
+			super.forEach(action);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object o)
+	{
+		return original != null ? original.equals(o) : super.equals(o);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return original != null ? original.hashCode() : super.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return original != null ? original.toString() : super.toString();
+	}
+
+	@Override
+	public Set<String> keySet()
+	{
+		if ((original != null) && isImmutable())
+		{
+			return Collections.unmodifiableSet(original.keySet());
+		}
+		copyOriginal();
+		return super.keySet();
+	}
+
+	@Override
+	public Collection<Object> values()
+	{
+		if ((original != null) && isImmutable())
+		{
+			return Collections.unmodifiableCollection(original.values());
+		}
+		copyOriginal();
+		return super.values();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet()
+	{
+		if ((original != null) && isImmutable())
+		{
+			return Collections.unmodifiableMap(original).entrySet();
+		}
+		copyOriginal();
+		return super.entrySet();
+	}
+
+	@Override
+	public Object put(final String key, final Object value)
+	{
+		copyOriginal();
+		return super.put(key, value);
+	}
+
+	@Override
+	public void putAll(final Map<? extends String, ?> map)
+	{
+		copyOriginal();
+		super.putAll(map);
+	}
+
+	@Override
+	public Object remove(final Object key)
+	{
+		copyOriginal();
+		return super.remove(key);
+	}
+
+	@Override
+	public boolean remove(final Object key, final Object value)
+	{
+		copyOriginal();
+		return super.remove(key, value);
+	}
+
+	@Override
+	public void clear()
+	{
+		super.clear();
+		original = null;
+	}
+
+	@Override
+	public Object putIfAbsent(final String key, final Object value)
+	{
+		copyOriginal();
+		return super.putIfAbsent(key, value);
+	}
+
+	@Override
+	public boolean replace(final String key, final Object oldValue, final Object newValue)
+	{
+		copyOriginal();
+		return super.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public Object replace(final String key, final Object value)
+	{
+		copyOriginal();
+		return super.replace(key, value);
+	}
+
+	@Override
+	public void replaceAll(final BiFunction<? super String, ? super Object, ? extends Object> function)
+	{
+		copyOriginal();
+		super.replaceAll(function);
+	}
+
+	@Override
+	public Object computeIfAbsent(final String key,
+		final Function<? super String, ? extends Object> mappingFunction)
+	{
+		copyOriginal();
+		return super.computeIfAbsent(key, mappingFunction);
+	}
+
+	@Override
+	public Object computeIfPresent(final String key,
+		final BiFunction<? super String, ? super Object, ? extends Object> remappingFunction)
+	{
+		copyOriginal();
+		return super.computeIfPresent(key, remappingFunction);
+	}
+
+	@Override
+	public Object compute(final String key,
+		final BiFunction<? super String, ? super Object, ? extends Object> remappingFunction)
+	{
+		copyOriginal();
+		return super.compute(key, remappingFunction);
+	}
+
+	@Override
+	public Object merge(final String key, final Object value,
+		final BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction)
+	{
+		copyOriginal();
+		return super.merge(key, value, remappingFunction);
+	}
+
+	@Override
+	public Object clone()
+	{
+		if (isImmutable() == false)
+		{
+			copyOriginal();
+		}
+		return super.clone();
+	}
+}
@@ -19,7 +19,6 @@ package org.apache.wicket.markup.parser;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.text.ParseException;
 
 import org.apache.wicket.markup.parser.XmlTag.TagType;
@@ -28,13 +27,14 @@ import org.apache.wicket.util.io.FullyBufferedReader;
 import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.io.XmlReader;
 import org.apache.wicket.util.lang.Args;
-import org.apache.wicket.util.parse.metapattern.parsers.TagNameParser;
-import org.apache.wicket.util.parse.metapattern.parsers.VariableAssignmentParser;
 import org.apache.wicket.util.string.Strings;
 
 /**
  * A fairly shallow markup pull parser which parses a markup string of a given type of markup (for
  * example, html, xml, vxml or wml) into ComponentTag and RawMarkup tokens.
+ * <p>
+ * Tags are scanned in place, by offsets into the markup string, without copying the text of a tag
+ * or matching it against regular expressions. Tag and attribute names are interned.
  * 
  * @author Jonathan Locke
  * @author Juergen Donnerstag
@@ -58,6 +58,9 @@ public final class XmlPullParser implements IXmlPullParser
 	 */
 	private FullyBufferedReader input;
 
+	/** The text of the input, scanned in place */
+	private String text;
+
 	/** temporary variable which will hold the name of the closing tag. */
 	private String skipUntilText;
 
@@ -118,9 +121,9 @@ public final class XmlPullParser implements IXmlPullParser
 		final int tagNameLen = skipUntilText.length();
 
 		int pos = input.getPosition() - 1;
-		String endTagText = null;
+		boolean closed = false;
 		int lastPos = 0;
-		while (!skipUntilText.equalsIgnoreCase(endTagText))
+		while (!closed)
 		{
 			pos = input.find("</", pos + 1);
 			if ((pos == -1) || ((pos + (tagNameLen + 2)) >= input.size()))
@@ -130,7 +133,7 @@ public final class XmlPullParser implements IXmlPullParser
 			}
 
 			lastPos = pos + 2;
-			endTagText = input.getSubstring(lastPos, lastPos + tagNameLen).toString();
+			closed = text.regionMatches(true, lastPos, skipUntilText, 0, tagNameLen);
 		}
 
 		input.setPosition(pos);
@@ -224,9 +227,10 @@ public final class XmlPullParser implements IXmlPullParser
 		// Get the complete tag text
 		lastText = input.getSubstring(openBracketIndex, closeBracketIndex + 1);
 
-		// Get the tagtext between open and close brackets
-		String tagText = lastText.subSequence(1, lastText.length() - 1).toString();
-		if (tagText.length() == 0)
+		// The tag text is in between the brackets
+		int start = openBracketIndex + 1;
+		int end = closeBracketIndex;
+		if (start == end)
 		{
 			throw new ParseException("Found empty tag: '<>' at" + getLineAndColumnText(),
 				input.getPosition());
@@ -236,16 +240,16 @@ public final class XmlPullParser implements IXmlPullParser
 		final TagType type;
 
 		// If the tag ends in '/', it's a "simple" tag like <foo/>
-		if (tagText.endsWith("/"))
+		if (text.charAt(end - 1) == '/')
 		{
 			type = TagType.OPEN_CLOSE;
-			tagText = tagText.substring(0, tagText.length() - 1);
+			end--;
 		}
-		else if (tagText.startsWith("/"))
+		else if (text.charAt(start) == '/')
 		{
 			// The tag text starts with a '/', it's a simple close tag
 			type = TagType.CLOSE;
-			tagText = tagText.substring(1);
+			start++;
 		}
 		else
 		{
@@ -253,12 +257,12 @@ public final class XmlPullParser implements IXmlPullParser
 			type = TagType.OPEN;
 
 			// If open tag and starts with "s" like "script" or "style", than ...
-			if ((tagText.length() > STYLE.length()) &&
-				((tagText.charAt(0) == 's') || (tagText.charAt(0) == 'S')))
+			if ((end - start > STYLE.length()) &&
+				((text.charAt(start) == 's') || (text.charAt(start) == 'S')))
 			{
-				final String lowerCase = tagText.toLowerCase();
-				if (lowerCase.startsWith(SCRIPT))
+				if (text.regionMatches(true, start, SCRIPT, 0, SCRIPT.length()))
 				{
+					final String lowerCase = text.substring(start, end).toLowerCase();
 					String typeAttr = "type=";
 					int idxOfType = lowerCase.indexOf(typeAttr);
 					if (idxOfType > 0)
@@ -280,7 +284,7 @@ public final class XmlPullParser implements IXmlPullParser
 						skipUntilText = SCRIPT;
 					}
 				}
-				else if (lowerCase.startsWith(STYLE))
+				else if (text.regionMatches(true, start, STYLE, 0, STYLE.length()))
 				{
 					// prepare to skip everything between the open and close tag
 					skipUntilText = STYLE;
@@ -288,27 +292,32 @@ public final class XmlPullParser implements IXmlPullParser
 			}
 		}
 
+		if (start == end)
+		{
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+
 		// Handle special tags like <!-- and <![CDATA ...
-		final char firstChar = tagText.charAt(0);
+		final char firstChar = text.charAt(start);
 		if ((firstChar == '!') || (firstChar == '?'))
 		{
-			specialTagHandling(tagText, openBracketIndex, closeBracketIndex);
+			specialTagHandling(text.substring(start, end), openBracketIndex, closeBracketIndex);
 
 			input.countLinesTo(openBracketIndex);
-			TextSegment text = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
-				input.getColumnNumber());
-			lastTag = new XmlTag(text, type);
+			TextSegment segment = new TextSegment(lastText, openBracketIndex,
+				input.getLineNumber(), input.getColumnNumber());
+			lastTag = new XmlTag(segment, type);
 
 			return lastType;
 		}
 
-		TextSegment text = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
+		TextSegment segment = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
 			input.getColumnNumber());
-		XmlTag tag = new XmlTag(text, type);
+		XmlTag tag = new XmlTag(segment, type);
 		lastTag = tag;
 
 		// Parse the tag text and populate tag attributes
-		if (parseTagText(tag, tagText))
+		if (parseTagText(tag, start, end))
 		{
 			// Move to position after the tag
 			input.setPosition(closeBracketIndex + 1);
@@ -563,7 +572,8 @@ public final class XmlPullParser implements IXmlPullParser
 	{
 		Args.notNull(string, "string");
 
-		this.input = new FullyBufferedReader(new StringReader(string.toString()));
+		this.text = string.toString();
+		this.input = new FullyBufferedReader(text);
 		this.encoding = null;
 	}
 
@@ -604,7 +614,8 @@ public final class XmlPullParser implements IXmlPullParser
 		{
 			XmlReader xmlReader = new XmlReader(new BufferedInputStream(inputStream, 4000),
 				encoding);
-			this.input = new FullyBufferedReader(xmlReader);
+			this.text = IOUtils.toString(xmlReader);
+			this.input = new FullyBufferedReader(text);
 			this.encoding = xmlReader.getEncoding();
 		}
 		finally
@@ -633,83 +644,212 @@ public final class XmlPullParser implements IXmlPullParser
 
 	/**
 	 * Parses the text between tags. For example, "a href=foo.html".
+	 * <p>
+	 * The tag name is {@code [namespace:]name}, followed by attributes {@code key[=value]} with an
+	 * optional namespace (up to two) for the key, and a value being either a word, possibly
+	 * containing '-' or '.', or a single or double quoted string. Anything else in between is
+	 * skipped.
 	 * 
 	 * @param tag
-	 * @param tagText
-	 *            The text between tags
+	 * @param start
+	 *            The index of the text after the open bracket
+	 * @param end
+	 *            The index of the close bracket, or of the '/' of an open-close tag
 	 * @return false in case of an error
 	 * @throws ParseException
 	 */
-	private boolean parseTagText(final XmlTag tag, final String tagText) throws ParseException
+	private boolean parseTagText(final XmlTag tag, final int start, final int end)
+		throws ParseException
 	{
-		// Get the length of the tagtext
-		final int tagTextLength = tagText.length();
+		if (!isNameStart(text.charAt(start)))
+		{
+			return false;
+		}
 
-		// If we match tagname pattern
-		final TagNameParser tagnameParser = new TagNameParser(tagText);
-		if (tagnameParser.matcher().lookingAt())
+		// Extract the tag name and namespace
+		int nameStart = start;
+		int variableEnd = skipVariableName(start, end);
+		if (isNameFollowing(':', variableEnd, end))
 		{
-			// Extract the tag from the pattern matcher
-			tag.name = tagnameParser.getName();
-			tag.namespace = tagnameParser.getNamespace();
+			tag.namespace = text.substring(start, variableEnd).toLowerCase().intern();
+			nameStart = variableEnd + 1;
+		}
+		int pos = skipXmlName(nameStart, end);
+		tag.name = text.substring(nameStart, pos).intern();
 
-			// Are we at the end? Then there are no attributes, so we just
-			// return the tag
-			int pos = tagnameParser.matcher().end(0);
-			if (pos == tagTextLength)
+		// Extract attributes
+		while (pos < end)
+		{
+			// Skip anything up to the key
+			int keyStart = pos;
+			while ((keyStart < end) && !isNameStart(text.charAt(keyStart)))
 			{
-				return true;
+				keyStart++;
+			}
+			if (keyStart == end)
+			{
+				break;
 			}
 
-			// Extract attributes
-			final VariableAssignmentParser attributeParser = new VariableAssignmentParser(tagText);
-			while (attributeParser.matcher().find(pos))
+			// The key, with up to two namespaces
+			int keyEnd = skipVariableName(keyStart, end);
+			if (isNameFollowing(':', keyEnd, end))
+			{
+				int secondEnd = skipVariableName(keyEnd + 1, end);
+				keyEnd = skipXmlName(isNameFollowing(':', secondEnd, end) ? secondEnd + 1
+					: keyEnd + 1, end);
+			}
+			else
 			{
-				// Get key and value using attribute pattern
-				String value = attributeParser.getValue();
+				keyEnd = skipXmlName(keyStart, end);
+			}
+			final String key = text.substring(keyStart, keyEnd).intern();
 
-				// In case like <html xmlns:wicket> will the value be null
-				if (value == null)
+			// The optional value. In case like <html xmlns:wicket> it will be empty
+			String value = "";
+			pos = skipWhitespace(keyEnd, end);
+			if ((pos < end) && (text.charAt(pos) == '='))
+			{
+				int valueStart = skipWhitespace(pos + 1, end);
+				int valueEnd = skipValue(valueStart, end);
+				if (valueEnd != -1)
 				{
-					value = "";
-				}
+					pos = skipWhitespace(valueEnd, end);
 
-				// Set new position to end of attribute
-				pos = attributeParser.matcher().end(0);
+					// Chop off double quotes or single quotes
+					if ((text.charAt(valueStart) == '"') || (text.charAt(valueStart) == '\''))
+					{
+						valueStart++;
+						valueEnd--;
+					}
 
-				// Chop off double quotes or single quotes
-				if (value.startsWith("\"") || value.startsWith("\'"))
-				{
-					value = value.substring(1, value.length() - 1);
+					// Trim whitespace
+					while ((valueStart < valueEnd) && (text.charAt(valueStart) <= ' '))
+					{
+						valueStart++;
+					}
+					while ((valueStart < valueEnd) && (text.charAt(valueEnd - 1) <= ' '))
+					{
+						valueEnd--;
+					}
+
+					value = text.substring(valueStart, valueEnd);
+
+					// Unescape
+					if (value.indexOf('&') != -1)
+					{
+						value = Strings.unescapeMarkup(value).toString();
+					}
 				}
+			}
 
-				// Trim trailing whitespace
-				value = value.trim();
+			// Put the attribute in the attributes hash
+			if (null != tag.getAttributes().put(key, value))
+			{
+				throw new ParseException("Same attribute found twice: " + key +
+					getLineAndColumnText(), input.getPosition());
+			}
+		}
 
-				// Unescape
-				value = Strings.unescapeMarkup(value).toString();
+		return true;
+	}
 
-				// Get key
-				final String key = attributeParser.getKey();
+	/**
+	 * @param ch
+	 * @param pos
+	 * @param end
+	 * @return true if the char at the position is the given one and followed by the start of a name
+	 */
+	private boolean isNameFollowing(final char ch, final int pos, final int end)
+	{
+		return (pos + 1 < end) && (text.charAt(pos) == ch) && isNameStart(text.charAt(pos + 1));
+	}
 
-				// Put the attribute in the attributes hash
-				if (null != tag.getAttributes().put(key, value))
-				{
-					throw new ParseException("Same attribute found twice: " + key +
-						getLineAndColumnText(), input.getPosition());
-				}
+	/**
+	 * Skips {@code [A-Za-z_][A-Za-z0-9_]*}, the start has been checked already.
+	 */
+	private int skipVariableName(int pos, final int end)
+	{
+		pos++;
+		while ((pos < end) && isVariableNamePart(text.charAt(pos)))
+		{
+			pos++;
+		}
+		return pos;
+	}
 
-				// The input has to match exactly (no left over junk after
-				// attributes)
-				if (pos == tagTextLength)
-				{
-					return true;
-				}
+	/**
+	 * Skips {@code [A-Za-z_][A-Za-z0-9_.-]*}, the start has been checked already.
+	 */
+	private int skipXmlName(int pos, final int end)
+	{
+		pos++;
+		while (pos < end)
+		{
+			char ch = text.charAt(pos);
+			if (!isVariableNamePart(ch) && (ch != '.') && (ch != '-'))
+			{
+				break;
 			}
+			pos++;
+		}
+		return pos;
+	}
 
-			return true;
+	/**
+	 * Skips a word possibly containing '-' and '.', or a quoted string.
+	 * 
+	 * @return the index after the value, or -1 if there is none
+	 */
+	private int skipValue(int pos, final int end)
+	{
+		if (pos == end)
+		{
+			return -1;
 		}
 
-		return false;
+		char ch = text.charAt(pos);
+		if ((ch == '"') || (ch == '\''))
+		{
+			int closingQuote = text.indexOf(ch, pos + 1);
+			return (closingQuote != -1) && (closingQuote < end) ? closingQuote + 1 : -1;
+		}
+
+		int valueEnd = pos;
+		while (valueEnd < end)
+		{
+			ch = text.charAt(valueEnd);
+			if (!isVariableNamePart(ch) && (ch != '.') && (ch != '-'))
+			{
+				break;
+			}
+			valueEnd++;
+		}
+		return valueEnd > pos ? valueEnd : -1;
+	}
+
+	private int skipWhitespace(int pos, final int end)
+	{
+		while (pos < end)
+		{
+			char ch = text.charAt(pos);
+			if ((ch != ' ') && (ch != '\t') && (ch != '\n') && (ch != '\r') && (ch != '\f') &&
+				(ch != '\u000B'))
+			{
+				break;
+			}
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isNameStart(final char ch)
+	{
+		return ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || (ch == '_');
+	}
+
+	private static boolean isVariableNamePart(final char ch)
+	{
+		return isNameStart(ch) || ((ch >= '0') && (ch <= '9'));
 	}
 }
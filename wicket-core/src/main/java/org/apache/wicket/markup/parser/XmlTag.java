@@ -102,6 +102,26 @@ public class XmlTag
 		this.type = type;
 	}
 
+	/**
+	 * Construct a tag with the text it was parsed from, e.g. when reading precompiled markup.
+	 *
+	 * @param text
+	 *            The full text of the tag
+	 * @param pos
+	 *            The position of the tag in the parsed input
+	 * @param line
+	 *            The line number
+	 * @param column
+	 *            The column number
+	 * @param type
+	 *            The tag type
+	 */
+	public XmlTag(final CharSequence text, final int pos, final int line, final int column,
+		final TagType type)
+	{
+		this(new TextSegment(text, pos, line, column), type);
+	}
+
 	/**
 	 * Gets whether this tag closes the provided open tag.
 	 * 
@@ -129,7 +149,7 @@ public class XmlTag
 		{
 			return false;
 		}
-		return getAttributes().equals(that.getAttributes());
+		return getAttributesForReading().equals(that.getAttributesForReading());
 	}
 
 	/**
@@ -147,18 +167,49 @@ public class XmlTag
 			}
 			else
 			{
-				attributes = new ValueMap(copyOf.attributes);
+				attributes = copyAttributes(copyOf.attributes);
 			}
 		}
 		return attributes;
 	}
 
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Gets this tag's attributes for reading. A mutable copy of a tag shares the attributes of the
+	 * original tag until they are changed, unlike {@link #getAttributes()} this never copies them.
+	 * 
+	 * @return The tag's attributes, which must not be modified
+	 */
+	public IValueMap getAttributesForReading()
+	{
+		if (attributes instanceof CopyOnWriteValueMap)
+		{
+			return ((CopyOnWriteValueMap)attributes).getReadOnly();
+		}
+		return attributes != null ? attributes : ValueMap.EMPTY_MAP;
+	}
+
+	/**
+	 * @param source
+	 *            the attributes to copy
+	 * @return a mutable copy of the attributes, sharing them until changed if they are immutable
+	 */
+	private static IValueMap copyAttributes(IValueMap source)
+	{
+		if (source instanceof CopyOnWriteValueMap)
+		{
+			source = ((CopyOnWriteValueMap)source).getReadOnly();
+		}
+		return source.isImmutable() ? new CopyOnWriteValueMap(source) : new ValueMap(source);
+	}
+
 	/**
 	 * @return true if there 1 or more attributes.
 	 */
 	public boolean hasAttributes()
 	{
-		return attributes != null && attributes.size() > 0;
+		return getAttributesForReading().size() > 0;
 	}
 
 	/**
@@ -240,7 +291,7 @@ public class XmlTag
 	 */
 	public CharSequence getAttribute(final String key)
 	{
-		return getAttributes().getCharSequence(key);
+		return getAttributesForReading().getCharSequence(key);
 	}
 
 	/**
@@ -272,6 +323,51 @@ public class XmlTag
 		return isMutable;
 	}
 
+	/**
+	 * Gets whether this tag is a mutable copy of the given immutable tag, which was not changed
+	 * since: it has the same name, namespace, type and attributes, in the same order.
+	 * 
+	 * @param tag
+	 *            the immutable tag
+	 * @return true if this tag renders like the given tag
+	 */
+	public final boolean isUnchangedCopyOf(final XmlTag tag)
+	{
+		if ((copyOf != tag) || (this == tag) || tag.isMutable)
+		{
+			return false;
+		}
+		if (!Objects.equal(name, tag.name) || !Objects.equal(namespace, tag.namespace) ||
+			(type != tag.type))
+		{
+			return false;
+		}
+
+		final IValueMap attributes = getAttributesForReading();
+		final IValueMap originalAttributes = tag.getAttributesForReading();
+		if (attributes == originalAttributes)
+		{
+			// still shared
+			return true;
+		}
+		if (attributes.size() != originalAttributes.size())
+		{
+			return false;
+		}
+
+		Iterator<Map.Entry<String, Object>> original = originalAttributes.entrySet().iterator();
+		for (Map.Entry<String, Object> attribute : attributes.entrySet())
+		{
+			Map.Entry<String, Object> originalAttribute = original.next();
+			if (!Objects.equal(attribute.getKey(), originalAttribute.getKey()) ||
+				!Objects.equal(attribute.getValue(), originalAttribute.getValue()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Gets whether this is an open tag.
 	 * 
@@ -305,6 +401,10 @@ public class XmlTag
 			isMutable = false;
 			if (attributes != null)
 			{
+				if (attributes instanceof CopyOnWriteValueMap)
+				{
+					attributes = ((CopyOnWriteValueMap)attributes).getReadOnly();
+				}
 				attributes.makeImmutable();
 				text = null;
 			}
@@ -349,7 +449,7 @@ public class XmlTag
 		dest.copyOf = copyOf;
 		if (attributes != null)
 		{
-			dest.attributes = new ValueMap(attributes);
+			dest.attributes = copyAttributes(attributes);
 		}
 	}
 
@@ -518,7 +618,7 @@ public class XmlTag
 	public String toDebugString()
 	{
 		return "[Tag name = " + name + ", pos = " + text.pos + ", line = " + text.lineNumber +
-			", attributes = [" + getAttributes() + "], type = " + type + "]";
+			", attributes = [" + getAttributesForReading() + "], type = " + type + "]";
 	}
 
 	/**
@@ -582,7 +682,7 @@ public class XmlTag
 
 		buffer.append(name);
 
-		final IValueMap attributes = getAttributes();
+		final IValueMap attributes = getAttributesForReading();
 		if (attributes.size() > 0)
 		{
 			final Iterator<String> iterator = attributes.keySet().iterator();
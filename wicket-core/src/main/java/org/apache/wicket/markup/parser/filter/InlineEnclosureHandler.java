@@ -31,6 +31,7 @@ import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.internal.InlineEnclosure;
 import org.apache.wicket.markup.parser.AbstractMarkupFilter;
 import org.apache.wicket.markup.resolver.IComponentResolver;
+import org.apache.wicket.util.io.IClusterable;
 import org.apache.wicket.util.string.Strings;
 
 
@@ -119,16 +120,8 @@ public final class InlineEnclosureHandler extends AbstractMarkupFilter
 					}
 
 					tag.setAutoComponentTag(true);
-					tag.setAutoComponentFactory(new ComponentTag.IAutoComponentFactory()
-					{
-						@Override
-						public Component newComponent(MarkupContainer container, ComponentTag tag)
-						{
-							String attributeName = getInlineEnclosureAttributeName(null);
-							String childId = tag.getAttribute(attributeName);
-							return new InlineEnclosure(tag.getId(), childId);
-						}
-					});
+					tag.setAutoComponentFactory(
+						new InlineEnclosureFactory(getInlineEnclosureAttributeName(null)));
 					tag.setModified(true);
 				}
 
@@ -213,4 +206,30 @@ public final class InlineEnclosureHandler extends AbstractMarkupFilter
 		return getWicketNamespace(markupStream) + ':' + INLINE_ENCLOSURE_ATTRIBUTE_NAME;
 	}
 
+	/**
+	 * Creates the {@link InlineEnclosure} for a tag. Holds no reference to the handler, so tags
+	 * using it can be written to precompiled markup.
+	 */
+	private static class InlineEnclosureFactory
+		implements
+			ComponentTag.IAutoComponentFactory,
+			IClusterable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String attributeName;
+
+		private InlineEnclosureFactory(String attributeName)
+		{
+			this.attributeName = attributeName;
+		}
+
+		@Override
+		public Component newComponent(MarkupContainer container, ComponentTag tag)
+		{
+			String childId = tag.getAttribute(attributeName);
+			return new InlineEnclosure(tag.getId(), childId);
+		}
+	}
+
 }
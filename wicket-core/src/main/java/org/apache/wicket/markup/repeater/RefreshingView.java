@@ -16,8 +16,11 @@
  */
 package org.apache.wicket.markup.repeater;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
+import org.apache.wicket.core.util.model.ModelPreloader;
 import org.apache.wicket.markup.repeater.util.ModelIteratorAdapter;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.util.lang.Generics;
@@ -91,6 +94,18 @@ public abstract class RefreshingView<T> extends RepeatingView
 	protected final void onPopulate()
 	{
 		Iterator<IModel<T>> models = getItemModels();
+		if (ModelPreloader.isActive(this))
+		{
+			// load all models in parallel before the first item is populated
+			List<IModel<T>> preloaded = new ArrayList<>();
+			while (models.hasNext())
+			{
+				preloaded.add(models.next());
+			}
+			ModelPreloader.preload(this, preloaded);
+			models = preloaded.iterator();
+		}
+
 		Iterator<Item<T>> items = getItemReuseStrategy().getItems(newItemFactory(), models,
 			getItems());
 		removeAll();
@@ -16,7 +16,9 @@
  */
 package org.apache.wicket.markup.repeater.data;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
 import org.apache.wicket.markup.repeater.AbstractPageableView;
@@ -71,7 +73,17 @@ public abstract class DataViewBase<T> extends AbstractPageableView<T>
 	@Override
 	protected final Iterator<IModel<T>> getItemModels(long offset, long count)
 	{
-		return new ModelIterator<T>(internalGetDataProvider(), offset, count);
+		// the models of the current page, so the data provider can load them at once
+		List<IModel<T>> models = new ArrayList<>();
+		Iterator<IModel<T>> iterator = new ModelIterator<T>(internalGetDataProvider(), offset,
+			count);
+		while (iterator.hasNext())
+		{
+			models.add(iterator.next());
+		}
+		internalGetDataProvider().preload(models);
+
+		return models.iterator();
 	}
 
 	/**
@@ -17,7 +17,9 @@
 package org.apache.wicket.markup.repeater.data;
 
 import java.util.Iterator;
+import java.util.List;
 
+import org.apache.wicket.model.BatchLoadableDetachableModel;
 import org.apache.wicket.model.IDetachable;
 import org.apache.wicket.model.IModel;
 
@@ -93,6 +95,23 @@ public interface IDataProvider<T> extends IDetachable
 	 */
 	IModel<T> model(T object);
 
+	/**
+	 * Callback used by the consumer of this data provider to load the models returned by
+	 * {@link #model(Object)} for the current view before their items are populated. Implementations
+	 * may load all of them with one bulk call and set their objects, instead of each model loading
+	 * its own object later on.
+	 * <p>
+	 * By default all {@link BatchLoadableDetachableModel}s among the models are loaded with
+	 * {@link BatchLoadableDetachableModel#loadAll(java.util.Collection)}.
+	 * 
+	 * @param models
+	 *            the models of the current view
+	 */
+	default void preload(List<IModel<T>> models)
+	{
+		BatchLoadableDetachableModel.loadAll(models);
+	}
+
 	@Override
 	default void detach()
 	{}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A {@link LoadableDetachableModel} for an object identified by a key, which can load the objects
+ * of many models with a single call.
+ * <p>
+ * Loading one model at a time, e.g. one per row of a repeater, causes one lookup per row.
+ * {@link #loadAll(Collection)} instead collects the keys of all detached models of the same class
+ * and passes them to {@link #loadBatch(List)} at once. Data views do this automatically for the
+ * row models created by their {@link IDataProvider}, see {@link IDataProvider#preload(List)}.
+ * 
+ * <pre>
+ * class UserModel extends BatchLoadableDetachableModel&lt;Long, User&gt;
+ * {
+ * 	UserModel(User user)
+ * 	{
+ * 		super(user.getId());
+ * 	}
+ * 
+ * 	protected Map&lt;Long, User&gt; loadBatch(List&lt;Long&gt; ids)
+ * 	{
+ * 		return getUserDao().findByIds(ids);
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @param <K>
+ *            The type of the key
+ * @param <T>
+ *            The Model Object type
+ */
+public abstract class BatchLoadableDetachableModel<K, T> extends LoadableDetachableModel<T>
+{
+	private static final long serialVersionUID = 1L;
+
+	private final K key;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param key
+	 *            the key of the model object
+	 */
+	public BatchLoadableDetachableModel(final K key)
+	{
+		this.key = Args.notNull(key, "key");
+	}
+
+	/**
+	 * @return the key of the model object
+	 */
+	public final K getKey()
+	{
+		return key;
+	}
+
+	/**
+	 * Loads the model object of this model alone.
+	 */
+	@Override
+	protected T load()
+	{
+		return loadBatch(Collections.singletonList(key)).get(key);
+	}
+
+	/**
+	 * Loads the objects for the given keys. Keys without an object may be missing in the returned
+	 * map, their models get {@code null} as model object.
+	 * 
+	 * @param keys
+	 *            the distinct keys to load the objects for
+	 * @return the loaded objects by their keys
+	 */
+	protected abstract Map<K, T> loadBatch(List<K> keys);
+
+	/**
+	 * Loads all detached {@link BatchLoadableDetachableModel}s among the given models with one
+	 * call to {@link #loadBatch(List)} per model class. Other models are left alone.
+	 * 
+	 * @param models
+	 *            the models to load
+	 */
+	public static void loadAll(final Collection<? extends IModel<?>> models)
+	{
+		Map<Class<?>, List<BatchLoadableDetachableModel<?, ?>>> batches = new LinkedHashMap<>();
+		for (IModel<?> model : models)
+		{
+			if (model instanceof BatchLoadableDetachableModel &&
+				((BatchLoadableDetachableModel<?, ?>)model).isAttached() == false)
+			{
+				batches.computeIfAbsent(model.getClass(), c -> new ArrayList<>())
+					.add((BatchLoadableDetachableModel<?, ?>)model);
+			}
+		}
+
+		for (List<BatchLoadableDetachableModel<?, ?>> batch : batches.values())
+		{
+			load(batch);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void load(final List<BatchLoadableDetachableModel<?, ?>> batch)
+	{
+		Set keys = new LinkedHashSet<>();
+		for (BatchLoadableDetachableModel<?, ?> model : batch)
+		{
+			keys.add(model.key);
+		}
+
+		Map objects = batch.get(0).loadBatch(new ArrayList<>(keys));
+		for (BatchLoadableDetachableModel model : batch)
+		{
+			model.attach(objects.get(model.key));
+		}
+	}
+}
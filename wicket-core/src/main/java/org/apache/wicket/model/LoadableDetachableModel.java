@@ -194,6 +194,21 @@ public abstract class LoadableDetachableModel<T> implements IModel<T>
 		state = InternalState.ATTACHED;
 		transientModelObject = object;
 	}
+
+	/**
+	 * Attaches the model with an object loaded elsewhere, like {@link #getObject()} does with the
+	 * result of {@link #load()}.
+	 * 
+	 * @param object
+	 *            the loaded object
+	 */
+	final void attach(final T object)
+	{
+		transientModelObject = object;
+		state = InternalState.ATTACHED;
+
+		onAttach();
+	}
 	
 	/**
 	 * Create a {@link LoadableDetachableModel} for the given supplier.
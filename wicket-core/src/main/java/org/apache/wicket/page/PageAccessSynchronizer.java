@@ -17,22 +17,32 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.settings.ExceptionSettings.ThreadDumpStrategy;
 import org.apache.wicket.util.LazyInitializer;
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Threads;
 import org.apache.wicket.util.time.Duration;
-import org.apache.wicket.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * The threads waiting for a page are queued: when the page is unlocked the lock is handed over to
+ * the longest waiting one only, the others keep sleeping. A lock is owned by the thread which
+ * acquired it, or by any other object representing a request, see {@link #lockPage(int, Object)}.
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -42,6 +52,7 @@ public class PageAccessSynchronizer implements Serializable
 
 	private static final Logger logger = LoggerFactory.getLogger(PageAccessSynchronizer.class);
 
+
 	/** map of which pages are owned by which threads */
 	private final Supplier<ConcurrentMap<Integer, PageLock>> locks = new LazyInitializer<ConcurrentMap<Integer, PageLock>>()
 	{
@@ -57,6 +68,8 @@ public class PageAccessSynchronizer implements Serializable
 	/** timeout value for acquiring a page lock */
 	private final Duration timeout;
 
+	private final Statistics statistics = new Statistics();
+
 	/**
 	 * Constructor
 	 * 
@@ -68,9 +81,12 @@ public class PageAccessSynchronizer implements Serializable
 		this.timeout = timeout;
 	}
 
-	private static long remaining(Time start, Duration timeout)
+	/**
+	 * @return the statistics of the page locks of this synchronizer
+	 */
+	public Statistics getStatistics()
 	{
-		return Math.max(0, timeout.subtract(start.elapsedSince()).getMilliseconds());
+		return statistics;
 	}
 
 	/**
@@ -84,7 +100,7 @@ public class PageAccessSynchronizer implements Serializable
 	}
 
 	/**
-	 * Acquire a lock to a page
+	 * Acquire a lock to a page for the current thread
 	 * 
 	 * @param pageId
 	 *            page id
@@ -93,80 +109,156 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void lockPage(int pageId) throws CouldNotLockPageException
 	{
-		final Thread thread = Thread.currentThread();
-		final PageLock lock = new PageLock(pageId, thread);
-		final Time start = Time.now();
+		lockPage(pageId, Thread.currentThread());
+	}
 
-		boolean locked = false;
+	/**
+	 * Acquire a lock to a page for the given owner. The current thread waits until the page is
+	 * unlocked by its current owner or the {@link #getTimeout(int) timeout} is reached.
+	 * 
+	 * @param pageId
+	 *            page id
+	 * @param owner
+	 *            the owner of the lock, e.g. a thread or an object representing a request
+	 * @throws CouldNotLockPageException
+	 *             if lock could not be acquired
+	 */
+	public void lockPage(int pageId, Object owner) throws CouldNotLockPageException
+	{
+		Args.notNull(owner, "owner");
 
+		final Thread thread = Thread.currentThread();
 		final boolean isDebugEnabled = logger.isDebugEnabled();
+		final Duration timeout = getTimeout(pageId);
+		final long start = System.nanoTime();
+		final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout.getMilliseconds());
 
-		PageLock previous = null;
-
-		Duration timeout = getTimeout(pageId);
+		if (isDebugEnabled)
+		{
+			logger.debug("'{}' attempting to acquire lock to page with id '{}'", thread.getName(),
+				pageId);
+		}
 
-		while (!locked && start.elapsedSince().lessThan(timeout))
+		Waiter waiter = new Waiter(owner, thread);
+		PageLock previous = enqueue(pageId, waiter);
+		if (previous != null)
 		{
 			if (isDebugEnabled)
 			{
-				logger.debug("'{}' attempting to acquire lock to page with id '{}'",
-					thread.getName(), pageId);
+				logger.debug("{} waiting for lock to page {} for {}", thread.getName(), pageId,
+					timeout);
+			}
+
+			while (waiter.granted == false)
+			{
+				long remaining = deadline - System.nanoTime();
+				boolean interrupted = Thread.interrupted();
+				if (remaining <= 0 || interrupted)
+				{
+					if (previous.abandon(waiter))
+					{
+						if (interrupted)
+						{
+							throw new RuntimeException(new InterruptedException());
+						}
+						statistics.timeouts.incrementAndGet();
+						failToLock(pageId, thread, previous, timeout,
+							Duration.milliseconds(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+					}
+					if (interrupted)
+					{
+						// granted meanwhile, keep the lock
+						thread.interrupt();
+					}
+				}
+				else
+				{
+					LockSupport.parkNanos(this, remaining);
+				}
 			}
+		}
 
-			previous = locks.get().putIfAbsent(pageId, lock);
+		statistics.record(System.nanoTime() - start);
+		if (isDebugEnabled)
+		{
+			logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+		}
+	}
 
-			if (previous == null || previous.thread == thread)
+	/**
+	 * Either locks the page for the waiter or queues the waiter.
+	 * 
+	 * @return {@code null} if the page has been locked, the lock the waiter is queued for otherwise
+	 */
+	private PageLock enqueue(int pageId, Waiter waiter)
+	{
+		final PageLock lock = new PageLock(pageId, waiter.owner);
+		while (true)
+		{
+			PageLock previous = locks.get().putIfAbsent(pageId, lock);
+			if (previous == null)
 			{
-				// first thread to acquire lock or lock is already owned by this thread
-				locked = true;
+				// first thread to acquire lock
+				return null;
 			}
-			else
+
+			previous.mutex.lock();
+			try
 			{
-				// wait for a lock to become available
-				long remaining = remaining(start, timeout);
-				if (remaining > 0)
+				if (previous.released)
 				{
-					previous.waitForRelease(remaining, isDebugEnabled);
+					// released in the meantime, try again
+					continue;
 				}
+				if (previous.owner == waiter.owner)
+				{
+					// lock is already owned by this thread
+					return null;
+				}
+				previous.waiters.add(waiter);
+				return previous;
 			}
-		}
-		if (locked)
-		{
-			if (isDebugEnabled)
+			finally
 			{
-				logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+				previous.mutex.unlock();
 			}
 		}
-		else
+	}
+
+	private void failToLock(int pageId, Thread thread, PageLock previous, Duration timeout,
+		Duration elapsed)
+	{
+		if (logger.isWarnEnabled())
 		{
-			if (logger.isWarnEnabled())
+			Object owner = previous.owner;
+			logger.warn(
+				"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}." +
+						" The thread that holds the lock has name '{}'.",
+				thread.getName(), pageId, elapsed, timeout,
+						owner instanceof Thread ? ((Thread)owner).getName() : owner);
+			if (Application.exists())
 			{
-				logger.warn(
-					"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}." +
-							" The thread that holds the lock has name '{}'.",
-					thread.getName(), pageId, start.elapsedSince(), timeout,
-							previous.thread.getName());
-				if (Application.exists())
+				ThreadDumpStrategy strategy = Application.get()
+					.getExceptionSettings()
+					.getThreadDumpStrategy();
+				switch (strategy)
 				{
-					ThreadDumpStrategy strategy = Application.get()
-						.getExceptionSettings()
-						.getThreadDumpStrategy();
-					switch (strategy)
-					{
-						case ALL_THREADS :
-							Threads.dumpAllThreads(logger);
-							break;
-						case THREAD_HOLDING_LOCK :
-							Threads.dumpSingleThread(logger, previous.thread);
-							break;
-						case NO_THREADS :
-						default :
-							// do nothing
-					}
+					case ALL_THREADS :
+						Threads.dumpAllThreads(logger);
+						break;
+					case THREAD_HOLDING_LOCK :
+						if (owner instanceof Thread)
+						{
+							Threads.dumpSingleThread(logger, (Thread)owner);
+						}
+						break;
+					case NO_THREADS :
+					default :
+						// do nothing
 				}
 			}
-			throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
 		}
+		throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
 	}
 
 	/**
@@ -174,7 +266,18 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void unlockAllPages()
 	{
-		internalUnlockPages(null);
+		unlockAllPages(Thread.currentThread());
+	}
+
+	/**
+	 * Unlocks all pages locked by the given owner
+	 * 
+	 * @param owner
+	 *            the owner of the locks
+	 */
+	public void unlockAllPages(Object owner)
+	{
+		internalUnlockPages(null, owner);
 	}
 
 	/**
@@ -185,31 +288,37 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void unlockPage(int pageId)
 	{
-		internalUnlockPages(pageId);
+		unlockPage(pageId, Thread.currentThread());
 	}
 
-	private void internalUnlockPages(final Integer pageId)
+	/**
+	 * Unlocks a single page locked by the given owner.
+	 * 
+	 * @param pageId
+	 *            the id of the page which should be unlocked.
+	 * @param owner
+	 *            the owner of the lock
+	 */
+	public void unlockPage(int pageId, Object owner)
 	{
-		final Thread thread = Thread.currentThread();
-		final Iterator<PageLock> locks = this.locks.get().values().iterator();
+		internalUnlockPages(pageId, owner);
+	}
 
+	private void internalUnlockPages(final Integer pageId, final Object owner)
+	{
 		final boolean isDebugEnabled = logger.isDebugEnabled();
 
-		while (locks.hasNext())
+		for (PageLock lock : locks.get().values())
 		{
-			// remove all locks held by this thread if 'pageId' is not specified
+			// remove all locks held by this owner if 'pageId' is not specified
 			// otherwise just the lock for this 'pageId'
-			final PageLock lock = locks.next();
-			if ((pageId == null || pageId == lock.pageId) && lock.thread == thread)
+			if ((pageId == null || pageId == lock.pageId) && lock.owner == owner)
 			{
-				locks.remove();
 				if (isDebugEnabled)
 				{
-					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
-						lock.pageId);
+					logger.debug("'{}' released lock to page with id '{}'", owner, lock.pageId);
 				}
-				// if any locks were removed notify threads waiting for a lock
-				lock.markReleased(isDebugEnabled);
+				release(lock, owner);
 				if (pageId != null)
 				{
 					// unlock just the page with the specified id
@@ -219,6 +328,39 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	}
 
+	/**
+	 * Hands the lock over to the longest waiting owner or removes it if nobody is waiting.
+	 */
+	private void release(final PageLock lock, final Object owner)
+	{
+		Waiter next;
+		lock.mutex.lock();
+		try
+		{
+			if (lock.released || lock.owner != owner)
+			{
+				return;
+			}
+
+			next = lock.waiters.poll();
+			if (next == null)
+			{
+				lock.released = true;
+				locks.get().remove(lock.pageId, lock);
+				return;
+			}
+
+			lock.owner = next.owner;
+			next.granted = true;
+		}
+		finally
+		{
+			lock.mutex.unlock();
+		}
+
+		LockSupport.unpark(next.thread);
+	}
+
 	/*
 	 * used by tests
 	 */
@@ -294,6 +436,25 @@ public class PageAccessSynchronizer implements Serializable
 		};
 	}
 
+	/**
+	 * A thread waiting for a page
+	 */
+	private static class Waiter
+	{
+		private final Object owner;
+
+		/** the thread to wake up */
+		private final Thread thread;
+
+		private volatile boolean granted;
+
+		private Waiter(Object owner, Thread thread)
+		{
+			this.owner = owner;
+			this.thread = thread;
+		}
+	}
+
 	/**
 	 * Thread's lock on a page
 	 * 
@@ -304,10 +465,20 @@ public class PageAccessSynchronizer implements Serializable
 		/** page id */
 		private final int pageId;
 
-		/** thread that owns the lock */
-		private final Thread thread;
+		/** thread or request that owns the lock */
+		private volatile Object owner;
 
-		private volatile boolean released = false;
+		/** the threads waiting for the lock, in order of arrival */
+		private final Deque<Waiter> waiters = new ArrayDeque<>(2);
+
+		/** whether the lock has been removed */
+		private boolean released = false;
+
+		/**
+		 * guards the owner, the waiters and the released flag. A lock rather than a monitor, so
+		 * that virtual threads are not pinned to their carrier while contending for it
+		 */
+		private final ReentrantLock mutex = new ReentrantLock();
 
 		/**
 		 * Constructor
@@ -316,9 +487,14 @@ public class PageAccessSynchronizer implements Serializable
 		 * @param thread
 		 */
 		public PageLock(int pageId, Thread thread)
+		{
+			this(pageId, (Object)thread);
+		}
+
+		private PageLock(int pageId, Object owner)
 		{
 			this.pageId = pageId;
-			this.thread = thread;
+			this.owner = owner;
 		}
 
 		/**
@@ -330,51 +506,112 @@ public class PageAccessSynchronizer implements Serializable
 		}
 
 		/**
-		 * @return thread that owns the lock
+		 * @return thread that owns the lock, or {@code null} if it is owned by another kind of
+		 *         object
 		 */
 		public Thread getThread()
 		{
-			return thread;
+			Object current = owner;
+			return current instanceof Thread ? (Thread)current : null;
 		}
 
-		final synchronized void waitForRelease(long remaining, boolean isDebugEnabled)
+		/**
+		 * @return thread or request that owns the lock
+		 */
+		public Object getOwner()
 		{
-			if (released)
+			return owner;
+		}
+
+		/**
+		 * Removes a waiter which gives up.
+		 * 
+		 * @return {@code false} if the lock has been granted to the waiter in the meantime
+		 */
+		private boolean abandon(Waiter waiter)
+		{
+			mutex.lock();
+			try
 			{
-				// the thread holding the lock released it before we were able to wait for the
-				// release
-				if (isDebugEnabled)
+				if (waiter.granted)
 				{
-					logger.debug(
-						"lock for page with id {} no longer locked by {}, falling through", pageId,
-						thread.getName());
+					return false;
 				}
-				return;
+				waiters.remove(waiter);
+				return true;
 			}
-
-			if (isDebugEnabled)
-			{
-				logger.debug("{} waiting for lock to page {} for {}",
-					thread.getName(), pageId, Duration.milliseconds(remaining));
-			}
-			try
+			finally
 			{
-				wait(remaining);
+				mutex.unlock();
 			}
-			catch (InterruptedException e)
+		}
+	}
+
+	/**
+	 * Statistics of the time spent waiting for page locks
+	 */
+	public static class Statistics implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** the upper bounds of the buckets of the histogram, in milliseconds */
+		private static final long[] BUCKETS = { 1, 10, 100, 1000, 10000 };
+
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+		private final AtomicLong timeouts = new AtomicLong();
+
+		private final AtomicLong totalWaitNanos = new AtomicLong();
+
+		private void record(long waitNanos)
+		{
+			totalWaitNanos.addAndGet(waitNanos);
+
+			long millis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+			int bucket = 0;
+			while (bucket < BUCKETS.length && millis >= BUCKETS[bucket])
 			{
-				throw new RuntimeException(e);
+				bucket++;
 			}
+			histogram.incrementAndGet(bucket);
 		}
 
-		final synchronized void markReleased(boolean isDebugEnabled)
+		/**
+		 * @return the upper bounds in milliseconds of the buckets of the
+		 *         {@link #getHistogram() histogram}, the last bucket has no upper bound
+		 */
+		public long[] getBucketBounds()
 		{
-			if (isDebugEnabled)
+			return BUCKETS.clone();
+		}
+
+		/**
+		 * @return the number of acquired locks per bucket of wait time
+		 */
+		public long[] getHistogram()
+		{
+			long[] counts = new long[histogram.length()];
+			for (int i = 0; i < counts.length; i++)
 			{
-				logger.debug("'{}' notifying blocked threads", thread.getName());
+				counts[i] = histogram.get(i);
 			}
-			released = true;
-			notifyAll();
+			return counts;
+		}
+
+		/**
+		 * @return the total time spent waiting for acquired locks
+		 */
+		public Duration getTotalWaitTime()
+		{
+			return Duration.milliseconds(TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()));
+		}
+
+		/**
+		 * @return the number of locks which could not be acquired in time
+		 */
+		public long getTimeouts()
+		{
+			return timeouts.get();
 		}
 	}
 }
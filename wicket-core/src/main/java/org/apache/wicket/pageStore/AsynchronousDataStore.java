@@ -16,28 +16,43 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Facade for {@link IDataStore} that does the actual saving in worker thread.
  * <p>
- * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in
- * {@link #entries} queue if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in one of the
+ * {@link #queues} if there is room. Acts as producer.<br/>
+ * Later {@link PageSavingRunnable} reads in blocking manner from its queue and saves each entry.
+ * Acts as consumer.
+ * </p>
+ * By default it starts only one instance of {@link PageSavingRunnable} because all we need is to
+ * make the page storing asynchronous. If the saving falls behind, more workers can be started;
+ * the sessions are partitioned among them by the hash of their id, so the pages of a session are
+ * still saved in order by a single thread. Writing concurrently in the wrapped {@link IDataStore}
+ * for the same session may happen only in the extreme case when the queue is full. These cases
+ * should be avoided.
+ * <p>
+ * Optionally the saving thread collects a batch of up to {@code batchSize} entries, waiting at most
+ * {@code batchWait} for it to fill up. Older versions of a page superseded by a newer one in the
+ * same batch are dropped, and the remaining pages are handed to
+ * {@link IDataStore#storeData(String, Map)} once per session.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
  * 
  * @author Matej Knopp
  */
@@ -57,9 +72,9 @@ public class AsynchronousDataStore implements IDataStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The page saving threads.
 	 */
-	private final Thread pageSavingThread;
+	private final List<Thread> pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
@@ -67,9 +82,10 @@ public class AsynchronousDataStore implements IDataStore
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored, one per page saving
+	 * thread
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final List<BlockingQueue<Entry>> queues;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +93,8 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	private final Statistics statistics = new Statistics();
+
 	/**
 	 * Construct.
 	 * 
@@ -86,23 +104,78 @@ public class AsynchronousDataStore implements IDataStore
 	 *            the capacity of the queue that delays the saving
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
+	{
+		this(dataStore, capacity, 1, Duration.NONE);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the capacity of the queue that delays the saving
+	 * @param batchSize
+	 *            the maximum number of entries saved at once
+	 * @param batchWait
+	 *            the maximum time to wait for a batch to fill up
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int batchSize, final Duration batchWait)
+	{
+		this(dataStore, capacity, batchSize, batchWait, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the capacity of the queue that delays the saving, shared evenly by the workers
+	 * @param batchSize
+	 *            the maximum number of entries saved at once
+	 * @param batchWait
+	 *            the maximum time to wait for a batch to fill up
+	 * @param workers
+	 *            the number of page saving threads
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int batchSize, final Duration batchWait, final int workers)
 	{
 		this.dataStore = dataStore;
-		entries = new LinkedBlockingQueue<>(capacity);
 		entryMap = new ConcurrentHashMap<>();
-
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-AsyncDataStore-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		Args.withinRange(1, Integer.MAX_VALUE, batchSize, "batchSize");
+		Args.notNull(batchWait, "batchWait");
+		Args.withinRange(1, Integer.MAX_VALUE, workers, "workers");
+
+		int workerCapacity = Math.max(1, capacity / workers);
+		queues = new ArrayList<>(workers);
+		pageSavingThreads = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++)
+		{
+			BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(workerCapacity);
+			queues.add(queue);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, queue, entryMap,
+				batchSize, batchWait.getMilliseconds(), statistics);
+			String name = "Wicket-AsyncDataStore-PageSavingThread" + (workers > 1 ? "-" + i : "");
+			Thread pageSavingThread = new Thread(savingRunnable, name);
+			pageSavingThread.setDaemon(true);
+			pageSavingThread.start();
+			pageSavingThreads.add(pageSavingThread);
+		}
 	}
 
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
 			pageSavingThread.interrupt();
+		}
+		for (Thread pageSavingThread : pageSavingThreads)
+		{
 			try
 			{
 				pageSavingThread.join();
@@ -115,6 +188,47 @@ public class AsynchronousDataStore implements IDataStore
 		dataStore.destroy();
 	}
 
+	/**
+	 * @return the number of entries waiting to be saved
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> queue : queues)
+		{
+			size += queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of page saving threads
+	 */
+	public int getWorkerCount()
+	{
+		return pageSavingThreads.size();
+	}
+
+	/**
+	 * Returns the queue of the worker responsible for the given session.
+	 * 
+	 * @param sessionId
+	 * @return the queue
+	 */
+	private BlockingQueue<Entry> getQueue(final String sessionId)
+	{
+		int size = queues.size();
+		return size == 1 ? queues.get(0) : queues.get(Math.floorMod(sessionId.hashCode(), size));
+	}
+
+	/**
+	 * @return the statistics of the saving thread
+	 */
+	public Statistics getStatistics()
+	{
+		return statistics;
+	}
+
 	/**
 	 * Little helper
 	 * 
@@ -161,7 +275,7 @@ public class AsynchronousDataStore implements IDataStore
 			Entry entry = entryMap.remove(key);
 			if (entry != null)
 			{
-				entries.remove(entry);
+				getQueue(sessionId).remove(entry);
 			}
 		}
 
@@ -171,7 +285,7 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
+		for (Iterator<Entry> itor = getQueue(sessionId).iterator(); itor.hasNext();)
 		{
 			Entry entry = itor.next();
 			if (entry != null) // this check is not needed in JDK6
@@ -204,11 +318,21 @@ public class AsynchronousDataStore implements IDataStore
 
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			BlockingQueue<Entry> queue = getQueue(sessionId);
+			boolean added = queue.offer(entry);
+			if (added == false)
+			{
+				// the worker falls behind, wait a bit for it
+				statistics.delayedOffers.incrementAndGet();
+				long start = System.nanoTime();
+				added = queue.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+				statistics.offerWaitNanos.addAndGet(System.nanoTime() - start);
+			}
 
 			if (added == false)
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
+				statistics.synchronousSaves.incrementAndGet();
 				entryMap.remove(key);
 				dataStore.storeData(sessionId, id, data);
 			}
@@ -216,6 +340,7 @@ public class AsynchronousDataStore implements IDataStore
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
+			statistics.synchronousSaves.incrementAndGet();
 			entryMap.remove(key);
 			dataStore.storeData(sessionId, id, data);
 		}
@@ -298,6 +423,102 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * Counters for the saving of the entries.
+	 */
+	public static class Statistics
+	{
+		private final AtomicLong batches = new AtomicLong();
+
+		private final AtomicLong savedEntries = new AtomicLong();
+
+		private final AtomicLong supersededEntries = new AtomicLong();
+
+		private final AtomicLong synchronousSaves = new AtomicLong();
+
+		private final AtomicLong delayedOffers = new AtomicLong();
+
+		private final AtomicLong offerWaitNanos = new AtomicLong();
+
+		private final AtomicLong maxBatchSize = new AtomicLong();
+
+		/**
+		 * @return the number of batches saved
+		 */
+		public long getBatches()
+		{
+			return batches.get();
+		}
+
+		/**
+		 * @return the number of entries saved by the saving thread
+		 */
+		public long getSavedEntries()
+		{
+			return savedEntries.get();
+		}
+
+		/**
+		 * @return the number of entries dropped because a newer version of the same page was in
+		 *         the same batch
+		 */
+		public long getSupersededEntries()
+		{
+			return supersededEntries.get();
+		}
+
+		/**
+		 * @return the number of entries saved by the calling thread because the queue was full
+		 */
+		public long getSynchronousSaves()
+		{
+			return synchronousSaves.get();
+		}
+
+		/**
+		 * @return the number of entries which could not be queued immediately because the queue
+		 *         was full
+		 */
+		public long getDelayedOffers()
+		{
+			return delayedOffers.get();
+		}
+
+		/**
+		 * @return the total time the calling threads waited for room in the queue, in milliseconds
+		 */
+		public long getOfferWaitTime()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(offerWaitNanos.get());
+		}
+
+		/**
+		 * @return the largest number of entries taken from the queue at once
+		 */
+		public long getMaxBatchSize()
+		{
+			return maxBatchSize.get();
+		}
+
+		/**
+		 * @return the average number of entries taken from the queue at once
+		 */
+		public double getAverageBatchSize()
+		{
+			long count = batches.get();
+			return count == 0 ? 0 : (double)(savedEntries.get() + supersededEntries.get()) / count;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Statistics [batches=" + batches + ", savedEntries=" + savedEntries +
+				", supersededEntries=" + supersededEntries + ", synchronousSaves=" +
+				synchronousSaves + ", delayedOffers=" + delayedOffers + ", offerWaitTime=" +
+				getOfferWaitTime() + "ms, maxBatchSize=" + maxBatchSize + "]";
+		}
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -311,12 +532,22 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final IDataStore dataStore;
 
+		private final int batchSize;
+
+		private final long batchWait;
+
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+			ConcurrentMap<String, Entry> entryMap, int batchSize, long batchWait,
+			Statistics statistics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.batchSize = batchSize;
+			this.batchWait = batchWait;
+			this.statistics = statistics;
 		}
 
 		@Override
@@ -336,11 +567,126 @@ public class AsynchronousDataStore implements IDataStore
 
 				if (entry != null)
 				{
-					log.debug("Saving asynchronously: {}...", entry);
-					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
-					entryMap.remove(getKey(entry));
+					if (batchSize == 1)
+					{
+						log.debug("Saving asynchronously: {}...", entry);
+						dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
+						removeEntry(entry);
+						statistics.batches.incrementAndGet();
+						statistics.savedEntries.incrementAndGet();
+						statistics.maxBatchSize.compareAndSet(0, 1);
+					}
+					else
+					{
+						saveBatch(collectBatch(entry));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Takes more entries from the queue, until the batch is full or the time is up.
+		 * 
+		 * @param first
+		 *            the first entry of the batch
+		 * @return the entries by key, with superseded entries dropped
+		 */
+		private Map<String, Entry> collectBatch(Entry first)
+		{
+			Map<String, Entry> batch = new LinkedHashMap<>();
+			batch.put(getKey(first), first);
+			int taken = 1;
+
+			long deadline = System.currentTimeMillis() + batchWait;
+			while (taken < batchSize)
+			{
+				Entry entry = entries.poll();
+				if (entry == null)
+				{
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0)
+					{
+						break;
+					}
+					try
+					{
+						entry = entries.poll(wait, TimeUnit.MILLISECONDS);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						break;
+					}
+					if (entry == null)
+					{
+						break;
+					}
+				}
+
+				taken++;
+				String key = getKey(entry);
+				// re-insert to keep the order of the newest versions
+				Entry superseded = batch.remove(key);
+				batch.put(key, entry);
+				if (superseded != null)
+				{
+					removeEntry(superseded);
+					statistics.supersededEntries.incrementAndGet();
+				}
+			}
+
+			statistics.batches.incrementAndGet();
+			long max;
+			while ((max = statistics.maxBatchSize.get()) < taken &&
+				statistics.maxBatchSize.compareAndSet(max, taken) == false)
+			{
+				// retry
+			}
+			return batch;
+		}
+
+		/**
+		 * Saves the entries grouped by session.
+		 * 
+		 * @param batch
+		 */
+		private void saveBatch(Map<String, Entry> batch)
+		{
+			Map<String, Map<Integer, byte[]>> sessions = new LinkedHashMap<>();
+			for (Entry entry : batch.values())
+			{
+				Map<Integer, byte[]> pages = sessions.get(entry.sessionId);
+				if (pages == null)
+				{
+					pages = new LinkedHashMap<>();
+					sessions.put(entry.sessionId, pages);
 				}
+				pages.put(entry.pageId, entry.data);
+			}
+
+			for (Map.Entry<String, Map<Integer, byte[]>> session : sessions.entrySet())
+			{
+				log.debug("Saving asynchronously {} pages of session '{}'...",
+					session.getValue().size(), session.getKey());
+				dataStore.storeData(session.getKey(), session.getValue());
+			}
+
+			for (Entry entry : batch.values())
+			{
+				removeEntry(entry);
 			}
+			statistics.savedEntries.addAndGet(batch.size());
+		}
+
+		/**
+		 * Removes the entry from the map of unsaved entries, unless it has been replaced by a newer
+		 * version of the page in the meantime.
+		 * 
+		 * @param entry
+		 */
+		private void removeEntry(Entry entry)
+		{
+			entryMap.computeIfPresent(getKey(entry), (key, value) -> value == entry ? null : value);
 		}
 	}
 
@@ -17,11 +17,14 @@
 package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.util.lang.Args;
@@ -31,14 +34,17 @@ import org.slf4j.LoggerFactory;
 /**
  * Facade for {@link IPageStore} that does the actual saving in worker thread.
  * <p>
- * Creates an {@link Entry} for each double (sessionId, page) and puts it in {@link #entries} queue
- * if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each double (sessionId, page) and puts it in one of the
+ * {@link #queues} if there is room. Acts as producer.<br/>
+ * Later {@link PageSavingRunnable} reads in blocking manner from its queue and saves each entry.
+ * Acts as consumer.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IPageStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * By default it starts only one instance of {@link PageSavingRunnable} because all we need is to
+ * make the page storing asynchronous. If the saving falls behind, more workers can be started;
+ * the sessions are partitioned among them by the hash of their id, so the pages of a session are
+ * still saved in order by a single thread. Writing concurrently in the wrapped {@link IPageStore}
+ * for the same session may happen only in the extreme case when the queue is full. These cases
+ * should be avoided.
  * 
  * Based on AsynchronousDataStore (@author Matej Knopp).
  * 
@@ -61,9 +67,9 @@ public class AsynchronousPageStore implements IPageStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The page saving threads.
 	 */
-	private final Thread pageSavingThread;
+	private final List<Thread> pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IPageStore} that actually stores that pages
@@ -71,9 +77,10 @@ public class AsynchronousPageStore implements IPageStore
 	private final IPageStore delegate;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored, one per page saving
+	 * thread
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final List<BlockingQueue<Entry>> queues;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -81,6 +88,8 @@ public class AsynchronousPageStore implements IPageStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	private final Statistics statistics = new Statistics();
+
 	/**
 	 * Construct.
 	 * 
@@ -90,15 +99,83 @@ public class AsynchronousPageStore implements IPageStore
 	 *            the capacity of the queue that delays the saving
 	 */
 	public AsynchronousPageStore(final IPageStore delegate, final int capacity)
+	{
+		this(delegate, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param delegate
+	 *            the wrapped {@link IPageStore} that actually saved the page
+	 * @param capacity
+	 *            the capacity of the queue that delays the saving, shared evenly by the workers
+	 * @param workers
+	 *            the number of page saving threads
+	 */
+	public AsynchronousPageStore(final IPageStore delegate, final int capacity, final int workers)
 	{
 		this.delegate = Args.notNull(delegate, "delegate");
-		entries = new LinkedBlockingQueue<>(capacity);
+		Args.withinRange(1, Integer.MAX_VALUE, workers, "workers");
 		entryMap = new ConcurrentHashMap<>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(delegate, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-AsyncPageStore-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		int workerCapacity = Math.max(1, capacity / workers);
+		queues = new ArrayList<>(workers);
+		pageSavingThreads = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++)
+		{
+			BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(workerCapacity);
+			queues.add(queue);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(delegate, queue, entryMap,
+				statistics);
+			String name = "Wicket-AsyncPageStore-PageSavingThread" + (workers > 1 ? "-" + i : "");
+			Thread pageSavingThread = new Thread(savingRunnable, name);
+			pageSavingThread.setDaemon(true);
+			pageSavingThread.start();
+			pageSavingThreads.add(pageSavingThread);
+		}
+	}
+
+	/**
+	 * @return the number of entries waiting to be saved
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> queue : queues)
+		{
+			size += queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of page saving threads
+	 */
+	public int getWorkerCount()
+	{
+		return pageSavingThreads.size();
+	}
+
+	/**
+	 * @return the statistics of the saving threads
+	 */
+	public Statistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Returns the queue of the worker responsible for the given session.
+	 * 
+	 * @param sessionId
+	 * @return the queue
+	 */
+	private BlockingQueue<Entry> getQueue(final String sessionId)
+	{
+		int size = queues.size();
+		return size == 1 ? queues.get(0) : queues.get(Math.floorMod(sessionId.hashCode(), size));
 	}
 
 	/**
@@ -183,6 +260,61 @@ public class AsynchronousPageStore implements IPageStore
 
 	}
 
+	/**
+	 * Counters for the saving of the entries.
+	 */
+	public static class Statistics
+	{
+		private final AtomicLong savedEntries = new AtomicLong();
+
+		private final AtomicLong synchronousSaves = new AtomicLong();
+
+		private final AtomicLong delayedOffers = new AtomicLong();
+
+		private final AtomicLong offerWaitNanos = new AtomicLong();
+
+		/**
+		 * @return the number of entries saved by the saving threads
+		 */
+		public long getSavedEntries()
+		{
+			return savedEntries.get();
+		}
+
+		/**
+		 * @return the number of entries saved by the calling thread because the queue was full
+		 */
+		public long getSynchronousSaves()
+		{
+			return synchronousSaves.get();
+		}
+
+		/**
+		 * @return the number of entries which could not be queued immediately because the queue
+		 *         was full
+		 */
+		public long getDelayedOffers()
+		{
+			return delayedOffers.get();
+		}
+
+		/**
+		 * @return the total time the calling threads waited for room in the queue, in milliseconds
+		 */
+		public long getOfferWaitTime()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(offerWaitNanos.get());
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Statistics [savedEntries=" + savedEntries + ", synchronousSaves=" +
+				synchronousSaves + ", delayedOffers=" + delayedOffers + ", offerWaitTime=" +
+				getOfferWaitTime() + "ms]";
+		}
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -196,12 +328,15 @@ public class AsynchronousPageStore implements IPageStore
 
 		private final IPageStore delegate;
 
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IPageStore delegate, BlockingQueue<Entry> entries,
-		                           ConcurrentMap<String, Entry> entryMap)
+		                           ConcurrentMap<String, Entry> entryMap, Statistics statistics)
 		{
 			this.delegate = delegate;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.statistics = statistics;
 		}
 
 		@Override
@@ -223,7 +358,10 @@ public class AsynchronousPageStore implements IPageStore
 				{
 					log.debug("Saving asynchronously: {}...", entry);
 					delegate.storePage(entry.sessionId, entry.page);
-					entryMap.remove(getKey(entry));
+					final Entry saved = entry;
+					entryMap.computeIfPresent(getKey(entry),
+						(key, value) -> value == saved ? null : value);
+					statistics.savedEntries.incrementAndGet();
 				}
 			}
 		}
@@ -232,9 +370,12 @@ public class AsynchronousPageStore implements IPageStore
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
 			pageSavingThread.interrupt();
+		}
+		for (Thread pageSavingThread : pageSavingThreads)
+		{
 			try
 			{
 				pageSavingThread.join();
@@ -276,7 +417,7 @@ public class AsynchronousPageStore implements IPageStore
 			Entry entry = entryMap.remove(key);
 			if (entry != null)
 			{
-				entries.remove(entry);
+				getQueue(sessionId).remove(entry);
 			}
 		}
 
@@ -292,7 +433,18 @@ public class AsynchronousPageStore implements IPageStore
 
 		try
 		{
-			if (entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS))
+			BlockingQueue<Entry> queue = getQueue(sessionId);
+			boolean added = queue.offer(entry);
+			if (added == false)
+			{
+				// the worker falls behind, wait a bit for it
+				statistics.delayedOffers.incrementAndGet();
+				long start = System.nanoTime();
+				added = queue.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+				statistics.offerWaitNanos.addAndGet(System.nanoTime() - start);
+			}
+
+			if (added)
 			{
 				log.debug("Offered for storing asynchronously page with id '{}' in session '{}'",
 					page.getPageId(), sessionId);
@@ -301,6 +453,7 @@ public class AsynchronousPageStore implements IPageStore
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'",
 					page.getPageId(), sessionId);
+				statistics.synchronousSaves.incrementAndGet();
 				entryMap.remove(key);
 				delegate.storePage(sessionId, page);
 			}
@@ -308,6 +461,7 @@ public class AsynchronousPageStore implements IPageStore
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
+			statistics.synchronousSaves.incrementAndGet();
 			entryMap.remove(key);
 			delegate.storePage(sessionId, page);
 		}
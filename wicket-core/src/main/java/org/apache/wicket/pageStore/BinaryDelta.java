@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Computes and applies binary deltas between two byte arrays.
+ * <p>
+ * A delta is a sequence of instructions which either copy a range of the base or insert literal
+ * bytes. Matching ranges are found by indexing the base in blocks of {@value #BLOCK_SIZE} bytes
+ * and looking up a rolling hash of the target, so unchanged parts of a serialized page are found
+ * even when they moved.
+ *
+ * @see DeltaDataStore
+ */
+public final class BinaryDelta
+{
+	/** the minimum length of a copied range */
+	private static final int BLOCK_SIZE = 16;
+
+	private static final int HASH_MULTIPLIER = 31;
+
+	private static final int COPY = 1;
+
+	private static final int INSERT = 2;
+
+	private BinaryDelta()
+	{
+	}
+
+	/**
+	 * Computes the delta which turns {@code base} into {@code target}.
+	 *
+	 * @param base
+	 * @param target
+	 * @return the delta
+	 */
+	public static byte[] create(final byte[] base, final byte[] target)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, target.length / 8));
+		writeVarInt(out, target.length);
+
+		int literalStart = 0;
+		if (base.length >= BLOCK_SIZE && target.length >= BLOCK_SIZE)
+		{
+			int[] index = index(base);
+			int shift = Integer.numberOfLeadingZeros(index.length - 1);
+
+			int power = 1;
+			for (int i = 1; i < BLOCK_SIZE; i++)
+			{
+				power *= HASH_MULTIPLIER;
+			}
+
+			int i = 0;
+			int hash = hash(target, 0);
+			while (i + BLOCK_SIZE <= target.length)
+			{
+				int candidate = index[slot(hash, shift)] - 1;
+				if (candidate >= 0 && equalRange(base, candidate, target, i))
+				{
+					int s = candidate;
+					int t = i;
+					while (t > literalStart && s > 0 && base[s - 1] == target[t - 1])
+					{
+						s--;
+						t--;
+					}
+					int length = i + BLOCK_SIZE - t;
+					while (s + length < base.length && t + length < target.length &&
+						base[s + length] == target[t + length])
+					{
+						length++;
+					}
+
+					writeInsert(out, target, literalStart, t);
+					out.write(COPY);
+					writeVarInt(out, s);
+					writeVarInt(out, length);
+
+					i = t + length;
+					literalStart = i;
+					if (i + BLOCK_SIZE <= target.length)
+					{
+						hash = hash(target, i);
+					}
+				}
+				else
+				{
+					if (i + BLOCK_SIZE < target.length)
+					{
+						hash = (hash - target[i] * power) * HASH_MULTIPLIER + target[i + BLOCK_SIZE];
+					}
+					i++;
+				}
+			}
+		}
+		writeInsert(out, target, literalStart, target.length);
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Applies a delta created by {@link #create(byte[], byte[])}.
+	 *
+	 * @param base
+	 *            the base the delta has been computed for
+	 * @param delta
+	 * @return the target
+	 * @throws IllegalArgumentException
+	 *             if the delta does not match the base
+	 */
+	public static byte[] apply(final byte[] base, final byte[] delta)
+	{
+		int[] position = { 0 };
+		byte[] target;
+		int written = 0;
+		try
+		{
+			target = new byte[readVarInt(delta, position)];
+			while (position[0] < delta.length)
+			{
+				int op = delta[position[0]++];
+				if (op == COPY)
+				{
+					int offset = readVarInt(delta, position);
+					int length = readVarInt(delta, position);
+					System.arraycopy(base, offset, target, written, length);
+					written += length;
+				}
+				else if (op == INSERT)
+				{
+					int length = readVarInt(delta, position);
+					System.arraycopy(delta, position[0], target, written, length);
+					position[0] += length;
+					written += length;
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unknown delta instruction: " + op);
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException | NegativeArraySizeException ex)
+		{
+			throw new IllegalArgumentException("The delta does not match the base", ex);
+		}
+
+		if (written != target.length)
+		{
+			throw new IllegalArgumentException("The delta does not match the base");
+		}
+		return target;
+	}
+
+	/**
+	 * Indexes the blocks of the base by their hash. Colliding blocks simply replace each other,
+	 * every candidate is verified anyway.
+	 */
+	private static int[] index(byte[] base)
+	{
+		int blocks = base.length / BLOCK_SIZE;
+		int[] index = new int[Math.max(16, Integer.highestOneBit(blocks) << 2)];
+		int shift = Integer.numberOfLeadingZeros(index.length - 1);
+		for (int offset = (blocks - 1) * BLOCK_SIZE; offset >= 0; offset -= BLOCK_SIZE)
+		{
+			// store offset + 1, so that 0 means an empty slot
+			index[slot(hash(base, offset), shift)] = offset + 1;
+		}
+		return index;
+	}
+
+	private static int slot(int hash, int shift)
+	{
+		return (hash * 0x9E3779B9) >>> shift;
+	}
+
+	private static int hash(byte[] data, int offset)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++)
+		{
+			hash = hash * HASH_MULTIPLIER + data[i];
+		}
+		return hash;
+	}
+
+	private static boolean equalRange(byte[] base, int baseOffset, byte[] target, int targetOffset)
+	{
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			if (base[baseOffset + i] != target[targetOffset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeInsert(ByteArrayOutputStream out, byte[] target, int from, int to)
+	{
+		if (to > from)
+		{
+			out.write(INSERT);
+			writeVarInt(out, to - from);
+			out.write(target, from, to - from);
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] position)
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			byte b = data[position[0]++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+			{
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed delta");
+	}
+}
@@ -55,6 +55,22 @@ public class DefaultPageStore extends AbstractCachingPageStore<DefaultPageStore.
 		super(pageSerializer, dataStore, new SerializedPagesCache(cacheSize));
 	}
 
+	/**
+	 * Construct.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param pagesCache
+	 *            the cache of serialized pages, e.g. an {@link OffHeapPageCache}
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final SecondLevelPageCache<String, Integer, SerializedPage> pagesCache)
+	{
+		super(pageSerializer, dataStore, pagesCache);
+	}
+
 	@Override
 	public void storePage(final String sessionId, final IManageablePage page)
 	{
@@ -0,0 +1,474 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * An {@link IDataStore} decorator which stores consecutive versions of a page as binary deltas.
+ * <p>
+ * The first time a page is stored its data is kept as a snapshot. Each following version of the
+ * same page is stored as a {@link BinaryDelta delta} against that snapshot, so a page which is
+ * re-stored on every Ajax request only writes the few bytes which actually changed. A new snapshot
+ * is taken after {@code maxChainLength} deltas or when the delta is not considerably smaller than
+ * the page itself. Since every delta refers to the snapshot directly, reading a page needs at
+ * most two reads and one delta application.
+ * <p>
+ * The snapshot of page {@code id} is stored in the wrapped data store with the id {@code -2 - id},
+ * which is negative for all valid page ids and never {@code -1}, which {@link PageWindowManager}
+ * reserves for free windows. Pages with an id which cannot be mapped like this are always stored
+ * as a whole.
+ * <p>
+ * A data store like {@link DiskDataStore} drops the oldest pages of a session once it exceeds its
+ * maximum size. Since a snapshot is older than its deltas, it would be dropped first and the
+ * deltas could no longer be applied. If the maximum size per session of the wrapped store is
+ * known, a new snapshot is taken instead of a delta once half of that size has been written since
+ * the snapshot, so the latest version of a page stays readable for at least half the size of the
+ * session.
+ * <p>
+ * Every record describes itself by its header, so pages are read without any state kept in memory,
+ * e.g. after a restart. Only writes are serialized per session.
+ */
+public class DeltaDataStore implements IDataStore
+{
+	/**
+	 * The default maximum number of deltas stored against a snapshot
+	 */
+	public static final int DEFAULT_MAX_CHAIN_LENGTH = 10;
+
+	/** the record refers to the snapshot without changes */
+	private static final byte SNAPSHOT = 1;
+
+	/** the record is a delta against the snapshot */
+	private static final byte DELTA = 2;
+
+	/** the record contains the whole page */
+	private static final byte FULL = 3;
+
+	/** a record consists of its type, the stamp of the snapshot and the optional delta */
+	private static final int HEADER_LENGTH = 5;
+
+	private final IDataStore dataStore;
+
+	private final int maxChainLength;
+
+	/** the maximum size per session of the wrapped store, {@code 0} if unknown */
+	private final long maxSizePerSession;
+
+	/** the stamp of the next snapshot, used to detect deltas of an older snapshot */
+	private final AtomicInteger nextStamp = new AtomicInteger((int)System.nanoTime());
+
+	private final ConcurrentMap<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+	private final Statistics statistics = new Statistics();
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually stores the pages
+	 */
+	public DeltaDataStore(final IDataStore dataStore)
+	{
+		this(dataStore, DEFAULT_MAX_CHAIN_LENGTH);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually stores the pages
+	 * @param maxChainLength
+	 *            the maximum number of deltas stored against a snapshot
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxChainLength)
+	{
+		this(dataStore, maxChainLength, null);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually stores the pages
+	 * @param maxChainLength
+	 *            the maximum number of deltas stored against a snapshot
+	 * @param maxSizePerSession
+	 *            the maximum size per session of the wrapped store, after which it drops the
+	 *            oldest pages, or {@code null} if the store does not drop pages
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxChainLength,
+		final Bytes maxSizePerSession)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		this.maxChainLength = Args.withinRange(1, Integer.MAX_VALUE, maxChainLength,
+			"maxChainLength");
+		this.maxSizePerSession = maxSizePerSession != null ? maxSizePerSession.bytes() : 0;
+	}
+
+	/**
+	 * Reads a page from the records in the wrapped store only, so pages stored before a restart
+	 * stay readable. Reads do not lock the session.
+	 */
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] record = dataStore.getData(sessionId, id);
+		while (record != null)
+		{
+			byte[] data = decode(sessionId, id, record);
+			if (data != null)
+			{
+				return data;
+			}
+
+			// the snapshot may have been replaced by a concurrent write after the record was
+			// read, so decode the new record if there is one
+			byte[] current = dataStore.getData(sessionId, id);
+			if (current == null || Arrays.equals(current, record))
+			{
+				return null;
+			}
+			record = current;
+		}
+		return null;
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionState state = sessions.get(sessionId);
+		if (state == null)
+		{
+			removeRecords(sessionId, id);
+			return;
+		}
+		synchronized (state)
+		{
+			state.pages.remove(id);
+			removeRecords(sessionId, id);
+		}
+	}
+
+	private void removeRecords(final String sessionId, final int id)
+	{
+		dataStore.removeData(sessionId, id);
+		if (hasSnapshotId(id))
+		{
+			dataStore.removeData(sessionId, snapshotId(id));
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		sessions.remove(sessionId);
+		dataStore.removeData(sessionId);
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		Map<Integer, byte[]> pages = new LinkedHashMap<>();
+		pages.put(id, data);
+		storeData(sessionId, pages);
+	}
+
+	@Override
+	public void storeData(final String sessionId, final Map<Integer, byte[]> pages)
+	{
+		SessionState state = sessions.computeIfAbsent(sessionId, key -> new SessionState());
+		synchronized (state)
+		{
+			Map<Integer, byte[]> records = new LinkedHashMap<>();
+			for (Map.Entry<Integer, byte[]> page : pages.entrySet())
+			{
+				int id = page.getKey();
+				byte[] data = page.getValue();
+				statistics.pageBytes.addAndGet(data.length);
+
+				if (hasSnapshotId(id) == false)
+				{
+					records.put(id, record(FULL, 0, data));
+					state.written += HEADER_LENGTH + data.length;
+					statistics.snapshots.incrementAndGet();
+					statistics.writtenBytes.addAndGet(HEADER_LENGTH + data.length);
+					continue;
+				}
+
+				PageState pageState = state.pages.get(id);
+				byte[] snapshot = null;
+				if (pageState != null && pageState.chainLength < maxChainLength &&
+					isInWindow(state, pageState))
+				{
+					snapshot = getSnapshot(sessionId, id, pageState.stamp);
+				}
+				if (snapshot != null)
+				{
+					byte[] delta = BinaryDelta.create(snapshot, data);
+					if (delta.length < data.length / 2)
+					{
+						records.put(id, record(DELTA, pageState.stamp, delta));
+						state.written += HEADER_LENGTH + delta.length;
+						pageState.chainLength++;
+						statistics.deltas.incrementAndGet();
+						statistics.writtenBytes.addAndGet(HEADER_LENGTH + delta.length);
+						continue;
+					}
+				}
+
+				int stamp = nextStamp.getAndIncrement();
+				// the snapshot first, so that the record never refers to a missing one
+				records.put(snapshotId(id),
+					ByteBuffer.allocate(4 + data.length).putInt(stamp).put(data).array());
+				records.put(id, record(SNAPSHOT, stamp, null));
+				state.pages.put(id, new PageState(stamp, state.written));
+				state.written += 4 + data.length + HEADER_LENGTH;
+				statistics.snapshots.incrementAndGet();
+				statistics.writtenBytes.addAndGet(4 + data.length + HEADER_LENGTH);
+			}
+			dataStore.storeData(sessionId, records);
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		sessions.clear();
+		dataStore.destroy();
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return dataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the wrapped data store
+	 */
+	public IDataStore getDataStore()
+	{
+		return dataStore;
+	}
+
+	/**
+	 * @return the statistics of this store
+	 */
+	public Statistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Decodes a record by its header.
+	 * 
+	 * @param sessionId
+	 * @param id
+	 *            the id of the page
+	 * @param record
+	 *            the record stored for the page
+	 * @return the data of the page or {@code null} if the record is invalid or its snapshot is
+	 *         missing or has been replaced
+	 */
+	private byte[] decode(final String sessionId, final int id, final byte[] record)
+	{
+		if (record.length < HEADER_LENGTH)
+		{
+			return null;
+		}
+
+		ByteBuffer header = ByteBuffer.wrap(record);
+		byte type = header.get();
+		if (type == FULL)
+		{
+			return Arrays.copyOfRange(record, HEADER_LENGTH, record.length);
+		}
+		if ((type != SNAPSHOT && type != DELTA) || hasSnapshotId(id) == false)
+		{
+			return null;
+		}
+
+		byte[] data = getSnapshot(sessionId, id, header.getInt());
+		if (data == null || type == SNAPSHOT)
+		{
+			return data;
+		}
+
+		byte[] delta = Arrays.copyOfRange(record, HEADER_LENGTH, record.length);
+		return BinaryDelta.apply(data, delta);
+	}
+
+	/**
+	 * Reads the snapshot of a page.
+	 * 
+	 * @param sessionId
+	 * @param id
+	 *            the id of the page
+	 * @param stamp
+	 *            the expected stamp of the snapshot
+	 * @return the data of the snapshot or {@code null} if it is missing or has been replaced
+	 */
+	private byte[] getSnapshot(final String sessionId, final int id, final int stamp)
+	{
+		byte[] snapshot = dataStore.getData(sessionId, snapshotId(id));
+		if (snapshot == null || snapshot.length < 4 || ByteBuffer.wrap(snapshot).getInt() != stamp)
+		{
+			return null;
+		}
+		return Arrays.copyOfRange(snapshot, 4, snapshot.length);
+	}
+
+	/**
+	 * @param state
+	 * @param pageState
+	 * @return whether the snapshot is still safe from being dropped by the wrapped store
+	 */
+	private boolean isInWindow(final SessionState state, final PageState pageState)
+	{
+		return maxSizePerSession == 0 ||
+			state.written - pageState.position <= maxSizePerSession / 2;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a page
+	 * @return whether the page's snapshot can be stored under an id which cannot collide with any
+	 *         page id or {@code -1}
+	 */
+	private static boolean hasSnapshotId(final int id)
+	{
+		return id >= 0 && id < Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a page
+	 * @return the id the page's snapshot is stored with
+	 */
+	private static int snapshotId(final int id)
+	{
+		return -2 - id;
+	}
+
+	private static byte[] record(byte type, int stamp, byte[] payload)
+	{
+		int length = HEADER_LENGTH + (payload != null ? payload.length : 0);
+		ByteBuffer record = ByteBuffer.allocate(length);
+		record.put(type).putInt(stamp);
+		if (payload != null)
+		{
+			record.put(payload);
+		}
+		return record.array();
+	}
+
+	/**
+	 * The state of the pages of a session, used to decide how new versions are written. Also used
+	 * as the lock for writing the session's pages.
+	 */
+	private static class SessionState
+	{
+		private final Map<Integer, PageState> pages = new HashMap<>();
+
+		/** the number of bytes written to the wrapped store for the session */
+		private long written;
+	}
+
+	/**
+	 * Identifies the snapshot a page's deltas are computed against.
+	 */
+	private static class PageState
+	{
+		private final int stamp;
+
+		/** the number of bytes written for the session before the snapshot */
+		private final long position;
+
+		/** the number of deltas stored against the snapshot */
+		private int chainLength;
+
+		private PageState(int stamp, long position)
+		{
+			this.stamp = stamp;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * The statistics of a {@link DeltaDataStore}
+	 */
+	public static class Statistics
+	{
+		private final AtomicLong snapshots = new AtomicLong();
+
+		private final AtomicLong deltas = new AtomicLong();
+
+		private final AtomicLong pageBytes = new AtomicLong();
+
+		private final AtomicLong writtenBytes = new AtomicLong();
+
+		/**
+		 * @return the number of pages stored as snapshots
+		 */
+		public long getSnapshots()
+		{
+			return snapshots.get();
+		}
+
+		/**
+		 * @return the number of pages stored as deltas
+		 */
+		public long getDeltas()
+		{
+			return deltas.get();
+		}
+
+		/**
+		 * @return the total size of the stored pages
+		 */
+		public long getPageBytes()
+		{
+			return pageBytes.get();
+		}
+
+		/**
+		 * @return the total size of the data written to the wrapped data store
+		 */
+		public long getWrittenBytes()
+		{
+			return writtenBytes.get();
+		}
+	}
+}
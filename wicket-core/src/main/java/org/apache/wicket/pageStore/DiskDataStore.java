@@ -18,27 +18,27 @@ package org.apache.wicket.pageStore;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
 import org.apache.wicket.util.file.Files;
-import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.slf4j.Logger;
@@ -53,6 +53,11 @@ public class DiskDataStore implements IDataStore
 
 	private static final String INDEX_FILE_NAME = "DiskDataStoreIndex";
 
+	/**
+	 * The default number of file channels kept open by {@link FileChannelPool}
+	 */
+	public static final int DEFAULT_FILE_CHANNEL_POOL_CAPACITY = 50;
+
 	private final String applicationName;
 
 	private final Bytes maxSizePerPageSession;
@@ -61,6 +66,8 @@ public class DiskDataStore implements IDataStore
 
 	private final ConcurrentMap<String, SessionEntry> sessionEntryMap;
 
+	private final FileChannelPool fileChannelPool;
+
 	/**
 	 * Construct.
 	 * 
@@ -70,11 +77,28 @@ public class DiskDataStore implements IDataStore
 	 */
 	public DiskDataStore(final String applicationName, final File fileStoreFolder,
 		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession,
+			DEFAULT_FILE_CHANNEL_POOL_CAPACITY);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 *            the maximum number of session files kept open
+	 */
+	public DiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final int fileChannelPoolCapacity)
 	{
 		this.applicationName = applicationName;
 		this.fileStoreFolder = fileStoreFolder;
 		maxSizePerPageSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
 		sessionEntryMap = new ConcurrentHashMap<>();
+		fileChannelPool = newFileChannelPool(fileChannelPoolCapacity);
 
 		try
 		{
@@ -104,9 +128,30 @@ public class DiskDataStore implements IDataStore
 	{
 		log.debug("Destroying...");
 		saveIndex();
+		fileChannelPool.destroy();
 		log.debug("Destroyed.");
 	}
 
+	/**
+	 * Creates the pool of file channels used to access the session files.
+	 * 
+	 * @param capacity
+	 *            the maximum number of file channels kept open
+	 * @return the file channel pool
+	 */
+	protected FileChannelPool newFileChannelPool(int capacity)
+	{
+		return new FileChannelPool(capacity);
+	}
+
+	/**
+	 * @return the pool of file channels used to access the session files
+	 */
+	public FileChannelPool getFileChannelPool()
+	{
+		return fileChannelPool;
+	}
+
 	/**
 	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
 	 */
@@ -164,11 +209,16 @@ public class DiskDataStore implements IDataStore
 		if (sessionEntry != null)
 		{
 			log.debug("Removing data for pages in session with id '{}'", sessionId);
-			synchronized (sessionEntry)
+			sessionEntry.lock.lock();
+			try
 			{
 				sessionEntryMap.remove(sessionEntry.sessionId);
 				sessionEntry.unbind();
 			}
+			finally
+			{
+				sessionEntry.lock.unlock();
+			}
 		}
 	}
 
@@ -186,6 +236,22 @@ public class DiskDataStore implements IDataStore
 		}
 	}
 
+	/**
+	 * Writes all the pages with as few gathering writes as possible.
+	 * 
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, java.util.Map)
+	 */
+	@Override
+	public void storeData(final String sessionId, final Map<Integer, byte[]> pages)
+	{
+		SessionEntry sessionEntry = getSessionEntry(sessionId, true);
+		if (sessionEntry != null)
+		{
+			log.debug("Storing data for {} pages in session with id '{}'", pages.size(), sessionId);
+			sessionEntry.savePages(pages);
+		}
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -289,9 +355,21 @@ public class DiskDataStore implements IDataStore
 
 		private final String sessionId;
 		private transient DiskDataStore diskDataStore;
-		private String fileName;
-		private PageWindowManager manager;
-		private boolean unbound = false;
+		private volatile String fileName;
+		private volatile PageWindowManager manager;
+		private volatile boolean unbound = false;
+
+		/**
+		 * The generation of the last page window written by {@link #savePage(int, byte[])}.
+		 * Windows with a higher generation are still being written.
+		 */
+		private volatile long writtenGeneration = 0;
+
+		/**
+		 * Serializes the writers. A lock rather than a monitor, because the file is written while
+		 * holding it, which would pin a virtual thread to its carrier.
+		 */
+		private transient ReentrantLock lock = new ReentrantLock();
 
 		protected SessionEntry(DiskDataStore diskDataStore, String sessionId)
 		{
@@ -301,11 +379,31 @@ public class DiskDataStore implements IDataStore
 
 		public PageWindowManager getManager()
 		{
-			if (manager == null)
+			PageWindowManager result = manager;
+			if (result == null)
 			{
-				manager = new PageWindowManager(diskDataStore.maxSizePerPageSession.bytes());
+				lock.lock();
+				try
+				{
+					result = manager;
+					if (result == null)
+					{
+						result = new PageWindowManager(diskDataStore.maxSizePerPageSession.bytes());
+						manager = result;
+					}
+				}
+				finally
+				{
+					lock.unlock();
+				}
 			}
-			return manager;
+			return result;
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			in.defaultReadObject();
+			lock = new ReentrantLock();
 		}
 
 		private String getFileName()
@@ -331,25 +429,117 @@ public class DiskDataStore implements IDataStore
 		 * @param pageId
 		 * @param data
 		 */
-		public synchronized void savePage(int pageId, byte data[])
+		public void savePage(int pageId, byte data[])
 		{
-			if (unbound)
+			lock.lock();
+			try
 			{
-				return;
+				if (unbound)
+				{
+					return;
+				}
+				// only save page that has some data
+				if (data != null)
+				{
+					// allocate window for page
+					PageWindow window = getManager().createPageWindow(pageId, data.length);
+
+					FileChannel channel = getFileChannel(true);
+					if (channel != null)
+					{
+						try
+						{
+							// write the content
+							channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
+						}
+						catch (IOException e)
+						{
+							log.error("Error writing to a channel " + channel, e);
+						}
+						finally
+						{
+							diskDataStore.fileChannelPool.returnFileChannel(channel);
+						}
+					}
+					else
+					{
+						log.warn(
+							"Cannot save page with id '{}' because the data file cannot be opened.",
+							pageId);
+					}
+					writtenGeneration = window.getGeneration();
+				}
 			}
-			// only save page that has some data
-			if (data != null)
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Saves several serialized pages to appropriate file. Pages which end up in adjacent
+		 * windows are written with a single gathering write.
+		 * 
+		 * @param pages
+		 *            page data by page id
+		 */
+		public void savePages(Map<Integer, byte[]> pages)
+		{
+			lock.lock();
+			try
 			{
-				// allocate window for page
-				PageWindow window = getManager().createPageWindow(pageId, data.length);
+				if (unbound || pages.isEmpty())
+				{
+					return;
+				}
+
+				// allocate all windows first, so that adjacent ones can be written together
+				List<PageWindow> windows = new ArrayList<>(pages.size());
+				List<ByteBuffer> buffers = new ArrayList<>(pages.size());
+				for (Map.Entry<Integer, byte[]> page : pages.entrySet())
+				{
+					byte[] data = page.getValue();
+					// only save page that has some data
+					if (data != null)
+					{
+						windows.add(getManager().createPageWindow(page.getKey(), data.length));
+						buffers.add(ByteBuffer.wrap(data));
+					}
+				}
+				if (windows.isEmpty())
+				{
+					return;
+				}
 
 				FileChannel channel = getFileChannel(true);
 				if (channel != null)
 				{
 					try
 					{
-						// write the content
-						channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
+						int start = 0;
+						while (start < windows.size())
+						{
+							// find the run of adjacent windows
+							int end = start + 1;
+							long offset = windows.get(start).getFilePartOffset();
+							long next = offset + buffers.get(start).remaining();
+							while (end < windows.size() && windows.get(end).getFilePartOffset() == next)
+							{
+								next += buffers.get(end).remaining();
+								end++;
+							}
+
+							// the position is not shared, other threads use positional reads only
+							// and the writes are serialized by this entry
+							ByteBuffer[] run = buffers.subList(start, end).toArray(
+								new ByteBuffer[end - start]);
+							channel.position(offset);
+							while (run[run.length - 1].hasRemaining())
+							{
+								channel.write(run);
+							}
+							start = end;
+						}
 					}
 					catch (IOException e)
 					{
@@ -357,15 +547,19 @@ public class DiskDataStore implements IDataStore
 					}
 					finally
 					{
-						IOUtils.closeQuietly(channel);
+						diskDataStore.fileChannelPool.returnFileChannel(channel);
 					}
 				}
 				else
 				{
-					log.warn(
-						"Cannot save page with id '{}' because the data file cannot be opened.",
-						pageId);
+					log.warn("Cannot save pages '{}' because the data file cannot be opened.",
+						pages.keySet());
 				}
+				writtenGeneration = windows.get(windows.size() - 1).getGeneration();
+			}
+			finally
+			{
+				lock.unlock();
 			}
 		}
 
@@ -374,13 +568,21 @@ public class DiskDataStore implements IDataStore
 		 * 
 		 * @param pageId
 		 */
-		public synchronized void removePage(int pageId)
+		public void removePage(int pageId)
 		{
-			if (unbound)
+			lock.lock();
+			try
+			{
+				if (unbound)
+				{
+					return;
+				}
+				getManager().removePage(pageId);
+			}
+			finally
 			{
-				return;
+				lock.unlock();
 			}
-			getManager().removePage(pageId);
 		}
 
 		/**
@@ -410,66 +612,102 @@ public class DiskDataStore implements IDataStore
 				}
 				finally
 				{
-					IOUtils.closeQuietly(channel);
+					diskDataStore.fileChannelPool.returnFileChannel(channel);
 				}
 			}
 			return result;
 		}
 
+		/**
+		 * Obtains the channel for the session file from the pool. It has to be returned by
+		 * {@link FileChannelPool#returnFileChannel(FileChannel)}.
+		 * 
+		 * @param create
+		 * @return the file channel or {@code null}
+		 */
 		private FileChannel getFileChannel(boolean create)
 		{
-			FileChannel channel = null;
-			File file = new File(getFileName());
-			if (create || file.exists())
-			{
-				String mode = create ? "rw" : "r";
-				try
-				{
-					RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode);
-					channel = randomAccessFile.getChannel();
-				}
-				catch (FileNotFoundException fnfx)
-				{
-					// can happen if the file is locked. WICKET-4176
-					log.error(fnfx.getMessage(), fnfx);
-				}
-			}
-			return channel;
+			return diskDataStore.fileChannelPool.getFileChannel(getFileName(), create);
 		}
 
 		/**
 		 * Loads the specified page data.
+		 * <p>
+		 * The data is read without waiting for a concurrent {@link #savePage(int, byte[])}. If the
+		 * page is still being written or its window turns out to be reused while reading, the page
+		 * is read again while holding off the writers.
 		 * 
 		 * @param id
 		 * @return page data or null if the page is no longer in pagemap file
 		 */
-		public synchronized byte[] loadPage(int id)
+		public byte[] loadPage(int id)
 		{
 			if (unbound)
 			{
 				return null;
 			}
-			byte[] result = null;
-			PageWindow window = getManager().getPageWindow(id);
-			if (window != null)
+			PageWindowManager pageWindowManager = getManager();
+			PageWindow window = pageWindowManager.getPageWindow(id);
+			if (window == null)
 			{
-				result = loadPage(window);
+				return null;
+			}
+
+			if (window.getGeneration() <= writtenGeneration)
+			{
+				byte[] result = loadPage(window);
+				if (pageWindowManager.isCurrent(window))
+				{
+					return result;
+				}
+			}
+
+			lock.lock();
+			try
+			{
+				if (unbound)
+				{
+					return null;
+				}
+				byte[] result = null;
+				window = pageWindowManager.getPageWindow(id);
+				if (window != null)
+				{
+					result = loadPage(window);
+				}
+				return result;
+			}
+			finally
+			{
+				lock.unlock();
 			}
-			return result;
 		}
 
 		/**
 		 * Deletes all files for this session.
 		 */
-		public synchronized void unbind()
+		public void unbind()
 		{
-			File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
-			if (sessionFolder.exists())
+			lock.lock();
+			try
+			{
+				if (fileName != null)
+				{
+					diskDataStore.fileChannelPool.closeFileChannel(fileName);
+				}
+
+				File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
+				if (sessionFolder.exists())
+				{
+					Files.removeFolder(sessionFolder);
+					cleanup(sessionFolder);
+				}
+				unbound = true;
+			}
+			finally
 			{
-				Files.removeFolder(sessionFolder);
-				cleanup(sessionFolder);
+				lock.unlock();
 			}
-			unbound = true;
 		}
 
 		/**
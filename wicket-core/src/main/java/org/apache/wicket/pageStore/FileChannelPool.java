@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bounded number of {@link FileChannel}s open so that the data files of the active
+ * sessions are not opened and closed for every page access.
+ * <p>
+ * Each channel obtained by {@link #getFileChannel(String, boolean)} must be handed back by
+ * {@link #returnFileChannel(FileChannel)}. Channels which are currently in use are never closed;
+ * when the pool is full the least recently used idle channels are closed instead.
+ *
+ * @see DiskDataStore
+ */
+public class FileChannelPool
+{
+	private static final Logger log = LoggerFactory.getLogger(FileChannelPool.class);
+
+	/**
+	 * Bookkeeping for a single pooled channel.
+	 */
+	private static class PooledChannel
+	{
+		private final String fileName;
+
+		private final FileChannel channel;
+
+		/** number of threads currently using the channel */
+		private int usage;
+
+		/** whether the channel should be closed as soon as nobody uses it */
+		private boolean closeOnReturn;
+
+		private PooledChannel(String fileName, FileChannel channel)
+		{
+			this.fileName = fileName;
+			this.channel = channel;
+		}
+	}
+
+	/** file name -> channel, in access order */
+	private final Map<String, PooledChannel> nameToChannel = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** channel -> bookkeeping, needed when the channel is returned */
+	private final Map<FileChannel, PooledChannel> channelToEntry = new HashMap<>();
+
+	private final int capacity;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Construct.
+	 *
+	 * @param capacity
+	 *            the maximum number of idle channels kept open
+	 */
+	public FileChannelPool(int capacity)
+	{
+		this.capacity = Args.withinRange(1, Integer.MAX_VALUE, capacity, "capacity");
+	}
+
+	/**
+	 * Returns an open channel for the given file. The channel has to be returned by
+	 * {@link #returnFileChannel(FileChannel)} once the caller is done with it.
+	 *
+	 * @param fileName
+	 *            absolute name of the file
+	 * @param create
+	 *            whether to create the file if it doesn't exist yet
+	 * @return the channel or {@code null} if the file doesn't exist and {@code create} is
+	 *         {@code false} or if it couldn't be opened
+	 */
+	public synchronized FileChannel getFileChannel(String fileName, boolean create)
+	{
+		PooledChannel entry = nameToChannel.get(fileName);
+		if (entry != null)
+		{
+			hits++;
+		}
+		else
+		{
+			misses++;
+			File file = new File(fileName);
+			if (create == false && file.exists() == false)
+			{
+				return null;
+			}
+
+			FileChannel channel = newFileChannel(file);
+			if (channel == null)
+			{
+				return null;
+			}
+
+			entry = new PooledChannel(fileName, channel);
+			nameToChannel.put(fileName, entry);
+			channelToEntry.put(channel, entry);
+		}
+
+		entry.usage++;
+		reduceChannels();
+		return entry.channel;
+	}
+
+	/**
+	 * Hands back a channel previously obtained by {@link #getFileChannel(String, boolean)}.
+	 *
+	 * @param channel
+	 */
+	public synchronized void returnFileChannel(FileChannel channel)
+	{
+		PooledChannel entry = channelToEntry.get(channel);
+		if (entry == null)
+		{
+			throw new IllegalArgumentException("Channel is not managed by this pool: " + channel);
+		}
+
+		entry.usage--;
+		if (entry.usage == 0)
+		{
+			if (entry.closeOnReturn)
+			{
+				close(entry);
+			}
+			else
+			{
+				reduceChannels();
+			}
+		}
+	}
+
+	/**
+	 * Closes the channel for the given file, if there is any. A channel that is currently in use is
+	 * closed as soon as it gets returned.
+	 *
+	 * @param fileName
+	 */
+	public synchronized void closeFileChannel(String fileName)
+	{
+		PooledChannel entry = nameToChannel.get(fileName);
+		if (entry != null)
+		{
+			nameToChannel.remove(fileName);
+			if (entry.usage == 0)
+			{
+				close(entry);
+			}
+			else
+			{
+				entry.closeOnReturn = true;
+			}
+		}
+	}
+
+	/**
+	 * Closes all pooled channels, including the ones which are still in use.
+	 */
+	public synchronized void destroy()
+	{
+		List<PooledChannel> entries = new ArrayList<>(channelToEntry.values());
+		for (PooledChannel entry : entries)
+		{
+			if (entry.usage > 0)
+			{
+				log.warn("Closing file channel for '{}' which is still in use.", entry.fileName);
+			}
+			close(entry);
+		}
+		nameToChannel.clear();
+	}
+
+	/**
+	 * @return the maximum number of idle channels kept open
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the number of channels currently open
+	 */
+	public synchronized int getOpenChannelCount()
+	{
+		return channelToEntry.size();
+	}
+
+	/**
+	 * @return the number of requests served by an already open channel
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of requests which had to open the file
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of idle channels closed because the pool was full
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Opens a channel for the given file.
+	 *
+	 * @param file
+	 * @return the channel or {@code null} if the file cannot be opened
+	 */
+	protected FileChannel newFileChannel(File file)
+	{
+		try
+		{
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			return randomAccessFile.getChannel();
+		}
+		catch (FileNotFoundException fnfx)
+		{
+			// can happen if the file is locked. WICKET-4176
+			log.error(fnfx.getMessage(), fnfx);
+			return null;
+		}
+	}
+
+	/**
+	 * Closes the least recently used idle channels until the capacity is respected.
+	 */
+	private void reduceChannels()
+	{
+		Iterator<PooledChannel> iterator = nameToChannel.values().iterator();
+		while (channelToEntry.size() > capacity && iterator.hasNext())
+		{
+			PooledChannel entry = iterator.next();
+			if (entry.usage == 0)
+			{
+				iterator.remove();
+				close(entry);
+				evictions++;
+			}
+		}
+	}
+
+	private void close(PooledChannel entry)
+	{
+		channelToEntry.remove(entry.channel);
+		IOUtils.closeQuietly(entry.channel);
+	}
+}
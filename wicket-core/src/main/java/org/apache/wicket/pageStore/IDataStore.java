@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.util.Map;
+
 /**
  * Data stores are used to persist (read & write) Wicket page data to a persistent store like e.g.
  * files or databases.
@@ -65,6 +67,23 @@ public interface IDataStore
 	 */
 	void storeData(String sessionId, int id, byte[] data);
 
+	/**
+	 * Store the data of several pages of a session at once. Implementations may override this to
+	 * write all pages in a single operation, by default each page is stored separately.
+	 * 
+	 * @param sessionId
+	 *            Session ID
+	 * @param pages
+	 *            Page data by page ID, in the order the pages should be stored
+	 */
+	default void storeData(String sessionId, Map<Integer, byte[]> pages)
+	{
+		for (Map.Entry<Integer, byte[]> page : pages.entrySet())
+		{
+			storeData(sessionId, page.getKey(), page.getValue());
+		}
+	}
+
 	/**
 	 * Properly close the data store and possibly open resource handles
 	 */
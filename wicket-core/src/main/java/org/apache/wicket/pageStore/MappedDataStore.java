@@ -0,0 +1,1200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store which keeps the pages of all sessions in a small number of large memory mapped
+ * segment files, instead of one file per session like {@link DiskDataStore}.
+ * <p>
+ * Pages are appended to the current segment as self-describing records. An in-memory index maps
+ * each (sessionId, pageId) to the location of its record. Replaced and removed records are only
+ * marked as dead, so removing all pages of an expired session does not touch the file system.
+ * When no segment has room for a new page the live records of the segment with the most dead space
+ * are copied to a spare segment file, without blocking the readers and the writers of the other
+ * segments, and the two segments are swapped. If that does not help either the oldest segment is
+ * recycled, dropping its pages.
+ * <p>
+ * The index is not persisted - it is recovered by scanning the segment files when the store is
+ * created.
+ * <p>
+ * To use it instead of {@link DiskDataStore} enable it with
+ * {@link org.apache.wicket.settings.StoreSettings#setMappedDataStore(int, Bytes)}.
+ */
+public class MappedDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(MappedDataStore.class);
+
+	/**
+	 * The default size of a single segment file
+	 */
+	public static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(64);
+
+	/**
+	 * The default maximum number of segment files
+	 */
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	/** marks the start of a record, a zero marks the end of the records in a segment */
+	private static final int MAGIC = 0x5749434B;
+
+	private static final byte STATE_LIVE = 1;
+
+	private static final byte STATE_DEAD = 0;
+
+	/** magic, state, sequence, page id, session id length, data length */
+	private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4 + 4;
+
+	private static final int STATE_OFFSET = 4;
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final long maxSizePerSession;
+
+	private final int segmentSize;
+
+	private final int maxSegments;
+
+	/** guards all the fields below */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** held while a segment is compacted or recycled, so only one thread makes room at a time */
+	private final Lock compactionLock = new ReentrantLock();
+
+	private final List<Segment> segments = new ArrayList<>();
+
+	/** the segment the next compaction copies to, guarded by the compaction lock */
+	private Segment spare;
+
+	/** the number in the name of the next segment file */
+	private int nextFileNumber;
+
+	private final Map<String, SessionIndex> sessions = new HashMap<>();
+
+	private Segment activeSegment;
+
+	private long sequence;
+
+	private long compactions;
+
+	private long recycledSegments;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 */
+	public MappedDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, DEFAULT_SEGMENT_SIZE,
+			DEFAULT_MAX_SEGMENTS);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param segmentSize
+	 *            the size of a single segment file, at most 2GB
+	 * @param maxSegments
+	 *            the maximum number of segment files
+	 */
+	public MappedDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final int maxSegments)
+	{
+		this.applicationName = Args.notNull(applicationName, "applicationName");
+		this.fileStoreFolder = Args.notNull(fileStoreFolder, "fileStoreFolder");
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession").bytes();
+		Args.notNull(segmentSize, "segmentSize");
+		Args.isTrue(segmentSize.bytes() > HEADER_SIZE && segmentSize.bytes() <= Integer.MAX_VALUE,
+			"segmentSize must be between %d bytes and 2GB", HEADER_SIZE);
+		this.segmentSize = (int)segmentSize.bytes();
+		this.maxSegments = Args.withinRange(1, Integer.MAX_VALUE, maxSegments, "maxSegments");
+
+		File storeFolder = getStoreFolder();
+		try
+		{
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				recover();
+			}
+			else
+			{
+				log.warn("Cannot create file store folder for some reason.");
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating MappedDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+
+		lock.readLock().lock();
+		try
+		{
+			SessionIndex session = sessions.get(sessionId);
+			if (session != null)
+			{
+				Location location = session.pages.get(id);
+				if (location != null)
+				{
+					pageData = location.segment.read(location);
+				}
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Returning data{} for page with id '{}' in session with id '{}'",
+				pageData != null ? "" : "(null)", id, sessionId);
+		}
+		return pageData;
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			SessionIndex session = sessions.get(sessionId);
+			if (session != null)
+			{
+				log.debug("Removing data for page with id '{}' in session with id '{}'", id,
+					sessionId);
+				Location location = session.pages.remove(id);
+				if (location != null)
+				{
+					kill(session, location);
+				}
+				if (session.pages.isEmpty())
+				{
+					sessions.remove(sessionId);
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			SessionIndex session = sessions.remove(sessionId);
+			if (session != null)
+			{
+				log.debug("Removing data for pages in session with id '{}'", sessionId);
+				for (Location location : session.pages.values())
+				{
+					kill(session, location);
+				}
+				session.pages.clear();
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		storeData(sessionId, Collections.singletonMap(id, data));
+	}
+
+	/**
+	 * Stores all pages while holding the lock only once, unless room has to be made for them.
+	 */
+	@Override
+	public void storeData(final String sessionId, final Map<Integer, byte[]> pages)
+	{
+		byte[] key = sessionId.getBytes(StandardCharsets.UTF_8);
+
+		Iterator<Map.Entry<Integer, byte[]>> iterator = pages.entrySet().iterator();
+		Map.Entry<Integer, byte[]> page = null;
+		while (page != null || iterator.hasNext())
+		{
+			lock.writeLock().lock();
+			try
+			{
+				while (page != null || iterator.hasNext())
+				{
+					if (page == null)
+					{
+						page = iterator.next();
+					}
+					if (store(sessionId, key, page.getKey(), page.getValue()) == false)
+					{
+						break;
+					}
+					page = null;
+				}
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+
+			// compact outside of the lock
+			if (page != null && makeRoom(HEADER_SIZE + key.length + page.getValue().length) == false)
+			{
+				log.warn("Cannot save page with id '{}' because no segment has room for it.",
+					page.getKey());
+				page = null;
+			}
+		}
+	}
+
+	/**
+	 * Appends a page to the active segment.
+	 *
+	 * @return {@code false} if there is no room for the page and the store is full
+	 */
+	private boolean store(final String sessionId, final byte[] key, final int id,
+		final byte[] data)
+	{
+		if (data == null)
+		{
+			return true;
+		}
+
+		int recordSize = HEADER_SIZE + key.length + data.length;
+		if (recordSize > segmentSize)
+		{
+			log.warn(
+				"Cannot save page with id '{}' because its size ({} bytes) exceeds the segment size.",
+				id, data.length);
+			return true;
+		}
+
+		Segment segment = activeSegment;
+		if (segment == null || segment.remaining() < recordSize)
+		{
+			if (segments.size() >= maxSegments)
+			{
+				return false;
+			}
+			segment = newSegment();
+			if (segment == null)
+			{
+				return true;
+			}
+			segments.add(segment);
+			activeSegment = segment;
+		}
+
+		log.debug("Storing data for page with id '{}' in session with id '{}'", id, sessionId);
+
+		SessionIndex session = sessions.get(sessionId);
+		if (session == null)
+		{
+			session = new SessionIndex();
+			sessions.put(sessionId, session);
+		}
+
+		Location previous = session.pages.remove(id);
+		if (previous != null)
+		{
+			kill(session, previous);
+		}
+
+		Location location = segment.append(++sequence, id, key, data);
+		session.pages.put(id, location);
+		session.size += location.recordSize;
+
+		evictOldest(session);
+		return true;
+	}
+
+	@Override
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		compactionLock.lock();
+		try
+		{
+			lock.writeLock().lock();
+			try
+			{
+				for (Segment segment : segments)
+				{
+					segment.close();
+				}
+				segments.clear();
+				sessions.clear();
+				activeSegment = null;
+				if (spare != null)
+				{
+					spare.close();
+					spare = null;
+				}
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+		finally
+		{
+			compactionLock.unlock();
+		}
+		log.debug("Destroyed.");
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return true;
+	}
+
+	/**
+	 * @return the number of segment files in use
+	 */
+	public int getSegmentCount()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return segments.size();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes taken by records which are still in use
+	 */
+	public long getLiveBytes()
+	{
+		lock.readLock().lock();
+		try
+		{
+			long live = 0;
+			for (Segment segment : segments)
+			{
+				live += segment.liveBytes;
+			}
+			return live;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes taken by replaced or removed records which are not reclaimed
+	 *         yet
+	 */
+	public long getDeadBytes()
+	{
+		lock.readLock().lock();
+		try
+		{
+			long dead = 0;
+			for (Segment segment : segments)
+			{
+				dead += segment.writePosition - segment.liveBytes;
+			}
+			return dead;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of times a segment has been compacted
+	 */
+	public long getCompactionCount()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return compactions;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of times a segment has been recycled, dropping the pages in it
+	 */
+	public long getRecycledSegmentCount()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return recycledSegments;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the folder where the segment files are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-mappedstore");
+	}
+
+	/**
+	 * Makes room for a record of the given size, by compacting the segment with the most dead space
+	 * or, if that does not free enough space, by recycling the segment with the oldest pages.
+	 *
+	 * @param recordSize
+	 * @return {@code false} if no room can be made
+	 */
+	private boolean makeRoom(final int recordSize)
+	{
+		compactionLock.lock();
+		try
+		{
+			Segment candidate;
+			int end;
+
+			lock.writeLock().lock();
+			try
+			{
+				if ((activeSegment != null && activeSegment.remaining() >= recordSize) ||
+					segments.size() < maxSegments)
+				{
+					// another thread made room in the meantime
+					return true;
+				}
+
+				// the segment that will have most room after compaction
+				candidate = null;
+				for (Segment segment : segments)
+				{
+					if (segment != activeSegment &&
+						(candidate == null || segment.liveBytes < candidate.liveBytes))
+					{
+						candidate = segment;
+					}
+				}
+				if (candidate == null)
+				{
+					// there is only one segment
+					candidate = activeSegment;
+				}
+
+				if (segmentSize - candidate.liveBytes < recordSize)
+				{
+					return recycle(recordSize);
+				}
+
+				if (spare == null)
+				{
+					spare = newSegment();
+					if (spare == null)
+					{
+						return false;
+					}
+				}
+
+				if (candidate == activeSegment)
+				{
+					// nothing must be appended while it is copied
+					activeSegment = null;
+				}
+				end = candidate.writePosition;
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+
+			compact(candidate, end);
+			return true;
+		}
+		finally
+		{
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the record of the given location as dead.
+	 */
+	private void kill(SessionIndex session, Location location)
+	{
+		session.size -= location.recordSize;
+		location.segment.kill(location);
+	}
+
+	/**
+	 * Drops the oldest pages of the session while it takes more than its share.
+	 */
+	private void evictOldest(SessionIndex session)
+	{
+		Iterator<Location> oldest = session.pages.values().iterator();
+		while (session.size > maxSizePerSession && session.pages.size() > 1)
+		{
+			Location evicted = oldest.next();
+			oldest.remove();
+			kill(session, evicted);
+		}
+	}
+
+	/**
+	 * Copies the live records of a segment to the spare segment and swaps the two.
+	 * <p>
+	 * The records are copied without holding the lock: nothing is appended to the segment, and
+	 * records which die in the meantime are killed in the copy when the segments are swapped.
+	 *
+	 * @param segment
+	 *            the segment to compact
+	 * @param end
+	 *            the end of the last record of the segment
+	 */
+	private void compact(final Segment segment, final int end)
+	{
+		log.debug("Compacting {}", segment);
+
+		final Segment target = spare;
+		final List<Record> copied = new ArrayList<>();
+		final List<Integer> targetOffsets = new ArrayList<>();
+
+		int position = 0;
+		while (position < end)
+		{
+			Record record = segment.readRecord(position);
+			if (record.state == STATE_LIVE)
+			{
+				record.offset = position;
+				copied.add(record);
+				targetOffsets.add(target.copy(segment, position, record.size));
+			}
+			position += record.size;
+		}
+
+		lock.writeLock().lock();
+		try
+		{
+			for (int i = 0; i < copied.size(); i++)
+			{
+				Record record = copied.get(i);
+				int targetOffset = targetOffsets.get(i);
+
+				Location location = lookup(record, segment, record.offset);
+				if (location == null)
+				{
+					target.kill(targetOffset, record.size);
+				}
+				else
+				{
+					location.segment = target;
+					location.offset = targetOffset;
+				}
+			}
+
+			segments.set(segments.indexOf(segment), target);
+			activeSegment = target;
+
+			segment.liveBytes = 0;
+			segment.truncate(0);
+			spare = segment;
+
+			compactions++;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Recycles the first segment with enough room after the active one, it contains the oldest
+	 * pages.
+	 *
+	 * @param recordSize
+	 * @return {@code false} if no segment is big enough
+	 */
+	private boolean recycle(final int recordSize)
+	{
+		int active = segments.indexOf(activeSegment);
+		for (int i = 1; i <= segments.size(); i++)
+		{
+			Segment segment = segments.get((active + i) % segments.size());
+			if (segment.capacity >= recordSize)
+			{
+				drop(segment);
+				activeSegment = segment;
+				recycledSegments++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops all records of a segment.
+	 */
+	private void drop(Segment segment)
+	{
+		log.debug("Recycling {}", segment);
+
+		int readPosition = 0;
+		while (readPosition < segment.writePosition)
+		{
+			Record record = segment.readRecord(readPosition);
+			if (record.state == STATE_LIVE)
+			{
+				Location location = lookup(record, segment, readPosition);
+				if (location != null)
+				{
+					SessionIndex session = sessions.get(record.sessionId);
+					session.pages.remove(record.pageId);
+					session.size -= location.recordSize;
+					if (session.pages.isEmpty())
+					{
+						sessions.remove(record.sessionId);
+					}
+				}
+			}
+			readPosition += record.size;
+		}
+		segment.liveBytes = 0;
+		segment.truncate(0);
+	}
+
+	/**
+	 * @return the index entry pointing to the given record or {@code null}
+	 */
+	private Location lookup(Record record, Segment segment, int offset)
+	{
+		SessionIndex session = sessions.get(record.sessionId);
+		if (session != null)
+		{
+			Location location = session.pages.get(record.pageId);
+			if (location != null && location.segment == segment && location.offset == offset)
+			{
+				return location;
+			}
+		}
+		return null;
+	}
+
+	private Segment newSegment()
+	{
+		File file = new File(getStoreFolder(), SEGMENT_FILE_PREFIX + nextFileNumber);
+		try
+		{
+			Segment segment = new Segment(file, segmentSize);
+			nextFileNumber++;
+			return segment;
+		}
+		catch (IOException e)
+		{
+			log.error("Cannot create segment file " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Maps the existing segment files and rebuilds the index from the records in them.
+	 */
+	private void recover()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Map<String, Map<Integer, Location>> recovered = new HashMap<>();
+			File[] files = getStoreFolder().listFiles();
+			if (files == null)
+			{
+				files = new File[0];
+			}
+			Arrays.sort(files);
+			for (File file : files)
+			{
+				int number = getFileNumber(file);
+				if (number < 0)
+				{
+					continue;
+				}
+				nextFileNumber = Math.max(nextFileNumber, number + 1);
+
+				Segment segment;
+				try
+				{
+					segment = new Segment(file, (int)Math.min(file.length(), Integer.MAX_VALUE));
+				}
+				catch (IOException e)
+				{
+					log.error("Cannot open segment file " + file + ", dropping it.", e);
+					Files.remove(file);
+					continue;
+				}
+				segments.add(segment);
+				recover(segment, recovered);
+			}
+
+			// re-add the pages in the order they were stored
+			List<Location> locations = new ArrayList<>();
+			for (Map<Integer, Location> pages : recovered.values())
+			{
+				locations.addAll(pages.values());
+			}
+			locations.sort((l1, l2) -> Long.compare(l1.sequence, l2.sequence));
+			for (Location location : locations)
+			{
+				SessionIndex session = sessions.get(location.sessionId);
+				if (session == null)
+				{
+					session = new SessionIndex();
+					sessions.put(location.sessionId, session);
+				}
+				session.pages.put(location.pageId, location);
+				session.size += location.recordSize;
+				evictOldest(session);
+				activeSegment = location.segment;
+			}
+
+			// one of the segment files was the spare one
+			while (segments.size() > maxSegments)
+			{
+				Segment emptiest = segments.get(0);
+				for (Segment segment : segments)
+				{
+					if (segment.liveBytes < emptiest.liveBytes)
+					{
+						emptiest = segment;
+					}
+				}
+				drop(emptiest);
+				segments.remove(emptiest);
+				if (activeSegment == emptiest)
+				{
+					activeSegment = null;
+				}
+				if (spare == null && emptiest.capacity == segmentSize)
+				{
+					spare = emptiest;
+				}
+				else
+				{
+					emptiest.close();
+					Files.remove(emptiest.file);
+				}
+			}
+
+			if (segments.isEmpty() == false)
+			{
+				if (activeSegment == null)
+				{
+					activeSegment = segments.get(segments.size() - 1);
+				}
+				int pages = 0;
+				for (SessionIndex session : sessions.values())
+				{
+					pages += session.pages.size();
+				}
+				log.info("Recovered {} pages of {} sessions from {} segments.", pages,
+					sessions.size(), segments.size());
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number in the name of a segment file or {@code -1} if it is no segment file
+	 */
+	private static int getFileNumber(File file)
+	{
+		String name = file.getName();
+		if (name.startsWith(SEGMENT_FILE_PREFIX))
+		{
+			try
+			{
+				return Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length()));
+			}
+			catch (NumberFormatException e)
+			{
+				// not a segment file
+			}
+		}
+		return -1;
+	}
+
+	private void recover(Segment segment, Map<String, Map<Integer, Location>> recovered)
+	{
+		int position = 0;
+		Record record;
+		while ((record = segment.readRecordIfValid(position)) != null)
+		{
+			if (record.state == STATE_LIVE)
+			{
+				Map<Integer, Location> pages = recovered.get(record.sessionId);
+				if (pages == null)
+				{
+					pages = new HashMap<>();
+					recovered.put(record.sessionId, pages);
+				}
+
+				Location location = new Location(segment, position, record);
+				Location other = pages.get(record.pageId);
+				if (other == null || other.sequence < record.sequence)
+				{
+					if (other != null)
+					{
+						other.segment.kill(other);
+					}
+					pages.put(record.pageId, location);
+					segment.liveBytes += record.size;
+				}
+				else
+				{
+					segment.liveBytes += record.size;
+					segment.kill(location);
+				}
+			}
+			sequence = Math.max(sequence, record.sequence);
+			position += record.size;
+		}
+		segment.truncate(position);
+	}
+
+	/**
+	 * The pages of a single session, in the order they were stored.
+	 */
+	private static class SessionIndex
+	{
+		private final LinkedHashMap<Integer, Location> pages = new LinkedHashMap<>();
+
+		/** the sum of the record sizes */
+		private long size;
+	}
+
+	/**
+	 * The position of a record in a segment.
+	 */
+	private static class Location
+	{
+		private Segment segment;
+
+		private int offset;
+
+		private final int recordSize;
+
+		private final int dataOffset;
+
+		private final int dataLength;
+
+		/** only used during recovery */
+		private final long sequence;
+
+		/** only used during recovery */
+		private final String sessionId;
+
+		/** only used during recovery */
+		private final int pageId;
+
+		private Location(Segment segment, int offset, Record record)
+		{
+			this.segment = segment;
+			this.offset = offset;
+			recordSize = record.size;
+			dataOffset = record.size - record.dataLength;
+			dataLength = record.dataLength;
+			sequence = record.sequence;
+			sessionId = record.sessionId;
+			pageId = record.pageId;
+		}
+	}
+
+	/**
+	 * A record header as read from a segment.
+	 */
+	private static class Record
+	{
+		private byte state;
+
+		private long sequence;
+
+		private int pageId;
+
+		private String sessionId;
+
+		private int dataLength;
+
+		/** size of the record including the header */
+		private int size;
+
+		/** the position of the record, only used during compaction */
+		private int offset;
+	}
+
+	/**
+	 * A single memory mapped segment file.
+	 */
+	private static class Segment
+	{
+		private final File file;
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		private final int capacity;
+
+		/** the end of the last record */
+		private int writePosition;
+
+		/** the sum of the sizes of the live records */
+		private int liveBytes;
+
+		private Segment(File file, int capacity) throws IOException
+		{
+			this.file = file;
+			this.capacity = capacity;
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			try
+			{
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			}
+			catch (IOException e)
+			{
+				IOUtils.closeQuietly(channel);
+				throw e;
+			}
+		}
+
+		private int remaining()
+		{
+			return capacity - writePosition;
+		}
+
+		private Location append(long sequence, int pageId, byte[] sessionId, byte[] data)
+		{
+			ByteBuffer view = buffer.duplicate();
+			view.position(writePosition);
+
+			// write the magic last so that a partially written record is not recovered
+			view.putInt(0);
+			view.put(STATE_LIVE);
+			view.putLong(sequence);
+			view.putInt(pageId);
+			view.putInt(sessionId.length);
+			view.putInt(data.length);
+			view.put(sessionId);
+			view.put(data);
+			int end = view.position();
+			terminate(end);
+			buffer.putInt(writePosition, MAGIC);
+
+			Record record = new Record();
+			record.state = STATE_LIVE;
+			record.sequence = sequence;
+			record.pageId = pageId;
+			record.dataLength = data.length;
+			record.size = end - writePosition;
+
+			Location location = new Location(this, writePosition, record);
+			writePosition = end;
+			liveBytes += record.size;
+			return location;
+		}
+
+		private byte[] read(Location location)
+		{
+			byte[] data = new byte[location.dataLength];
+			ByteBuffer view = buffer.duplicate();
+			view.position(location.offset + location.dataOffset);
+			view.get(data);
+			return data;
+		}
+
+		private void kill(Location location)
+		{
+			kill(location.offset, location.recordSize);
+		}
+
+		private void kill(int offset, int recordSize)
+		{
+			buffer.put(offset + STATE_OFFSET, STATE_DEAD);
+			liveBytes -= recordSize;
+		}
+
+		private Record readRecord(int position)
+		{
+			Record record = readRecordIfValid(position);
+			if (record == null)
+			{
+				throw new IllegalStateException("Corrupt record at " + position + " in " + this);
+			}
+			return record;
+		}
+
+		private Record readRecordIfValid(int position)
+		{
+			if (capacity - position < HEADER_SIZE || buffer.getInt(position) != MAGIC)
+			{
+				return null;
+			}
+
+			ByteBuffer view = buffer.duplicate();
+			view.position(position + 4);
+
+			Record record = new Record();
+			record.state = view.get();
+			record.sequence = view.getLong();
+			record.pageId = view.getInt();
+			int sessionIdLength = view.getInt();
+			record.dataLength = view.getInt();
+			if (sessionIdLength < 0 || record.dataLength < 0 ||
+				(long)sessionIdLength + record.dataLength > capacity - position - HEADER_SIZE)
+			{
+				return null;
+			}
+
+			byte[] sessionId = new byte[sessionIdLength];
+			view.get(sessionId);
+			record.sessionId = new String(sessionId, StandardCharsets.UTF_8);
+			record.size = HEADER_SIZE + sessionIdLength + record.dataLength;
+			return record;
+		}
+
+		/**
+		 * Appends a record of another segment.
+		 *
+		 * @return the position of the copy
+		 */
+		private int copy(Segment source, int position, int recordSize)
+		{
+			ByteBuffer record = source.buffer.duplicate();
+			record.limit(position + recordSize);
+			record.position(position + 4);
+
+			// like append() write the magic last
+			ByteBuffer view = buffer.duplicate();
+			view.position(writePosition);
+			view.putInt(0);
+			view.put(record);
+			int end = view.position();
+			terminate(end);
+			buffer.putInt(writePosition, MAGIC);
+
+			int offset = writePosition;
+			writePosition = end;
+			liveBytes += recordSize;
+			return offset;
+		}
+
+		private void truncate(int position)
+		{
+			writePosition = position;
+			terminate(position);
+		}
+
+		/**
+		 * Marks the end of the records so that stale data behind it is not recovered.
+		 */
+		private void terminate(int position)
+		{
+			if (capacity - position >= 4)
+			{
+				buffer.putInt(position, 0);
+			}
+		}
+
+		private void close()
+		{
+			buffer.force();
+			IOUtils.closeQuietly(channel);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Segment [file=" + file + ", writePosition=" + writePosition + ", liveBytes=" +
+				liveBytes + "]";
+		}
+	}
+}
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * A {@link SecondLevelPageCache} for {@link DefaultPageStore} which keeps the serialized pages
+ * outside of the Java heap, in direct {@link ByteBuffer} slabs.
+ * <p>
+ * The cache is bounded by a byte budget instead of a number of pages. The slabs are allocated
+ * lazily and divided in blocks of fixed size; a page occupies as many blocks as needed. When the
+ * budget is exhausted pages are evicted with the CLOCK (second chance) algorithm. Additionally no
+ * session may occupy more than its quota, so a single session cannot push all others out.
+ * <p>
+ * Pages are copied back to the heap on every {@link #getPage(String, Integer)}.
+ */
+public class OffHeapPageCache implements SecondLevelPageCache<String, Integer, SerializedPage>
+{
+	/**
+	 * The default size of a block
+	 */
+	public static final Bytes DEFAULT_BLOCK_SIZE = Bytes.kilobytes(4);
+
+	/** the number of blocks allocated at once */
+	private static final int BLOCKS_PER_SLAB = 256;
+
+	private final int blockSize;
+
+	private final int maxBlocks;
+
+	private final int maxBlocksPerSession;
+
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+
+	/** indices of the free blocks in the allocated slabs */
+	private int[] freeBlocks = new int[0];
+
+	private int freeBlockCount = 0;
+
+	/** the number of blocks in the allocated slabs */
+	private int allocatedBlocks = 0;
+
+	/** the cached pages, in the order of the clock */
+	private final LinkedHashMap<Key, CacheEntry> entries = new LinkedHashMap<>();
+
+	private final Map<String, SessionEntries> sessions = new HashMap<>();
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            the maximum number of bytes used by the cache
+	 * @param maxSizePerSession
+	 *            the maximum number of bytes used by the pages of a single session
+	 */
+	public OffHeapPageCache(final Bytes maxSize, final Bytes maxSizePerSession)
+	{
+		this(maxSize, maxSizePerSession, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            the maximum number of bytes used by the cache
+	 * @param maxSizePerSession
+	 *            the maximum number of bytes used by the pages of a single session
+	 * @param blockSize
+	 *            the unit of allocation
+	 */
+	public OffHeapPageCache(final Bytes maxSize, final Bytes maxSizePerSession,
+		final Bytes blockSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+		Args.notNull(maxSizePerSession, "maxSizePerSession");
+		Args.notNull(blockSize, "blockSize");
+		this.blockSize = Args.withinRange(1L, (long)Integer.MAX_VALUE / BLOCKS_PER_SLAB,
+			blockSize.bytes(), "blockSize").intValue();
+		maxBlocks = (int)Math.min(maxSize.bytes() / this.blockSize, Integer.MAX_VALUE);
+		maxBlocksPerSession = (int)Math.min(maxSizePerSession.bytes() / this.blockSize,
+			Integer.MAX_VALUE);
+	}
+
+	@Override
+	public synchronized SerializedPage removePage(final String sessionId, final Integer pageId)
+	{
+		Args.notNull(sessionId, "sessionId");
+		Args.notNull(pageId, "pageId");
+
+		CacheEntry entry = entries.get(new Key(sessionId, pageId));
+		if (entry != null)
+		{
+			SerializedPage page = new SerializedPage(sessionId, pageId, read(entry));
+			remove(entry);
+			return page;
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized void removePages(final String sessionId)
+	{
+		Args.notNull(sessionId, "sessionId");
+
+		SessionEntries session = sessions.get(sessionId);
+		if (session != null)
+		{
+			for (Integer pageId : new ArrayList<>(session.pageIds))
+			{
+				remove(entries.get(new Key(sessionId, pageId)));
+			}
+		}
+	}
+
+	@Override
+	public synchronized SerializedPage getPage(final String sessionId, final Integer pageId)
+	{
+		Args.notNull(sessionId, "sessionId");
+		Args.notNull(pageId, "pageId");
+
+		CacheEntry entry = entries.get(new Key(sessionId, pageId));
+		if (entry == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		entry.referenced = true;
+		return new SerializedPage(sessionId, pageId, read(entry));
+	}
+
+	@Override
+	public synchronized void storePage(final String sessionId, final Integer pageId,
+		final SerializedPage page)
+	{
+		Args.notNull(sessionId, "sessionId");
+		Args.notNull(pageId, "pageId");
+		Args.notNull(page, "page");
+
+		Key key = new Key(sessionId, pageId);
+		CacheEntry existing = entries.get(key);
+		if (existing != null)
+		{
+			remove(existing);
+		}
+
+		byte[] data = page.getData();
+		if (data == null)
+		{
+			// stripped page, nothing to cache
+			return;
+		}
+
+		int blockCount = Math.max(1, (data.length + blockSize - 1) / blockSize);
+		if (blockCount > maxBlocks || blockCount > maxBlocksPerSession)
+		{
+			return;
+		}
+
+		SessionEntries session = sessions.get(sessionId);
+		if (session != null)
+		{
+			// make room within the quota of the session, oldest pages first
+			while (session.blockCount + blockCount > maxBlocksPerSession)
+			{
+				Integer oldest = session.pageIds.iterator().next();
+				evict(entries.get(new Key(sessionId, oldest)));
+			}
+		}
+
+		int[] blocks = allocate(blockCount);
+		write(blocks, data);
+
+		CacheEntry entry = new CacheEntry(key, blocks, data.length);
+		entries.put(key, entry);
+
+		session = sessions.get(sessionId);
+		if (session == null)
+		{
+			session = new SessionEntries();
+			sessions.put(sessionId, session);
+		}
+		session.pageIds.add(pageId);
+		session.blockCount += blockCount;
+	}
+
+	@Override
+	public synchronized void destroy()
+	{
+		entries.clear();
+		sessions.clear();
+		slabs.clear();
+		freeBlocks = new int[0];
+		freeBlockCount = 0;
+		allocatedBlocks = 0;
+	}
+
+	/**
+	 * @return the number of bytes occupied by the cached pages
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return (long)(allocatedBlocks - freeBlockCount) * blockSize;
+	}
+
+	/**
+	 * @return the number of bytes allocated outside of the heap
+	 */
+	public synchronized long getAllocatedBytes()
+	{
+		return (long)allocatedBlocks * blockSize;
+	}
+
+	/**
+	 * @return the number of cached pages
+	 */
+	public synchronized int getPageCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of lookups which found a page
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups which did not find a page
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of pages evicted to make room for others
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Takes the given number of free blocks, allocating new slabs or evicting pages if needed.
+	 */
+	private int[] allocate(int blockCount)
+	{
+		while (freeBlockCount < blockCount)
+		{
+			if (allocatedBlocks < maxBlocks)
+			{
+				addSlab(Math.min(BLOCKS_PER_SLAB, maxBlocks - allocatedBlocks));
+			}
+			else
+			{
+				evictByClock();
+			}
+		}
+
+		int[] blocks = new int[blockCount];
+		for (int i = 0; i < blockCount; i++)
+		{
+			blocks[i] = freeBlocks[--freeBlockCount];
+		}
+		return blocks;
+	}
+
+	private void addSlab(int blockCount)
+	{
+		int first = slabs.size() * BLOCKS_PER_SLAB;
+		slabs.add(ByteBuffer.allocateDirect(blockCount * blockSize));
+		allocatedBlocks += blockCount;
+
+		int[] grown = new int[freeBlocks.length + blockCount];
+		System.arraycopy(freeBlocks, 0, grown, 0, freeBlockCount);
+		freeBlocks = grown;
+		for (int i = blockCount - 1; i >= 0; i--)
+		{
+			freeBlocks[freeBlockCount++] = first + i;
+		}
+	}
+
+	/**
+	 * Evicts the first page in the clock which has not been referenced since the hand passed it
+	 * the last time.
+	 */
+	private void evictByClock()
+	{
+		while (true)
+		{
+			Iterator<CacheEntry> hand = entries.values().iterator();
+			CacheEntry entry = hand.next();
+			hand.remove();
+			if (entry.referenced)
+			{
+				// second chance
+				entry.referenced = false;
+				entries.put(entry.key, entry);
+			}
+			else
+			{
+				entries.put(entry.key, entry);
+				evict(entry);
+				return;
+			}
+		}
+	}
+
+	private void evict(CacheEntry entry)
+	{
+		remove(entry);
+		evictions++;
+	}
+
+	private void remove(CacheEntry entry)
+	{
+		entries.remove(entry.key);
+
+		SessionEntries session = sessions.get(entry.key.sessionId);
+		session.pageIds.remove(entry.key.pageId);
+		session.blockCount -= entry.blocks.length;
+		if (session.pageIds.isEmpty())
+		{
+			sessions.remove(entry.key.sessionId);
+		}
+
+		for (int block : entry.blocks)
+		{
+			freeBlocks[freeBlockCount++] = block;
+		}
+	}
+
+	private void write(int[] blocks, byte[] data)
+	{
+		int offset = 0;
+		for (int block : blocks)
+		{
+			int length = Math.min(blockSize, data.length - offset);
+			ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+			slab.position((block % BLOCKS_PER_SLAB) * blockSize);
+			slab.put(data, offset, length);
+			offset += length;
+		}
+	}
+
+	private byte[] read(CacheEntry entry)
+	{
+		byte[] data = new byte[entry.length];
+		int offset = 0;
+		for (int block : entry.blocks)
+		{
+			int length = Math.min(blockSize, data.length - offset);
+			ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+			slab.position((block % BLOCKS_PER_SLAB) * blockSize);
+			slab.get(data, offset, length);
+			offset += length;
+		}
+		return data;
+	}
+
+	/**
+	 * Identifies a cached page.
+	 */
+	private static class Key
+	{
+		private final String sessionId;
+
+		private final int pageId;
+
+		private Key(String sessionId, int pageId)
+		{
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof Key) == false)
+			{
+				return false;
+			}
+			Key rhs = (Key)obj;
+			return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hashCode(pageId, sessionId);
+		}
+	}
+
+	/**
+	 * A cached page.
+	 */
+	private static class CacheEntry
+	{
+		private final Key key;
+
+		private final int[] blocks;
+
+		private final int length;
+
+		/** whether the page has been read since the clock hand passed it */
+		private boolean referenced;
+
+		private CacheEntry(Key key, int[] blocks, int length)
+		{
+			this.key = key;
+			this.blocks = blocks;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The cached pages of a session, oldest first.
+	 */
+	private static class SessionEntries
+	{
+		private final LinkedHashSet<Integer> pageIds = new LinkedHashSet<>();
+
+		private int blockCount;
+	}
+}
@@ -16,9 +16,13 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.wicket.util.collections.IntHashMap;
 
@@ -28,6 +32,10 @@ import org.apache.wicket.util.collections.IntHashMap;
  * The pages are stored inside the file in a cyclic way. Newer pages are placed after older ones,
  * until the maximum file size is reached. After that, the next page is stored in the beginning of
  * the file.
+ * <p>
+ * Lookups only need a read lock, so they can proceed concurrently with each other. The returned
+ * {@link PageWindow}s are snapshots; {@link #isCurrent(PageWindow)} tells whether a window is still
+ * allocated to its page, e.g. after its data has been read without holding off the writers.
  * 
  * @author Matej Knopp
  */
@@ -52,8 +60,17 @@ public class PageWindowManager implements Serializable
 
 		/** size of serialized page data */
 		private int filePartSize;
+
+		/** unique number of the allocation of this window for its page */
+		private long generation;
 	}
 
+	/** guards the state of this manager */
+	private transient ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** the number of page windows allocated so far */
+	private long generation = 0;
+
 	/** list of PageWindowInternal objects */
 	private final List<PageWindowInternal> windows = new ArrayList<PageWindowInternal>();
 
@@ -145,6 +162,31 @@ public class PageWindowManager implements Serializable
 		return result != null ? result : -1;
 	}
 
+	/**
+	 * Returns the index of the given page in the {@link #windows} list without modifying the
+	 * indices, so that it is safe to call while holding the read lock only.
+	 * 
+	 * @param pageId
+	 * @return window index
+	 */
+	private int findWindowIndex(int pageId)
+	{
+		if (idToWindowIndex != null)
+		{
+			Integer result = idToWindowIndex.get(pageId);
+			return result != null ? result : -1;
+		}
+
+		for (int i = 0; i < windows.size(); ++i)
+		{
+			if (windows.get(i).pageId == pageId)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Increments the {@link #indexPointer}. If the maximum file size has been reached, the
 	 * {@link #indexPointer} is set to 0.
@@ -321,13 +363,19 @@ public class PageWindowManager implements Serializable
 	}
 
 	/**
-	 * Public (read only) version of page window.
+	 * Public (read only) snapshot of page window.
 	 * 
 	 * @author Matej Knopp
 	 */
 	public static class PageWindow
 	{
-		private final PageWindowInternal pageWindowInternal;
+		private final int pageId;
+
+		private final int filePartOffset;
+
+		private final int filePartSize;
+
+		private final long generation;
 
 		/**
 		 * Construct.
@@ -336,7 +384,10 @@ public class PageWindowManager implements Serializable
 		 */
 		private PageWindow(PageWindowInternal pageWindowInternal)
 		{
-			this.pageWindowInternal = pageWindowInternal;
+			pageId = pageWindowInternal.pageId;
+			filePartOffset = pageWindowInternal.filePartOffset;
+			filePartSize = pageWindowInternal.filePartSize;
+			generation = pageWindowInternal.generation;
 		}
 
 		/**
@@ -344,7 +395,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getPageId()
 		{
-			return pageWindowInternal.pageId;
+			return pageId;
 		}
 
 		/**
@@ -352,7 +403,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartOffset()
 		{
-			return pageWindowInternal.filePartOffset;
+			return filePartOffset;
 		}
 
 		/**
@@ -360,7 +411,15 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartSize()
 		{
-			return pageWindowInternal.filePartSize;
+			return filePartSize;
+		}
+
+		/**
+		 * @return unique number of the allocation of this window
+		 */
+		long getGeneration()
+		{
+			return generation;
 		}
 	}
 
@@ -371,30 +430,45 @@ public class PageWindowManager implements Serializable
 	 * @param size
 	 * @return page window
 	 */
-	public synchronized PageWindow createPageWindow(int pageId, int size)
+	public PageWindow createPageWindow(int pageId, int size)
 	{
-		int index = getWindowIndex(pageId);
-
-		// if we found the page window, mark it as invalid
-		if (index != -1)
+		lock.writeLock().lock();
+		try
 		{
-			removeWindowIndex(pageId);
-			(windows.get(index)).pageId = -1;
-		}
+			int index = getWindowIndex(pageId);
 
-		// if we are not going to reuse a page window (because it's not on
-		// indexPointer position or because we didn't find it), increment the
-		// indexPointer
-		if (index == -1 || index != indexPointer)
-		{
-			index = incrementIndexPointer();
-		}
+			// if we found the page window, mark it as invalid
+			if (index != -1)
+			{
+				removeWindowIndex(pageId);
+				(windows.get(index)).pageId = -1;
+			}
+
+			// if we are not going to reuse a page window (because it's not on
+			// indexPointer position or because we didn't find it), increment the
+			// indexPointer
+			if (index == -1 || index != indexPointer)
+			{
+				index = incrementIndexPointer();
+			}
 
-		PageWindowInternal window = allocatePageWindow(index, size);
-		window.pageId = pageId;
+			PageWindowInternal window = allocatePageWindow(index, size);
+			window.pageId = pageId;
+			window.generation = ++generation;
 
-		putWindowIndex(pageId, index);
-		return new PageWindow(window);
+			putWindowIndex(pageId, index);
+
+			// readers must not rebuild the indices
+			if (idToWindowIndex == null)
+			{
+				rebuildIndices();
+			}
+			return new PageWindow(window);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -403,14 +477,43 @@ public class PageWindowManager implements Serializable
 	 * @param pageId
 	 * @return page window or null
 	 */
-	public synchronized PageWindow getPageWindow(int pageId)
+	public PageWindow getPageWindow(int pageId)
 	{
-		int index = getWindowIndex(pageId);
-		if (index != -1)
+		lock.readLock().lock();
+		try
+		{
+			int index = findWindowIndex(pageId);
+			if (index != -1)
+			{
+				return new PageWindow(windows.get(index));
+			}
+			return null;
+		}
+		finally
 		{
-			return new PageWindow(windows.get(index));
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks whether the given window is still allocated to its page, i.e. the page has been
+	 * neither removed nor stored again since the window was obtained.
+	 * 
+	 * @param window
+	 * @return {@code true} if the data in the window still belongs to the page
+	 */
+	public boolean isCurrent(PageWindow window)
+	{
+		lock.readLock().lock();
+		try
+		{
+			int index = findWindowIndex(window.getPageId());
+			return index != -1 && windows.get(index).generation == window.getGeneration();
+		}
+		finally
+		{
+			lock.readLock().unlock();
 		}
-		return null;
 	}
 
 	/**
@@ -418,27 +521,35 @@ public class PageWindowManager implements Serializable
 	 * 
 	 * @param pageId
 	 */
-	public synchronized void removePage(int pageId)
+	public void removePage(int pageId)
 	{
-		int index = getWindowIndex(pageId);
-		if (index != -1)
+		lock.writeLock().lock();
+		try
 		{
-			PageWindowInternal window = windows.get(index);
-			removeWindowIndex(pageId);
-			if (index == windows.size() - 1)
+			int index = getWindowIndex(pageId);
+			if (index != -1)
 			{
-				windows.remove(index);
-				totalSize -= window.filePartSize;
-				if (indexPointer == index)
+				PageWindowInternal window = windows.get(index);
+				removeWindowIndex(pageId);
+				if (index == windows.size() - 1)
 				{
-					--indexPointer;
+					windows.remove(index);
+					totalSize -= window.filePartSize;
+					if (indexPointer == index)
+					{
+						--indexPointer;
+					}
+				}
+				else
+				{
+					window.pageId = -1;
 				}
-			}
-			else
-			{
-				window.pageId = -1;
 			}
 		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -447,37 +558,45 @@ public class PageWindowManager implements Serializable
 	 * @param count
 	 * @return list of page windows
 	 */
-	public synchronized List<PageWindow> getLastPageWindows(int count)
+	public List<PageWindow> getLastPageWindows(int count)
 	{
 		List<PageWindow> result = new ArrayList<PageWindow>();
 
-		// start from current index to 0
-		int currentIndex = indexPointer;
-
-		do
+		lock.readLock().lock();
+		try
 		{
-			if (currentIndex == -1)
-			{
-				break;
-			}
+			// start from current index to 0
+			int currentIndex = indexPointer;
 
-			if (currentIndex < windows.size())
+			do
 			{
-				PageWindowInternal window = windows.get(currentIndex);
-				if (window.pageId != -1)
+				if (currentIndex == -1)
 				{
-					result.add(new PageWindow(window));
+					break;
 				}
-			}
 
-			--currentIndex;
-			if (currentIndex == -1)
-			{
-				// rewind to the last entry and collect all entries until current index
-				currentIndex = windows.size() - 1;
+				if (currentIndex < windows.size())
+				{
+					PageWindowInternal window = windows.get(currentIndex);
+					if (window.pageId != -1)
+					{
+						result.add(new PageWindow(window));
+					}
+				}
+
+				--currentIndex;
+				if (currentIndex == -1)
+				{
+					// rewind to the last entry and collect all entries until current index
+					currentIndex = windows.size() - 1;
+				}
 			}
+			while (result.size() < count && currentIndex != indexPointer);
+		}
+		finally
+		{
+			lock.readLock().unlock();
 		}
-		while (result.size() < count && currentIndex != indexPointer);
 
 		return result;
 	}
@@ -494,13 +613,27 @@ public class PageWindowManager implements Serializable
 		this.maxSize = maxSize;
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		lock = new ReentrantReadWriteLock();
+	}
+
 	/**
 	 * Returns the size of all saved pages
 	 * 
 	 * @return total size
 	 */
-	public synchronized int getTotalSize()
+	public int getTotalSize()
 	{
-		return totalSize;
+		lock.readLock().lock();
+		try
+		{
+			return totalSize;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
 	}
 }
@@ -16,24 +16,30 @@
  */
 package org.apache.wicket.pageStore;
 
-import java.lang.ref.SoftReference;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.LinkedHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.wicket.core.util.lang.WicketObjects;
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * A page store that uses a SecondLevelPageCache with the last N used page instances
  * per session.
  *
- * <strong>Note</strong>: the size of the cache depends on the {@code cacheSize} constructor
- * parameter multiplied by the number of the active http sessions.
+ * <strong>Note</strong>: the cache keeps at most {@code cacheSize} pages per session, so
+ * its size depends on the number of the active http sessions. It also keeps at most
+ * {@code maxSize} bytes in total, measured by the size of the serialized pages. When the
+ * total size is exceeded the least recently used pages of the sessions occupying more than
+ * their fair share are evicted first.
  *
  * It depends on the application use cases but usually a reasonable value of
  * {@code cacheSize} would be just a few pages (2-3). If the application don't expect many
@@ -42,6 +48,11 @@ import org.apache.wicket.util.lang.Args;
  */
 public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePage>
 {
+	/**
+	 * The default maximum size of all cached pages of all sessions
+	 */
+	public static final Bytes DEFAULT_MAX_SIZE = Bytes.megabytes(100);
+
 	/**
 	 * Constructor.
 	 *
@@ -56,7 +67,45 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 	public PerSessionPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
 	                           final int cacheSize)
 	{
-		super(pageSerializer, dataStore, new PagesCache(cacheSize));
+		this(pageSerializer, dataStore, cacheSize, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pageSerializer
+	 *            the {@link org.apache.wicket.serialize.ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link org.apache.wicket.pageStore.IDataStore} that actually stores the pages
+	 * @param cacheSize
+	 *            the number of pages to cache per session
+	 * @param maxSize
+	 *            the maximum size of all cached pages of all sessions
+	 */
+	public PerSessionPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+	                           final int cacheSize, final Bytes maxSize)
+	{
+		super(pageSerializer, dataStore, new PagesCache(cacheSize, maxSize));
+	}
+
+	@Override
+	public void storePage(final String sessionId, final IManageablePage page)
+	{
+		byte[] data = serializePage(page);
+		if (data != null)
+		{
+			int pageId = page.getPageId();
+			((PagesCache)pagesCache).storePage(sessionId, pageId, page, data.length);
+			storePageData(sessionId, pageId, data);
+		}
+	}
+
+	/**
+	 * @return the statistics of the cache
+	 */
+	public PagesCache.Statistics getStatistics()
+	{
+		return ((PagesCache)pagesCache).getStatistics();
 	}
 
 	@Override
@@ -77,75 +126,113 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 
 	/**
 	 * An implementation of SecondLevelPageCache that stores the last used N live page instances
-	 * per http session.
+	 * per http session, bounded by the total size of the pages.
+	 * <p>
+	 * The pages of each session are guarded by their own lock, so sessions do not contend with
+	 * each other. The size of a page is the length of its serialized form. When the total size is
+	 * exceeded, the victims are taken from a global queue of all pages in the order they were
+	 * stored, giving pages used since then or of sessions within their fair share a second chance.
+	 * This approximates the least recently used page without looking at every session.
 	 */
 	protected static class PagesCache implements SecondLevelPageCache<String, Integer, IManageablePage>
 	{
 		/**
-		 * Helper class used to compare the page entries in the cache by their
-		 * access time
+		 * The maximum number of pages given a second chance by a single eviction
+		 */
+		private static final int MAX_SECOND_CHANCES = 64;
+
+		/**
+		 * A cached page with its size
 		 */
 		private static class PageValue
 		{
+			private final String sessionId;
+
+			private final int pageId;
+
+			private final long size;
+
 			/**
-			 * The id of the cached page
+			 * The page, guarded by the lock of its session's pages and cleared once removed
 			 */
-			private final int pageId;
+			private IManageablePage page;
 
 			/**
-			 * The last time this page has been used/accessed.
+			 * Whether the page has been used since it was last considered for eviction
 			 */
-			private long accessTime;
+			private volatile boolean referenced;
 
-			private PageValue(IManageablePage page)
-			{
-				this(page.getPageId());
-			}
+			/**
+			 * Whether the page has been removed from its session's pages
+			 */
+			private volatile boolean removed;
 
-			private PageValue(int pageId)
+			private PageValue(String sessionId, int pageId, IManageablePage page, long size)
 			{
+				this.sessionId = sessionId;
 				this.pageId = pageId;
-				touch();
+				this.page = page;
+				this.size = size;
 			}
+		}
+
+		/**
+		 * The cached pages of a single session
+		 */
+		private static class SessionPages
+		{
+			private final ReentrantLock lock = new ReentrantLock();
 
 			/**
-			 * Updates the access time with the current time
+			 * The pages by their id, least recently used first
 			 */
-			private void touch()
-			{
-				accessTime = System.nanoTime();
-			}
+			private final LinkedHashMap<Integer, PageValue> pages = new LinkedHashMap<>(16, 0.75f, true);
 
-			@Override
-			public boolean equals(Object o)
-			{
-				if (this == o) return true;
-				if (o == null || getClass() != o.getClass()) return false;
+			/**
+			 * The total size of the pages, written while holding the lock
+			 */
+			private volatile long size;
+
+			/**
+			 * Whether these pages have been removed from the cache, a page must not be added
+			 * anymore
+			 */
+			private boolean removed;
+		}
 
-				PageValue pageValue = (PageValue) o;
+		private final int maxEntriesPerSession;
 
-				return pageId == pageValue.pageId;
-			}
+		private final long maxSize;
 
-			@Override
-			public int hashCode()
-			{
-				return pageId;
-			}
-		}
+		private final ConcurrentMap<String, SessionPages> cache = new ConcurrentHashMap<>();
 
-		private static class PageComparator implements Comparator<PageValue>
-		{
-			@Override
-			public int compare(PageValue p1, PageValue p2)
-			{
-				return Long.compare(p1.accessTime, p2.accessTime);
-			}
-		}
+		/**
+		 * All cached pages in the order they were stored or given a second chance. Removed pages
+		 * are dropped when they are polled or purged.
+		 */
+		private final ConcurrentLinkedQueue<PageValue> queue = new ConcurrentLinkedQueue<>();
 
-		private final int maxEntriesPerSession;
+		/**
+		 * The number of pages in the queue, including the removed ones
+		 */
+		private final AtomicInteger queued = new AtomicInteger();
+
+		/**
+		 * The number of cached pages
+		 */
+		private final AtomicInteger pageCount = new AtomicInteger();
 
-		private final ConcurrentMap<String, SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>>> cache;
+		/**
+		 * The total size of the cached pages
+		 */
+		private final AtomicLong size = new AtomicLong();
+
+		/**
+		 * Only one thread evicts or purges at a time, the others do not wait for it
+		 */
+		private final ReentrantLock evictionLock = new ReentrantLock();
+
+		private final Statistics statistics = new Statistics();
 
 		/**
 		 * Constructor.
@@ -154,9 +241,22 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 		 *          The number of cache entries per session
 		 */
 		public PagesCache(final int maxEntriesPerSession)
+		{
+			this(maxEntriesPerSession, DEFAULT_MAX_SIZE);
+		}
+
+		/**
+		 * Constructor.
+		 *
+		 * @param maxEntriesPerSession
+		 *          The number of cache entries per session
+		 * @param maxSize
+		 *          The maximum size of all cached pages
+		 */
+		public PagesCache(final int maxEntriesPerSession, final Bytes maxSize)
 		{
 			this.maxEntriesPerSession = maxEntriesPerSession;
-			cache = new ConcurrentHashMap<>();
+			this.maxSize = Args.notNull(maxSize, "maxSize").bytes();
 		}
 
 		/**
@@ -177,25 +277,23 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 				Args.notNull(sessionId, "sessionId");
 				Args.notNull(pageId, "pageId");
 
-				SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>> pagesPerSession = cache.get(sessionId);
+				SessionPages pagesPerSession = cache.get(sessionId);
 				if (pagesPerSession != null)
 				{
-					ConcurrentMap<PageValue, IManageablePage> pages = pagesPerSession.get();
-					if (pages != null)
+					pagesPerSession.lock.lock();
+					try
 					{
-						PageValue sample = new PageValue(pageId);
-						Iterator<Map.Entry<PageValue, IManageablePage>> iterator = pages.entrySet().iterator();
-						while (iterator.hasNext())
+						PageValue value = pagesPerSession.pages.get(pageId);
+						if (value != null)
 						{
-							Map.Entry<PageValue, IManageablePage> entry = iterator.next();
-							if (sample.equals(entry.getKey()))
-							{
-								result = entry.getValue();
-								iterator.remove();
-								break;
-							}
+							result = value.page;
+							remove(pagesPerSession, value);
 						}
 					}
+					finally
+					{
+						pagesPerSession.lock.unlock();
+					}
 				}
 			}
 
@@ -216,7 +314,27 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 
 			if (maxEntriesPerSession > 0)
 			{
-				cache.remove(sessionId);
+				SessionPages pagesPerSession = cache.remove(sessionId);
+				if (pagesPerSession != null)
+				{
+					pagesPerSession.lock.lock();
+					try
+					{
+						pagesPerSession.removed = true;
+						for (PageValue value : pagesPerSession.pages.values())
+						{
+							clear(value);
+						}
+						pageCount.addAndGet(-pagesPerSession.pages.size());
+						pagesPerSession.pages.clear();
+						size.addAndGet(-pagesPerSession.size);
+						pagesPerSession.size = 0;
+					}
+					finally
+					{
+						pagesPerSession.lock.unlock();
+					}
+				}
 			}
 		}
 
@@ -241,86 +359,395 @@ public class PerSessionPageStore extends AbstractCachingPageStore<IManageablePag
 				Args.notNull(sessionId, "sessionId");
 				Args.notNull(pageId, "pageId");
 
-				SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>> pagesPerSession = cache.get(sessionId);
+				SessionPages pagesPerSession = cache.get(sessionId);
 				if (pagesPerSession != null)
 				{
-					ConcurrentSkipListMap<PageValue, IManageablePage> pages = pagesPerSession.get();
-					if (pages != null)
+					pagesPerSession.lock.lock();
+					try
 					{
-						PageValue sample = new PageValue(pageId);
-						for (Map.Entry<PageValue, IManageablePage> entry : pages.entrySet())
+						// touch the entry
+						PageValue value = pagesPerSession.pages.get(pageId);
+						if (value != null)
 						{
-							if (sample.equals(entry.getKey()))
-							{
-								// touch the entry
-								entry.getKey().touch();
-								result = entry.getValue();
-								break;
-							}
+							value.referenced = true;
+							result = value.page;
 						}
 					}
+					finally
+					{
+						pagesPerSession.lock.unlock();
+					}
+				}
+
+				if (result != null)
+				{
+					statistics.hits.incrementAndGet();
+				}
+				else
+				{
+					statistics.misses.incrementAndGet();
 				}
 			}
 			return result;
 		}
 
 		/**
-		 * Store the serialized page in cache
+		 * Store the page in cache. Its size is estimated by {@link #sizeOf(IManageablePage)}.
 		 * 
 		 * @param page
-		 *      the data to serialize (page id, session id, bytes)
+		 *      the page to cache
 		 */
 		@Override
 		public void storePage(String sessionId, Integer pageId, IManageablePage page)
+		{
+			if (maxEntriesPerSession > 0)
+			{
+				storePage(sessionId, pageId, page, sizeOf(page));
+			}
+		}
+
+		/**
+		 * Store the page in cache.
+		 * 
+		 * @param sessionId
+		 *          The id of the http session
+		 * @param pageId
+		 *          The id of the page
+		 * @param page
+		 *          the page to cache
+		 * @param pageSize
+		 *          the size of the page, usually the length of its serialized form
+		 */
+		public void storePage(String sessionId, Integer pageId, IManageablePage page,
+			long pageSize)
 		{
 			if (maxEntriesPerSession > 0)
 			{
 				Args.notNull(sessionId, "sessionId");
 				Args.notNull(pageId, "pageId");
 
-				SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>> pagesPerSession = cache.get(sessionId);
-				if (pagesPerSession == null)
+				if (pageSize > maxSize)
+				{
+					// would evict everything else
+					removePage(sessionId, pageId);
+					statistics.rejectedPages.incrementAndGet();
+					return;
+				}
+
+				PageValue value = new PageValue(sessionId, pageId, page, pageSize);
+				while (true)
 				{
-					ConcurrentSkipListMap<PageValue, IManageablePage> pages = new ConcurrentSkipListMap<>(new PageComparator());
-					pagesPerSession = new SoftReference<>(pages);
-					SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>> old = cache.putIfAbsent(sessionId, pagesPerSession);
-					if (old != null)
+					SessionPages pagesPerSession = cache.computeIfAbsent(sessionId,
+						key -> new SessionPages());
+					pagesPerSession.lock.lock();
+					try
 					{
-						pagesPerSession = old;
+						if (pagesPerSession.removed)
+						{
+							// removed concurrently, try again with new pages
+							continue;
+						}
+
+						PageValue old = pagesPerSession.pages.put(pageId, value);
+						if (old != null)
+						{
+							clear(old);
+							pagesPerSession.size -= old.size;
+							size.addAndGet(-old.size);
+						}
+						else
+						{
+							pageCount.incrementAndGet();
+						}
+						pagesPerSession.size += pageSize;
+						size.addAndGet(pageSize);
+						enqueue(value);
+
+						while (pagesPerSession.pages.size() > maxEntriesPerSession)
+						{
+							PageValue eldest = pagesPerSession.pages.values().iterator().next();
+							remove(pagesPerSession, eldest);
+						}
+						break;
+					}
+					finally
+					{
+						pagesPerSession.lock.unlock();
 					}
 				}
 
-				ConcurrentSkipListMap<PageValue, IManageablePage> pages = pagesPerSession.get();
-				if (pages == null)
+				if (size.get() > maxSize)
+				{
+					evict();
+				}
+				else if (queued.get() > 2 * pageCount.get() + MAX_SECOND_CHANCES)
+				{
+					purge();
+				}
+			}
+		}
+
+		/**
+		 * Estimates the size of a page whose serialized form is not known.
+		 * 
+		 * @param page
+		 * @return the size of the page in bytes
+		 */
+		protected long sizeOf(IManageablePage page)
+		{
+			return Math.max(0, WicketObjects.sizeof(page));
+		}
+
+		@Override
+		public void destroy()
+		{
+			for (String sessionId : cache.keySet())
+			{
+				removePages(sessionId);
+			}
+			purge();
+		}
+
+		/**
+		 * @return the total size of the cached pages
+		 */
+		public long getSize()
+		{
+			return size.get();
+		}
+
+		/**
+		 * @return the number of cached pages
+		 */
+		public int getPageCount()
+		{
+			return pageCount.get();
+		}
+
+		/**
+		 * @return the statistics of the cache
+		 */
+		public Statistics getStatistics()
+		{
+			return statistics;
+		}
+
+		/**
+		 * Used by tests
+		 * 
+		 * @return the number of pages in the eviction queue, including removed ones
+		 */
+		int getQueuedCount()
+		{
+			return queued.get();
+		}
+
+		/**
+		 * Evicts pages while the maximum size is exceeded. If another thread is evicting already,
+		 * this one does not wait for it. The evicting thread checks the size again after
+		 * releasing the lock, so pages stored meanwhile are not missed.
+		 */
+		private void evict()
+		{
+			while (size.get() > maxSize && evictionLock.tryLock())
+			{
+				try
 				{
-					pages = new ConcurrentSkipListMap<>();
-					pagesPerSession = new SoftReference<>(pages);
-					SoftReference<ConcurrentSkipListMap<PageValue, IManageablePage>> old = cache.putIfAbsent(sessionId, pagesPerSession);
-					if (old != null)
+					while (size.get() > maxSize)
 					{
-						pages = old.get();
+						if (evictOne() == false)
+						{
+							return;
+						}
 					}
 				}
+				finally
+				{
+					evictionLock.unlock();
+				}
+			}
+		}
+
+		/**
+		 * Evicts the page at the head of the queue, unless it has been used since it was queued or
+		 * its session is within its fair share of the total size. Such pages get a second chance
+		 * at the tail of the queue, at most {@value #MAX_SECOND_CHANCES} per eviction.
+		 * 
+		 * @return {@code false} if there was no page to evict
+		 */
+		private boolean evictOne()
+		{
+			int secondChances = 0;
+			PageValue value;
+			while ((value = queue.poll()) != null)
+			{
+				queued.decrementAndGet();
 
-				if (pages != null)
+				SessionPages pagesPerSession = cache.get(value.sessionId);
+				if (value.removed || pagesPerSession == null)
 				{
-					removePage(sessionId, pageId);
+					// removed, or concurrently removed with its session
+					continue;
+				}
 
-					PageValue pv = new PageValue(page);
-					pages.put(pv, page);
+				if (secondChances < MAX_SECOND_CHANCES)
+				{
+					long fairShare = maxSize / Math.max(1, cache.size());
+					if (value.referenced || pagesPerSession.size <= fairShare)
+					{
+						value.referenced = false;
+						enqueue(value);
+						secondChances++;
+						continue;
+					}
+				}
 
-					while (pages.size() > maxEntriesPerSession)
+				pagesPerSession.lock.lock();
+				try
+				{
+					if (pagesPerSession.pages.remove(value.pageId, value))
 					{
-						pages.pollFirstEntry();
+						removed(pagesPerSession, value);
+						statistics.evictions.incrementAndGet();
+						statistics.evictedBytes.addAndGet(value.size);
+						return true;
 					}
 				}
+				finally
+				{
+					pagesPerSession.lock.unlock();
+				}
 			}
+			return false;
 		}
 
-		@Override
-		public void destroy()
+		/**
+		 * Drops the removed pages from the queue, if no other thread is evicting or purging.
+		 */
+		private void purge()
+		{
+			if (evictionLock.tryLock())
+			{
+				try
+				{
+					Iterator<PageValue> values = queue.iterator();
+					while (values.hasNext())
+					{
+						if (values.next().removed)
+						{
+							values.remove();
+							queued.decrementAndGet();
+						}
+					}
+				}
+				finally
+				{
+					evictionLock.unlock();
+				}
+			}
+		}
+
+		/**
+		 * Removes a page, called while holding the lock of the session's pages.
+		 */
+		private void remove(SessionPages pagesPerSession, PageValue value)
+		{
+			if (pagesPerSession.pages.remove(value.pageId, value))
+			{
+				removed(pagesPerSession, value);
+			}
+		}
+
+		/**
+		 * Updates the sizes after a page has been removed from the session's pages, called while
+		 * holding their lock.
+		 */
+		private void removed(SessionPages pagesPerSession, PageValue value)
+		{
+			clear(value);
+			pageCount.decrementAndGet();
+			pagesPerSession.size -= value.size;
+			size.addAndGet(-value.size);
+
+			if (pagesPerSession.pages.isEmpty())
+			{
+				pagesPerSession.removed = true;
+				cache.remove(value.sessionId, pagesPerSession);
+			}
+		}
+
+		/**
+		 * Adds a page to the tail of the queue.
+		 */
+		private void enqueue(PageValue value)
+		{
+			queued.incrementAndGet();
+			queue.offer(value);
+		}
+
+		/**
+		 * Marks a removed page, it is dropped from the queue later.
+		 */
+		private static void clear(PageValue value)
 		{
-			cache.clear();
+			value.page = null;
+			value.removed = true;
+		}
+
+		/**
+		 * The statistics of a {@link PagesCache}
+		 */
+		public static class Statistics
+		{
+			private final AtomicLong hits = new AtomicLong();
+
+			private final AtomicLong misses = new AtomicLong();
+
+			private final AtomicLong evictions = new AtomicLong();
+
+			private final AtomicLong evictedBytes = new AtomicLong();
+
+			private final AtomicLong rejectedPages = new AtomicLong();
+
+			/**
+			 * @return the number of lookups which found a page
+			 */
+			public long getHits()
+			{
+				return hits.get();
+			}
+
+			/**
+			 * @return the number of lookups which did not find a page
+			 */
+			public long getMisses()
+			{
+				return misses.get();
+			}
+
+			/**
+			 * @return the number of pages evicted because the maximum size was exceeded
+			 */
+			public long getEvictions()
+			{
+				return evictions.get();
+			}
+
+			/**
+			 * @return the total size of the pages evicted because the maximum size was exceeded
+			 */
+			public long getEvictedBytes()
+			{
+				return evictedBytes.get();
+			}
+
+			/**
+			 * @return the number of pages not cached because they were bigger than the maximum size
+			 */
+			public long getRejectedPages()
+			{
+				return rejectedPages.get();
+			}
 		}
 	}
 
@@ -19,9 +19,13 @@ package org.apache.wicket.protocol.http;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import javax.servlet.http.Cookie;
 
@@ -154,6 +158,14 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 
 		@Override
 		protected void invoke(WebResponse response)
+		{
+			response.write(filter());
+		}
+
+		/**
+		 * @return the text after applying the response filters
+		 */
+		private AppendingStringBuffer filter()
 		{
 			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
 
@@ -168,7 +180,7 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 					responseBuffer = filter.filter(responseBuffer);
 				}
 			}
-			response.write(responseBuffer);
+			return responseBuffer;
 		}
 
 		@Override
@@ -224,6 +236,47 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * Writes text which was already encoded, from a buffer which may be outside of the heap.
+	 */
+	private static class WriteEncodedAction extends Action
+	{
+		private static final int CHUNK_SIZE = 8192;
+
+		private final ByteBuffer bytes;
+
+		public WriteEncodedAction(ByteBuffer bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected void invoke(WebResponse response)
+		{
+			if (bytes.hasArray())
+			{
+				response.write(bytes.array(), bytes.arrayOffset() + bytes.position(),
+					bytes.remaining());
+				return;
+			}
+
+			ByteBuffer buffer = bytes.duplicate();
+			byte[] chunk = new byte[Math.min(CHUNK_SIZE, buffer.remaining())];
+			while (buffer.hasRemaining())
+			{
+				int length = Math.min(chunk.length, buffer.remaining());
+				buffer.get(chunk, 0, length);
+				response.write(chunk, 0, length);
+			}
+		}
+
+		@Override
+		protected ActionType getType()
+		{
+			return ActionType.DATA;
+		}
+	}
+
 	private static class CloseAction extends Action
 	{
 		@Override
@@ -603,6 +656,111 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * Replaces the buffered text with its bytes in the charset of the content type. The response
+	 * filters are applied now instead of when the response is written. Nothing is done if the
+	 * content type has no charset.
+	 * 
+	 * @param offHeap
+	 *            whether to keep the bytes in a direct buffer outside of the heap
+	 * @return {@code true} if the text was encoded
+	 */
+	boolean encodeText(boolean offHeap)
+	{
+		if (charSequenceAction == null)
+		{
+			return false;
+		}
+
+		Charset charset = getContentCharset();
+		if (charset == null)
+		{
+			return false;
+		}
+
+		ByteBuffer bytes = charset.encode(CharBuffer.wrap(charSequenceAction.filter()));
+		if (offHeap)
+		{
+			ByteBuffer encoded = bytes;
+			bytes = ByteBuffer.allocateDirect(encoded.remaining());
+			bytes.put(encoded);
+			bytes.flip();
+		}
+
+		actions.set(actions.indexOf(charSequenceAction), new WriteEncodedAction(bytes));
+		charSequenceAction = null;
+		return true;
+	}
+
+	/**
+	 * @return the charset of the last content type set, {@code null} if none or unsupported
+	 */
+	Charset getContentCharset()
+	{
+		String contentType = null;
+		for (Action action : actions)
+		{
+			if (action instanceof SetContentTypeAction)
+			{
+				contentType = ((SetContentTypeAction)action).contentType;
+			}
+		}
+		if (contentType == null)
+		{
+			return null;
+		}
+
+		int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+		if (index < 0)
+		{
+			return null;
+		}
+		String name = contentType.substring(index + "charset=".length());
+		int end = name.indexOf(';');
+		if (end >= 0)
+		{
+			name = name.substring(0, end);
+		}
+		name = name.trim();
+		if (name.length() > 1 && (name.charAt(0) == '"' || name.charAt(0) == '\''))
+		{
+			// quoted value
+			name = name.substring(1, name.length() - 1);
+		}
+		try
+		{
+			return Charset.forName(name);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return the estimated number of bytes the buffered content occupies
+	 */
+	long getContentSize()
+	{
+		long size = 0;
+		for (Action action : actions)
+		{
+			if (action instanceof WriteCharSequenceAction)
+			{
+				size += 2L * ((WriteCharSequenceAction)action).builder.length();
+			}
+			else if (action instanceof WriteDataAction)
+			{
+				size += ((WriteDataAction)action).stream.size();
+			}
+			else if (action instanceof WriteEncodedAction)
+			{
+				size += ((WriteEncodedAction)action).bytes.remaining();
+			}
+		}
+		return size;
+	}
+
 	@Override
 	public boolean isRedirect()
 	{
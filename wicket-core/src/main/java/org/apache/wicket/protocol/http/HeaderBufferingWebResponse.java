@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.nio.charset.Charset;
+
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
@@ -154,6 +156,22 @@ class HeaderBufferingWebResponse extends WebResponse implements IMetaDataBufferi
 		getMetaResponse().setStatus(sc);
 	}
 
+	@Override
+	public Charset getEncodingCharset()
+	{
+		Charset charset = originalResponse.getEncodingCharset();
+		if ((charset != null) && buffering)
+		{
+			// the content type might not have reached the original response yet
+			Charset contentCharset = bufferedResponse.getContentCharset();
+			if (contentCharset != null)
+			{
+				charset = contentCharset;
+			}
+		}
+		return charset;
+	}
+
 	@Override
 	public void disableCaching() {
 		getMetaResponse().disableCaching();
@@ -16,74 +16,105 @@
  */
 package org.apache.wicket.protocol.http;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 
 /**
- * A map that contains the buffered responses. It has a constraint on the maximum entries that it
- * can contain, and a constraint on the duration of time an entry is considered valid/non-expired
+ * A map that contains the buffered responses until the client follows the redirect to them. It
+ * has a constraint on the total size of the contained responses, and a constraint on the duration
+ * of time an entry is considered valid/non-expired. When the size is exceeded the oldest entries
+ * are evicted first.
+ * <p>
+ * The responses are looked up without locking. The order of the entries is kept in a separate
+ * deque, from which consumed responses are unlinked starting at its young end, where they usually
+ * are.
+ * <p>
+ * The text of the responses can be kept outside of the heap, encoded in the charset of their
+ * content type, see
+ * {@link org.apache.wicket.settings.RequestCycleSettings#setStoredResponsesOffHeap(boolean)}.
  */
-class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
+class StoredResponsesMap
 {
-	private static final long serialVersionUID = 1L;
-
 	/**
 	 * The actual object that is stored as a value of the map. It wraps the buffered response and
 	 * assigns it a creation time.
 	 */
 	private static class Value
 	{
+		/** the key the response is stored with */
+		private final String key;
+
 		/** the original response to store */
-		private BufferedWebResponse response;
+		private final BufferedWebResponse response;
 
 		/** the time when this response is stored */
-		private Time creationTime;
+		private final Time creationTime;
+
+		/** the size of the response's content */
+		private final long size;
+
+		private Value(String key, BufferedWebResponse response, Time creationTime, long size)
+		{
+			this.key = key;
+			this.response = response;
+			this.creationTime = creationTime;
+			this.size = size;
+		}
 	}
 
+	/** the entries by their key */
+	private final ConcurrentMap<String, Value> entries = new ConcurrentHashMap<>();
+
+	/** the entries in the order they were stored, the eldest first */
+	private final ConcurrentLinkedDeque<Value> order = new ConcurrentLinkedDeque<>();
+
+	/** the total size of the contained responses */
+	private final AtomicLong size = new AtomicLong();
+
+	private final long maxSize;
+
 	/**
 	 * The duration of time before a {@link Value} is considered as expired
 	 */
 	private final Duration lifetime;
 
+	private final boolean offHeap;
+
+	private final StoredResponsesStatistics statistics = new StoredResponsesStatistics();
+
 	/**
 	 * Construct.
 	 * 
-	 * @param maxEntries
-	 *            how much entries this map can contain
+	 * @param maxSize
+	 *            the maximum total size of the contained responses
 	 * @param lifetime
 	 *            the duration of time to keep an entry in the map before considering it expired
+	 * @param offHeap
+	 *            whether to keep the text of the responses encoded outside of the heap
 	 */
-	public StoredResponsesMap(int maxEntries, Duration lifetime)
-	{
-		super(maxEntries);
-
-		this.lifetime = lifetime;
-	}
-
-	@Override
-	protected synchronized boolean removeEldestEntry(java.util.Map.Entry<String, Object> eldest)
+	public StoredResponsesMap(Bytes maxSize, Duration lifetime, boolean offHeap)
 	{
-		boolean removed = super.removeEldestEntry(eldest);
-		if (removed == false)
-		{
-			Value value = (Value)eldest.getValue();
-			if (value != null)
-			{
-				Duration elapsedTime = Time.now().subtract(value.creationTime);
-				if (lifetime.lessThanOrEqual(elapsedTime))
-				{
-					removedValue = value.response;
-					removed = true;
-				}
-			}
-		}
-		return removed;
+		this.maxSize = Args.notNull(maxSize, "maxSize").bytes();
+		this.lifetime = Args.notNull(lifetime, "lifetime");
+		this.offHeap = offHeap;
 	}
 
-	@Override
+	/**
+	 * Stores a response and evicts the expired entries as well as the eldest ones if the maximum
+	 * size is exceeded.
+	 * 
+	 * @param key
+	 * @param bufferedResponse
+	 *            the {@link BufferedWebResponse} to store
+	 * @return the response previously stored with this key, or {@code null}
+	 */
 	public BufferedWebResponse put(String key, Object bufferedResponse)
 	{
 		if (!(bufferedResponse instanceof BufferedWebResponse))
@@ -92,59 +123,162 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 				" can store only instances of " + BufferedWebResponse.class.getSimpleName());
 		}
 
-		Value value = new Value();
-		value.creationTime = Time.now();
-		value.response = (BufferedWebResponse)bufferedResponse;
+		BufferedWebResponse response = (BufferedWebResponse)bufferedResponse;
+		if (offHeap)
+		{
+			response.encodeText(true);
+		}
 
-		Value oldValue;
-		synchronized (this)
+		Value value = new Value(key, response, Time.now(), response.getContentSize());
+		statistics.stored.incrementAndGet();
+
+		size.addAndGet(value.size);
+		Value oldValue = entries.put(key, value);
+		if (oldValue != null)
+		{
+			order.removeLastOccurrence(oldValue);
+			size.addAndGet(-oldValue.size);
+		}
+		order.offerLast(value);
+		if (entries.get(key) != value)
 		{
-			oldValue = (Value)super.put(key, value);
+			// removed or replaced concurrently before it was ordered
+			order.removeLastOccurrence(value);
 		}
 
+		evict();
+
 		return oldValue != null ? oldValue.response : null;
 	}
 
-	@Override
+	/**
+	 * Removes expired entries and the eldest entries while the maximum size is exceeded.
+	 */
+	private void evict()
+	{
+		Time now = Time.now();
+		Value eldest;
+		while ((eldest = order.peekFirst()) != null)
+		{
+			boolean expired = isExpired(eldest, now);
+			if (expired == false && size.get() <= maxSize)
+			{
+				break;
+			}
+
+			// another thread may have removed it meanwhile
+			if (order.removeFirstOccurrence(eldest) && entries.remove(eldest.key, eldest))
+			{
+				size.addAndGet(-eldest.size);
+				if (expired)
+				{
+					statistics.expired.incrementAndGet();
+				}
+				else
+				{
+					statistics.evicted.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private boolean isExpired(Value value, Time now)
+	{
+		return lifetime.lessThanOrEqual(now.subtract(value.creationTime));
+	}
+
+	/**
+	 * @param key
+	 * @return the response stored with this key, {@code null} if there is none or it is expired
+	 */
 	public BufferedWebResponse get(Object key)
 	{
-		BufferedWebResponse result = null;
-		Value value;
-		synchronized (this)
+		Value value = entries.get(key);
+		if (value == null)
 		{
-			value = (Value)super.get(key);
+			return null;
 		}
-		if (value != null)
+
+		if (isExpired(value, Time.now()))
 		{
-			Duration elapsedTime = Time.now().subtract(value.creationTime);
-			if (lifetime.greaterThan(elapsedTime))
+			// expired, remove it
+			if (entries.remove(key, value))
 			{
-				result = value.response;
-			}
-			else
-			{
-				// expired, remove it
-				remove(key);
+				order.removeLastOccurrence(value);
+				size.addAndGet(-value.size);
+				statistics.expired.incrementAndGet();
 			}
+			return null;
 		}
-		return result;
+		return value.response;
 	}
 
-	@Override
+	/**
+	 * Removes the response stored with this key, e.g. because the client followed the redirect to
+	 * it.
+	 * 
+	 * @param key
+	 * @return the response stored with this key, {@code null} if there is none or it is expired
+	 */
 	public BufferedWebResponse remove(Object key)
 	{
-		Value removedValue;
-		synchronized (this)
+		Value value = entries.remove(key);
+		if (value == null)
 		{
-			removedValue = (Value)super.remove(key);
+			return null;
 		}
+		order.removeLastOccurrence(value);
+		size.addAndGet(-value.size);
 
-		return removedValue != null ? removedValue.response : null;
+		if (isExpired(value, Time.now()))
+		{
+			statistics.expired.incrementAndGet();
+			return null;
+		}
+		statistics.consumed.incrementAndGet();
+		return value.response;
 	}
 
-	@Override
-	public void putAll(Map<? extends String, ?> m)
+	/**
+	 * @param key
+	 * @return whether a response is stored with this key
+	 */
+	public boolean containsKey(Object key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * @return the number of contained responses
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the total size of the contained responses
+	 */
+	public Bytes getSize()
+	{
+		return Bytes.bytes(size.get());
+	}
+
+	/**
+	 * Used by tests
+	 * 
+	 * @return the number of entries in the eviction order
+	 */
+	int getOrderedCount()
+	{
+		return order.size();
+	}
+
+	/**
+	 * @return the counters of this map
+	 */
+	public StoredResponsesStatistics getStatistics()
 	{
-		throw new UnsupportedOperationException();
+		return statistics;
 	}
 }
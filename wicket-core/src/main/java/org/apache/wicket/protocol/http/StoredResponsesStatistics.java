@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the responses buffered with
+ * {@link org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER}.
+ * 
+ * @see WebApplication#getStoredResponsesStatistics()
+ */
+public class StoredResponsesStatistics
+{
+	final AtomicLong stored = new AtomicLong();
+
+	final AtomicLong consumed = new AtomicLong();
+
+	final AtomicLong evicted = new AtomicLong();
+
+	final AtomicLong expired = new AtomicLong();
+
+	/**
+	 * Construct.
+	 */
+	StoredResponsesStatistics()
+	{
+	}
+
+	/**
+	 * @return the number of stored responses
+	 */
+	public long getStored()
+	{
+		return stored.get();
+	}
+
+	/**
+	 * @return the number of responses removed by the redirect follow-up request
+	 */
+	public long getConsumed()
+	{
+		return consumed.get();
+	}
+
+	/**
+	 * @return the number of responses evicted before the redirect was followed because the
+	 *         maximum size was exceeded
+	 */
+	public long getEvicted()
+	{
+		return evicted.get();
+	}
+
+	/**
+	 * @return the number of responses which expired before the redirect was followed
+	 */
+	public long getExpired()
+	{
+		return expired.get();
+	}
+
+	/**
+	 * @return the ratio of stored responses which were consumed by the redirect follow-up
+	 *         request
+	 */
+	public double getHitRate()
+	{
+		long count = stored.get();
+		return count == 0 ? 0 : (double)consumed.get() / count;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Statistics [stored=" + stored + ", consumed=" + consumed + ", evicted=" +
+			evicted + ", expired=" + expired + "]";
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.nio.charset.Charset;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A {@link BufferedWebResponse} which stops buffering when {@link #stream()} is called: the
+ * buffered meta data and content are written to the original response and all following actions
+ * are passed through to it, so the client receives the markup while the rest of the page is still
+ * being rendered.
+ * <p>
+ * Until then it behaves like a {@link BufferedWebResponse}, so the response can still be discarded
+ * if the rendering fails or a redirect is requested.
+ * <p>
+ * If the original response accepts bytes mixed with text, the buffered text is written encoded, so
+ * static markup rendered afterwards can be written as bytes.
+ * 
+ * @see org.apache.wicket.settings.RequestCycleSettings#setStreamResponse(boolean)
+ */
+public class StreamingWebResponse extends BufferedWebResponse
+{
+	private final WebResponse originalResponse;
+
+	private boolean streaming;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 */
+	public StreamingWebResponse(WebResponse originalResponse)
+	{
+		super(originalResponse);
+
+		this.originalResponse = originalResponse;
+	}
+
+	/**
+	 * Writes everything buffered so far to the original response, flushes it and passes all further
+	 * actions through to it.
+	 */
+	public void stream()
+	{
+		if (streaming == false)
+		{
+			if (originalResponse.getEncodingCharset() != null)
+			{
+				// keep the original response from committing to text
+				encodeText(false);
+			}
+			writeTo(originalResponse);
+			reset();
+			streaming = true;
+		}
+		originalResponse.flush();
+	}
+
+	/**
+	 * @return {@code true} if {@link #stream()} was called and the response can no longer be
+	 *         discarded
+	 */
+	public boolean isStreaming()
+	{
+		return streaming;
+	}
+
+	@Override
+	public void addCookie(Cookie cookie)
+	{
+		if (streaming)
+		{
+			originalResponse.addCookie(cookie);
+		}
+		else
+		{
+			super.addCookie(cookie);
+		}
+	}
+
+	@Override
+	public void clearCookie(Cookie cookie)
+	{
+		if (streaming)
+		{
+			originalResponse.clearCookie(cookie);
+		}
+		else
+		{
+			super.clearCookie(cookie);
+		}
+	}
+
+	@Override
+	public void setContentLength(long length)
+	{
+		if (streaming)
+		{
+			originalResponse.setContentLength(length);
+		}
+		else
+		{
+			super.setContentLength(length);
+		}
+	}
+
+	@Override
+	public void setContentType(String mimeType)
+	{
+		if (streaming)
+		{
+			originalResponse.setContentType(mimeType);
+		}
+		else
+		{
+			super.setContentType(mimeType);
+		}
+	}
+
+	@Override
+	public void setDateHeader(String name, Time date)
+	{
+		if (streaming)
+		{
+			originalResponse.setDateHeader(name, date);
+		}
+		else
+		{
+			super.setDateHeader(name, date);
+		}
+	}
+
+	@Override
+	public void setHeader(String name, String value)
+	{
+		if (streaming)
+		{
+			originalResponse.setHeader(name, value);
+		}
+		else
+		{
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value)
+	{
+		if (streaming)
+		{
+			originalResponse.addHeader(name, value);
+		}
+		else
+		{
+			super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void disableCaching()
+	{
+		if (streaming)
+		{
+			originalResponse.disableCaching();
+		}
+		else
+		{
+			super.disableCaching();
+		}
+	}
+
+	@Override
+	public void write(CharSequence sequence)
+	{
+		if (streaming)
+		{
+			originalResponse.write(sequence);
+		}
+		else
+		{
+			super.write(sequence);
+		}
+	}
+
+	@Override
+	public void write(byte[] array)
+	{
+		if (streaming)
+		{
+			originalResponse.write(array);
+		}
+		else
+		{
+			super.write(array);
+		}
+	}
+
+	@Override
+	public void write(byte[] array, int offset, int length)
+	{
+		if (streaming)
+		{
+			originalResponse.write(array, offset, length);
+		}
+		else
+		{
+			super.write(array, offset, length);
+		}
+	}
+
+	@Override
+	public void sendRedirect(String url)
+	{
+		if (streaming)
+		{
+			throw new IllegalStateException("Cannot redirect, the response is already streamed");
+		}
+		super.sendRedirect(url);
+	}
+
+	@Override
+	public void setStatus(int sc)
+	{
+		if (streaming)
+		{
+			originalResponse.setStatus(sc);
+		}
+		else
+		{
+			super.setStatus(sc);
+		}
+	}
+
+	@Override
+	public void sendError(int sc, String msg)
+	{
+		if (streaming)
+		{
+			throw new IllegalStateException("Cannot send error " + sc +
+				", the response is already streamed");
+		}
+		super.sendError(sc, msg);
+	}
+
+	@Override
+	public void flush()
+	{
+		if (streaming)
+		{
+			originalResponse.flush();
+		}
+		else
+		{
+			super.flush();
+		}
+	}
+
+	@Override
+	public Charset getEncodingCharset()
+	{
+		if (streaming)
+		{
+			return originalResponse.getEncodingCharset();
+		}
+		return super.getEncodingCharset();
+	}
+
+	@Override
+	public void writeTo(WebResponse response)
+	{
+		// nothing is buffered anymore once streaming
+		if (streaming == false)
+		{
+			super.writeTo(response);
+		}
+	}
+}
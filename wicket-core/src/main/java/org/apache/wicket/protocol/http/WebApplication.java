@@ -21,6 +21,7 @@ import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -70,6 +71,7 @@ import org.apache.wicket.request.resource.JavaScriptResourceReference;
 import org.apache.wicket.request.resource.ResourceReference;
 import org.apache.wicket.resource.bundles.ReplacementResourceBundleReference;
 import org.apache.wicket.session.HttpSessionStore;
+import org.apache.wicket.settings.RequestCycleSettings;
 import org.apache.wicket.util.crypt.CharEncoding;
 import org.apache.wicket.util.file.FileCleaner;
 import org.apache.wicket.util.file.IFileCleaner;
@@ -959,11 +961,39 @@ public abstract class WebApplication extends Application
 	}
 
 	/*
-	 * Can contain at most 1000 responses and each entry can live at most one minute. For now there
-	 * is no need to configure these parameters externally.
+	 * Created with the configured size when the first response is stored. Each entry can live at
+	 * most one minute.
 	 */
-	private final StoredResponsesMap storedResponses = new StoredResponsesMap(1000,
-		Duration.seconds(60));
+	private final AtomicReference<StoredResponsesMap> storedResponses = new AtomicReference<>();
+
+	/**
+	 * @return the map of the buffered responses, created on first use
+	 */
+	private StoredResponsesMap getStoredResponses()
+	{
+		StoredResponsesMap map = storedResponses.get();
+		if (map == null)
+		{
+			RequestCycleSettings settings = getRequestCycleSettings();
+			storedResponses.compareAndSet(null,
+				new StoredResponsesMap(settings.getStoredResponsesMaxSize(), Duration.seconds(60),
+					settings.getStoredResponsesOffHeap()));
+			map = storedResponses.get();
+		}
+		return map;
+	}
+
+	/**
+	 * Gets the counters of the responses buffered with
+	 * {@link org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER},
+	 * e.g. how many of them were evicted before the client followed the redirect.
+	 * 
+	 * @return the statistics of the buffered responses
+	 */
+	public StoredResponsesStatistics getStoredResponsesStatistics()
+	{
+		return getStoredResponses().getStatistics();
+	}
 
 	/**
 	 * 
@@ -974,7 +1004,7 @@ public abstract class WebApplication extends Application
 	public boolean hasBufferedResponse(String sessionId, Url url)
 	{
 		String key = sessionId + url.toString();
-		return storedResponses.containsKey(key);
+		return getStoredResponses().containsKey(key);
 	}
 
 	/**
@@ -988,7 +1018,7 @@ public abstract class WebApplication extends Application
 	public BufferedWebResponse getAndRemoveBufferedResponse(String sessionId, Url url)
 	{
 		String key = sessionId + url.toString();
-		return storedResponses.remove(key);
+		return getStoredResponses().remove(key);
 	}
 
 	/**
@@ -1008,7 +1038,7 @@ public abstract class WebApplication extends Application
 		}
 
 		String key = sessionId + url.toString();
-		storedResponses.put(key, response);
+		getStoredResponses().put(key, response);
 	}
 
 	@Override
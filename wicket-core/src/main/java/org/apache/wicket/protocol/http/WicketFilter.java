@@ -19,7 +19,12 @@ package org.apache.wicket.protocol.http;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -39,6 +44,7 @@ import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.file.WebXmlFile;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.thread.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +82,19 @@ public class WicketFilter implements Filter
 	 */
 	public static final String IGNORE_PATHS_PARAM = "ignorePaths";
 
+	/**
+	 * Name of the parameter which enables processing each request asynchronously on its own
+	 * virtual thread, if the JVM supports them
+	 */
+	public static final String VIRTUAL_THREADS_PARAM = "virtualThreads";
+
+	/**
+	 * Name of the request attribute marking a request that was processed asynchronously but not
+	 * handled by Wicket, and thus dispatched back to the container
+	 */
+	private static final String NOT_HANDLED_ATTRIBUTE = WicketFilter.class.getName() +
+		".NOT_HANDLED";
+
 	// Wicket's Application object
 	private WebApplication application;
 
@@ -92,6 +111,9 @@ public class WicketFilter implements Filter
 	/** set of paths that should be ignored by the wicket filter */
 	private final Set<String> ignorePaths = new HashSet<String>();
 
+	/** the executor created for {@link #VIRTUAL_THREADS_PARAM}, {@code null} if not enabled */
+	private ExecutorService requestExecutor;
+
 	/**
 	 * A flag indicating whether WicketFilter is used directly or through WicketServlet
 	 */
@@ -140,6 +162,17 @@ public class WicketFilter implements Filter
 	boolean processRequest(ServletRequest request, final ServletResponse response,
 		final FilterChain chain) throws IOException, ServletException
 	{
+		if (request.getAttribute(NOT_HANDLED_ATTRIBUTE) != null)
+		{
+			// the asynchronous request cycle did not handle the request, continue with the chain
+			request.removeAttribute(NOT_HANDLED_ATTRIBUTE);
+			if (chain != null)
+			{
+				chain.doFilter(request, response);
+			}
+			return false;
+		}
+
 		final ThreadContext previousThreadContext = ThreadContext.detach();
 
 		// Assume we are able to handle the request
@@ -196,6 +229,14 @@ public class WicketFilter implements Filter
 				// No redirect; process the request
 				ThreadContext.setApplication(application);
 
+				Executor executor = getAsyncExecutor(httpServletRequest);
+				if (executor != null)
+				{
+					processRequestAsync(executor, httpServletRequest, httpServletResponse,
+						filterPath);
+					return true;
+				}
+
 				WebRequest webRequest = application.createWebRequest(httpServletRequest, filterPath);
 				WebResponse webResponse = application.createWebResponse(webRequest,
 					httpServletResponse);
@@ -240,6 +281,136 @@ public class WicketFilter implements Filter
 		return res;
 	}
 
+	/**
+	 * Returns the executor to process the given request on, if it should be processed
+	 * asynchronously.
+	 * 
+	 * @param request
+	 *            the request to process
+	 * @return the executor configured in the application's
+	 *         {@link org.apache.wicket.settings.RequestCycleSettings#getAsyncExecutor() request
+	 *         cycle settings}, else the virtual thread executor if enabled by
+	 *         {@link #VIRTUAL_THREADS_PARAM}, or {@code null} if the request should be processed on
+	 *         the container's thread
+	 */
+	protected Executor getAsyncExecutor(final HttpServletRequest request)
+	{
+		if (request.isAsyncSupported() == false ||
+			request.getDispatcherType() != DispatcherType.REQUEST)
+		{
+			return null;
+		}
+		Executor executor = application.getRequestCycleSettings().getAsyncExecutor();
+		if (executor == null)
+		{
+			executor = requestExecutor;
+		}
+		return executor;
+	}
+
+	/**
+	 * Puts the request into asynchronous mode and processes its request cycle on the given
+	 * executor. If Wicket does not handle the request, it is dispatched back to the container,
+	 * which passes it to the rest of the filter chain.
+	 * 
+	 * @param executor
+	 *            executor to process the request cycle on
+	 * @param httpServletRequest
+	 * @param httpServletResponse
+	 * @param filterPath
+	 *            the filter path of the request
+	 */
+	private void processRequestAsync(final Executor executor,
+		final HttpServletRequest httpServletRequest,
+		final HttpServletResponse httpServletResponse, final String filterPath)
+	{
+		final AsyncContext asyncContext = httpServletRequest.startAsync();
+		// page locks and the request cycle enforce their own timeouts
+		asyncContext.setTimeout(0);
+
+		final ClassLoader classLoader = getClassLoader();
+
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final ThreadContext previousThreadContext = ThreadContext.detach();
+				final ClassLoader previousClassLoader = Thread.currentThread()
+					.getContextClassLoader();
+
+				boolean handled = true;
+				try
+				{
+					Thread.currentThread().setContextClassLoader(classLoader);
+					ThreadContext.setApplication(application);
+
+					WebRequest webRequest = application.createWebRequest(httpServletRequest,
+						filterPath);
+					WebResponse webResponse = application.createWebResponse(webRequest,
+						httpServletResponse);
+
+					RequestCycle requestCycle = application.createRequestCycle(webRequest,
+						webResponse);
+					handled = processRequestCycle(requestCycle, webResponse, httpServletRequest,
+						httpServletResponse, null);
+				}
+				catch (Exception e)
+				{
+					log.error("Error processing asynchronous request " +
+						httpServletRequest.getRequestURI(), e);
+					sendError(httpServletResponse);
+				}
+				finally
+				{
+					ThreadContext.restore(previousThreadContext);
+					Thread.currentThread().setContextClassLoader(previousClassLoader);
+
+					if (handled)
+					{
+						asyncContext.complete();
+					}
+					else
+					{
+						httpServletRequest.setAttribute(NOT_HANDLED_ATTRIBUTE, Boolean.TRUE);
+						asyncContext.dispatch();
+					}
+				}
+			}
+		};
+
+		try
+		{
+			executor.execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			log.debug("Executor rejected request {}, processing it on the container's thread",
+				httpServletRequest.getRequestURI());
+			task.run();
+		}
+	}
+
+	/**
+	 * Sends an internal server error, if the response is not committed yet.
+	 * 
+	 * @param httpServletResponse
+	 */
+	private static void sendError(final HttpServletResponse httpServletResponse)
+	{
+		if (httpServletResponse.isCommitted() == false)
+		{
+			try
+			{
+				httpServletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+			catch (IOException e)
+			{
+				log.debug("Could not send error", e);
+			}
+		}
+	}
+
 	/**
 	 * Process the request cycle
 	 * 
@@ -372,6 +543,7 @@ public class WicketFilter implements Filter
 		this.filterConfig = filterConfig;
 		this.isServlet = isServlet;
 		initIgnorePaths(filterConfig);
+		initRequestExecutor(filterConfig);
 
 		final ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
 		final ClassLoader newClassLoader = getClassLoader();
@@ -606,6 +778,12 @@ public class WicketFilter implements Filter
 	@Override
 	public void destroy()
 	{
+		if (requestExecutor != null)
+		{
+			requestExecutor.shutdown();
+			requestExecutor = null;
+		}
+
 		if (application != null)
 		{
 			try
@@ -803,6 +981,25 @@ public class WicketFilter implements Filter
 		return ignore;
 	}
 
+	/**
+	 * Creates the virtual thread executor, if enabled by {@link #VIRTUAL_THREADS_PARAM}.
+	 * 
+	 * @param filterConfig
+	 */
+	private void initRequestExecutor(final FilterConfig filterConfig)
+	{
+		String virtualThreads = filterConfig.getInitParameter(VIRTUAL_THREADS_PARAM);
+		if (Boolean.parseBoolean(virtualThreads))
+		{
+			requestExecutor = VirtualThreads.newExecutor();
+			if (requestExecutor == null)
+			{
+				log.warn("Virtual threads are not supported by this JVM, requests are processed " +
+					"on the container's threads.");
+			}
+		}
+	}
+
 	/**
 	 * initializes the ignore paths parameter
 	 * 
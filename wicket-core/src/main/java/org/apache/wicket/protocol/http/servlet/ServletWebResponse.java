@@ -17,6 +17,10 @@
 package org.apache.wicket.protocol.http.servlet;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +46,15 @@ public class ServletWebResponse extends WebResponse
 
 	private boolean redirect = false;
 
+	/** Whether text was written with the servlet writer, so bytes cannot be written anymore */
+	private boolean textWritten = false;
+
+	/** Whether bytes were written to the servlet output stream, so text has to be encoded here */
+	private boolean bytesWritten = false;
+
+	/** The last charset looked up for the character encoding of the servlet response */
+	private Charset charset;
+
 	/**
 	 * Construct.
 	 * 
@@ -107,7 +120,23 @@ public class ServletWebResponse extends WebResponse
 	{
 		try
 		{
-			httpServletResponse.getWriter().append(sequence);
+			if (bytesWritten)
+			{
+				// the writer cannot be used anymore, so encode the text like it would
+				Charset textCharset = getCharset();
+				if (textCharset == null)
+				{
+					textCharset = StandardCharsets.ISO_8859_1;
+				}
+				ByteBuffer bytes = textCharset.encode(CharBuffer.wrap(sequence));
+				httpServletResponse.getOutputStream().write(bytes.array(), bytes.arrayOffset(),
+					bytes.remaining());
+			}
+			else
+			{
+				httpServletResponse.getWriter().append(sequence);
+				textWritten = true;
+			}
 		}
 		catch (IOException e)
 		{
@@ -121,6 +150,7 @@ public class ServletWebResponse extends WebResponse
 		try
 		{
 			httpServletResponse.getOutputStream().write(array);
+			bytesWritten = true;
 		}
 		catch (IOException e)
 		{
@@ -134,6 +164,7 @@ public class ServletWebResponse extends WebResponse
 		try
 		{
 			httpServletResponse.getOutputStream().write(array, offset, length);
+			bytesWritten = true;
 		}
 		catch (IOException e)
 		{
@@ -141,6 +172,37 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	/**
+	 * Text is written as bytes too, as long as the servlet writer was not used. Once bytes were
+	 * written all text is encoded in the character encoding of the servlet response.
+	 */
+	@Override
+	public Charset getEncodingCharset()
+	{
+		return textWritten ? null : getCharset();
+	}
+
+	/**
+	 * @return the charset of the character encoding of the servlet response, or {@code null} if it
+	 *         is not supported
+	 */
+	private Charset getCharset()
+	{
+		String encoding = httpServletResponse.getCharacterEncoding();
+		if ((charset == null) || (charset.name().equalsIgnoreCase(encoding) == false))
+		{
+			try
+			{
+				charset = Charset.forName(encoding);
+			}
+			catch (IllegalArgumentException e)
+			{
+				return null;
+			}
+		}
+		return charset;
+	}
+
 
 	@Override
 	public void setStatus(int sc)
@@ -323,6 +385,8 @@ public class ServletWebResponse extends WebResponse
 		super.reset();
 		httpServletResponse.reset();
 		redirect = false;
+		textWritten = false;
+		bytesWritten = false;
 	}
 
 	@Override
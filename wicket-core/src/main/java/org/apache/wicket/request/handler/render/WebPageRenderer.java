@@ -25,14 +25,19 @@ import org.apache.wicket.core.request.handler.RenderPageRequestHandler.RedirectP
 import org.apache.wicket.feedback.FeedbackCollector;
 import org.apache.wicket.feedback.FeedbackMessage;
 import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.RequestHandlerExecutor.ReplaceHandlerException;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.EmptyRequestHandler;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.filter.IResponseFilter;
+import org.apache.wicket.settings.RequestCycleSettings;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +51,12 @@ public class WebPageRenderer extends PageRenderer
 {
 	private static final Logger logger = LoggerFactory.getLogger(WebPageRenderer.class);
 
+	/**
+	 * Whether the page currently rendered may be streamed, see
+	 * {@link #newBufferedResponse(WebResponse)}
+	 */
+	private boolean streamResponse;
+
 	/**
 	 * Construct.
 	 * 
@@ -113,7 +124,7 @@ public class WebPageRenderer extends PageRenderer
 		final WebResponse originalResponse = (WebResponse)requestCycle.getResponse();
 
 		// buffered web response for page
-		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		BufferedWebResponse response = newBufferedResponse(originalResponse);
 
 		// keep the original base URL
 		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
@@ -121,9 +132,33 @@ public class WebPageRenderer extends PageRenderer
 		try
 		{
 			requestCycle.setResponse(response);
-			requestablePage.renderPage();
+			try
+			{
+				requestablePage.renderPage();
+			}
+			catch (RuntimeException e)
+			{
+				if (isStreaming(response) == false)
+				{
+					throw e;
+				}
+
+				// too late to respond with anything else, just end the response
+				logger.error("Failed to render page " + requestablePage +
+					" which is already partially sent to the client", e);
+				throw new ReplaceHandlerException(new EmptyRequestHandler(), true);
+			}
 
-			if (requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
+			if (requestCycle.getRequestHandlerScheduledAfterCurrent() != null &&
+				isStreaming(response))
+			{
+				logger.warn(
+					"Ignoring request handler {} scheduled while rendering page {}, the page is already partially sent to the client",
+					requestCycle.getRequestHandlerScheduledAfterCurrent(), requestablePage);
+				requestCycle.scheduleRequestHandlerAfterCurrent(null);
+				return response;
+			}
+			else if (requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
 			{
 				// This is a special case.
 				// During page render another request handler got scheduled and will want to
@@ -147,6 +182,52 @@ public class WebPageRenderer extends PageRenderer
 		}
 	}
 
+	/**
+	 * Creates the response a page is rendered to. This is a {@link StreamingWebResponse}, which
+	 * starts writing to the original response once the page's header is rendered, if the page is
+	 * rendered to be written in this request and {@link #shouldStreamResponse(RequestCycle)}
+	 * allowed it, a plain {@link BufferedWebResponse} otherwise.
+	 * 
+	 * @param originalResponse
+	 *            the response of the request cycle
+	 * @return response to render the page to
+	 */
+	protected BufferedWebResponse newBufferedResponse(WebResponse originalResponse)
+	{
+		if (streamResponse)
+		{
+			return new StreamingWebResponse(originalResponse);
+		}
+		return new BufferedWebResponse(originalResponse);
+	}
+
+	private static boolean isStreaming(BufferedWebResponse response)
+	{
+		return response instanceof StreamingWebResponse &&
+			((StreamingWebResponse)response).isStreaming();
+	}
+
+	/**
+	 * Should a page, which is rendered and written in this request, be streamed to the client while
+	 * it is rendered.
+	 * 
+	 * @param requestCycle
+	 * @return {@code true} if streaming is enabled and no response filters need the whole response
+	 * @see org.apache.wicket.settings.RequestCycleSettings#setStreamResponse(boolean)
+	 */
+	protected boolean shouldStreamResponse(RequestCycle requestCycle)
+	{
+		if (Application.exists() == false)
+		{
+			return false;
+		}
+
+		RequestCycleSettings settings = Application.get().getRequestCycleSettings();
+		List<IResponseFilter> responseFilters = settings.getResponseFilters();
+		return settings.getStreamResponse() &&
+			(responseFilters == null || responseFilters.isEmpty());
+	}
+
 	/**
 	 * 
 	 * @param url
@@ -192,7 +273,16 @@ public class WebPageRenderer extends PageRenderer
 
 		if (shouldRenderPageAndWriteResponse(requestCycle, currentUrl, targetUrl))
 		{
-			BufferedWebResponse response = renderPage(currentUrl, requestCycle);
+			BufferedWebResponse response;
+			streamResponse = shouldStreamResponse(requestCycle);
+			try
+			{
+				response = renderPage(currentUrl, requestCycle);
+			}
+			finally
+			{
+				streamResponse = false;
+			}
 			if (response != null)
 			{
 				response.writeTo((WebResponse)requestCycle.getResponse());
@@ -21,11 +21,15 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
+import org.apache.wicket.util.lang.Args;
+
 /**
  * A {@link JavaSerializer} that deflates the outputstream on the fly, reducing page store size by
  * up to a factor 8. Be advised that deflating serialized objects comes at a price of about 2-20ms
@@ -38,44 +42,180 @@ import java.util.zip.InflaterInputStream;
  * getFrameworkSettings().setSerializer(new DeflatedJavaSerializer(getApplicationKey()));
  * </pre>
  * 
+ * The {@code Deflater}s and {@code Inflater}s are pooled, so their native memory is not
+ * allocated for every page.
+ * 
  * @author papegaaij
  */
 public class DeflatedJavaSerializer extends JavaSerializer
 {
 	private static final int COMPRESS_BUF_SIZE = 4 * 1024;
 
+	/** the maximum number of idle deflaters and inflaters kept for reuse */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+	private final int level;
+
+	private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
 	/**
 	 * Construct.
 	 * 
 	 * @param applicationKey
 	 */
 	public DeflatedJavaSerializer(String applicationKey)
+	{
+		this(applicationKey, Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationKey
+	 * @param level
+	 *            the compression level, from {@link Deflater#BEST_SPEED} to
+	 *            {@link Deflater#BEST_COMPRESSION}
+	 */
+	public DeflatedJavaSerializer(String applicationKey, int level)
 	{
 		super(applicationKey);
+		this.level = Args.withinRange(Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION,
+			level, "level");
 	}
 
 	@Override
 	protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException
 	{
-		return super.newObjectOutputStream(new DeflaterOutputStream(out, createDeflater(),
-			COMPRESS_BUF_SIZE));
+		Deflater deflater = deflaters.poll();
+		if (deflater == null)
+		{
+			deflater = createDeflater();
+		}
+
+		final Deflater usedDeflater = deflater;
+		DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, usedDeflater,
+			COMPRESS_BUF_SIZE)
+		{
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					if (closed == false)
+					{
+						closed = true;
+						release(usedDeflater);
+					}
+				}
+			}
+		};
+
+		try
+		{
+			return super.newObjectOutputStream(deflaterOut);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			release(usedDeflater);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a deflater to the pool, or frees it if the pool is full.
+	 */
+	private void release(Deflater deflater)
+	{
+		deflater.reset();
+		if (deflaters.offer(deflater) == false)
+		{
+			deflater.end();
+		}
 	}
 
 	/**
 	 * Creates the {@code Deflater}. Override this method to customize the deflater, for example to
-	 * change the compression level and/or strategy.
+	 * change the compression level and/or strategy. The deflaters are reused.
 	 * 
 	 * @return the {@code Deflater}
 	 */
 	protected Deflater createDeflater()
 	{
-		return new Deflater(Deflater.BEST_SPEED);
+		return new Deflater(level);
+	}
+
+	/**
+	 * Creates the {@code Inflater}. The inflaters are reused.
+	 * 
+	 * @return the {@code Inflater}
+	 */
+	protected Inflater createInflater()
+	{
+		return new Inflater();
 	}
 
 	@Override
 	protected ObjectInputStream newObjectInputStream(InputStream in) throws IOException
 	{
-		return super.newObjectInputStream(new InflaterInputStream(in, new Inflater(),
-			COMPRESS_BUF_SIZE));
+		Inflater inflater = inflaters.poll();
+		if (inflater == null)
+		{
+			inflater = createInflater();
+		}
+
+		final Inflater usedInflater = inflater;
+		InflaterInputStream inflaterIn = new InflaterInputStream(in, usedInflater,
+			COMPRESS_BUF_SIZE)
+		{
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					if (closed == false)
+					{
+						closed = true;
+						release(usedInflater);
+					}
+				}
+			}
+		};
+
+		try
+		{
+			return super.newObjectInputStream(inflaterIn);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// e.g. a corrupt stream header
+			release(usedInflater);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns an inflater to the pool, or frees it if the pool is full.
+	 */
+	private void release(Inflater inflater)
+	{
+		inflater.reset();
+		if (inflaters.offer(inflater) == false)
+		{
+			inflater.end();
+		}
 	}
 }
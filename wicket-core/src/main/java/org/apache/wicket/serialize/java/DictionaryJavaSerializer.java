@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link JavaSerializer} which writes each class descriptor only once per application: the
+ * descriptors are kept in a dictionary and the serialized data refers to them by their index.
+ * This makes the serialized pages smaller and saves the repeated lookup of the classes while
+ * deserializing.
+ * <p>
+ * Everything else is left to Java Serialization, so {@code writeReplace()},
+ * {@code readResolve()} and the {@link org.apache.wicket.core.util.objects.checker.IObjectChecker
+ * object checkers} work as usual.
+ * <p>
+ * <strong>Note</strong>: the dictionary lives in memory only, so the serialized data can be read
+ * only by the serializer which has written it. Do not use this serializer if the pages have to
+ * survive a restart of the application or are replicated to other nodes of a cluster.
+ * <p>
+ * To use this serializer, put the following code in your application's init:
+ *
+ * <pre>
+ * getFrameworkSettings().setSerializer(new DictionaryJavaSerializer(getApplicationKey()));
+ * </pre>
+ */
+public class DictionaryJavaSerializer extends JavaSerializer
+{
+	/** identifies the dictionary, so that foreign data is rejected */
+	private final int dictionaryId = new Random().nextInt();
+
+	private final ConcurrentMap<Class<?>, Integer> ids = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Integer, ObjectStreamClass> descriptors = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 *      the name of the application
+	 */
+	public DictionaryJavaSerializer(final String applicationKey)
+	{
+		super(applicationKey);
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(InputStream in) throws IOException
+	{
+		return new DictionaryObjectInputStream(in);
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException
+	{
+		return new SerializationCheckerObjectOutputStream(out, new DictionaryObjectOutputStream(out));
+	}
+
+	/**
+	 * @return the number of class descriptors in the dictionary
+	 */
+	public int getDictionarySize()
+	{
+		return descriptors.size();
+	}
+
+	/**
+	 * Returns the index of the class descriptor, adding it to the dictionary if needed.
+	 */
+	private int getId(final ObjectStreamClass desc)
+	{
+		Class<?> type = desc.forClass();
+		return ids.computeIfAbsent(type, t -> {
+			int id = nextId.getAndIncrement();
+			descriptors.put(id, desc);
+			return id;
+		});
+	}
+
+	/**
+	 * Writes the index of each class descriptor instead of the descriptor itself.
+	 */
+	private class DictionaryObjectOutputStream extends ObjectOutputStream
+	{
+		private DictionaryObjectOutputStream(OutputStream out) throws IOException
+		{
+			super(out);
+		}
+
+		@Override
+		protected void writeStreamHeader() throws IOException
+		{
+			super.writeStreamHeader();
+			writeInt(dictionaryId);
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException
+		{
+			writeInt(getId(desc));
+		}
+	}
+
+	/**
+	 * Looks up the class descriptors in the dictionary.
+	 */
+	private class DictionaryObjectInputStream extends ClassResolverObjectInputStream
+	{
+		private DictionaryObjectInputStream(InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected void readStreamHeader() throws IOException
+		{
+			super.readStreamHeader();
+			if (readInt() != dictionaryId)
+			{
+				throw new StreamCorruptedException(
+					"The data has not been written by this serializer");
+			}
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException
+		{
+			int id = readInt();
+			ObjectStreamClass desc = descriptors.get(id);
+			if (desc == null)
+			{
+				throw new InvalidClassException("Unknown class descriptor: " + id);
+			}
+			return desc;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			// the descriptors in the dictionary are bound to their class already
+			Class<?> type = desc.forClass();
+			return type != null ? type : super.resolveClass(desc);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 style compressor. It trades compression ratio for speed: the data is compressed in
+ * a single pass, looking up earlier occurrences of each 4 bytes in a small hash table.
+ * <p>
+ * A compressed block is a sequence of literal runs, each followed by a match. A token byte holds
+ * the length of the literal run in its high nibble and the length of the match minus
+ * {@value #MIN_MATCH} in its low nibble; a nibble of 15 means the length continues in the
+ * following bytes. The literals follow the token, then the two bytes of the match offset. The
+ * last run of a block has no match.
+ * 
+ * @see LzJavaSerializer
+ */
+final class LzCodec
+{
+	/** the maximum size of an uncompressed block */
+	static final int BLOCK_SIZE = 32 * 1024;
+
+	private static final int MIN_MATCH = 4;
+
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	private static final int HASH_BITS = 12;
+
+	private LzCodec()
+	{
+	}
+
+	/**
+	 * @param length
+	 *            the length of the uncompressed data
+	 * @return the maximum length of the compressed data
+	 */
+	static int maxCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compresses a block.
+	 * 
+	 * @param src
+	 * @param srcLength
+	 * @param dst
+	 *            an array of at least {@link #maxCompressedLength(int)} bytes
+	 * @param table
+	 *            an array of {@code 1 << HASH_BITS} ints, its content is overwritten
+	 * @return the length of the compressed data
+	 */
+	static int compress(byte[] src, int srcLength, byte[] dst, int[] table)
+	{
+		Arrays.fill(table, -1);
+
+		int literalStart = 0;
+		int position = 0;
+		int out = 0;
+		int limit = srcLength - MIN_MATCH;
+		while (position <= limit)
+		{
+			int slot = hash(src, position);
+			int candidate = table[slot];
+			table[slot] = position;
+
+			if (candidate >= 0 && position - candidate <= MAX_OFFSET &&
+				src[candidate] == src[position] && src[candidate + 1] == src[position + 1] &&
+				src[candidate + 2] == src[position + 2] && src[candidate + 3] == src[position + 3])
+			{
+				int length = MIN_MATCH;
+				while (position + length < srcLength && src[candidate + length] == src[position + length])
+				{
+					length++;
+				}
+
+				out = writeSequence(src, literalStart, position - literalStart, dst, out,
+					length - MIN_MATCH);
+				int offset = position - candidate;
+				dst[out++] = (byte)offset;
+				dst[out++] = (byte)(offset >>> 8);
+				out = writeLength(dst, out, length - MIN_MATCH);
+
+				position += length;
+				literalStart = position;
+			}
+			else
+			{
+				position++;
+			}
+		}
+
+		return writeSequence(src, literalStart, srcLength - literalStart, dst, out, 0);
+	}
+
+	/**
+	 * Decompresses a block.
+	 * 
+	 * @param src
+	 * @param srcLength
+	 * @param dst
+	 *            an array big enough for the uncompressed data
+	 * @return the length of the uncompressed data
+	 * @throws IllegalArgumentException
+	 *             if the data is corrupt
+	 */
+	static int decompress(byte[] src, int srcLength, byte[] dst)
+	{
+		int in = 0;
+		int out = 0;
+		try
+		{
+			while (in < srcLength)
+			{
+				int token = src[in++] & 0xFF;
+
+				int literals = token >>> 4;
+				if (literals == 15)
+				{
+					int b;
+					do
+					{
+						b = src[in++] & 0xFF;
+						literals += b;
+					}
+					while (b == 255);
+				}
+				System.arraycopy(src, in, dst, out, literals);
+				in += literals;
+				out += literals;
+
+				if (in == srcLength)
+				{
+					// the last run has no match
+					break;
+				}
+
+				int offset = (src[in++] & 0xFF) | (src[in++] & 0xFF) << 8;
+				int length = token & 0x0F;
+				if (length == 15)
+				{
+					int b;
+					do
+					{
+						b = src[in++] & 0xFF;
+						length += b;
+					}
+					while (b == 255);
+				}
+				length += MIN_MATCH;
+
+				int from = out - offset;
+				if (offset == 0 || from < 0)
+				{
+					throw new IllegalArgumentException("Corrupt compressed data");
+				}
+				// byte by byte, the ranges may overlap
+				for (int i = 0; i < length; i++)
+				{
+					dst[out++] = dst[from + i];
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+			throw new IllegalArgumentException("Corrupt compressed data", ex);
+		}
+		return out;
+	}
+
+	private static int hash(byte[] data, int position)
+	{
+		int value = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8 |
+			(data[position + 2] & 0xFF) << 16 | (data[position + 3] & 0xFF) << 24;
+		return (value * -1640531535) >>> (32 - HASH_BITS);
+	}
+
+	private static int writeSequence(byte[] src, int literalStart, int literals, byte[] dst,
+		int out, int matchLength)
+	{
+		dst[out++] = (byte)((Math.min(literals, 15) << 4) | Math.min(matchLength, 15));
+		if (literals >= 15)
+		{
+			out = writeExtraLength(dst, out, literals - 15);
+		}
+		System.arraycopy(src, literalStart, dst, out, literals);
+		return out + literals;
+	}
+
+	private static int writeLength(byte[] dst, int out, int matchLength)
+	{
+		if (matchLength >= 15)
+		{
+			out = writeExtraLength(dst, out, matchLength - 15);
+		}
+		return out;
+	}
+
+	private static int writeExtraLength(byte[] dst, int out, int length)
+	{
+		while (length >= 255)
+		{
+			dst[out++] = (byte)255;
+			length -= 255;
+		}
+		dst[out++] = (byte)length;
+		return out;
+	}
+}
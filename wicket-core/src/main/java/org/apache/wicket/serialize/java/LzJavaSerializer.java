@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link JavaSerializer} that compresses the outputstream with a fast LZ77 style codec. The
+ * serialized pages are not as small as with {@link DeflatedJavaSerializer}, but compressing and
+ * decompressing them costs only a fraction of the CPU time.
+ * 
+ * <p>
+ * To use this serializer, put the following code in your application's init:
+ * 
+ * <pre>
+ * getFrameworkSettings().setSerializer(new LzJavaSerializer(getApplicationKey()));
+ * </pre>
+ */
+public class LzJavaSerializer extends JavaSerializer
+{
+	/** the maximum number of idle buffers kept for reuse */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+	private final BlockingQueue<Buffers> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationKey
+	 */
+	public LzJavaSerializer(String applicationKey)
+	{
+		super(applicationKey);
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException
+	{
+		return super.newObjectOutputStream(new LzOutputStream(out, acquire()));
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(InputStream in) throws IOException
+	{
+		return super.newObjectInputStream(new LzInputStream(in, acquire()));
+	}
+
+	private Buffers acquire()
+	{
+		Buffers buffers = pool.poll();
+		return buffers != null ? buffers : new Buffers();
+	}
+
+	private void release(Buffers buffers)
+	{
+		pool.offer(buffers);
+	}
+
+	/**
+	 * The working memory of a stream
+	 */
+	private static class Buffers
+	{
+		private final byte[] raw = new byte[LzCodec.BLOCK_SIZE];
+
+		private final byte[] compressed = new byte[LzCodec.maxCompressedLength(LzCodec.BLOCK_SIZE)];
+
+		private final int[] table = new int[1 << 12];
+	}
+
+	/**
+	 * Writes blocks of compressed data, each preceded by its uncompressed and its stored length.
+	 * If a block cannot be compressed it is stored as is. The stream ends with an empty block.
+	 */
+	private class LzOutputStream extends FilterOutputStream
+	{
+		private Buffers buffers;
+
+		private int count;
+
+		private LzOutputStream(OutputStream out, Buffers buffers)
+		{
+			super(out);
+			this.buffers = buffers;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (count == buffers.raw.length)
+			{
+				writeBlock();
+			}
+			buffers.raw[count++] = (byte)b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				if (count == buffers.raw.length)
+				{
+					writeBlock();
+				}
+				int length = Math.min(len, buffers.raw.length - count);
+				System.arraycopy(b, off, buffers.raw, count, length);
+				count += length;
+				off += length;
+				len -= length;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			writeBlock();
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (buffers != null)
+			{
+				try
+				{
+					writeBlock();
+					writeHeader(0, 0);
+					out.close();
+				}
+				finally
+				{
+					release(buffers);
+					buffers = null;
+				}
+			}
+		}
+
+		private void writeBlock() throws IOException
+		{
+			if (count > 0)
+			{
+				int length = LzCodec.compress(buffers.raw, count, buffers.compressed, buffers.table);
+				if (length < count)
+				{
+					writeHeader(count, length);
+					out.write(buffers.compressed, 0, length);
+				}
+				else
+				{
+					writeHeader(count, count);
+					out.write(buffers.raw, 0, count);
+				}
+				count = 0;
+			}
+		}
+
+		private void writeHeader(int rawLength, int storedLength) throws IOException
+		{
+			writeInt(rawLength);
+			writeInt(storedLength);
+		}
+
+		private void writeInt(int value) throws IOException
+		{
+			out.write(value >>> 24);
+			out.write(value >>> 16);
+			out.write(value >>> 8);
+			out.write(value);
+		}
+	}
+
+	/**
+	 * Reads the blocks written by {@link LzOutputStream}.
+	 */
+	private class LzInputStream extends InputStream
+	{
+		private final InputStream in;
+
+		private Buffers buffers;
+
+		private int position;
+
+		private int count;
+
+		private boolean eof;
+
+		private LzInputStream(InputStream in, Buffers buffers)
+		{
+			this.in = in;
+			this.buffers = buffers;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (fill() == false)
+			{
+				return -1;
+			}
+			return buffers.raw[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			if (fill() == false)
+			{
+				return -1;
+			}
+			int length = Math.min(len, count - position);
+			System.arraycopy(buffers.raw, position, b, off, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return buffers != null ? count - position : 0;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (buffers != null)
+			{
+				try
+				{
+					in.close();
+				}
+				finally
+				{
+					release(buffers);
+					buffers = null;
+				}
+			}
+		}
+
+		/**
+		 * Reads the next block if the current one is exhausted.
+		 * 
+		 * @return {@code false} at the end of the stream
+		 */
+		private boolean fill() throws IOException
+		{
+			if (buffers == null)
+			{
+				throw new IOException("Stream closed");
+			}
+
+			while (position == count)
+			{
+				if (eof)
+				{
+					return false;
+				}
+
+				int rawLength = readInt();
+				int storedLength = readInt();
+				if (rawLength == 0)
+				{
+					eof = true;
+					return false;
+				}
+				if (rawLength < 0 || rawLength > buffers.raw.length || storedLength < 0 ||
+					storedLength > rawLength)
+				{
+					throw new StreamCorruptedException("Invalid block header");
+				}
+
+				if (storedLength == rawLength)
+				{
+					readFully(buffers.raw, storedLength);
+				}
+				else
+				{
+					readFully(buffers.compressed, storedLength);
+					try
+					{
+						if (LzCodec.decompress(buffers.compressed, storedLength, buffers.raw) != rawLength)
+						{
+							throw new StreamCorruptedException("Invalid block length");
+						}
+					}
+					catch (IllegalArgumentException | IndexOutOfBoundsException ex)
+					{
+						StreamCorruptedException scx = new StreamCorruptedException(ex.getMessage());
+						scx.initCause(ex);
+						throw scx;
+					}
+				}
+				position = 0;
+				count = rawLength;
+			}
+			return true;
+		}
+
+		private int readInt() throws IOException
+		{
+			int value = 0;
+			for (int i = 0; i < 4; i++)
+			{
+				int b = in.read();
+				if (b < 0)
+				{
+					throw new EOFException();
+				}
+				value = value << 8 | b;
+			}
+			return value;
+		}
+
+		private void readFully(byte[] buffer, int length) throws IOException
+		{
+			int offset = 0;
+			while (offset < length)
+			{
+				int read = in.read(buffer, offset, length - offset);
+				if (read < 0)
+				{
+					throw new EOFException();
+				}
+				offset += read;
+			}
+		}
+	}
+}
@@ -65,6 +65,9 @@ public class MarkupSettings
 	 */
 	private boolean stripWicketTags = false;
 
+	/** Should markup be read from precompiled files where available? */
+	private boolean loadPrecompiledMarkup = false;
+
 	/**
 	 * Generates the markup ids for the components with
 	 * {@link org.apache.wicket.Component#setOutputMarkupId(boolean) #setOutputMarkupId(true)}
@@ -140,6 +143,18 @@ public class MarkupSettings
 		return stripWicketTags;
 	}
 
+	/**
+	 * Gets whether markup is read from files written by the
+	 * {@link org.apache.wicket.markup.loader.MarkupPrecompiler} instead of being parsed, if such a
+	 * file exists next to the markup and is still up to date.
+	 *
+	 * @return whether to load precompiled markup
+	 */
+	public boolean getLoadPrecompiledMarkup()
+	{
+		return loadPrecompiledMarkup;
+	}
+
 	/**
 	 * @since 1.3
 	 * @return if true, an exception is thrown if the markup file does not contain a xml declaration
@@ -214,6 +229,21 @@ public class MarkupSettings
 		return this;
 	}
 
+	/**
+	 * Sets whether markup is read from precompiled files where available. Disabled by default,
+	 * because the precompiled files are deserialized.
+	 *
+	 * @param loadPrecompiledMarkup
+	 *            True to read precompiled markup, false to always parse the markup
+	 * @return {@code this} object for chaining
+	 * @see org.apache.wicket.markup.loader.PrecompiledMarkupLoader
+	 */
+	public MarkupSettings setLoadPrecompiledMarkup(boolean loadPrecompiledMarkup)
+	{
+		this.loadPrecompiledMarkup = loadPrecompiledMarkup;
+		return this;
+	}
+
 	/**
 	 * Enables stripping of markup comments denoted in markup by HTML comment tagging.
 	 *
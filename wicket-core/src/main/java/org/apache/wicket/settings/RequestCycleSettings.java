@@ -19,9 +19,11 @@ package org.apache.wicket.settings;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.time.Duration;
 
 /**
@@ -173,6 +175,33 @@ public class RequestCycleSettings
 
 	private int exceptionRetryCount = 10;
 
+	/**
+	 * The executor used to process requests asynchronously, {@code null} if requests are processed
+	 * on the container's thread.
+	 */
+	private Executor asyncExecutor;
+
+	/**
+	 * The executor used to preload models of independent components, {@code null} if they are
+	 * loaded lazily while rendering.
+	 */
+	private Executor modelPreloadExecutor;
+
+	/**
+	 * Whether pages which are rendered and written in the same request are streamed to the client
+	 * once their &lt;head&gt; is rendered. False by default.
+	 */
+	private boolean streamResponse = false;
+
+	/**
+	 * The maximum total size of the responses buffered for {@link RenderStrategy#REDIRECT_TO_BUFFER}
+	 * until the client follows the redirect.
+	 */
+	private Bytes storedResponsesMaxSize = Bytes.megabytes(64);
+
+	/** Whether the text of buffered responses is kept encoded outside of the heap */
+	private boolean storedResponsesOffHeap = false;
+
 // ****************************************************************************
 // IRequestCycleSettings Implementation
 // ****************************************************************************
@@ -418,4 +447,159 @@ public class RequestCycleSettings
 	{
 		return exceptionRetryCount;
 	}
+
+	/**
+	 * Sets the executor used to process requests asynchronously. If set, the
+	 * {@link org.apache.wicket.protocol.http.WicketFilter} puts requests in asynchronous mode
+	 * (Servlet 3.0 {@code startAsync()}) and processes their request cycles on this executor,
+	 * releasing the container's thread while the request waits for a page lock, slow models or a
+	 * slow client. Requests whose filter or servlet is not declared with {@code asyncSupported}
+	 * are still processed synchronously.
+	 * <p>
+	 * The filter has to be mapped for the {@code ASYNC} dispatcher too, because requests not
+	 * handled by Wicket are dispatched back to the container to continue the filter chain.
+	 * <p>
+	 * The application is responsible for shutting down the executor.
+	 * 
+	 * @param asyncExecutor
+	 *            the executor, or {@code null} to process requests on the container's thread
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setAsyncExecutor(Executor asyncExecutor)
+	{
+		this.asyncExecutor = asyncExecutor;
+		return this;
+	}
+
+	/**
+	 * @return the executor used to process requests asynchronously, {@code null} by default
+	 * @see #setAsyncExecutor(Executor)
+	 */
+	public Executor getAsyncExecutor()
+	{
+		return asyncExecutor;
+	}
+
+	/**
+	 * Sets the executor used to load the models of components marked with
+	 * {@link org.apache.wicket.behavior.PreloadModelsBehavior} in parallel, before they are
+	 * rendered.
+	 * 
+	 * @param modelPreloadExecutor
+	 *            the executor, or {@code null} to load all models lazily on the render thread
+	 * @return {@code this} object for chaining
+	 * @see org.apache.wicket.behavior.PreloadModelsBehavior
+	 */
+	public RequestCycleSettings setModelPreloadExecutor(Executor modelPreloadExecutor)
+	{
+		this.modelPreloadExecutor = modelPreloadExecutor;
+		return this;
+	}
+
+	/**
+	 * @return the executor used to preload models of independent components, {@code null} by
+	 *         default
+	 * @see #setModelPreloadExecutor(Executor)
+	 */
+	public Executor getModelPreloadExecutor()
+	{
+		return modelPreloadExecutor;
+	}
+
+	/**
+	 * Sets whether pages which are rendered and written in the same request are streamed to the
+	 * client while they are rendered, instead of being buffered completely.
+	 * <p>
+	 * The page is buffered until its &lt;head&gt; is rendered, i.e. after the header contributions
+	 * of all components were collected. Then the buffer is sent and flushed, so the browser can
+	 * start to fetch the CSS and JavaScript resources, and the rest of the markup is written
+	 * directly to the response. If the rendering fails or a redirect is requested before that, the
+	 * buffered response is discarded as usual. Failures after that can no longer be shown to the
+	 * user, they are only logged and the response ends where the rendering stopped.
+	 * <p>
+	 * Pages which have to be buffered, e.g. because they are rendered before a redirect with
+	 * {@link RenderStrategy#REDIRECT_TO_BUFFER}, as well as Ajax responses are never streamed. The
+	 * same applies if any {@link IResponseFilter} is configured, as filters need the whole response.
+	 * Note that applications in development mode add a filter by default.
+	 * 
+	 * @param streamResponse
+	 *            {@code true} to stream pages
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setStreamResponse(boolean streamResponse)
+	{
+		this.streamResponse = streamResponse;
+		return this;
+	}
+
+	/**
+	 * @return whether pages rendered and written in the same request are streamed, {@code false}
+	 *         by default
+	 * @see #setStreamResponse(boolean)
+	 */
+	public boolean getStreamResponse()
+	{
+		return streamResponse;
+	}
+
+	/**
+	 * Sets the maximum total size of the responses which are buffered with
+	 * {@link RenderStrategy#REDIRECT_TO_BUFFER} until the client follows the redirect to them. When
+	 * it is exceeded the eldest responses are evicted, and the client gets the page rendered again
+	 * when it follows the redirect.
+	 * <p>
+	 * Must be set in {@link org.apache.wicket.Application#init()}, the size is read when the first
+	 * response is stored.
+	 * 
+	 * @param storedResponsesMaxSize
+	 *            the maximum total size, 64 megabytes by default
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setStoredResponsesMaxSize(Bytes storedResponsesMaxSize)
+	{
+		this.storedResponsesMaxSize = Args.notNull(storedResponsesMaxSize,
+			"storedResponsesMaxSize");
+		return this;
+	}
+
+	/**
+	 * @return the maximum total size of the buffered responses
+	 * @see #setStoredResponsesMaxSize(Bytes)
+	 */
+	public Bytes getStoredResponsesMaxSize()
+	{
+		return storedResponsesMaxSize;
+	}
+
+	/**
+	 * Sets whether the text of responses buffered with {@link RenderStrategy#REDIRECT_TO_BUFFER}
+	 * is kept outside of the heap until the client follows the redirect to them. The text is then
+	 * encoded in the charset of the response's content type right away, and the response filters
+	 * are applied when the response is stored instead of when it is written. Responses without a
+	 * charset in their content type stay on the heap.
+	 * <p>
+	 * The memory is allocated with {@link java.nio.ByteBuffer#allocateDirect(int)}, so it is limited
+	 * by {@code -XX:MaxDirectMemorySize} and freed when the garbage collector collects the responses.
+	 * <p>
+	 * Must be set in {@link org.apache.wicket.Application#init()}.
+	 * 
+	 * @param storedResponsesOffHeap
+	 *            {@code true} to keep the text of buffered responses outside of the heap,
+	 *            {@code false} by default
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setStoredResponsesOffHeap(boolean storedResponsesOffHeap)
+	{
+		this.storedResponsesOffHeap = storedResponsesOffHeap;
+		return this;
+	}
+
+	/**
+	 * @return whether the text of buffered responses is kept outside of the heap
+	 * @see #setStoredResponsesOffHeap(boolean)
+	 */
+	public boolean getStoredResponsesOffHeap()
+	{
+		return storedResponsesOffHeap;
+	}
 }
@@ -21,9 +21,13 @@ import java.io.IOException;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.pageStore.DiskDataStore;
+import org.apache.wicket.pageStore.MappedDataStore;
+import org.apache.wicket.pageStore.PerSessionPageStore;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
 
 /**
  * A class for settings related to the the storages where page instances are persisted -
@@ -50,6 +54,10 @@ public class StoreSettings
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final int DEFAULT_ASYNCHRONOUS_BATCH_SIZE = 1;
+
+	private static final int DEFAULT_ASYNCHRONOUS_WORKER_COUNT = 1;
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
@@ -60,6 +68,28 @@ public class StoreSettings
 
 	private boolean isAsynchronous = true;
 
+	private int fileChannelPoolCapacity = DiskDataStore.DEFAULT_FILE_CHANNEL_POOL_CAPACITY;
+
+	private int asynchronousBatchSize = DEFAULT_ASYNCHRONOUS_BATCH_SIZE;
+
+	private Duration asynchronousBatchWait = Duration.NONE;
+
+	private int asynchronousWorkerCount = DEFAULT_ASYNCHRONOUS_WORKER_COUNT;
+
+	private Bytes offHeapCacheSize = Bytes.bytes(0);
+
+	private int maxDeltaChainLength = 0;
+
+	private Bytes offHeapCacheSizePerSession = Bytes.megabytes(1);
+
+	private int mappedDataStoreSegments = 0;
+
+	private Bytes mappedDataStoreSegmentSize = MappedDataStore.DEFAULT_SEGMENT_SIZE;
+
+	private int perSessionPageCacheSize = 0;
+
+	private Bytes perSessionPageCacheMaxSize = PerSessionPageStore.DEFAULT_MAX_SIZE;
+
 	/**
 	 * Construct.
 	 * 
@@ -214,4 +244,260 @@ public class StoreSettings
 	{
 		return isAsynchronous;
 	}
+
+	/**
+	 * @return the maximum number of session files kept open by
+	 *         {@link org.apache.wicket.pageStore.DiskDataStore}
+	 * @see org.apache.wicket.pageStore.FileChannelPool
+	 */
+	public int getFileChannelPoolCapacity()
+	{
+		return fileChannelPoolCapacity;
+	}
+
+	/**
+	 * Sets the maximum number of session files kept open by
+	 * {@link org.apache.wicket.pageStore.DiskDataStore}. Files of sessions which are not used
+	 * recently are closed when this number is exceeded.
+	 *
+	 * @param capacity
+	 *            the maximum number of open files
+	 * @see org.apache.wicket.pageStore.FileChannelPool
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setFileChannelPoolCapacity(int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException(
+				"The capacity of the file channel pool should be at least 1.");
+		}
+		fileChannelPoolCapacity = capacity;
+		return this;
+	}
+
+	/**
+	 * @return the maximum number of pages saved at once by
+	 *         {@link org.apache.wicket.pageStore.AsynchronousDataStore}
+	 */
+	public int getAsynchronousBatchSize()
+	{
+		return asynchronousBatchSize;
+	}
+
+	/**
+	 * @return the maximum time {@link org.apache.wicket.pageStore.AsynchronousDataStore} waits for
+	 *         a batch to fill up
+	 */
+	public Duration getAsynchronousBatchWait()
+	{
+		return asynchronousBatchWait;
+	}
+
+	/**
+	 * Sets how many pages {@link org.apache.wicket.pageStore.AsynchronousDataStore} saves at once.
+	 * Older versions of a page in the same batch are not saved at all, and the pages of a session
+	 * are handed to the wrapped {@link org.apache.wicket.pageStore.IDataStore} together. By default
+	 * every page is saved on its own.
+	 *
+	 * @param batchSize
+	 *            the maximum number of pages saved at once
+	 * @param batchWait
+	 *            the maximum time to wait for a batch to fill up
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setAsynchronousBatch(int batchSize, Duration batchWait)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("The batch size should be at least 1.");
+		}
+		asynchronousBatchSize = batchSize;
+		asynchronousBatchWait = Args.notNull(batchWait, "batchWait");
+		return this;
+	}
+
+	/**
+	 * @return the number of threads saving the pages asynchronously
+	 * @see org.apache.wicket.pageStore.AsynchronousDataStore
+	 * @see org.apache.wicket.pageStore.AsynchronousPageStore
+	 */
+	public int getAsynchronousWorkerCount()
+	{
+		return asynchronousWorkerCount;
+	}
+
+	/**
+	 * Sets the number of threads saving the pages asynchronously. The sessions are partitioned
+	 * among the threads by the hash of their id, so the pages of a session are still saved in
+	 * order. The {@link #getAsynchronousQueueCapacity() queue capacity} is shared evenly by the
+	 * threads.
+	 *
+	 * @param workerCount
+	 *            the number of threads
+	 * @see org.apache.wicket.pageStore.AsynchronousDataStore
+	 * @see org.apache.wicket.pageStore.AsynchronousPageStore
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setAsynchronousWorkerCount(int workerCount)
+	{
+		if (workerCount < 1)
+		{
+			throw new IllegalArgumentException("The number of workers should be at least 1.");
+		}
+		asynchronousWorkerCount = workerCount;
+		return this;
+	}
+
+	/**
+	 * @return the maximum size of the off-heap second level cache
+	 * @see org.apache.wicket.pageStore.OffHeapPageCache
+	 */
+	public Bytes getOffHeapCacheSize()
+	{
+		return offHeapCacheSize;
+	}
+
+	/**
+	 * @return the maximum size of the pages of a single session in the off-heap second level cache
+	 * @see org.apache.wicket.pageStore.OffHeapPageCache
+	 */
+	public Bytes getOffHeapCacheSizePerSession()
+	{
+		return offHeapCacheSizePerSession;
+	}
+
+	/**
+	 * Sets the size of the second level cache which keeps the serialized pages outside of the Java
+	 * heap. If it is bigger than zero it is used instead of the
+	 * {@link #getInmemoryCacheSize() in-memory cache}. By default it is disabled.
+	 *
+	 * @param maxSize
+	 *            the maximum size of the cache
+	 * @param maxSizePerSession
+	 *            the maximum size of the pages of a single session
+	 * @see org.apache.wicket.pageStore.OffHeapPageCache
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setOffHeapCacheSize(final Bytes maxSize, final Bytes maxSizePerSession)
+	{
+		offHeapCacheSize = Args.notNull(maxSize, "maxSize");
+		offHeapCacheSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
+		return this;
+	}
+
+	/**
+	 * @return the maximum number of versions of a page stored as deltas against a snapshot, or
+	 *         {@code 0} if the pages are always stored as a whole
+	 * @see org.apache.wicket.pageStore.DeltaDataStore
+	 */
+	public int getMaxDeltaChainLength()
+	{
+		return maxDeltaChainLength;
+	}
+
+	/**
+	 * Sets whether consecutive versions of a page are stored as binary deltas, which reduces the
+	 * amount of data written for pages re-stored on every Ajax request. By default the pages are
+	 * always stored as a whole.
+	 *
+	 * @param maxChainLength
+	 *            the maximum number of deltas stored against a snapshot of a page, or {@code 0} to
+	 *            disable delta storage
+	 * @see org.apache.wicket.pageStore.DeltaDataStore
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setMaxDeltaChainLength(int maxChainLength)
+	{
+		if (maxChainLength < 0)
+		{
+			throw new IllegalArgumentException("The chain length should not be negative.");
+		}
+		maxDeltaChainLength = maxChainLength;
+		return this;
+	}
+
+	/**
+	 * @return the maximum number of segment files of the {@link MappedDataStore}, or {@code 0} if
+	 *         the pages are stored with a {@link org.apache.wicket.pageStore.DiskDataStore}
+	 */
+	public int getMappedDataStoreSegments()
+	{
+		return mappedDataStoreSegments;
+	}
+
+	/**
+	 * @return the size of a single segment file of the {@link MappedDataStore}
+	 */
+	public Bytes getMappedDataStoreSegmentSize()
+	{
+		return mappedDataStoreSegmentSize;
+	}
+
+	/**
+	 * Sets whether the pages of all sessions are stored in a few large memory mapped segment files
+	 * instead of one file per session. The store takes up to {@code segments + 1} times
+	 * {@code segmentSize} on disk, the additional segment is used for compaction. By default the
+	 * pages are stored with a {@link org.apache.wicket.pageStore.DiskDataStore}.
+	 *
+	 * @param segments
+	 *            the maximum number of segment files, or {@code 0} to use a
+	 *            {@link org.apache.wicket.pageStore.DiskDataStore}
+	 * @param segmentSize
+	 *            the size of a single segment file, at most 2GB
+	 * @see MappedDataStore
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setMappedDataStore(int segments, Bytes segmentSize)
+	{
+		if (segments < 0)
+		{
+			throw new IllegalArgumentException("The number of segments should not be negative.");
+		}
+		mappedDataStoreSegments = segments;
+		mappedDataStoreSegmentSize = Args.notNull(segmentSize, "segmentSize");
+		return this;
+	}
+
+	/**
+	 * @return the number of live page instances kept per session by the
+	 *         {@link PerSessionPageStore}, or {@code 0} if it is not used
+	 */
+	public int getPerSessionPageCacheSize()
+	{
+		return perSessionPageCacheSize;
+	}
+
+	/**
+	 * @return the maximum size of the live page instances of all sessions kept by the
+	 *         {@link PerSessionPageStore}
+	 */
+	public Bytes getPerSessionPageCacheMaxSize()
+	{
+		return perSessionPageCacheMaxSize;
+	}
+
+	/**
+	 * Sets whether the last used live page instances of each session are kept by a
+	 * {@link PerSessionPageStore}, bounded by the total size of their serialized form. If the
+	 * number of pages is bigger than zero it is used instead of the
+	 * {@link #getInmemoryCacheSize() in-memory cache}. By default it is disabled.
+	 *
+	 * @param cacheSize
+	 *            the number of pages kept per session, or {@code 0} to disable the cache
+	 * @param maxSize
+	 *            the maximum size of the pages of all sessions
+	 * @see PerSessionPageStore
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setPerSessionPageCache(int cacheSize, Bytes maxSize)
+	{
+		if (cacheSize < 0)
+		{
+			throw new IllegalArgumentException("The cache size should not be negative.");
+		}
+		perSessionPageCacheSize = cacheSize;
+		perSessionPageCacheMaxSize = Args.notNull(maxSize, "maxSize");
+		return this;
+	}
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import java.util.Set;
+
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Renders a table with 10k cells, each of them carrying a {@link ClassAttributeModifier}.
+ */
+@Category(SlowTests.class)
+public class ClassAttributeModifierPerformanceTest extends WicketTestCase
+{
+	private static final int ROWS = 500;
+
+	private static final int COLUMNS = 20;
+
+	private static final int WARMUP = 10;
+
+	private static final int ITERATIONS = 20;
+
+	/**
+	 * Renders the table
+	 */
+	@Test
+	public void performance()
+	{
+		for (int i = 0; i < WARMUP; i++)
+		{
+			tester.startPage(new TablePage());
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			tester.startPage(new TablePage());
+		}
+		long duration = System.nanoTime() - start;
+
+		String response = tester.getLastResponseAsString();
+		assertTrue(response.contains(" class=\"cell odd\" title=\"cell\">"));
+
+		System.out.println(String.format("%d cells: %d ms per render", ROWS * COLUMNS, duration /
+			ITERATIONS / 1000000));
+	}
+
+	/**
+	 * A page with a table
+	 */
+	public static class TablePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public TablePage()
+		{
+			RepeatingView rows = new RepeatingView("rows");
+			add(rows);
+			for (int r = 0; r < ROWS; r++)
+			{
+				WebMarkupContainer row = new WebMarkupContainer(rows.newChildId());
+				rows.add(row);
+
+				RepeatingView cells = new RepeatingView("cells");
+				row.add(cells);
+				for (int c = 0; c < COLUMNS; c++)
+				{
+					WebMarkupContainer cell = new WebMarkupContainer(cells.newChildId());
+					cell.add(new OddEvenModifier(c % 2 == 1));
+					cells.add(cell);
+				}
+			}
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body><table><tr wicket:id=\"rows\">" +
+				"<td wicket:id=\"cells\" class=\"cell\" title=\"cell\"></td>" +
+				"</tr></table></body></html>");
+		}
+	}
+
+	private static class OddEvenModifier extends ClassAttributeModifier
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final boolean odd;
+
+		private OddEvenModifier(boolean odd)
+		{
+			this.odd = odd;
+		}
+
+		@Override
+		protected Set<String> update(Set<String> oldClasses)
+		{
+			oldClasses.add(odd ? "odd" : "even");
+			return oldClasses;
+		}
+	}
+}
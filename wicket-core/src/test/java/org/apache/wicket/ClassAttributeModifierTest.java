@@ -110,6 +110,33 @@ public class ClassAttributeModifierTest extends Assert
 		assertNull(classes);
 	}
 
+	/**
+	 * Splits the current value at any whitespace
+	 */
+	@Test
+	public void splitAtWhitespace()
+	{
+		ClassAttributeModifier cam = new ClassAttributeModifier()
+		{
+			@Override
+			protected Set<String> update(Set<String> oldClasses)
+			{
+				assertEquals(3, oldClasses.size());
+				oldClasses.add("four");
+				return oldClasses;
+			}
+		};
+		ComponentTag tag = createTag();
+
+		Map<String, Object> attributes = tag.getAttributes();
+		attributes.put(cam.getAttribute(), " two\tone \n\r three  ");
+
+		cam.replaceAttributeValue(null, tag);
+
+		String classes = (String) attributes.get(cam.getAttribute());
+		assertEquals("four one three two", classes);
+	}
+
 	private ComponentTag createTag()
 	{
 		XmlTag xmlTag = new XmlTag();
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.behavior;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.data.DataView;
+import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PreloadModelsBehavior}
+ */
+public class PreloadModelsBehaviorTest extends WicketTestCase
+{
+	/** the threads which loaded the models first, by name of the model */
+	private static final Map<String, Thread> LOADING_THREADS = new ConcurrentHashMap<>();
+
+	/** makes loads of the marked models wait for each other, {@code null} if they should not */
+	private static volatile CyclicBarrier barrier;
+
+	private ExecutorService executor;
+
+	/**
+	 * Creates the executor
+	 */
+	@Before
+	public void before()
+	{
+		executor = Executors.newFixedThreadPool(2);
+		LOADING_THREADS.clear();
+	}
+
+	/**
+	 * Shuts the executor down
+	 */
+	@After
+	public void after()
+	{
+		executor.shutdownNow();
+		barrier = null;
+	}
+
+	/**
+	 * The models of marked components are loaded concurrently on the executor, the others on the
+	 * render thread
+	 */
+	@Test
+	public void preloadInParallel()
+	{
+		tester.getApplication().getRequestCycleSettings().setModelPreloadExecutor(executor);
+		// each load waits for the other one, so they fail if not loaded concurrently
+		barrier = new CyclicBarrier(2);
+
+		tester.startPage(new DashboardPage());
+		// models are reloaded by the assertions below, let them load without waiting
+		barrier = null;
+
+		tester.assertLabel("first:value", "first");
+		tester.assertLabel("second:value", "second");
+		tester.assertLabel("third", "third");
+
+		assertNotSame(Thread.currentThread(), LOADING_THREADS.get("first"));
+		assertNotSame(Thread.currentThread(), LOADING_THREADS.get("second"));
+		assertNotSame(LOADING_THREADS.get("first"), LOADING_THREADS.get("second"));
+		assertSame(Thread.currentThread(), LOADING_THREADS.get("third"));
+	}
+
+	/**
+	 * The models of the rows created by a repeater inside a marked component are loaded
+	 * concurrently before the rows are populated
+	 */
+	@Test
+	public void preloadRowsInParallel()
+	{
+		tester.getApplication().getRequestCycleSettings().setModelPreloadExecutor(executor);
+		barrier = new CyclicBarrier(2);
+
+		tester.startPage(new RowsPage());
+		barrier = null;
+
+		tester.assertContains("row1.*row2");
+		assertNotSame(Thread.currentThread(), LOADING_THREADS.get("row1"));
+		assertNotSame(Thread.currentThread(), LOADING_THREADS.get("row2"));
+		assertNotSame(LOADING_THREADS.get("row1"), LOADING_THREADS.get("row2"));
+	}
+
+	/**
+	 * Without an executor all models are loaded lazily on the render thread
+	 */
+	@Test
+	public void withoutExecutor()
+	{
+		tester.startPage(new DashboardPage());
+
+		tester.assertLabel("first:value", "first");
+		assertSame(Thread.currentThread(), LOADING_THREADS.get("first"));
+		assertSame(Thread.currentThread(), LOADING_THREADS.get("second"));
+	}
+
+	private static class SlowModel extends LoadableDetachableModel<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private final boolean independent;
+
+		private SlowModel(String name, boolean independent)
+		{
+			this.name = name;
+			this.independent = independent;
+		}
+
+		@Override
+		protected String load()
+		{
+			LOADING_THREADS.putIfAbsent(name, Thread.currentThread());
+			CyclicBarrier current = barrier;
+			if (independent && current != null)
+			{
+				try
+				{
+					current.await(10, TimeUnit.SECONDS);
+				}
+				catch (Exception e)
+				{
+					throw new IllegalStateException("models were not loaded concurrently", e);
+				}
+			}
+			return name;
+		}
+	}
+
+	/**
+	 * A page with a marked data view whose rows read their model object when populated
+	 */
+	public static class RowsPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public RowsPage()
+		{
+			DataView<String> rows = new DataView<String>("rows",
+				new ListDataProvider<String>(Arrays.asList("row1", "row2"))
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public IModel<String> model(String name)
+					{
+						return new SlowModel(name, true);
+					}
+				})
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void populateItem(Item<String> item)
+				{
+					item.add(new Label("value", item.getModelObject()));
+				}
+			};
+			rows.add(new PreloadModelsBehavior());
+			add(rows);
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><body><div wicket:id='rows'><span wicket:id='value'></span></div></body></html>");
+		}
+	}
+
+	/**
+	 * A page with two independent panels and another label
+	 */
+	public static class DashboardPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public DashboardPage()
+		{
+			add(panel("first"));
+			add(panel("second"));
+			add(new Label("third", new SlowModel("third", false)));
+		}
+
+		private static WebMarkupContainer panel(String id)
+		{
+			WebMarkupContainer panel = new WebMarkupContainer(id);
+			panel.add(new Label("value", new SlowModel(id, true)));
+			panel.add(new PreloadModelsBehavior());
+			return panel;
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body>" +
+				"<div wicket:id='first'><span wicket:id='value'></span></div>" +
+				"<div wicket:id='second'><span wicket:id='value'></span></div>" +
+				"<span wicket:id='third'></span></body></html>");
+		}
+	}
+}
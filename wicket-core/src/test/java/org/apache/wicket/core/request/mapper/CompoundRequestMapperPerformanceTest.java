@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.core.request.mapper;
+
+import org.apache.wicket.MockPage;
+import org.apache.wicket.core.request.handler.IPageClassRequestHandler;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.mapper.CompoundRequestMapper;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares the cost of mapping a request by a {@link CompoundRequestMapper} with an increasing
+ * number of mounted pages, with and without the index of the mount prefixes.
+ */
+@Category(SlowTests.class)
+public class CompoundRequestMapperPerformanceTest extends AbstractMapperTest
+{
+	private static final int WARMUP = 2000;
+
+	private static final int ITERATIONS = 5000;
+
+	private IRequestMapper mountedMapper(int index)
+	{
+		return new MountedMapper("/section" + index + "/page" + index, MockPage.class)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+		};
+	}
+
+	/**
+	 * Hides the mount prefix of the wrapped mapper.
+	 */
+	private static IRequestMapper unindexed(final IRequestMapper mapper)
+	{
+		return new IRequestMapper()
+		{
+			@Override
+			public IRequestHandler mapRequest(Request request)
+			{
+				return mapper.mapRequest(request);
+			}
+
+			@Override
+			public int getCompatibilityScore(Request request)
+			{
+				return mapper.getCompatibilityScore(request);
+			}
+
+			@Override
+			public Url mapHandler(IRequestHandler requestHandler)
+			{
+				return mapper.mapHandler(requestHandler);
+			}
+		};
+	}
+
+	private long run(CompoundRequestMapper compound, int mounts)
+	{
+		Request[] requests = new Request[mounts];
+		for (int i = 0; i < mounts; i++)
+		{
+			requests[i] = getRequest(Url.parse("section" + i + "/page" + i));
+		}
+
+		for (int i = 0; i < WARMUP; i++)
+		{
+			IRequestHandler handler = compound.mapRequest(requests[i % mounts]);
+			assertEquals(MockPage.class, ((IPageClassRequestHandler)handler).getPageClass());
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			compound.mapRequest(requests[i % mounts]);
+		}
+		return (System.nanoTime() - start) / ITERATIONS;
+	}
+
+	@Test
+	public void performance()
+	{
+		for (int mounts : new int[] { 10, 100, 500 })
+		{
+			CompoundRequestMapper indexed = new CompoundRequestMapper();
+			CompoundRequestMapper scanned = new CompoundRequestMapper();
+			for (int i = 0; i < mounts; i++)
+			{
+				IRequestMapper mapper = mountedMapper(i);
+				indexed.add(mapper);
+				scanned.add(unindexed(mapper));
+			}
+
+			System.out.println(String.format("%4d mounts, indexed: %6d ns, scanned: %6d ns",
+				mounts, run(indexed, mounts), run(scanned, mounts)));
+		}
+	}
+}
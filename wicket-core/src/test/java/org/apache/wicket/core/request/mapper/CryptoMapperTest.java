@@ -18,6 +18,7 @@ package org.apache.wicket.core.request.mapper;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import org.apache.wicket.MockPage;
@@ -286,6 +287,98 @@ public class CryptoMapperTest extends AbstractMapperTest
 		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(requestHandler).toString());
 	}
 
+	/**
+	 * Repeated URLs are encrypted only once.
+	 */
+	@Test
+	public void encryptionCache()
+	{
+		final ICrypt crypt = new CachingSunJceCryptFactory(SecuritySettings.DEFAULT_ENCRYPTION_KEY).newCrypt();
+		final AtomicInteger encryptions = new AtomicInteger();
+		ICrypt countingCrypt = new ICrypt()
+		{
+			@Override
+			public String decryptUrlSafe(String text)
+			{
+				return crypt.decryptUrlSafe(text);
+			}
+
+			@Override
+			public String encryptUrlSafe(String plainText)
+			{
+				encryptions.incrementAndGet();
+				return crypt.encryptUrlSafe(plainText);
+			}
+
+			@Override
+			public void setKey(String key)
+			{
+				crypt.setKey(key);
+			}
+		};
+		CryptoMapper mapper = new CryptoMapper(this.mapper.getDelegateMapper(), () -> countingCrypt);
+
+		IRequestHandler requestHandler = new RenderPageRequestHandler(new PageProvider(new MockPage(5)));
+		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(requestHandler).toString());
+		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(requestHandler).toString());
+		assertEquals(1, encryptions.get());
+
+		mapper.setEncryptionCacheSize(0);
+		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(requestHandler).toString());
+		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(requestHandler).toString());
+		assertEquals(3, encryptions.get());
+	}
+
+	/**
+	 * The least recently used URLs are dropped from the encryption cache first.
+	 */
+	@Test
+	public void encryptionCacheLeastRecentlyUsed()
+	{
+		final ICrypt crypt = new CachingSunJceCryptFactory(SecuritySettings.DEFAULT_ENCRYPTION_KEY).newCrypt();
+		final AtomicInteger encryptions = new AtomicInteger();
+		ICrypt countingCrypt = new ICrypt()
+		{
+			@Override
+			public String decryptUrlSafe(String text)
+			{
+				return crypt.decryptUrlSafe(text);
+			}
+
+			@Override
+			public String encryptUrlSafe(String plainText)
+			{
+				encryptions.incrementAndGet();
+				return crypt.encryptUrlSafe(plainText);
+			}
+
+			@Override
+			public void setKey(String key)
+			{
+				crypt.setKey(key);
+			}
+		};
+		CryptoMapper mapper = new CryptoMapper(this.mapper.getDelegateMapper(), () -> countingCrypt)
+			.setEncryptionCacheSize(2);
+
+		IRequestHandler first = new RenderPageRequestHandler(new PageProvider(new MockPage(5)));
+		IRequestHandler second = new RenderPageRequestHandler(new PageProvider(new MockPage(6)));
+		IRequestHandler third = new RenderPageRequestHandler(new PageProvider(new MockPage(7)));
+
+		mapper.mapHandler(first);
+		mapper.mapHandler(second);
+		mapper.mapHandler(first);
+		assertEquals(2, encryptions.get());
+
+		// drops the second one, which was used less recently than the first one
+		mapper.mapHandler(third);
+		assertEquals(ENCRYPTED_PAGE_INSTANCE_URL, mapper.mapHandler(first).toString());
+		assertEquals(3, encryptions.get());
+
+		mapper.mapHandler(second);
+		assertEquals(4, encryptions.get());
+	}
+
 	/**
 	 * Make sure that encrypted page instance URLs are decrypted and the correct handler resolved.
 	 */
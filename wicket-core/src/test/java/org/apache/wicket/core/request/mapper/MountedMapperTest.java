@@ -970,4 +970,46 @@ public class MountedMapperTest extends AbstractMapperTest
 			+ " got exact = " + exactCompatScore + " and optional = " + optCompatScore,
 			requiredParamScore > optCompatScore);
 	}
+
+	/**
+	 * Mappers which match the mount path in a custom way report no mount prefix.
+	 */
+	@Test
+	public void mountPrefix()
+	{
+		assertArrayEquals(new String[] { "some", "mount" },
+			new MountedMapper("/some/mount/${param}/path", MockPage.class).getMountPrefix());
+
+		MountedMapper custom = new MountedMapper("/some/mount", MockPage.class)
+		{
+			@Override
+			protected boolean segmentsMatch(String mountedSegment, String urlSegment)
+			{
+				return mountedSegment.replace('-', '_').equals(urlSegment.replace('-', '_'));
+			}
+		};
+		assertNull(custom.getMountPrefix());
+
+		MountedMapper customParse = new MountedMapper("/some/mount", MockPage.class)
+		{
+			@Override
+			protected UrlInfo parseRequest(Request request)
+			{
+				return super.parseRequest(request);
+			}
+		};
+		assertNull(customParse.getMountPrefix());
+
+		MountedMapper customMap = new MountedMapper("/some/mount", MockPage.class)
+		{
+			@Override
+			public IRequestHandler mapRequest(Request request)
+			{
+				return super.mapRequest(request);
+			}
+		};
+		assertNull(customMap.getMountPrefix());
+
+		assertArrayEquals(new String[0], new HomePageMapper(MockPage.class).getMountPrefix());
+	}
 }
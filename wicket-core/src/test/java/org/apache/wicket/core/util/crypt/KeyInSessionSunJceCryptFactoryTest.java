@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.core.util.crypt;
+
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.crypt.ICrypt;
+import org.apache.wicket.util.crypt.SunJceCrypt;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeyInSessionSunJceCryptFactory}
+ */
+public class KeyInSessionSunJceCryptFactoryTest extends WicketTestCase
+{
+	/**
+	 * The crypt of a session is reused.
+	 */
+	@Test
+	public void cachedCrypt()
+	{
+		KeyInSessionSunJceCryptFactory factory = new KeyInSessionSunJceCryptFactory();
+
+		ICrypt crypt = factory.newCrypt();
+		assertSame(crypt, factory.newCrypt());
+		assertEquals("text", crypt.decryptUrlSafe(crypt.encryptUrlSafe("text")));
+	}
+
+	/**
+	 * Without a cache every crypt is new, but uses the key of the session.
+	 */
+	@Test
+	public void noCache()
+	{
+		KeyInSessionSunJceCryptFactory factory = new KeyInSessionSunJceCryptFactory(
+			SunJceCrypt.DEFAULT_CRYPT_METHOD, 0);
+
+		ICrypt crypt = factory.newCrypt();
+		ICrypt other = factory.newCrypt();
+		assertNotSame(crypt, other);
+		assertEquals("text", other.decryptUrlSafe(crypt.encryptUrlSafe("text")));
+	}
+
+	/**
+	 * The crypts of the least recently used sessions are evicted.
+	 */
+	@Test
+	public void leastRecentlyUsedEvicted()
+	{
+		KeyInSessionSunJceCryptFactory factory = new KeyInSessionSunJceCryptFactory(
+			SunJceCrypt.DEFAULT_CRYPT_METHOD, 10);
+
+		Session first = newSession();
+		ICrypt firstCrypt = factory.newCrypt();
+		Session second = newSession();
+		ICrypt secondCrypt = factory.newCrypt();
+
+		for (int i = 0; i < 20; i++)
+		{
+			newSession();
+			factory.newCrypt();
+
+			ThreadContext.setSession(first);
+			assertSame(firstCrypt, factory.newCrypt());
+		}
+
+		ThreadContext.setSession(second);
+		ICrypt renewed = factory.newCrypt();
+		assertNotSame(secondCrypt, renewed);
+		assertEquals("text", renewed.decryptUrlSafe(secondCrypt.encryptUrlSafe("text")));
+	}
+
+	private Session newSession()
+	{
+		RequestCycle requestCycle = tester.getRequestCycle();
+		Session session = tester.getApplication().newSession(requestCycle.getRequest(),
+			requestCycle.getResponse());
+		ThreadContext.setSession(session);
+		return session;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.response.StringResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for writing static markup as bytes
+ */
+public class EncodedMarkupTest extends Assert
+{
+	/**
+	 * Raw markup is written as bytes
+	 */
+	@Test
+	public void rawMarkup()
+	{
+		RawMarkup markup = new RawMarkup("<p>ä€</p>");
+
+		BytesResponse response = new BytesResponse(StandardCharsets.UTF_8);
+		markup.writeOutput(response);
+		markup.writeOutput(response);
+		assertEquals("<p>ä€</p><p>ä€</p>", response.getBytesAsString());
+
+		response = new BytesResponse(StandardCharsets.ISO_8859_1);
+		markup.writeOutput(response);
+		assertEquals("<p>ä?</p>", response.getBytesAsString());
+
+		response = new BytesResponse(null);
+		markup.writeOutput(response);
+		assertEquals("<p>ä€</p>", response.getTextResponse().toString());
+	}
+
+	/**
+	 * Tags of the markup and unchanged copies of them are written as bytes
+	 */
+	@Test
+	public void componentTag()
+	{
+		ComponentTag tag = new ComponentTag("span", TagType.OPEN);
+		tag.put("wicket:id", "label");
+		tag.put("title", "ä & b");
+		tag.makeImmutable();
+
+		StringResponse text = new StringResponse();
+		tag.writeOutput(text, true, "wicket");
+		assertEquals("<span title=\"ä &amp; b\">", text.toString());
+
+		BytesResponse response = new BytesResponse(StandardCharsets.UTF_8);
+		tag.writeOutput(response, true, "wicket");
+		tag.mutable().writeOutput(response, true, "wicket");
+		tag.mutable().writeOutput(response, false, "wicket");
+		assertEquals(text.toString() + text.toString() +
+			"<span wicket:id=\"label\" title=\"ä &amp; b\">", response.getBytesAsString());
+
+		ComponentTag changed = tag.mutable();
+		changed.put("class", "c");
+		response = new BytesResponse(StandardCharsets.UTF_8);
+		changed.writeOutput(response, true, "wicket");
+		assertEquals("<span title=\"ä &amp; b\" class=\"c\">",
+			response.getTextResponse().toString());
+	}
+
+	/**
+	 * A response which takes static markup as bytes, or as text only
+	 */
+	private static class BytesResponse extends MockWebResponse
+	{
+		private final Charset charset;
+
+		private BytesResponse(Charset charset)
+		{
+			this.charset = charset;
+		}
+
+		@Override
+		public Charset getEncodingCharset()
+		{
+			return charset;
+		}
+
+		private String getBytesAsString()
+		{
+			return new String(getBinaryResponse(), charset);
+		}
+	}
+}
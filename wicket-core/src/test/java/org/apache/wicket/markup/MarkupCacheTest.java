@@ -18,10 +18,13 @@ package org.apache.wicket.markup;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.StringResourceStream;
 import org.apache.wicket.util.tester.WicketTestCase;
+import org.apache.wicket.util.time.Duration;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -87,6 +90,108 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * Lookups are counted
+	 */
+	@Test
+	public void statistics()
+	{
+		long hits = cache.getHitCount();
+		long loads = cache.getLoadCount();
+
+		cache.getMarkup(component, null, false);
+
+		assertEquals(hits + 1, cache.getHitCount());
+		assertEquals(loads, cache.getLoadCount());
+		assertTrue(cache.getMissCount() > 0);
+		assertTrue(cache.getLoadCount() > 0);
+	}
+
+	/**
+	 * The least recently used entries are evicted when the cache is full
+	 */
+	@Test
+	public void boundedCacheEvictsLeastRecentlyUsed()
+	{
+		BoundedCacheImplementation<String, Markup> bounded = new BoundedCacheImplementation<>(
+			Bytes.bytes(2000), null);
+
+		Markup markup = Markup.of("<div>" + new String(new char[100]) + "</div>");
+		long size = bounded.estimateSize("a") + bounded.estimateSize(markup);
+		assertTrue(size > 400);
+
+		int count = (int)(2000 / size);
+		for (int i = 0; i < count; i++)
+		{
+			bounded.put("" + i, markup);
+			bounded.get("0");
+		}
+		assertEquals(count, bounded.size());
+		assertEquals(0, bounded.getEvictionCount());
+
+		bounded.put("new", markup);
+
+		assertTrue(bounded.getEvictionCount() > 0);
+		assertTrue(bounded.getSize().bytes() <= 1800);
+		assertSame(markup, bounded.get("0"));
+		assertSame(markup, bounded.get("new"));
+		assertNull(bounded.get("1"));
+
+		bounded.clear();
+		assertEquals(0, bounded.size());
+		assertEquals(0, bounded.getSize().bytes());
+	}
+
+	/**
+	 * Markup not found is cached only for a while
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void boundedCacheExpiresNoMarkup() throws Exception
+	{
+		BoundedCacheImplementation<String, Markup> bounded = new BoundedCacheImplementation<>(
+			Bytes.megabytes(1), Duration.milliseconds(10));
+
+		Markup markup = Markup.of("<div></div>");
+		bounded.put("found", markup);
+		bounded.put("notFound", Markup.NO_MARKUP);
+		assertTrue(bounded.containsKey("notFound"));
+
+		Thread.sleep(50);
+
+		assertFalse(bounded.containsKey("notFound"));
+		assertNull(bounded.get("notFound"));
+		assertSame(markup, bounded.get("found"));
+		assertEquals(1, bounded.size());
+	}
+
+	/**
+	 * Markup is reloaded after it has been evicted
+	 */
+	@Test
+	public void markupIsReloadedAfterEviction()
+	{
+		cache = new MarkupCache()
+		{
+			@Override
+			protected <K, V> ICache<K, V> newCacheImplementation()
+			{
+				return new BoundedCacheImplementation<>(Bytes.bytes(1), null);
+			}
+		};
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+
+		long loads = cache.getLoadCount();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+
+		assertTrue(cache.getLoadCount() > loads);
+		assertEquals(0, cache.getHitCount());
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
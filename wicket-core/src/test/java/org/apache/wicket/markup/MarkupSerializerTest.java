@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.parser.filter.WicketTagIdentifier;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupSerializer}
+ */
+public class MarkupSerializerTest extends WicketTestCase
+{
+	/**
+	 * Writes the markup of the test components and compares the markup read back with the parsed
+	 * one.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void writeAndRead() throws Exception
+	{
+		Path root = Paths.get(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(root))
+		{
+			files = paths.filter(path -> path.toString().endsWith(".html")).collect(
+				Collectors.toList());
+		}
+
+		int written = 0;
+		List<String> notWritten = new ArrayList<>();
+		for (Path file : files)
+		{
+			String name = root.relativize(file).toString().replace('/', '.');
+			Class<?> containerClass;
+			try
+			{
+				containerClass = Class.forName(name.substring(0, name.length() - 5));
+			}
+			catch (ClassNotFoundException e)
+			{
+				continue;
+			}
+			if (MarkupContainer.class.isAssignableFrom(containerClass) == false)
+			{
+				continue;
+			}
+
+			Markup markup;
+			try
+			{
+				markup = MarkupFactory.get()
+					.newMarkupParser(newMarkupResourceStream(file, containerClass))
+					.parse();
+			}
+			catch (RuntimeException e)
+			{
+				// broken on purpose
+				continue;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try
+			{
+				MarkupSerializer.write(markup, out);
+			}
+			catch (NotSerializableException e)
+			{
+				notWritten.add(file + ": " + e.getMessage());
+				continue;
+			}
+
+			Markup read = MarkupSerializer.read(newMarkupResourceStream(file, containerClass),
+				new ByteArrayInputStream(out.toByteArray()));
+			assertNotNull(file.toString(), read);
+			assertMarkupEquals(file.toString(), markup, read);
+			written++;
+		}
+
+		assertTrue("Written: " + written, written > 100);
+		assertTrue(notWritten.toString(), notWritten.isEmpty());
+	}
+
+	/**
+	 * Changes to the markup or the markup settings make the written markup out of date.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void outOfDate() throws Exception
+	{
+		Path file = Paths.get(Doctype_1.class.getResource("Doctype_1.html").toURI());
+		Markup markup = MarkupFactory.get()
+			.newMarkupParser(newMarkupResourceStream(file, Doctype_1.class))
+			.parse();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MarkupSerializer.write(markup, out);
+
+		assertNotNull(MarkupSerializer.read(newMarkupResourceStream(file, Doctype_1.class),
+			new ByteArrayInputStream(out.toByteArray())));
+
+		// another container class using the markup
+		assertNull(MarkupSerializer.read(newMarkupResourceStream(file, Doctype_2.class),
+			new ByteArrayInputStream(out.toByteArray())));
+
+		// another markup file
+		Path otherFile = Paths.get(Doctype_2.class.getResource("Doctype_2.html").toURI());
+		assertNull(MarkupSerializer.read(newMarkupResourceStream(otherFile, Doctype_1.class),
+			new ByteArrayInputStream(out.toByteArray())));
+
+		tester.getApplication().getMarkupSettings().setStripComments(true);
+		assertNull(MarkupSerializer.read(newMarkupResourceStream(file, Doctype_1.class),
+			new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	private MarkupResourceStream newMarkupResourceStream(Path file, Class<?> containerClass)
+	{
+		return new MarkupResourceStream(new FileResourceStream(file.toFile()), new ContainerInfo(
+			containerClass, null, null, null, MarkupType.HTML_MARKUP_TYPE), containerClass);
+	}
+
+	private void assertMarkupEquals(String message, Markup expected, Markup actual)
+	{
+		MarkupResourceStream expectedStream = expected.getMarkupResourceStream();
+		MarkupResourceStream actualStream = actual.getMarkupResourceStream();
+		assertEquals(message, expectedStream.getEncoding(), actualStream.getEncoding());
+		assertEquals(message, expectedStream.getDoctype(), actualStream.getDoctype());
+		assertEquals(message, expectedStream.getWicketNamespace(),
+			actualStream.getWicketNamespace());
+
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			MarkupElement expectedElement = expected.get(i);
+			MarkupElement actualElement = actual.get(i);
+			String elementMessage = message + ", element " + i;
+			assertEquals(elementMessage, expectedElement.getClass(), actualElement.getClass());
+			assertEquals(elementMessage, expectedElement.toString(), actualElement.toString());
+			if (expectedElement instanceof ComponentTag)
+			{
+				assertTagEquals(elementMessage, expected, (ComponentTag)expectedElement, actual,
+					(ComponentTag)actualElement);
+			}
+		}
+	}
+
+	private void assertTagEquals(String message, Markup expectedMarkup, ComponentTag expected,
+		Markup actualMarkup, ComponentTag actual)
+	{
+		assertEquals(message, expected.getId(), actual.getId());
+		assertEquals(message, expected.getFlags(), actual.getFlags());
+		assertEquals(message, expected.getPos(), actual.getPos());
+		assertEquals(message, expected.getXmlTag().getLineNumber(),
+			actual.getXmlTag().getLineNumber());
+		assertEquals(message, expected.getAttributes(), actual.getAttributes());
+		assertEquals(message, expected.getMarkupClass(), actual.getMarkupClass());
+		assertEquals(message, indexOf(expectedMarkup, expected.getOpenTag()),
+			indexOf(actualMarkup, actual.getOpenTag()));
+		if (expected.getOpenTag() != null)
+		{
+			assertTrue(message, actual.closes(actual.getOpenTag()));
+		}
+
+		List<Behavior> expectedBehaviors = behaviors(expected);
+		List<Behavior> actualBehaviors = behaviors(actual);
+		assertEquals(message, expectedBehaviors.size(), actualBehaviors.size());
+		for (int i = 0; i < expectedBehaviors.size(); i++)
+		{
+			assertEquals(message, expectedBehaviors.get(i).getClass(),
+				actualBehaviors.get(i).getClass());
+		}
+
+		if (expected.getAutoComponentFactory() == null)
+		{
+			assertNull(message, actual.getAutoComponentFactory());
+		}
+		else
+		{
+			assertEquals(message, expected.getAutoComponentFactory().getClass(),
+				actual.getAutoComponentFactory().getClass());
+		}
+
+		Map<String, Object> expectedUserData = expected.getUserData();
+		Map<String, Object> actualUserData = actual.getUserData();
+		if (expectedUserData == null)
+		{
+			assertNull(message, actualUserData);
+		}
+		else
+		{
+			assertEquals(message, expectedUserData.keySet(), actualUserData.keySet());
+			for (String key : expectedUserData.keySet())
+			{
+				if (WicketTagIdentifier.CONTAINER_INFO.equals(key))
+				{
+					assertSame(message, actualMarkup.getMarkupResourceStream().getContainerInfo(),
+						actualUserData.get(key));
+				}
+				else
+				{
+					assertEquals(message, expectedUserData.get(key), actualUserData.get(key));
+				}
+			}
+		}
+	}
+
+	private List<Behavior> behaviors(ComponentTag tag)
+	{
+		List<Behavior> behaviors = new ArrayList<>();
+		if (tag.hasBehaviors())
+		{
+			for (Iterator<? extends Behavior> it = tag.getBehaviors(); it.hasNext();)
+			{
+				behaviors.add(it.next());
+			}
+		}
+		return behaviors;
+	}
+
+	private int indexOf(Markup markup, MarkupElement element)
+	{
+		for (int i = 0; i < markup.size(); i++)
+		{
+			if (markup.get(i) == element)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.MarkupSerializer;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PrecompiledMarkupLoader} and {@link MarkupPrecompiler}
+ */
+public class PrecompiledMarkupLoaderTest extends WicketTestCase
+{
+	private Path precompiled;
+
+	/**
+	 * Precompiles the markup of the test page.
+	 * 
+	 * @throws Exception
+	 */
+	@Before
+	public void precompile() throws Exception
+	{
+		Path file = Paths.get(PrecompiledMarkupPage.class.getResource("PrecompiledMarkupPage.html")
+			.toURI());
+		Path root = file.getParent();
+		for (int i = 0; i < PrecompiledMarkupPage.class.getPackage().getName().split("\\.").length; i++)
+		{
+			root = root.getParent();
+		}
+
+		precompiled = file.resolveSibling(file.getFileName() + MarkupSerializer.EXTENSION);
+		assertTrue(new MarkupPrecompiler().precompile(root, file));
+		assertTrue(Files.exists(precompiled));
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@After
+	public void deletePrecompiled() throws IOException
+	{
+		Files.deleteIfExists(precompiled);
+	}
+
+	/**
+	 * The precompiled markup is loaded instead of parsing the markup.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void loadPrecompiledMarkup() throws Exception
+	{
+		PrecompiledMarkupPage page = new PrecompiledMarkupPage();
+		MarkupFactory markupFactory = MarkupFactory.get();
+		MarkupResourceStream markupResourceStream = markupFactory.getMarkupResourceStream(page,
+			null);
+
+		IMarkupLoader fallbackLoader = (container, resourceStream, baseLoader, enforceReload) -> {
+			throw new AssertionError("Markup is parsed");
+		};
+		Markup markup = new PrecompiledMarkupLoader(fallbackLoader).loadMarkup(page,
+			markupResourceStream, null, false);
+
+		Markup parsed = markupFactory.newMarkupParser(
+			markupFactory.getMarkupResourceStream(page, null)).parse();
+		assertEquals(parsed.toString(), markup.toString());
+		assertEquals("html", markup.getMarkupResourceStream().getDoctype());
+	}
+
+	/**
+	 * Markup precompiled with other markup settings is parsed.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void outOfDate() throws Exception
+	{
+		tester.getApplication().getMarkupSettings().setCompressWhitespace(true);
+
+		PrecompiledMarkupPage page = new PrecompiledMarkupPage();
+		AtomicInteger parsed = new AtomicInteger();
+		IMarkupLoader fallbackLoader = (container, resourceStream, baseLoader, enforceReload) -> {
+			parsed.incrementAndGet();
+			return new SimpleMarkupLoader().loadMarkup(container, resourceStream, baseLoader,
+				enforceReload);
+		};
+		Markup markup = new PrecompiledMarkupLoader(fallbackLoader).loadMarkup(page,
+			MarkupFactory.get().getMarkupResourceStream(page, null), null, false);
+
+		assertNotNull(markup);
+		assertEquals(1, parsed.get());
+	}
+
+	/**
+	 * Pages render the same with precompiled markup.
+	 */
+	@Test
+	public void render()
+	{
+		assertFalse("disabled by default",
+			tester.getApplication().getMarkupSettings().getLoadPrecompiledMarkup());
+		tester.getApplication().getMarkupSettings().setLoadPrecompiledMarkup(true);
+
+		tester.startPage(PrecompiledMarkupPage.class);
+		String precompiledOutput = withoutMarkupIds(tester.getLastResponseAsString());
+		assertTrue(precompiledOutput.contains("alt=\"Logo\""));
+		assertTrue(precompiledOutput.contains("visible"));
+		assertFalse(precompiledOutput.contains("hidden"));
+
+		tester.getApplication().getMarkupSettings().setLoadPrecompiledMarkup(false);
+		tester.getApplication().getMarkupSettings().getMarkupFactory().getMarkupCache().clear();
+
+		tester.startPage(PrecompiledMarkupPage.class);
+		assertEquals(withoutMarkupIds(tester.getLastResponseAsString()), precompiledOutput);
+	}
+
+	private String withoutMarkupIds(String output)
+	{
+		return output.replaceAll(" id=\"[^\"]*\"", "");
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.wicket.util.parse.metapattern.parsers.TagNameParser;
+import org.apache.wicket.util.parse.metapattern.parsers.VariableAssignmentParser;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * Parses the text of a tag with the regular expressions {@link XmlPullParser} used before it
+ * scanned tags in place. Serves as a reference for its results.
+ */
+class RegexTagTextParser
+{
+	/** The tag name */
+	String name;
+
+	/** The namespace of the tag */
+	String namespace;
+
+	/** The attributes */
+	final Map<String, String> attributes = new LinkedHashMap<>();
+
+	/**
+	 * Parses the text between the brackets of a tag, for example "a href=foo.html".
+	 * 
+	 * @param tagText
+	 *            the tag text, without the '/' of a close or open-close tag
+	 * @return false if the tag is malformed
+	 */
+	boolean parse(final String tagText)
+	{
+		final TagNameParser tagnameParser = new TagNameParser(tagText);
+		if (!tagnameParser.matcher().lookingAt())
+		{
+			return false;
+		}
+
+		name = tagnameParser.getName();
+		namespace = tagnameParser.getNamespace();
+
+		int pos = tagnameParser.matcher().end(0);
+		if (pos == tagText.length())
+		{
+			return true;
+		}
+
+		final VariableAssignmentParser attributeParser = new VariableAssignmentParser(tagText);
+		while (attributeParser.matcher().find(pos))
+		{
+			String value = attributeParser.getValue();
+			if (value == null)
+			{
+				value = "";
+			}
+
+			pos = attributeParser.matcher().end(0);
+
+			if (value.startsWith("\"") || value.startsWith("\'"))
+			{
+				value = value.substring(1, value.length() - 1);
+			}
+			value = Strings.unescapeMarkup(value.trim()).toString();
+
+			if (attributes.put(attributeParser.getKey(), value) != null)
+			{
+				throw new IllegalArgumentException("Same attribute found twice: " +
+					attributeParser.getKey());
+			}
+
+			if (pos == tagText.length())
+			{
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the tag text of the given tag markup.
+	 * 
+	 * @param tag
+	 *            the complete tag, including the brackets
+	 * @return the parser, holding the results
+	 */
+	static RegexTagTextParser parseTag(final String tag)
+	{
+		String tagText = tag.substring(1, tag.length() - 1);
+		if (tagText.endsWith("/"))
+		{
+			tagText = tagText.substring(0, tagText.length() - 1);
+		}
+		else if (tagText.startsWith("/"))
+		{
+			tagText = tagText.substring(1);
+		}
+
+		RegexTagTextParser parser = new RegexTagTextParser();
+		if (!parser.parse(tagText))
+		{
+			throw new IllegalArgumentException("Malformed tag: " + tag);
+		}
+		return parser;
+	}
+}
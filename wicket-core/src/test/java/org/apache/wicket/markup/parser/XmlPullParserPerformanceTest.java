@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.util.SlowTests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares scanning the tags of the test templates in place with parsing their text with regular
+ * expressions.
+ */
+@Category(SlowTests.class)
+public class XmlPullParserPerformanceTest extends Assert
+{
+	private static final int WARMUP = 20;
+
+	private static final int ITERATIONS = 50;
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void performance() throws Exception
+	{
+		List<String> templates = new ArrayList<>();
+		for (Path template : XmlPullParserTest.templates())
+		{
+			String markup = new String(Files.readAllBytes(template), "UTF-8");
+			try
+			{
+				parse(markup);
+				templates.add(markup);
+			}
+			catch (ParseException ex)
+			{
+				// skip templates malformed on purpose
+			}
+		}
+
+		for (int i = 0; i < WARMUP; i++)
+		{
+			parseAll(templates);
+			regexAll(templates);
+		}
+
+		long start = System.nanoTime();
+		int tags = 0;
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			tags = parseAll(templates);
+		}
+		long scanDuration = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			regexAll(templates);
+		}
+		long regexDuration = System.nanoTime() - start;
+
+		System.out.println(String.format(
+			"%d templates with %d tags: in place %d ms, in place plus regex tag text %d ms",
+			templates.size(), tags, scanDuration / 1000000, regexDuration / 1000000));
+	}
+
+	private int parseAll(List<String> templates) throws Exception
+	{
+		int tags = 0;
+		for (String markup : templates)
+		{
+			tags += parse(markup);
+		}
+		return tags;
+	}
+
+	private void regexAll(List<String> templates) throws Exception
+	{
+		for (String markup : templates)
+		{
+			XmlPullParser parser = new XmlPullParser();
+			parser.parse(markup);
+			XmlTag tag;
+			while ((tag = parser.nextTag()) != null)
+			{
+				RegexTagTextParser.parseTag(markup.substring(tag.getPos(),
+					tag.getPos() + tag.getLength()));
+			}
+		}
+	}
+
+	private int parse(String markup) throws Exception
+	{
+		int tags = 0;
+		XmlPullParser parser = new XmlPullParser();
+		parser.parse(markup);
+		while (parser.nextTag() != null)
+		{
+			tags++;
+		}
+		return tags;
+	}
+}
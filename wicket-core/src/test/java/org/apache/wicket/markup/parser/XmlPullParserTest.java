@@ -16,8 +16,18 @@
  */
 package org.apache.wicket.markup.parser;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
 import org.apache.wicket.util.resource.StringResourceStream;
@@ -454,4 +464,93 @@ public class XmlPullParserTest extends Assert
 		type = parser.next();
 		assertEquals(HttpTagType.CONDITIONAL_COMMENT_ENDIF, type);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tags are scanned like the regular expressions used to do.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void sameAsRegex() throws Exception
+	{
+		String[] tags = { "<a>", "<a/>", "</a>", "<a href=foo.html>", "<a href = 'foo' >",
+				"<wicket:panel>", "<WICKET:Panel>", "<a:1b>", "<a: b>", "<x.y-z>", "<a b c=d e>",
+				"<a wicket:id=\"x\" xmlns:wicket>", "<a n1:n2:key.x-y=\"v\"/>", "<a n1:n2:n3:k=v>",
+				"<a n1:2=v>", "<a b= >", "<a b='x\"y' c=\"x'y\">",
+				"<a b=\" spaced \" c=\"&lt;&amp;&gt;\">", "<a 1b=v #c=d>", "<a b=c=d>",
+				"<a b=\"v\"c=\"w\">", "<a b=.-.>", "<a\tb\n=\r\n'v'\f>", "<a b=\"\"/>",
+				"<a b=v/ c=w>", "<input value=\"&quot;a&quot;\"/>" };
+		for (String tag : tags)
+		{
+			assertSameAsRegex(tag);
+		}
+	}
+
+	/**
+	 * All tags of the test templates are scanned like the regular expressions used to do.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void templatesSameAsRegex() throws Exception
+	{
+		int count = 0;
+		for (Path template : templates())
+		{
+			String markup = new String(Files.readAllBytes(template), "UTF-8");
+			XmlPullParser parser = new XmlPullParser();
+			parser.parse(markup);
+			try
+			{
+				XmlTag tag;
+				while ((tag = parser.nextTag()) != null)
+				{
+					assertSameAsRegex(tag,
+						markup.substring(tag.getPos(), tag.getPos() + tag.getLength()));
+					count++;
+				}
+			}
+			catch (ParseException ex)
+			{
+				// some templates are malformed on purpose
+			}
+		}
+		assertTrue(count > 1000);
+	}
+
+	private void assertSameAsRegex(String markup) throws Exception
+	{
+		XmlPullParser parser = new XmlPullParser();
+		parser.parse(markup);
+		assertSameAsRegex(parser.nextTag(), markup);
+	}
+
+	private void assertSameAsRegex(XmlTag tag, String markup)
+	{
+		RegexTagTextParser expected = RegexTagTextParser.parseTag(markup);
+		assertEquals(markup, expected.name, tag.getName());
+		assertEquals(markup, expected.namespace, tag.getNamespace());
+
+		Map<String, String> attributes = new HashMap<>();
+		for (Map.Entry<String, Object> attribute : tag.getAttributes().entrySet())
+		{
+			attributes.put(attribute.getKey(), (String)attribute.getValue());
+		}
+		assertEquals(markup, new HashMap<>(expected.attributes), attributes);
+	}
+
+	/**
+	 * @return the html templates of the tests
+	 * @throws IOException
+	 */
+	static List<Path> templates() throws IOException
+	{
+		File root = new File(XmlPullParserTest.class.getResource("/").getFile());
+		try (Stream<Path> files = Files.walk(root.toPath()))
+		{
+			return files.filter(file -> file.toString().endsWith(".html"))
+				.sorted()
+				.collect(Collectors.toCollection(ArrayList::new));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import org.apache.wicket.util.value.IValueMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the attributes of {@link XmlTag}s
+ */
+public class XmlTagTest extends Assert
+{
+	private static XmlTag immutableTag()
+	{
+		XmlTag tag = new XmlTag();
+		tag.setName("div");
+		tag.put("class", "a b");
+		tag.put("title", "x");
+		return tag.makeImmutable();
+	}
+
+	/**
+	 * A mutable copy reads the attributes of the markup until it changes them
+	 */
+	@Test
+	public void mutableCopySharesAttributes()
+	{
+		XmlTag original = immutableTag();
+		XmlTag copy = original.mutable();
+
+		assertEquals("a b", copy.getAttribute("class").toString());
+		assertSame(original.getAttributes(), copy.getAttributesForReading());
+		assertTrue(copy.isUnchangedCopyOf(original));
+
+		copy.put("class", "c");
+
+		assertEquals("c", copy.getAttribute("class").toString());
+		assertEquals("x", copy.getAttribute("title").toString());
+		assertEquals("a b", original.getAttribute("class").toString());
+		assertNotSame(original.getAttributes(), copy.getAttributesForReading());
+		assertFalse(copy.isUnchangedCopyOf(original));
+	}
+
+	/**
+	 * Changes through the views of the attributes must not reach the markup
+	 */
+	@Test
+	public void viewsCopyAttributes()
+	{
+		XmlTag original = immutableTag();
+		XmlTag copy = original.mutable();
+
+		IValueMap attributes = copy.getAttributes();
+		attributes.keySet().remove("title");
+		attributes.entrySet().iterator().next().setValue("y");
+
+		assertEquals(1, attributes.size());
+		assertEquals("y", copy.getAttribute("class").toString());
+		assertEquals(2, original.getAttributes().size());
+		assertEquals("a b", original.getAttribute("class").toString());
+	}
+
+	/**
+	 * A copy which puts the same values is still unchanged
+	 */
+	@Test
+	public void sameValuesAreUnchanged()
+	{
+		XmlTag original = immutableTag();
+		XmlTag copy = original.mutable();
+
+		copy.put("class", "a b");
+
+		assertTrue(copy.isUnchangedCopyOf(original));
+		assertEquals(original.toXmlString(null).toString(), copy.toXmlString(null).toString());
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.data.DataView;
+import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BatchLoadableDetachableModel}
+ */
+public class BatchLoadableDetachableModelTest extends WicketTestCase
+{
+	/** the keys passed to each call of {@link NameModel#loadBatch(List)} */
+	private static final List<List<String>> BATCHES = new ArrayList<>();
+
+	/**
+	 * Forgets the batches of the previous test
+	 */
+	@Before
+	public void before()
+	{
+		BATCHES.clear();
+	}
+
+	/**
+	 * A model loads its object alone when asked for it
+	 */
+	@Test
+	public void loadSingle()
+	{
+		NameModel model = new NameModel("1");
+
+		assertEquals("name1", model.getObject());
+		assertEquals(Arrays.asList(Arrays.asList("1")), BATCHES);
+	}
+
+	/**
+	 * All detached models are loaded with one call, distinct keys only
+	 */
+	@Test
+	public void loadAll()
+	{
+		NameModel first = new NameModel("1");
+		NameModel second = new NameModel("2");
+		NameModel again = new NameModel("1");
+		NameModel attached = new NameModel("3");
+		attached.setObject("attached");
+
+		BatchLoadableDetachableModel.loadAll(Arrays.asList(first, second, again, attached,
+			Model.of("other")));
+
+		assertEquals(Arrays.asList(Arrays.asList("1", "2")), BATCHES);
+		assertEquals("name1", first.getObject());
+		assertEquals("name2", second.getObject());
+		assertEquals("name1", again.getObject());
+		assertEquals("attached", attached.getObject());
+		assertEquals(1, BATCHES.size());
+	}
+
+	/**
+	 * Keys missing in the loaded map result in a {@code null} model object
+	 */
+	@Test
+	public void missingKey()
+	{
+		NameModel model = new NameModel("missing");
+
+		BatchLoadableDetachableModel.loadAll(Arrays.asList(model));
+
+		assertTrue(model.isAttached());
+		assertNull(model.getObject());
+	}
+
+	/**
+	 * Batch loading attaches the models like {@link LoadableDetachableModel#getObject()} does,
+	 * without going through {@link IModel#setObject(Object)}
+	 */
+	@Test
+	public void attachedLikeLoaded()
+	{
+		final List<String> calls = new ArrayList<>();
+		NameModel model = new NameModel("1")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void onAttach()
+			{
+				calls.add("onAttach");
+			}
+
+			@Override
+			public void setObject(String object)
+			{
+				calls.add("setObject");
+			}
+		};
+
+		BatchLoadableDetachableModel.loadAll(Arrays.asList(model));
+
+		assertEquals(Arrays.asList("onAttach"), calls);
+		assertEquals("name1", model.getObject());
+	}
+
+	/**
+	 * The row models of a data view are loaded with one call before the rows are populated
+	 */
+	@Test
+	public void dataView()
+	{
+		tester.startPage(new RowsPage(true));
+
+		assertEquals(Arrays.asList(Arrays.asList("1", "2", "3")), BATCHES);
+		tester.assertContains("name1.*name2.*name3");
+	}
+
+	/**
+	 * The item models of a list view are loaded with one call before the items are populated
+	 */
+	@Test
+	public void listView()
+	{
+		tester.startPage(new RowsPage(false));
+
+		assertEquals(Arrays.asList(Arrays.asList("1", "2", "3")), BATCHES);
+		tester.assertContains("name1.*name2.*name3");
+	}
+
+	private static class NameModel extends BatchLoadableDetachableModel<String, String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private NameModel(String key)
+		{
+			super(key);
+		}
+
+		@Override
+		protected Map<String, String> loadBatch(List<String> keys)
+		{
+			BATCHES.add(keys);
+
+			Map<String, String> names = new HashMap<>();
+			for (String key : keys)
+			{
+				if ("missing".equals(key) == false)
+				{
+					names.put(key, "name" + key);
+				}
+			}
+			return names;
+		}
+	}
+
+	/**
+	 * A page with a repeater whose items read their model object when populated
+	 */
+	public static class RowsPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param dataView
+		 *            whether to use a data view or a list view
+		 */
+		public RowsPage(boolean dataView)
+		{
+			List<String> keys = Arrays.asList("1", "2", "3");
+
+			if (dataView)
+			{
+				add(new DataView<String>("rows", new ListDataProvider<String>(keys)
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public IModel<String> model(String key)
+					{
+						return new NameModel(key);
+					}
+				})
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void populateItem(Item<String> item)
+					{
+						item.add(new Label("name", item.getModelObject()));
+					}
+				});
+			}
+			else
+			{
+				add(new ListView<String>("rows", keys)
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected IModel<String> getListItemModel(
+						IModel<? extends List<String>> listViewModel, int index)
+					{
+						return new NameModel(listViewModel.getObject().get(index));
+					}
+
+					@Override
+					protected void populateItem(ListItem<String> item)
+					{
+						item.add(new Label("name", item.getModelObject()));
+					}
+				});
+			}
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><body><span wicket:id='rows'><span wicket:id='name'></span></span></body></html>");
+		}
+	}
+}
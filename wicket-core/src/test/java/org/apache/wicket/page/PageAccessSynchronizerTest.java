@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.page;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
@@ -393,4 +397,90 @@ public class PageAccessSynchronizerTest extends Assert
 			throw errors.remove();
 		}
 	}
+
+	/**
+	 * Waiting threads get the lock in the order of their arrival.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void fifoOrder() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(10));
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		sync.lockPage(0);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+		{
+			final int index = i;
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					sync.lockPage(0);
+					order.add(index);
+					sync.unlockAllPages();
+				}
+			};
+			thread.start();
+			threads.add(thread);
+
+			// wait until the thread is queued
+			while (thread.getState() != Thread.State.WAITING &&
+				thread.getState() != Thread.State.TIMED_WAITING)
+			{
+				Thread.sleep(1);
+			}
+		}
+
+		sync.unlockAllPages();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+		assertTrue(sync.getLocks().get().isEmpty());
+	}
+
+	/**
+	 * The wait times and timeouts are recorded.
+	 */
+	@Test
+	public void statistics()
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(50));
+		PageAccessSynchronizer.Statistics statistics = sync.getStatistics();
+
+		sync.lockPage(0, "owner");
+		try
+		{
+			sync.lockPage(0);
+			fail("should not be able to lock the page");
+		}
+		catch (CouldNotLockPageException expected)
+		{
+			// expected
+		}
+
+		assertEquals(1, statistics.getTimeouts());
+		assertEquals(1, sum(statistics.getHistogram()));
+		assertEquals(0, new PageAccessSynchronizer(Duration.seconds(1)).getStatistics()
+			.getTimeouts());
+		assertEquals(statistics.getBucketBounds().length + 1, statistics.getHistogram().length);
+		// the waiter has been removed
+		sync.unlockAllPages("owner");
+		assertTrue(sync.getLocks().get().isEmpty());
+	}
+
+	private static long sum(long[] counts)
+	{
+		long sum = 0;
+		for (long count : counts)
+		{
+			sum += count;
+		}
+		return sum;
+	}
 }
@@ -66,6 +66,27 @@ public class PageWindowManagerTest extends Assert
 		assertNull("Page1 must be lost when Page2 has been added.", manager.getPageWindow(page1id));
 	}
 
+	/**
+	 * A window is no longer current once its page has been stored again or removed.
+	 */
+	@Test
+	public void isCurrent()
+	{
+		PageWindowManager manager = new PageWindowManager(300);
+
+		PageWindow window1 = manager.createPageWindow(1, 50);
+		PageWindow window2 = manager.createPageWindow(2, 50);
+		assertTrue(manager.isCurrent(window1));
+		assertTrue(manager.isCurrent(manager.getPageWindow(1)));
+
+		PageWindow window1b = manager.createPageWindow(1, 50);
+		assertFalse(manager.isCurrent(window1));
+		assertTrue(manager.isCurrent(window1b));
+
+		manager.removePage(2);
+		assertFalse(manager.isCurrent(window2));
+	}
+
 	/**
 	 * 
 	 */
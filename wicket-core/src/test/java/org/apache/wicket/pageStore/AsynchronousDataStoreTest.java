@@ -17,17 +17,25 @@
 package org.apache.wicket.pageStore;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
  * Tests for {@link AsynchronousDataStore}
  */
-public class AsynchronousDataStoreTest
+public class AsynchronousDataStoreTest extends Assert
 {
 //	private static final IDataStore WRAPPED_DATA_STORE = new DiskDataStore("asyncDataStoreApp", new StoreSettings(null).getFileStoreFolder(), Bytes.kilobytes(1));
 	private static final IDataStore WRAPPED_DATA_STORE = new InMemoryPageStore();
@@ -77,6 +85,113 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * Superseded versions of a page are dropped and the rest is saved once per session.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void batching() throws Exception
+	{
+		final List<String> sessions = new ArrayList<>();
+		final List<Map<Integer, byte[]>> batches = new ArrayList<>();
+		IDataStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public synchronized void storeData(String sessionId, Map<Integer, byte[]> pages)
+			{
+				sessions.add(sessionId);
+				batches.add(new LinkedHashMap<>(pages));
+				super.storeData(sessionId, pages);
+			}
+		};
+
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 100, 10,
+			Duration.milliseconds(500));
+
+		byte[] v1 = new byte[] { 1 };
+		byte[] v2 = new byte[] { 2 };
+		dataStore.storeData("s1", 1, v1);
+		dataStore.storeData("s1", 1, v2);
+		dataStore.storeData("s2", 1, v1);
+		dataStore.storeData("s1", 2, v1);
+
+		AsynchronousDataStore.Statistics statistics = dataStore.getStatistics();
+		long end = System.currentTimeMillis() + 5000;
+		while (statistics.getSavedEntries() < 3 && System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+		}
+		assertArrayEquals(v2, wrapped.getData("s1", 1));
+		dataStore.destroy();
+
+		assertEquals(1, statistics.getBatches());
+		assertEquals(3, statistics.getSavedEntries());
+		assertEquals(1, statistics.getSupersededEntries());
+		assertEquals(4, statistics.getMaxBatchSize());
+		assertEquals(0, dataStore.getQueueSize());
+
+		assertEquals(2, sessions.size());
+		assertEquals("s1", sessions.get(0));
+		assertEquals(2, batches.get(0).size());
+		assertArrayEquals(v2, batches.get(0).get(1));
+		assertArrayEquals(v1, batches.get(0).get(2));
+		assertEquals("s2", sessions.get(1));
+		assertEquals(1, batches.get(1).size());
+	}
+
+	/**
+	 * Several workers save the pages of each session in order.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void multipleWorkers() throws Exception
+	{
+		final Map<String, List<Integer>> saved = new ConcurrentHashMap<>();
+		IDataStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				saved.computeIfAbsent(sessionId, id -> new CopyOnWriteArrayList<>()).add(pageId);
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 1000, 1,
+			Duration.NONE, 4);
+		assertEquals(4, dataStore.getWorkerCount());
+
+		for (int page = 0; page < 50; page++)
+		{
+			for (int session = 0; session < 10; session++)
+			{
+				dataStore.storeData("s" + session, page, DATA);
+			}
+		}
+
+		AsynchronousDataStore.Statistics statistics = dataStore.getStatistics();
+		long end = System.currentTimeMillis() + 5000;
+		while (statistics.getSavedEntries() + statistics.getSynchronousSaves() < 500 &&
+			System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+		}
+		dataStore.destroy();
+
+		assertEquals(0, statistics.getSynchronousSaves());
+		assertEquals(10, saved.size());
+		for (List<Integer> pages : saved.values())
+		{
+			assertEquals(50, pages.size());
+			for (int page = 0; page < 50; page++)
+			{
+				assertEquals(page, pages.get(page).intValue());
+			}
+		}
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 		protected abstract void r();
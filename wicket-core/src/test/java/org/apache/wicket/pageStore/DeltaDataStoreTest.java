@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wicket.settings.StoreSettings;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeltaDataStore} and {@link BinaryDelta}
+ */
+public class DeltaDataStoreTest extends Assert
+{
+	/**
+	 * Keeps the data in memory
+	 */
+	private static class MapDataStore extends NoopDataStore
+	{
+		private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+
+		private long writtenBytes;
+
+		@Override
+		public byte[] getData(String sessionId, int id)
+		{
+			return data.get(sessionId + ":" + id);
+		}
+
+		@Override
+		public void removeData(String sessionId, int id)
+		{
+			data.remove(sessionId + ":" + id);
+		}
+
+		@Override
+		public void removeData(String sessionId)
+		{
+			data.keySet().removeIf(key -> key.startsWith(sessionId + ":"));
+		}
+
+		@Override
+		public void storeData(String sessionId, int id, byte[] data)
+		{
+			this.data.put(sessionId + ":" + id, data);
+			writtenBytes += data.length;
+		}
+	}
+
+	private static byte[] randomData(Random random, int length)
+	{
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Small changes to a page are stored as small deltas.
+	 */
+	@Test
+	public void storeVersions()
+	{
+		Random random = new Random(1);
+		MapDataStore wrapped = new MapDataStore();
+		DeltaDataStore store = new DeltaDataStore(wrapped, 5);
+
+		byte[] page = randomData(random, 10000);
+		store.storeData("s1", 1, page);
+		assertArrayEquals(page, store.getData("s1", 1));
+
+		for (int i = 0; i < 12; i++)
+		{
+			page = page.clone();
+			page[random.nextInt(page.length)] = (byte)i;
+			store.storeData("s1", 1, page);
+			assertArrayEquals(page, store.getData("s1", 1));
+		}
+
+		// a snapshot after every five deltas
+		assertEquals(3, store.getStatistics().getSnapshots());
+		assertEquals(10, store.getStatistics().getDeltas());
+		assertTrue(wrapped.writtenBytes < 4 * page.length);
+
+		store.removeData("s1", 1);
+		assertNull(store.getData("s1", 1));
+		assertTrue(wrapped.data.isEmpty());
+	}
+
+	/**
+	 * A completely different page is stored as a snapshot.
+	 */
+	@Test
+	public void unrelatedVersions()
+	{
+		Random random = new Random(2);
+		DeltaDataStore store = new DeltaDataStore(new MapDataStore());
+
+		byte[] first = randomData(random, 1000);
+		byte[] second = randomData(random, 1000);
+		store.storeData("s1", 1, first);
+		store.storeData("s1", 1, second);
+		store.storeData("s1", 2, first);
+
+		assertArrayEquals(second, store.getData("s1", 1));
+		assertArrayEquals(first, store.getData("s1", 2));
+		assertEquals(3, store.getStatistics().getSnapshots());
+		assertEquals(0, store.getStatistics().getDeltas());
+
+		store.removeData("s1");
+		assertNull(store.getData("s1", 1));
+	}
+
+	/**
+	 * The snapshot of page 0 must not be stored with the id {@link DiskDataStore} reserves for
+	 * free windows.
+	 */
+	@Test
+	public void diskDataStore()
+	{
+		Random random = new Random(4);
+		Bytes maxSizePerSession = Bytes.kilobytes(100);
+		DiskDataStore disk = new DiskDataStore("deltaDataStore",
+			new StoreSettings(null).getFileStoreFolder(), maxSizePerSession);
+		DeltaDataStore store = new DeltaDataStore(disk, 5, maxSizePerSession);
+		String sessionId = "deltaDataStore";
+
+		try
+		{
+			for (int id = 0; id < 3; id++)
+			{
+				byte[] page = randomData(random, 1000);
+				store.storeData(sessionId, id, page);
+				assertArrayEquals(page, store.getData(sessionId, id));
+
+				page = page.clone();
+				page[random.nextInt(page.length)]++;
+				store.storeData(sessionId, id, page);
+				assertArrayEquals(page, store.getData(sessionId, id));
+			}
+			assertEquals(3, store.getStatistics().getDeltas());
+
+			store.removeData(sessionId, 0);
+			assertNull(store.getData(sessionId, 0));
+		}
+		finally
+		{
+			store.removeData(sessionId);
+			disk.destroy();
+		}
+	}
+
+	/**
+	 * A page re-stored while other pages push its snapshot out of the session file stays
+	 * readable, because the snapshot is renewed in time.
+	 */
+	@Test
+	public void snapshotStaysInWindow()
+	{
+		Random random = new Random(5);
+		Bytes maxSizePerSession = Bytes.kilobytes(20);
+		DiskDataStore disk = new DiskDataStore("deltaDataStoreWindow",
+			new StoreSettings(null).getFileStoreFolder(), maxSizePerSession);
+		DeltaDataStore store = new DeltaDataStore(disk, 1000, maxSizePerSession);
+		String sessionId = "deltaDataStoreWindow";
+
+		try
+		{
+			byte[] page = randomData(random, 2000);
+			for (int i = 1; i < 100; i++)
+			{
+				page = page.clone();
+				page[random.nextInt(page.length)]++;
+				store.storeData(sessionId, 0, page);
+				store.storeData(sessionId, i, randomData(random, 1000));
+
+				assertArrayEquals("version " + i, page, store.getData(sessionId, 0));
+			}
+			assertTrue(store.getStatistics().getDeltas() > 50);
+		}
+		finally
+		{
+			store.removeData(sessionId);
+			disk.destroy();
+		}
+	}
+
+	/**
+	 * Pages are read back by a new store over the same stored records, e.g. after a restart
+	 */
+	@Test
+	public void readAfterRestart()
+	{
+		Random random = new Random(6);
+		Bytes maxSizePerSession = Bytes.kilobytes(100);
+		String sessionId = "deltaDataStoreRestart";
+		DiskDataStore disk = new DiskDataStore(sessionId,
+			new StoreSettings(null).getFileStoreFolder(), maxSizePerSession);
+		DeltaDataStore store = new DeltaDataStore(disk, 5, maxSizePerSession);
+
+		byte[][] pages = new byte[3][];
+		try
+		{
+			for (int id = 0; id < pages.length; id++)
+			{
+				pages[id] = randomData(random, 1000);
+				store.storeData(sessionId, id, pages[id]);
+			}
+			pages[1] = pages[1].clone();
+			pages[1][random.nextInt(pages[1].length)]++;
+			store.storeData(sessionId, 1, pages[1]);
+			store.storeData(sessionId, -5, pages[2]);
+			assertEquals(1, store.getStatistics().getDeltas());
+
+			// a new store over the same disk store, and one over the reopened disk store
+			DeltaDataStore fresh = new DeltaDataStore(disk, 5, maxSizePerSession);
+			for (int id = 0; id < pages.length; id++)
+			{
+				assertArrayEquals(pages[id], fresh.getData(sessionId, id));
+			}
+			assertArrayEquals(pages[2], fresh.getData(sessionId, -5));
+
+			store.destroy();
+			disk = new DiskDataStore(sessionId, new StoreSettings(null).getFileStoreFolder(),
+				maxSizePerSession);
+			store = new DeltaDataStore(disk, 5, maxSizePerSession);
+			for (int id = 0; id < pages.length; id++)
+			{
+				assertArrayEquals(pages[id], store.getData(sessionId, id));
+			}
+
+			// writing after the restart takes a new snapshot
+			pages[1] = pages[1].clone();
+			pages[1][random.nextInt(pages[1].length)]++;
+			store.storeData(sessionId, 1, pages[1]);
+			assertArrayEquals(pages[1], store.getData(sessionId, 1));
+
+			store.removeData(sessionId, 0);
+			assertNull(store.getData(sessionId, 0));
+		}
+		finally
+		{
+			store.removeData(sessionId);
+			store.destroy();
+		}
+	}
+
+	/**
+	 * Reading from an unknown session does not fail
+	 */
+	@Test
+	public void unknownSession()
+	{
+		DeltaDataStore store = new DeltaDataStore(new MapDataStore());
+
+		assertNull(store.getData("unknown", 1));
+		store.removeData("unknown", 1);
+	}
+
+	/**
+	 * Deltas with insertions, deletions and moved ranges are applied correctly.
+	 */
+	@Test
+	public void binaryDelta()
+	{
+		Random random = new Random(3);
+		for (int i = 0; i < 100; i++)
+		{
+			byte[] base = randomData(random, random.nextInt(2000));
+			byte[] target = new byte[random.nextInt(3000)];
+			int position = 0;
+			while (position < target.length)
+			{
+				int length = Math.min(target.length - position, 1 + random.nextInt(200));
+				if (random.nextBoolean() && base.length > length)
+				{
+					System.arraycopy(base, random.nextInt(base.length - length), target, position,
+						length);
+				}
+				else
+				{
+					System.arraycopy(randomData(random, length), 0, target, position, length);
+				}
+				position += length;
+			}
+
+			byte[] delta = BinaryDelta.create(base, target);
+			assertArrayEquals(target, BinaryDelta.apply(base, delta));
+		}
+	}
+}
@@ -17,6 +17,8 @@
 package org.apache.wicket.pageStore;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -407,4 +409,56 @@ public class DiskDataStoreTest extends Assert
 		assertFalse(sessionFolder.getParentFile().getParentFile().exists());
 
 	}
+
+	/**
+	 * Several pages of a session stored at once, including a newer version of a stored page and
+	 * more pages than fit in the session file.
+	 */
+	@Test
+	public void storeMultiplePages()
+	{
+		StoreSettings storeSettings = new StoreSettings(null);
+		java.io.File fileStoreFolder = storeSettings.getFileStoreFolder();
+		DiskDataStore store = new DiskDataStore("storeMultiplePages", fileStoreFolder,
+			Bytes.bytes(1000));
+		String sessionId = "storeMultiplePages";
+
+		try
+		{
+			store.storeData(sessionId, 1, data(1, 100));
+
+			Map<Integer, byte[]> pages = new LinkedHashMap<>();
+			pages.put(2, data(2, 100));
+			pages.put(1, data(3, 200));
+			pages.put(3, data(4, 300));
+			store.storeData(sessionId, pages);
+
+			assertArrayEquals(data(3, 200), store.getData(sessionId, 1));
+			assertArrayEquals(data(2, 100), store.getData(sessionId, 2));
+			assertArrayEquals(data(4, 300), store.getData(sessionId, 3));
+
+			pages.clear();
+			for (int i = 10; i < 20; i++)
+			{
+				pages.put(i, data(i, 150));
+			}
+			store.storeData(sessionId, pages);
+
+			assertArrayEquals(data(19, 150), store.getData(sessionId, 19));
+			assertArrayEquals(data(18, 150), store.getData(sessionId, 18));
+			assertNull(store.getData(sessionId, 10));
+		}
+		finally
+		{
+			store.removeData(sessionId);
+			store.destroy();
+		}
+	}
+
+	private static byte[] data(int value, int length)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return data;
+	}
 }
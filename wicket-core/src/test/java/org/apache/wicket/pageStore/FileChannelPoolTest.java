@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileChannelPool}
+ */
+public class FileChannelPoolTest extends Assert
+{
+	private File folder;
+
+	private FileChannelPool pool;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("FileChannelPoolTest", null);
+		folder.delete();
+		folder.mkdirs();
+
+		pool = new FileChannelPool(2);
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		pool.destroy();
+		for (File file : folder.listFiles())
+		{
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private String fileName(String name)
+	{
+		return new File(folder, name).getAbsolutePath();
+	}
+
+	/**
+	 * A returned channel is reused by the next request for the same file.
+	 */
+	@Test
+	public void reuse()
+	{
+		FileChannel channel = pool.getFileChannel(fileName("a"), true);
+		assertNotNull(channel);
+		pool.returnFileChannel(channel);
+
+		assertSame(channel, pool.getFileChannel(fileName("a"), false));
+		pool.returnFileChannel(channel);
+
+		assertTrue(channel.isOpen());
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getMisses());
+	}
+
+	/**
+	 * No file is created when not asked to.
+	 */
+	@Test
+	public void missingFile()
+	{
+		assertNull(pool.getFileChannel(fileName("missing"), false));
+		assertFalse(new File(fileName("missing")).exists());
+	}
+
+	/**
+	 * The least recently used idle channel is closed when the capacity is exceeded.
+	 */
+	@Test
+	public void eviction()
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+		pool.returnFileChannel(a);
+		FileChannel b = pool.getFileChannel(fileName("b"), true);
+		pool.returnFileChannel(b);
+
+		// touch 'a' so that 'b' is the least recently used one
+		pool.returnFileChannel(pool.getFileChannel(fileName("a"), true));
+
+		FileChannel c = pool.getFileChannel(fileName("c"), true);
+		pool.returnFileChannel(c);
+
+		assertTrue(a.isOpen());
+		assertFalse(b.isOpen());
+		assertTrue(c.isOpen());
+		assertEquals(1, pool.getEvictions());
+		assertEquals(2, pool.getOpenChannelCount());
+	}
+
+	/**
+	 * Channels in use are not closed, even if the capacity is exceeded.
+	 */
+	@Test
+	public void noEvictionOfUsedChannels()
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+		FileChannel b = pool.getFileChannel(fileName("b"), true);
+		FileChannel c = pool.getFileChannel(fileName("c"), true);
+
+		assertTrue(a.isOpen());
+		assertTrue(b.isOpen());
+		assertTrue(c.isOpen());
+		assertEquals(3, pool.getOpenChannelCount());
+
+		pool.returnFileChannel(a);
+		assertFalse(a.isOpen());
+		assertEquals(2, pool.getOpenChannelCount());
+
+		pool.returnFileChannel(b);
+		pool.returnFileChannel(c);
+		assertEquals(1, pool.getEvictions());
+	}
+
+	/**
+	 * A closed channel which is still in use is closed when returned.
+	 */
+	@Test
+	public void closeWhileInUse()
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+
+		pool.closeFileChannel(fileName("a"));
+		assertTrue(a.isOpen());
+
+		pool.returnFileChannel(a);
+		assertFalse(a.isOpen());
+		assertEquals(0, pool.getOpenChannelCount());
+	}
+}
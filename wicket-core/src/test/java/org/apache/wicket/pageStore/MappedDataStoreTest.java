@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MappedDataStore}
+ */
+public class MappedDataStoreTest extends Assert
+{
+	private File folder;
+
+	private MappedDataStore store;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("MappedDataStoreTest", null);
+		folder.delete();
+		folder.mkdirs();
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		if (store != null)
+		{
+			store.destroy();
+		}
+		Files.removeFolder(folder);
+	}
+
+	private MappedDataStore newStore(Bytes maxSizePerSession, int segmentSize, int maxSegments)
+	{
+		return new MappedDataStore("app", folder, maxSizePerSession, Bytes.bytes(segmentSize),
+			maxSegments);
+	}
+
+	private static byte[] data(int value, int length)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return data;
+	}
+
+	/**
+	 * store, get, replace and remove
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		store = newStore(Bytes.megabytes(1), 10000, 2);
+
+		store.storeData("s1", 1, data(1, 100));
+		store.storeData("s1", 2, data(2, 100));
+		store.storeData("s2", 1, data(3, 100));
+
+		assertArrayEquals(data(1, 100), store.getData("s1", 1));
+		assertArrayEquals(data(2, 100), store.getData("s1", 2));
+		assertArrayEquals(data(3, 100), store.getData("s2", 1));
+		assertNull(store.getData("s2", 2));
+
+		store.storeData("s1", 1, data(4, 50));
+		assertArrayEquals(data(4, 50), store.getData("s1", 1));
+
+		store.removeData("s1", 2);
+		assertNull(store.getData("s1", 2));
+
+		store.removeData("s1");
+		assertNull(store.getData("s1", 1));
+		assertArrayEquals(data(3, 100), store.getData("s2", 1));
+		assertTrue(store.getDeadBytes() > 0);
+	}
+
+	/**
+	 * The dead space is reclaimed when all segments are full.
+	 */
+	@Test
+	public void compaction()
+	{
+		store = newStore(Bytes.megabytes(1), 1000, 2);
+
+		for (int i = 0; i < 50; i++)
+		{
+			store.storeData("s1", 1, data(i, 100));
+			store.storeData("s2", 1, data(i + 1, 100));
+		}
+
+		assertArrayEquals(data(49, 100), store.getData("s1", 1));
+		assertArrayEquals(data(50, 100), store.getData("s2", 1));
+		assertTrue(store.getCompactionCount() > 0);
+		assertEquals(0, store.getRecycledSegmentCount());
+		assertEquals(2, store.getSegmentCount());
+	}
+
+	/**
+	 * The oldest pages are dropped when there is no more space.
+	 */
+	@Test
+	public void recycle()
+	{
+		store = newStore(Bytes.megabytes(1), 1000, 2);
+
+		for (int i = 0; i < 50; i++)
+		{
+			store.storeData("s1", i, data(i, 100));
+		}
+
+		assertArrayEquals(data(49, 100), store.getData("s1", 49));
+		assertNull(store.getData("s1", 0));
+		assertTrue(store.getRecycledSegmentCount() > 0);
+	}
+
+	/**
+	 * The oldest pages of a session are dropped when it exceeds its maximum size.
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		store = newStore(Bytes.bytes(500), 10000, 2);
+
+		for (int i = 0; i < 10; i++)
+		{
+			store.storeData("s1", i, data(i, 100));
+		}
+
+		assertNull(store.getData("s1", 0));
+		assertArrayEquals(data(9, 100), store.getData("s1", 9));
+		assertTrue(store.getLiveBytes() <= 500);
+	}
+
+	/**
+	 * The index is recovered from the segment files.
+	 */
+	@Test
+	public void recovery()
+	{
+		store = newStore(Bytes.megabytes(1), 1000, 3);
+
+		for (int i = 0; i < 20; i++)
+		{
+			store.storeData("s1", i % 3, data(i, 100));
+		}
+		store.storeData("s2", 1, data(100, 10));
+		store.storeData("s3", 1, data(101, 10));
+		store.removeData("s3");
+		store.destroy();
+
+		store = newStore(Bytes.megabytes(1), 1000, 3);
+
+		assertArrayEquals(data(18, 100), store.getData("s1", 0));
+		assertArrayEquals(data(19, 100), store.getData("s1", 1));
+		assertArrayEquals(data(17, 100), store.getData("s1", 2));
+		assertArrayEquals(data(100, 10), store.getData("s2", 1));
+		assertNull(store.getData("s3", 1));
+
+		store.storeData("s2", 2, data(102, 10));
+		assertArrayEquals(data(102, 10), store.getData("s2", 2));
+	}
+
+	/**
+	 * The compacted segments and the spare segment are recovered.
+	 */
+	@Test
+	public void recoveryAfterCompaction()
+	{
+		store = newStore(Bytes.megabytes(1), 1000, 2);
+
+		for (int i = 0; i < 50; i++)
+		{
+			store.storeData("s1", 1, data(i, 100));
+			store.storeData("s2", 1, data(i + 1, 100));
+		}
+		assertTrue(store.getCompactionCount() > 0);
+		store.destroy();
+
+		store = newStore(Bytes.megabytes(1), 1000, 2);
+
+		assertEquals(2, store.getSegmentCount());
+		assertArrayEquals(data(49, 100), store.getData("s1", 1));
+		assertArrayEquals(data(50, 100), store.getData("s2", 1));
+
+		for (int i = 0; i < 50; i++)
+		{
+			store.storeData("s1", 1, data(i, 100));
+		}
+		assertArrayEquals(data(49, 100), store.getData("s1", 1));
+		assertArrayEquals(data(50, 100), store.getData("s2", 1));
+		assertEquals(0, store.getRecycledSegmentCount());
+	}
+
+	/**
+	 * The oldest recovered pages of a session are dropped when it exceeds its maximum size.
+	 */
+	@Test
+	public void recoveryMaxSizePerSession()
+	{
+		store = newStore(Bytes.megabytes(1), 10000, 2);
+
+		for (int i = 0; i < 10; i++)
+		{
+			store.storeData("s1", i, data(i, 100));
+		}
+		store.destroy();
+
+		store = newStore(Bytes.bytes(500), 10000, 2);
+
+		assertNull(store.getData("s1", 0));
+		assertArrayEquals(data(9, 100), store.getData("s1", 9));
+		assertTrue(store.getLiveBytes() <= 500);
+	}
+
+	/**
+	 * Pages are read and written while other segments are compacted.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void concurrentCompaction() throws Exception
+	{
+		store = newStore(Bytes.megabytes(1), 2000, 3);
+
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final String sessionId = "s" + t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for (int i = 0; i < 500; i++)
+						{
+							store.storeData(sessionId, 1, data(i, 100));
+							assertArrayEquals(data(i, 100), store.getData(sessionId, 1));
+						}
+					}
+					catch (Throwable e)
+					{
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertNull(failure.get());
+		assertTrue(store.getCompactionCount() > 0);
+		assertEquals(0, store.getRecycledSegmentCount());
+	}
+
+	/**
+	 * Pages which don't fit in a segment are not stored.
+	 */
+	@Test
+	public void tooLarge()
+	{
+		store = newStore(Bytes.megabytes(1), 1000, 2);
+
+		store.storeData("s1", 1, data(1, 2000));
+		assertNull(store.getData("s1", 1));
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Arrays;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapPageCache}
+ */
+public class OffHeapPageCacheTest extends Assert
+{
+	private OffHeapPageCache cache;
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		cache.destroy();
+	}
+
+	private static SerializedPage page(String sessionId, int pageId, int value, int length)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return new SerializedPage(sessionId, pageId, data);
+	}
+
+	private static void assertPage(SerializedPage expected, SerializedPage actual)
+	{
+		assertNotNull(actual);
+		assertEquals(expected.getSessionId(), actual.getSessionId());
+		assertEquals(expected.getPageId(), actual.getPageId());
+		assertArrayEquals(expected.getData(), actual.getData());
+	}
+
+	/**
+	 * store, get, replace and remove pages spanning several blocks
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		cache = new OffHeapPageCache(Bytes.kilobytes(10), Bytes.kilobytes(10), Bytes.bytes(100));
+
+		SerializedPage p1 = page("s1", 1, 1, 250);
+		SerializedPage p2 = page("s1", 2, 2, 100);
+		SerializedPage p3 = page("s2", 1, 3, 1);
+		cache.storePage("s1", 1, p1);
+		cache.storePage("s1", 2, p2);
+		cache.storePage("s2", 1, p3);
+
+		assertPage(p1, cache.getPage("s1", 1));
+		assertPage(p2, cache.getPage("s1", 2));
+		assertPage(p3, cache.getPage("s2", 1));
+		assertNull(cache.getPage("s2", 2));
+		assertEquals(500, cache.getUsedBytes());
+
+		SerializedPage p4 = page("s1", 1, 4, 50);
+		cache.storePage("s1", 1, p4);
+		assertPage(p4, cache.getPage("s1", 1));
+		assertEquals(300, cache.getUsedBytes());
+
+		assertPage(p2, cache.removePage("s1", 2));
+		assertNull(cache.getPage("s1", 2));
+
+		cache.removePages("s1");
+		assertNull(cache.getPage("s1", 1));
+		assertPage(p3, cache.getPage("s2", 1));
+		assertEquals(1, cache.getPageCount());
+		assertEquals(100, cache.getUsedBytes());
+	}
+
+	/**
+	 * Pages which have been read recently get a second chance when the budget is exhausted.
+	 */
+	@Test
+	public void clockEviction()
+	{
+		cache = new OffHeapPageCache(Bytes.bytes(300), Bytes.kilobytes(10), Bytes.bytes(100));
+
+		cache.storePage("s1", 1, page("s1", 1, 1, 100));
+		cache.storePage("s2", 1, page("s2", 1, 2, 100));
+		cache.storePage("s3", 1, page("s3", 1, 3, 100));
+
+		// reference the oldest page
+		assertNotNull(cache.getPage("s1", 1));
+
+		cache.storePage("s4", 1, page("s4", 1, 4, 100));
+
+		assertNotNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s2", 1));
+		assertNotNull(cache.getPage("s3", 1));
+		assertNotNull(cache.getPage("s4", 1));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(300, cache.getAllocatedBytes());
+	}
+
+	/**
+	 * A session cannot occupy more than its quota.
+	 */
+	@Test
+	public void quotaPerSession()
+	{
+		cache = new OffHeapPageCache(Bytes.kilobytes(10), Bytes.bytes(200), Bytes.bytes(100));
+
+		cache.storePage("s2", 1, page("s2", 1, 9, 100));
+		for (int i = 0; i < 5; i++)
+		{
+			cache.storePage("s1", i, page("s1", i, i, 100));
+		}
+
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 3));
+		assertNotNull(cache.getPage("s1", 4));
+		assertNotNull(cache.getPage("s2", 1));
+		assertEquals(300, cache.getUsedBytes());
+	}
+
+	/**
+	 * Pages without data or bigger than the quota are not cached.
+	 */
+	@Test
+	public void notCached()
+	{
+		cache = new OffHeapPageCache(Bytes.kilobytes(10), Bytes.bytes(200), Bytes.bytes(100));
+
+		cache.storePage("s1", 1, new SerializedPage("s1", 1, null));
+		cache.storePage("s1", 2, page("s1", 2, 2, 201));
+
+		assertNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertEquals(0, cache.getPageCount());
+	}
+}
@@ -17,7 +17,9 @@
 package org.apache.wicket.pageStore;
 
 import org.apache.wicket.MockPage;
+import org.apache.wicket.pageStore.PerSessionPageStore.PagesCache;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.lang.Bytes;
 import org.junit.Test;
 
 /**
@@ -50,4 +52,154 @@ public class PerSessionPageStoreTest extends AbstractPageStoreTest
 		assertNotNull(pageStore.getPage(sessionId, pageId));
 		assertNotNull(pageStore.getPage(sessionId2, pageId));
 	}
+
+	/**
+	 * The total size of the cached pages is bounded, the sessions exceeding their fair share lose
+	 * their pages first.
+	 */
+	@Test
+	public void maxSize()
+	{
+		PagesCache cache = new PagesCache(10, Bytes.bytes(1000));
+
+		for (int i = 0; i < 5; i++)
+		{
+			cache.storePage("s1", i, new MockPage(i), 150);
+		}
+		cache.storePage("s2", 1, new MockPage(1), 200);
+		assertEquals(950, cache.getSize());
+
+		// s1 occupies more than half of the cache
+		cache.storePage("s2", 2, new MockPage(2), 250);
+
+		assertNull(cache.getPage("s1", 0));
+		assertNull(cache.getPage("s1", 1));
+		assertNotNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s2", 1));
+		assertNotNull(cache.getPage("s2", 2));
+		assertEquals(900, cache.getSize());
+		assertEquals(2, cache.getStatistics().getEvictions());
+		assertEquals(300, cache.getStatistics().getEvictedBytes());
+
+		cache.storePage("s3", 1, new MockPage(1), 2000);
+		assertNull(cache.getPage("s3", 1));
+		assertEquals(1, cache.getStatistics().getRejectedPages());
+
+		cache.removePages("s1");
+		assertEquals(450, cache.getSize());
+		assertEquals(2, cache.getPageCount());
+	}
+
+	/**
+	 * Without an explicit maximum size the cache is bounded by the default size.
+	 */
+	@Test
+	public void defaultMaxSize()
+	{
+		PagesCache cache = new PagesCache(2);
+
+		cache.storePage("s1", 1, new MockPage(1), PerSessionPageStore.DEFAULT_MAX_SIZE.bytes() + 1);
+		assertNull(cache.getPage("s1", 1));
+		assertEquals(1, cache.getStatistics().getRejectedPages());
+
+		cache.storePage("s1", 1, new MockPage(1), 100);
+		cache.storePage("s2", 1, new MockPage(1), 100);
+		cache.storePage("s2", 2, new MockPage(2), 100);
+		cache.storePage("s2", 3, new MockPage(3), 100);
+
+		assertEquals(3, cache.getPageCount());
+		assertEquals(300, cache.getSize());
+		assertNotNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s2", 1));
+		assertEquals(0, cache.getStatistics().getEvictions());
+	}
+
+	/**
+	 * A page used since it was stored gets a second chance before it is evicted.
+	 */
+	@Test
+	public void recentlyUsedPageSurvives()
+	{
+		PagesCache cache = new PagesCache(10, Bytes.bytes(1000));
+
+		for (int i = 0; i < 4; i++)
+		{
+			cache.storePage("s1", i, new MockPage(i), 200);
+		}
+		assertNotNull(cache.getPage("s1", 0));
+
+		cache.storePage("s1", 4, new MockPage(4), 300);
+
+		assertNotNull(cache.getPage("s1", 0));
+		assertNull(cache.getPage("s1", 1));
+		assertEquals(900, cache.getSize());
+		assertEquals(1, cache.getStatistics().getEvictions());
+	}
+
+	/**
+	 * Replaced and removed pages do not pile up in the eviction queue.
+	 */
+	@Test
+	public void replacedPages()
+	{
+		PagesCache cache = new PagesCache(2, Bytes.kilobytes(100));
+
+		for (int i = 0; i < 10000; i++)
+		{
+			cache.storePage("s" + (i % 3), i % 4, new MockPage(i % 4), 10);
+			if (i % 7 == 0)
+			{
+				cache.removePages("s" + (i % 3));
+			}
+		}
+
+		assertTrue(cache.getPageCount() <= 6);
+		assertEquals(cache.getPageCount() * 10, cache.getSize());
+		assertTrue(cache.getQueuedCount() < 100);
+	}
+
+	/**
+	 * Sessions storing and removing pages concurrently keep the total size consistent.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void concurrentSessions() throws Exception
+	{
+		final PagesCache cache = new PagesCache(3, Bytes.bytes(5000));
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final String sessionId = "s" + t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 1000; i++)
+					{
+						cache.storePage(sessionId, i % 5, new MockPage(i % 5), 100 + i % 300);
+						cache.getPage(sessionId, (i + 2) % 5);
+						if (i % 100 == 0)
+						{
+							cache.removePages(sessionId);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertTrue(cache.getSize() <= 5000);
+		assertTrue(cache.getPageCount() <= 3 * threads.length);
+
+		cache.destroy();
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getPageCount());
+	}
 }
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+
+/**
+ * A request supporting asynchronous processing, which hands out the given {@link AsyncContext}
+ */
+class AsyncMockHttpServletRequest extends MockHttpServletRequest
+{
+	private final AsyncContext asyncContext;
+
+	private boolean asyncStarted;
+
+	DispatcherType dispatcherType = DispatcherType.REQUEST;
+
+	AsyncMockHttpServletRequest(WebApplication application, AsyncContext asyncContext)
+	{
+		super(application, null, null);
+		this.asyncContext = asyncContext;
+	}
+
+	@Override
+	public boolean isAsyncSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public AsyncContext startAsync()
+	{
+		asyncStarted = true;
+		return asyncContext;
+	}
+
+	@Override
+	public boolean isAsyncStarted()
+	{
+		return asyncStarted;
+	}
+
+	@Override
+	public AsyncContext getAsyncContext()
+	{
+		return asyncContext;
+	}
+
+	@Override
+	public DispatcherType getDispatcherType()
+	{
+		return dispatcherType;
+	}
+}
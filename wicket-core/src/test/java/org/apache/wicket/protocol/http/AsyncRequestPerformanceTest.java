@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.thread.VirtualThreads;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares the time container threads are busy with requests to a slow resource, when requests
+ * are processed on the container's threads and when they are processed asynchronously, and
+ * measures the throughput of thousands of concurrent slow requests.
+ */
+@Category(SlowTests.class)
+public class AsyncRequestPerformanceTest extends Assert
+{
+	private static final int CONTAINER_THREADS = 4;
+
+	private static final int ASYNC_THREADS = 32;
+
+	private static final int REQUESTS = 200;
+
+	private static final int MANY_REQUESTS = 5000;
+
+	/** the time the resource waits for the simulated backend, in milliseconds */
+	private volatile long backendLatency = 20;
+
+	private WebApplication application;
+
+	private WicketFilter filter;
+
+	/**
+	 * @throws Exception
+	 */
+	@Before
+	public void before() throws Exception
+	{
+		application = new MockApplication();
+		filter = new WicketFilter(application);
+
+		filter.init(new FilterConfig()
+		{
+			@Override
+			public String getFilterName()
+			{
+				return AsyncRequestPerformanceTest.class.getSimpleName();
+			}
+
+			@Override
+			public ServletContext getServletContext()
+			{
+				return new MockServletContext(null, null);
+			}
+
+			@Override
+			public String getInitParameter(String name)
+			{
+				return WicketFilter.FILTER_MAPPING_PARAM.equals(name) ? "/servlet/*" : null;
+			}
+
+			@Override
+			public Enumeration<String> getInitParameterNames()
+			{
+				throw new UnsupportedOperationException();
+			}
+		});
+
+		application.getSharedResources().add("slow.txt", new AbstractResource()
+		{
+			@Override
+			protected ResourceResponse newResourceResponse(Attributes attributes)
+			{
+				ResourceResponse response = new ResourceResponse();
+				response.setContentType("text/plain");
+				response.setWriteCallback(new WriteCallback()
+				{
+					@Override
+					public void writeData(Attributes attributes) throws IOException
+					{
+						try
+						{
+							Thread.sleep(backendLatency);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+						}
+						attributes.getResponse().write("slow");
+					}
+				});
+				return response;
+			}
+		});
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		application.internalDestroy();
+	}
+
+	private void run(String mode, Executor asyncExecutor, int requests) throws Exception
+	{
+		application.getRequestCycleSettings().setAsyncExecutor(asyncExecutor);
+
+		final CountDownLatch done = new CountDownLatch(requests);
+		final AtomicLong containerTime = new AtomicLong();
+
+		final AsyncContext asyncContext = new CompletingAsyncContext(done);
+
+		ExecutorService container = Executors.newFixedThreadPool(CONTAINER_THREADS);
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++)
+		{
+			container.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long requestStart = System.nanoTime();
+					ThreadContext.setApplication(application);
+					try
+					{
+						AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(
+							application, asyncContext);
+						request.setURL(request.getContextPath() + request.getServletPath() +
+							"/wicket/resource/" + Application.class.getName() + "/slow.txt");
+						MockHttpServletResponse response = new MockHttpServletResponse(request);
+
+						filter.doFilter(request, response, new FilterChain()
+						{
+							@Override
+							public void doFilter(ServletRequest request, ServletResponse response)
+							{
+								fail("the request should be handled by Wicket");
+							}
+						});
+
+						if (request.isAsyncStarted() == false)
+						{
+							done.countDown();
+						}
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+					finally
+					{
+						ThreadContext.detach();
+						containerTime.addAndGet(System.nanoTime() - requestStart);
+					}
+				}
+			});
+		}
+
+		assertTrue(done.await(5, TimeUnit.MINUTES));
+		long duration = System.nanoTime() - start;
+		container.shutdown();
+
+		System.out.println(String.format(
+			"%-7s: %5d requests in %5d ms, container threads busy for %6d ms", mode, requests,
+			TimeUnit.NANOSECONDS.toMillis(duration),
+			TimeUnit.NANOSECONDS.toMillis(containerTime.get())));
+	}
+
+	/**
+	 * Prints the duration and the time container threads were busy for both modes.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void slowBackend() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(ASYNC_THREADS);
+		try
+		{
+			// warm up
+			run("sync", null, REQUESTS);
+			run("async", executor, REQUESTS);
+
+			run("sync", null, REQUESTS);
+			run("async", executor, REQUESTS);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Prints the duration of thousands of concurrent slow requests, processed on a virtual thread
+	 * each if the JVM supports them, on a pool of platform threads otherwise.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void manySlowRequests() throws Exception
+	{
+		backendLatency = 100;
+
+		String mode = "virtual";
+		ExecutorService executor = VirtualThreads.newExecutor();
+		if (executor == null)
+		{
+			mode = "pool";
+			executor = Executors.newFixedThreadPool(ASYNC_THREADS * 8);
+		}
+		try
+		{
+			// warm up
+			run(mode, executor, REQUESTS);
+
+			run(mode, executor, MANY_REQUESTS);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Counts down a latch when the request is completed.
+	 */
+	private static class CompletingAsyncContext implements AsyncContext
+	{
+		private final CountDownLatch completed;
+
+		private CompletingAsyncContext(CountDownLatch completed)
+		{
+			this.completed = completed;
+		}
+
+		@Override
+		public void complete()
+		{
+			completed.countDown();
+		}
+
+		@Override
+		public ServletRequest getRequest()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ServletResponse getResponse()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasOriginalRequestAndResponse()
+		{
+			return true;
+		}
+
+		@Override
+		public void dispatch()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void dispatch(String path)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void dispatch(ServletContext context, String path)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void start(Runnable run)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void addListener(AsyncListener listener)
+		{
+		}
+
+		@Override
+		public void addListener(AsyncListener listener, ServletRequest servletRequest,
+			ServletResponse servletResponse)
+		{
+		}
+
+		@Override
+		public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setTimeout(long timeout)
+		{
+		}
+
+		@Override
+		public long getTimeout()
+		{
+			return 0;
+		}
+	}
+}
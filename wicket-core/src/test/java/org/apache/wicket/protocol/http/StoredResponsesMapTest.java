@@ -16,13 +16,19 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
+import org.apache.wicket.protocol.http.servlet.ServletWebResponse;
 import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.tester.WicketTester;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 import org.junit.Assert;
@@ -44,7 +50,8 @@ public class StoredResponsesMapTest extends Assert
 	@Test
 	public void entriesLife2Seconds() throws Exception
 	{
-		StoredResponsesMap map = new StoredResponsesMap(1000, Duration.seconds(2));
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10), Duration.seconds(2),
+			false);
 		assertEquals(0, map.size());
 		map.put("1", new BufferedWebResponse(null));
 		assertEquals(1, map.size());
@@ -64,7 +71,7 @@ public class StoredResponsesMapTest extends Assert
 	{
 		Time start = Time.now();
 		Duration timeout = Duration.milliseconds(50);
-		StoredResponsesMap map = new StoredResponsesMap(1000, timeout);
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10), timeout, false);
 		assertEquals(0, map.size());
 		map.put("1", new BufferedWebResponse(null));
 		assertEquals(1, map.size());
@@ -80,10 +87,167 @@ public class StoredResponsesMapTest extends Assert
 	@Test(expected = IllegalArgumentException.class)
 	public void cannotPutArbitraryValue()
 	{
-		StoredResponsesMap map = new StoredResponsesMap(1000, Duration.days(1));
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10), Duration.days(1),
+			false);
 		map.put("1", new Object());
 	}
 
+	/**
+	 * Verifies that the eldest entries are evicted when the maximum size is exceeded
+	 */
+	@Test
+	public void evictEldestWhenMaxSizeExceeded()
+	{
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.bytes(100), Duration.days(1), false);
+
+		// 20 characters, 40 bytes each
+		map.put("1", response("0123456789abcdefghij"));
+		map.put("2", response("0123456789abcdefghij"));
+		assertEquals(2, map.size());
+		assertEquals(Bytes.bytes(80), map.getSize());
+
+		map.put("3", response("0123456789abcdefghij"));
+		assertEquals(2, map.size());
+		assertFalse(map.containsKey("1"));
+		assertTrue(map.containsKey("2"));
+		assertTrue(map.containsKey("3"));
+		assertEquals(Bytes.bytes(80), map.getSize());
+
+		assertNotNull(map.remove("2"));
+		assertNull(map.remove("1"));
+		assertEquals(Bytes.bytes(40), map.getSize());
+
+		StoredResponsesStatistics statistics = map.getStatistics();
+		assertEquals(3, statistics.getStored());
+		assertEquals(1, statistics.getConsumed());
+		assertEquals(1, statistics.getEvicted());
+		assertEquals(0, statistics.getExpired());
+		assertEquals(1d / 3, statistics.getHitRate(), 0.0001);
+	}
+
+	/**
+	 * Verifies that consumed responses are released although an older response is never fetched
+	 */
+	@Test
+	public void consumedBehindUnfetched()
+	{
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10), Duration.days(1),
+			false);
+		map.put("unfetched", response("0123456789"));
+
+		for (int i = 0; i < 1000; i++)
+		{
+			map.put("" + i, response("0123456789"));
+			assertNotNull(map.remove("" + i));
+		}
+
+		assertEquals(1, map.size());
+		assertEquals(Bytes.bytes(20), map.getSize());
+		assertNotNull(map.get("unfetched"));
+	}
+
+	/**
+	 * Verifies that concurrent puts, replacements and removals keep the size and the eviction
+	 * order consistent
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void concurrentAccounting() throws InterruptedException
+	{
+		final StoredResponsesMap map = new StoredResponsesMap(Bytes.bytes(1000),
+			Duration.days(1), false);
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 5000; i++)
+					{
+						String key = "" + (i + offset) % 40;
+						map.put(key, response("0123456789"));
+						map.remove("" + (i + 2 * offset) % 40);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertTrue(map.getSize().bytes() <= 1000);
+		assertEquals(map.size(), map.getOrderedCount());
+		assertEquals(Bytes.bytes(20 * map.size()), map.getSize());
+
+		for (int i = 0; i < 40; i++)
+		{
+			map.remove("" + i);
+		}
+		assertEquals(0, map.size());
+		assertEquals(0, map.getOrderedCount());
+		assertEquals(Bytes.bytes(0), map.getSize());
+	}
+
+	/**
+	 * Verifies that replacing an entry does not count its size twice
+	 */
+	@Test
+	public void replace()
+	{
+		StoredResponsesMap map = new StoredResponsesMap(Bytes.bytes(100), Duration.days(1), false);
+		BufferedWebResponse first = response("first");
+
+		map.put("1", first);
+		assertSame(first, map.put("1", response("second")));
+
+		assertEquals(1, map.size());
+		assertEquals(Bytes.bytes(12), map.getSize());
+	}
+
+	/**
+	 * Verifies that the text of the stored responses is kept encoded in the charset of their
+	 * content type and written unchanged
+	 */
+	@Test
+	public void offHeap()
+	{
+		WicketTester tester = new WicketTester();
+		try
+		{
+			StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10),
+				Duration.days(1), true);
+
+			BufferedWebResponse response = response("\u00e4bc");
+			response.setContentType("text/html; charset=UTF-8");
+			map.put("1", response);
+			assertEquals(Bytes.bytes(4), map.getSize());
+
+			MockHttpServletResponse httpResponse = tester.getResponse();
+			map.remove("1").writeTo(new ServletWebResponse(
+				new ServletWebRequest(tester.getRequest(), ""), httpResponse));
+			assertArrayEquals("\u00e4bc".getBytes(StandardCharsets.UTF_8),
+				httpResponse.getBinaryContent());
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+
+	private static BufferedWebResponse response(String text)
+	{
+		BufferedWebResponse response = new BufferedWebResponse(null);
+		response.write(text);
+		return response;
+	}
+
 	/**
 	 * <a href="https://issues.apache.org/jira/browse/WICKET-3736">WICKET-3736</a>
 	 * 
@@ -103,7 +267,8 @@ public class StoredResponsesMapTest extends Assert
 		final CountDownLatch startLatch = new CountDownLatch(numberOfThreads);
 		final CountDownLatch endLatch = new CountDownLatch(numberOfThreads);
 		final SecureRandom rnd = new SecureRandom();
-		final StoredResponsesMap map = new StoredResponsesMap(1000, Duration.seconds(60));
+		final StoredResponsesMap map = new StoredResponsesMap(Bytes.megabytes(10),
+			Duration.seconds(60), false);
 		final List<String> keys = new CopyOnWriteArrayList<String>();
 
 		final Runnable r = new Runnable()
@@ -32,9 +32,14 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
@@ -148,6 +153,135 @@ public class WicketFilterTest extends Assert
 		assertEquals("filtertest/", filterPath);
 	}
 
+	/**
+	 * Requests are processed on the configured executor and completed asynchronously
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void asyncRequest() throws Exception
+	{
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			application = new MockApplication();
+			WicketFilter filter = new WicketFilter();
+			filter.init(new FilterTestingConfig());
+			application.getRequestCycleSettings().setAsyncExecutor(executor);
+			ThreadContext.setApplication(application);
+
+			final AtomicReference<Thread> resourceThread = new AtomicReference<>();
+			IResource resource = new AbstractResource()
+			{
+				@Override
+				protected ResourceResponse newResourceResponse(Attributes attributes)
+				{
+					resourceThread.set(Thread.currentThread());
+					ResourceResponse response = new ResourceResponse();
+					response.setContentType("text/plain");
+					response.setWriteCallback(new WriteCallback()
+					{
+						@Override
+						public void writeData(Attributes attributes) throws IOException
+						{
+							attributes.getResponse().write("async");
+						}
+					});
+					return response;
+				}
+			};
+			application.getSharedResources().add("async.txt", resource);
+
+			final CountDownLatch completed = new CountDownLatch(1);
+			AsyncContext asyncContext = mock(AsyncContext.class);
+			doAnswer(new Answer<Void>()
+			{
+				@Override
+				public Void answer(InvocationOnMock invocation) throws Throwable
+				{
+					completed.countDown();
+					return null;
+				}
+			}).when(asyncContext).complete();
+
+			MockHttpServletRequest request = new AsyncMockHttpServletRequest(application,
+				asyncContext);
+			request.setURL(request.getContextPath() + request.getServletPath() +
+				"/wicket/resource/" + Application.class.getName() + "/async.txt");
+			MockHttpServletResponse response = new MockHttpServletResponse(request);
+			FilterChain chain = mock(FilterChain.class);
+
+			filter.doFilter(request, response, chain);
+
+			assertTrue(completed.await(10, TimeUnit.SECONDS));
+			assertEquals("async", response.getDocument());
+			assertNotSame(Thread.currentThread(), resourceThread.get());
+			verify(asyncContext, never()).dispatch();
+			verify(chain, never()).doFilter(Matchers.<ServletRequest> any(),
+				Matchers.<ServletResponse> any());
+		}
+		finally
+		{
+			executor.shutdownNow();
+			ThreadContext.detach();
+		}
+	}
+
+	/**
+	 * Asynchronous requests not handled by Wicket are dispatched back to the container to
+	 * continue with the filter chain
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void asyncRequestNotHandled() throws Exception
+	{
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			application = new MockApplication();
+			WicketFilter filter = new WicketFilter();
+			filter.init(new FilterTestingConfig());
+			application.getRequestCycleSettings().setAsyncExecutor(executor);
+			ThreadContext.setApplication(application);
+
+			final CountDownLatch dispatched = new CountDownLatch(1);
+			AsyncContext asyncContext = mock(AsyncContext.class);
+			doAnswer(new Answer<Void>()
+			{
+				@Override
+				public Void answer(InvocationOnMock invocation) throws Throwable
+				{
+					dispatched.countDown();
+					return null;
+				}
+			}).when(asyncContext).dispatch();
+
+			AsyncMockHttpServletRequest request = new AsyncMockHttpServletRequest(application,
+				asyncContext);
+			request.setURL(request.getContextPath() + request.getServletPath() + "/unknown.html");
+			MockHttpServletResponse response = new MockHttpServletResponse(request);
+			FilterChain chain = mock(FilterChain.class);
+
+			filter.doFilter(request, response, chain);
+
+			assertTrue(dispatched.await(10, TimeUnit.SECONDS));
+			verify(asyncContext, never()).complete();
+			verify(chain, never()).doFilter(request, response);
+
+			// the container dispatches the request again
+			request.dispatcherType = DispatcherType.ASYNC;
+			filter.doFilter(request, response, chain);
+
+			verify(chain).doFilter(request, response);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			ThreadContext.detach();
+		}
+	}
+
 	/**
 	 * @throws IOException
 	 * @throws ServletException
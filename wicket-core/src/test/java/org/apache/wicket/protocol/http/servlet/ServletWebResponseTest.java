@@ -23,6 +23,7 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -214,4 +215,42 @@ public class ServletWebResponseTest extends Assert
 		ServletWebResponse webResponse = new ServletWebResponse(webRequest, httpServletResponse);
 		assertEquals(url + ";foo", webResponse.encodeRedirectURL(url));
 	}
+
+	/**
+	 * Text written after bytes is encoded in the character encoding of the response
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void textAfterBytes() throws IOException
+	{
+		ServletWebRequest webRequest = mock(ServletWebRequest.class);
+		MockHttpServletRequest httpRequest = mock(MockHttpServletRequest.class);
+		MockHttpServletResponse httpResponse = new MockHttpServletResponse(httpRequest);
+		httpResponse.setCharacterEncoding("UTF-8");
+		ServletWebResponse response = new ServletWebResponse(webRequest, httpResponse);
+
+		assertEquals(StandardCharsets.UTF_8, response.getEncodingCharset());
+		response.write("<p>".getBytes(StandardCharsets.UTF_8));
+		response.write("български");
+		response.write("</p>".getBytes(StandardCharsets.UTF_8));
+		assertEquals(StandardCharsets.UTF_8, response.getEncodingCharset());
+
+		assertEquals("<p>български</p>", httpResponse.getDocument());
+	}
+
+	/**
+	 * Once the writer was used, text has to be written as text
+	 */
+	@Test
+	public void noBytesAfterText()
+	{
+		ServletWebRequest webRequest = mock(ServletWebRequest.class);
+		MockHttpServletRequest httpRequest = mock(MockHttpServletRequest.class);
+		MockHttpServletResponse httpResponse = new MockHttpServletResponse(httpRequest);
+		ServletWebResponse response = new ServletWebResponse(webRequest, httpResponse);
+
+		response.write("<p>");
+		assertNull(response.getEncodingCharset());
+	}
 }
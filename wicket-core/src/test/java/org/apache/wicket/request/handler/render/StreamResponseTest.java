@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.handler.render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.head.CssHeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.settings.RequestCycleSettings.RenderStrategy;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link org.apache.wicket.settings.RequestCycleSettings#setStreamResponse(boolean)}
+ */
+public class StreamResponseTest extends WicketTestCase
+{
+	/**
+	 * The application in deployment mode, which does not filter the responses
+	 */
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * Enables streaming
+	 */
+	@Before
+	public void before()
+	{
+		tester.getApplication()
+			.getRequestCycleSettings()
+			.setRenderStrategy(RenderStrategy.ONE_PASS_RENDER)
+			.setStreamResponse(true);
+	}
+
+	/**
+	 * The header is sent to the client before the body is rendered
+	 */
+	@Test
+	public void streamAfterHead()
+	{
+		StreamingPage page = new StreamingPage(false);
+		tester.startPage(page);
+
+		assertTrue(page.sentBeforeBody.contains("body {}"));
+		assertTrue(page.sentBeforeBody.endsWith("</head><body><span>"));
+		tester.assertContains("</head><body><span>probe</span></body>");
+	}
+
+	/**
+	 * Once streamed, static markup is written as bytes and text is encoded by the response
+	 */
+	@Test
+	public void streamAsBytes()
+	{
+		StreamingPage page = new StreamingPage(false);
+		page.get("probe").setDefaultModel(Model.of("\u00e4\u20ac"));
+		tester.startPage(page);
+
+		assertTrue(tester.getLastResponse().getBinaryContent().length > 0);
+		tester.assertContains("</head><body><span>\u00e4\u20ac</span></body>");
+	}
+
+	/**
+	 * Without streaming nothing is sent before the page is rendered completely
+	 */
+	@Test
+	public void withoutStreaming()
+	{
+		tester.getApplication().getRequestCycleSettings().setStreamResponse(false);
+
+		StreamingPage page = new StreamingPage(false);
+		tester.startPage(page);
+
+		assertEquals("", page.sentBeforeBody);
+		tester.assertContains("</head><body><span>probe</span></body>");
+	}
+
+	/**
+	 * Response filters need the whole response, so pages are not streamed
+	 */
+	@Test
+	public void notWithResponseFilters()
+	{
+		tester.getApplication().getRequestCycleSettings().addResponseFilter(
+			(AppendingStringBuffer responseBuffer) -> responseBuffer);
+
+		StreamingPage page = new StreamingPage(false);
+		tester.startPage(page);
+
+		assertEquals("", page.sentBeforeBody);
+	}
+
+	/**
+	 * A failure after the header was sent ends the response, no error page is appended
+	 */
+	@Test
+	public void failureAfterHead()
+	{
+		StreamingPage page = new StreamingPage(true);
+		tester.startPage(page);
+
+		String document = tester.getLastResponseAsString();
+		assertTrue(document.endsWith("</head><body><span>"));
+	}
+
+	/**
+	 * Streamed pages are still rendered through {@link WebPageRenderer#renderPage(Url, RequestCycle)}
+	 */
+	@Test
+	public void overriddenRenderPage()
+	{
+		final AtomicInteger rendered = new AtomicInteger();
+		tester.getApplication().setPageRendererProvider(
+			handler -> new WebPageRenderer(handler)
+			{
+				@Override
+				protected BufferedWebResponse renderPage(Url targetUrl, RequestCycle requestCycle)
+				{
+					rendered.incrementAndGet();
+					return super.renderPage(targetUrl, requestCycle);
+				}
+			});
+
+		StreamingPage page = new StreamingPage(false);
+		tester.startPage(page);
+
+		assertEquals(1, rendered.get());
+		assertTrue(page.sentBeforeBody.endsWith("</head><body><span>"));
+	}
+
+	/**
+	 * A page with a header contribution and a component recording what was sent to the client
+	 * before it got rendered
+	 */
+	public static class StreamingPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private String sentBeforeBody;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param fail
+		 *            whether rendering the body should fail
+		 */
+		public StreamingPage(final boolean fail)
+		{
+			add(new WebComponent("probe")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag)
+				{
+					MockHttpServletResponse response = (MockHttpServletResponse)getResponse()
+						.getContainerResponse();
+					sentBeforeBody = response.getDocument();
+					if (fail)
+					{
+						throw new IllegalStateException("rendering failed");
+					}
+					replaceComponentTagBody(markupStream, openTag,
+						getDefaultModelObject() != null ? getDefaultModelObjectAsString() : "probe");
+				}
+			});
+		}
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			response.render(CssHeaderItem.forCSS("body {}", "streaming"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head><title>streaming</title></head><body><span wicket:id='probe'></span></body></html>");
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeflatedJavaSerializer}
+ */
+public class DeflatedJavaSerializerTest extends WicketTestCase
+{
+	/**
+	 * The pooled deflaters and inflaters produce the same results every time.
+	 */
+	@Test
+	public void reuse()
+	{
+		final int[] created = { 0 };
+		DeflatedJavaSerializer serializer = new DeflatedJavaSerializer("DeflatedJavaSerializerTest")
+		{
+			@Override
+			protected Deflater createDeflater()
+			{
+				created[0]++;
+				return super.createDeflater();
+			}
+		};
+
+		WebMarkupContainer tree = DictionaryJavaSerializerTest.componentTree(50);
+		byte[] first = serializer.serialize(tree);
+		for (int i = 0; i < 10; i++)
+		{
+			assertArrayEquals(first, serializer.serialize(tree));
+			WebMarkupContainer restored = (WebMarkupContainer)serializer.deserialize(first);
+			assertEquals(50, restored.size());
+		}
+		assertEquals(1, created[0]);
+	}
+
+	/**
+	 * The inflater is returned to the pool if the stream header is corrupt.
+	 */
+	@Test
+	public void corruptStream()
+	{
+		final int[] created = { 0 };
+		DeflatedJavaSerializer serializer = new DeflatedJavaSerializer("DeflatedJavaSerializerTest")
+		{
+			@Override
+			protected Inflater createInflater()
+			{
+				created[0]++;
+				return super.createInflater();
+			}
+		};
+
+		// valid deflated data, but no object stream
+		ByteArrayOutputStream corrupt = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(corrupt))
+		{
+			out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+
+		for (int i = 0; i < 10; i++)
+		{
+			try
+			{
+				serializer.deserialize(corrupt.toByteArray());
+				fail("the stream is corrupt");
+			}
+			catch (RuntimeException expected)
+			{
+				// expected
+			}
+		}
+		assertEquals(1, created[0]);
+
+		byte[] data = serializer.serialize(DictionaryJavaSerializerTest.componentTree(5));
+		assertEquals(5, ((WebMarkupContainer)serializer.deserialize(data)).size());
+		assertEquals(1, created[0]);
+	}
+
+	/**
+	 * A higher level compresses better.
+	 */
+	@Test
+	public void level()
+	{
+		WebMarkupContainer tree = DictionaryJavaSerializerTest.componentTree(200);
+		byte[] fast = new DeflatedJavaSerializer("DeflatedJavaSerializerTest", Deflater.BEST_SPEED).serialize(tree);
+		DeflatedJavaSerializer best = new DeflatedJavaSerializer("DeflatedJavaSerializerTest",
+			Deflater.BEST_COMPRESSION);
+		byte[] small = best.serialize(tree);
+
+		assertTrue(small.length < fast.length);
+		assertEquals(200, ((WebMarkupContainer)best.deserialize(small)).size());
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DictionaryJavaSerializer}
+ */
+public class DictionaryJavaSerializerTest extends WicketTestCase
+{
+	/**
+	 * Builds a component tree with many instances of a few classes.
+	 * 
+	 * @param children
+	 * @return the root of the tree
+	 */
+	static WebMarkupContainer componentTree(int children)
+	{
+		WebMarkupContainer root = new WebMarkupContainer("root");
+		for (int i = 0; i < children; i++)
+		{
+			WebMarkupContainer row = new WebMarkupContainer("row" + i);
+			row.add(new Label("label", Model.of("label " + i)));
+			row.add(new WebComponent("component", Model.of(i)));
+			root.add(row);
+		}
+		return root;
+	}
+
+	/**
+	 * Serialized objects are restored and smaller than with {@link JavaSerializer}.
+	 */
+	@Test
+	public void roundTrip()
+	{
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+
+		WebMarkupContainer tree = componentTree(20);
+		byte[] data = serializer.serialize(tree);
+		WebMarkupContainer restored = (WebMarkupContainer)serializer.deserialize(data);
+
+		assertEquals(20, restored.size());
+		assertEquals("label 7", restored.get("row7:label").getDefaultModelObject());
+		assertEquals(7, restored.get("row7:component").getDefaultModelObject());
+
+		int dictionarySize = serializer.getDictionarySize();
+		assertTrue(dictionarySize > 0);
+
+		byte[] javaData = new JavaSerializer("DictionaryJavaSerializerTest").serialize(tree);
+		assertTrue(data.length < javaData.length);
+
+		// the descriptors are written only once
+		assertArrayEquals(data, serializer.serialize(tree));
+		assertEquals(dictionarySize, serializer.getDictionarySize());
+	}
+
+	/**
+	 * writeReplace() and readResolve() are honoured.
+	 */
+	@Test
+	public void replaceAndResolve()
+	{
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+
+		List<Object> list = new ArrayList<>();
+		list.add(Singleton.INSTANCE);
+		list.add(new Replaced("value"));
+
+		@SuppressWarnings("unchecked")
+		List<Object> restored = (List<Object>)serializer.deserialize(serializer.serialize(list));
+
+		assertSame(Singleton.INSTANCE, restored.get(0));
+		assertEquals("replaced value", restored.get(1));
+	}
+
+	/**
+	 * Data written by another serializer is rejected.
+	 */
+	@Test(expected = RuntimeException.class)
+	public void foreignData()
+	{
+		byte[] data = new DictionaryJavaSerializer("DictionaryJavaSerializerTest").serialize("data");
+		new DictionaryJavaSerializer("DictionaryJavaSerializerTest").deserialize(data);
+	}
+
+	/**
+	 * Serialization fails when some object in the tree is not Serializable.
+	 */
+	@Test
+	public void notSerializable()
+	{
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+		WebMarkupContainer tree = componentTree(1);
+		tree.setDefaultModel(Model.of((Serializable)new NotSerializableList()));
+
+		assertNull(serializer.serialize(tree));
+		// the buffer is still usable
+		assertEquals("data", serializer.deserialize(serializer.serialize("data")));
+	}
+
+	private static class Singleton implements Serializable
+	{
+		private static final Singleton INSTANCE = new Singleton();
+
+		private Object readResolve()
+		{
+			return INSTANCE;
+		}
+	}
+
+	private static class Replaced implements Serializable
+	{
+		private final String value;
+
+		private Replaced(String value)
+		{
+			this.value = value;
+		}
+
+		private Object writeReplace()
+		{
+			return "replaced " + value;
+		}
+	}
+
+	private static class NotSerializableList extends ArrayList<Object>
+	{
+		private NotSerializableList()
+		{
+			add(new Object());
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LzJavaSerializer} and {@link LzCodec}
+ */
+public class LzJavaSerializerTest extends WicketTestCase
+{
+	/**
+	 * Component trees are compressed and restored.
+	 */
+	@Test
+	public void componentTree()
+	{
+		LzJavaSerializer serializer = new LzJavaSerializer("LzJavaSerializerTest");
+
+		WebMarkupContainer tree = DictionaryJavaSerializerTest.componentTree(500);
+		byte[] data = serializer.serialize(tree);
+		byte[] javaData = new JavaSerializer("LzJavaSerializerTest").serialize(tree);
+		assertTrue(data.length < javaData.length / 2);
+
+		WebMarkupContainer restored = (WebMarkupContainer)serializer.deserialize(data);
+		assertEquals(500, restored.size());
+		assertEquals("label 321", restored.get("row321:label").getDefaultModelObject());
+	}
+
+	/**
+	 * Incompressible data spanning several blocks is stored as is.
+	 */
+	@Test
+	public void incompressible()
+	{
+		LzJavaSerializer serializer = new LzJavaSerializer("LzJavaSerializerTest");
+
+		byte[] random = new byte[100000];
+		new Random(1).nextBytes(random);
+		byte[] data = serializer.serialize(random);
+
+		assertTrue(data.length < random.length + 200);
+		assertArrayEquals(random, (byte[])serializer.deserialize(data));
+	}
+
+	/**
+	 * The codec restores data with all kinds of repetitions.
+	 */
+	@Test
+	public void codec()
+	{
+		Random random = new Random(2);
+		int[] table = new int[1 << 12];
+		for (int i = 0; i < 200; i++)
+		{
+			byte[] src = new byte[random.nextInt(LzCodec.BLOCK_SIZE)];
+			int position = 0;
+			while (position < src.length)
+			{
+				int length = Math.min(src.length - position, 1 + random.nextInt(600));
+				if (position > 0 && random.nextBoolean())
+				{
+					int from = random.nextInt(position);
+					for (int j = 0; j < length; j++)
+					{
+						src[position + j] = src[from + j];
+					}
+				}
+				else
+				{
+					for (int j = 0; j < length; j++)
+					{
+						src[position + j] = (byte)random.nextInt(4);
+					}
+				}
+				position += length;
+			}
+
+			byte[] compressed = new byte[LzCodec.maxCompressedLength(src.length)];
+			int compressedLength = LzCodec.compress(src, src.length, compressed, table);
+			byte[] restored = new byte[src.length];
+			assertEquals(src.length, LzCodec.decompress(compressed, compressedLength, restored));
+			assertTrue(Arrays.equals(src, restored));
+		}
+	}
+}
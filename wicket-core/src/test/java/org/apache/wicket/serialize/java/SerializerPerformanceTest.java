@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.util.zip.Deflater;
+
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Compares the speed and the output size of the serializers, i.e. the bytes saved by the
+ * compressing ones versus the CPU time they spend.
+ */
+@Category(SlowTests.class)
+public class SerializerPerformanceTest extends WicketTestCase
+{
+	private static final int WARMUP = 50;
+
+	private static final int ITERATIONS = 100;
+
+	private void run(String name, ISerializer serializer, WebMarkupContainer tree)
+	{
+		byte[] data = null;
+		for (int i = 0; i < WARMUP; i++)
+		{
+			data = serializer.serialize(tree);
+			serializer.deserialize(data);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			data = serializer.serialize(tree);
+		}
+		long serialize = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			serializer.deserialize(data);
+		}
+		long deserialize = System.nanoTime() - start;
+
+		System.out.println(String.format("%-25s size: %7d bytes, serialize: %6d us, deserialize: %6d us",
+			name, data.length, serialize / ITERATIONS / 1000, deserialize / ITERATIONS / 1000));
+	}
+
+	@Test
+	public void performance()
+	{
+		for (int children : new int[] { 10, 100, 500 })
+		{
+			WebMarkupContainer tree = DictionaryJavaSerializerTest.componentTree(children);
+			System.out.println(children + " rows:");
+			run("JavaSerializer", new JavaSerializer("perf"), tree);
+			run("DeflatedJavaSerializer", new DeflatedJavaSerializer("perf"), tree);
+			run("DeflatedJavaSerializer(9)", new DeflatedJavaSerializer("perf", Deflater.BEST_COMPRESSION), tree);
+			run("LzJavaSerializer", new LzJavaSerializer("perf"), tree);
+			run("DictionaryJavaSerializer", new DictionaryJavaSerializer("perf"), tree);
+		}
+	}
+}
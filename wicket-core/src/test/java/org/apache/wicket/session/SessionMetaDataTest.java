@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.session;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for the meta data of {@link Session}
+ */
+public class SessionMetaDataTest extends WicketTestCase
+{
+	private static final MetaDataKey<String> KEY = new MetaDataKey<String>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * The meta data can still be accessed and modified after the session has been deserialized
+	 */
+	@Test
+	public void metaDataAfterDeserialization()
+	{
+		Session session = tester.getSession();
+		session.setMetaData(KEY, "value");
+
+		Session clone = WicketObjects.cloneObject(session);
+		assertEquals("value", clone.getMetaData(KEY));
+
+		clone.setMetaData(KEY, "other");
+		assertEquals("other", clone.getMetaData(KEY));
+		assertEquals("value", session.getMetaData(KEY));
+
+		clone.setMetaData(KEY, null);
+		assertNull(clone.getMetaData(KEY));
+	}
+}
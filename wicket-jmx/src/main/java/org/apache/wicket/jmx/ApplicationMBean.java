@@ -68,6 +68,47 @@ public interface ApplicationMBean
 	 */
 	int getMarkupCacheSize() throws IOException;
 
+	/**
+	 * Gets the number of markup lookups which were served from the markup cache.
+	 * 
+	 * @return the number of cache hits, or null if the markup cache does not count them
+	 * @throws IOException
+	 */
+	Long getMarkupCacheHitCount() throws IOException;
+
+	/**
+	 * Gets the number of markup lookups which did not find the markup in the markup cache.
+	 * 
+	 * @return the number of cache misses, or null if the markup cache does not count them
+	 * @throws IOException
+	 */
+	Long getMarkupCacheMissCount() throws IOException;
+
+	/**
+	 * Gets the number of times markup was loaded.
+	 * 
+	 * @return the number of markup loads, or null if the markup cache does not count them
+	 * @throws IOException
+	 */
+	Long getMarkupLoadCount() throws IOException;
+
+	/**
+	 * Gets the total time spent loading markup.
+	 * 
+	 * @return the total load time in milliseconds, or null if the markup cache does not measure
+	 *         it
+	 * @throws IOException
+	 */
+	Long getMarkupLoadTime() throws IOException;
+
+	/**
+	 * Gets the number of markup entries evicted because the markup cache was full.
+	 * 
+	 * @return the number of evictions, or null if the markup cache is not bounded
+	 * @throws IOException
+	 */
+	Long getMarkupCacheEvictionCount() throws IOException;
+
 	/**
 	 * Gets the Wicket version. The Wicket version is in the same format as the version element in
 	 * the pom.xml file (project descriptor). The version is generated by maven in the build/release
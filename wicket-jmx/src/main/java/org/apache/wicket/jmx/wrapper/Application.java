@@ -19,6 +19,9 @@ package org.apache.wicket.jmx.wrapper;
 import java.io.IOException;
 
 import org.apache.wicket.jmx.ApplicationMBean;
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupCache;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -84,6 +87,80 @@ public class Application implements ApplicationMBean
 		return application.getMarkupSettings().getMarkupFactory().getMarkupCache().size();
 	}
 
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupCacheHitCount()
+	 */
+	@Override
+	public Long getMarkupCacheHitCount() throws IOException
+	{
+		MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			return cache.getHitCount();
+		}
+		return null;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupCacheMissCount()
+	 */
+	@Override
+	public Long getMarkupCacheMissCount() throws IOException
+	{
+		MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			return cache.getMissCount();
+		}
+		return null;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupLoadCount()
+	 */
+	@Override
+	public Long getMarkupLoadCount() throws IOException
+	{
+		MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			return cache.getLoadCount();
+		}
+		return null;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupLoadTime()
+	 */
+	@Override
+	public Long getMarkupLoadTime() throws IOException
+	{
+		MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			return cache.getTotalLoadTime().getMilliseconds();
+		}
+		return null;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupCacheEvictionCount()
+	 */
+	@Override
+	public Long getMarkupCacheEvictionCount() throws IOException
+	{
+		MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			MarkupCache.ICache<String, Markup> markupCache = cache.getMarkupCache();
+			if (markupCache instanceof MarkupCache.BoundedCacheImplementation)
+			{
+				return ((MarkupCache.BoundedCacheImplementation<?, ?>)markupCache).getEvictionCount();
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @see org.apache.wicket.jmx.ApplicationMBean#getWicketVersion()
 	 */
@@ -101,4 +178,19 @@ public class Application implements ApplicationMBean
 	{
 		application.getResourceSettings().getLocalizer().clearCache();
 	}
+
+	/**
+	 * Gets the markup cache of the application.
+	 * 
+	 * @return the markup cache or null if it is not a {@link MarkupCache}
+	 */
+	private MarkupCache getMarkupCache()
+	{
+		IMarkupCache cache = application.getMarkupSettings().getMarkupFactory().getMarkupCache();
+		if (cache instanceof MarkupCache)
+		{
+			return (MarkupCache)cache;
+		}
+		return null;
+	}
 }
@@ -18,6 +18,7 @@ package org.apache.wicket.request;
 
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -75,6 +76,8 @@ public class Url implements Serializable
 
 	private static final String DEFAULT_CHARSET_NAME = "UTF-8";
 
+	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+
 	private final List<String> segments;
 
 	private final List<QueryParameter> parameters;
@@ -321,42 +324,31 @@ public class Url implements Serializable
 
 		if (relativeUrl.length() > 0)
 		{
-			boolean removeLast = false;
-			if (relativeUrl.endsWith("/"))
-			{
-				// we need to append something and remove it after splitting
-				// because otherwise the
-				// trailing slashes will be lost
-				relativeUrl += "/x";
-				removeLast = true;
-			}
-
-			String segmentArray[] = Strings.split(relativeUrl, '/');
-
-			if (removeLast)
-			{
-				segmentArray[segmentArray.length - 1] = null;
-			}
-
-			for (String s : segmentArray)
+			// split in place, keeping empty segments (including a trailing one)
+			int segmentAt = 0;
+			int slashAt;
+			while ((slashAt = relativeUrl.indexOf('/', segmentAt)) != -1)
 			{
-				if (s != null)
-				{
-					result.segments.add(decodeSegment(s, charset));
-				}
+				result.segments.add(decodeSegment(relativeUrl.substring(segmentAt, slashAt), charset));
+				segmentAt = slashAt + 1;
 			}
+			result.segments.add(decodeSegment(relativeUrl.substring(segmentAt), charset));
 		}
 
-		if (queryString.length() > 0)
+		int parameterAt = 0;
+		while (parameterAt < queryString.length())
 		{
-			String queryArray[] = Strings.split(queryString, '&');
-			for (String s : queryArray)
+			int ampersandAt = queryString.indexOf('&', parameterAt);
+			if (ampersandAt == -1)
 			{
-				if (Strings.isEmpty(s) == false)
-				{
-					result.parameters.add(parseQueryParameter(s, charset));
-				}
+				ampersandAt = queryString.length();
+			}
+			String s = queryString.substring(parameterAt, ampersandAt);
+			if (Strings.isEmpty(s) == false)
+			{
+				result.parameters.add(parseQueryParameter(s, charset));
 			}
+			parameterAt = ampersandAt + 1;
 		}
 
 		return result;
@@ -421,7 +413,9 @@ public class Url implements Serializable
 		}
 		if (_charset == null)
 		{
-			_charset = Charset.forName(charsetName);
+			// avoid the charset lookup for the common case
+			_charset = DEFAULT_CHARSET_NAME.equals(charsetName) ? DEFAULT_CHARSET
+				: Charset.forName(charsetName);
 		}
 		return _charset;
 	}
@@ -434,8 +428,8 @@ public class Url implements Serializable
 	{
 		if (charset == null)
 		{
-			charsetName = "UTF-8";
-			_charset = null;
+			charsetName = DEFAULT_CHARSET_NAME;
+			_charset = DEFAULT_CHARSET;
 		}
 		else
 		{
@@ -722,8 +716,7 @@ public class Url implements Serializable
 	 */
 	public String toString(StringMode mode, Charset charset)
 	{
-		StringBuilder result = new StringBuilder();
-		final String path = getPath(charset);
+		StringBuilder result = new StringBuilder(64);
 
 		if (StringMode.FULL == mode)
 		{
@@ -756,19 +749,22 @@ public class Url implements Serializable
 					StringMode.FULL.name() + " mode because it has a `..` segment: " + toString());
 			}
 
-			if (!path.startsWith("/"))
+			final int pathAt = result.length();
+			appendPath(result, charset);
+			if (result.length() == pathAt || result.charAt(pathAt) != '/')
 			{
-				result.append('/');
+				result.insert(pathAt, '/');
 			}
-
+		}
+		else
+		{
+			appendPath(result, charset);
 		}
 
-		result.append(path);
-
-		final String queryString = getQueryString(charset);
-		if (queryString != null)
+		if (getQueryParameters().isEmpty() == false)
 		{
-			result.append('?').append(queryString);
+			result.append('?');
+			appendQueryString(result, charset);
 		}
 
 		String _fragment = getFragment();
@@ -986,7 +982,7 @@ public class Url implements Serializable
 		@Override
 		public String toString()
 		{
-			return toString(Charset.forName(DEFAULT_CHARSET_NAME));
+			return toString(DEFAULT_CHARSET);
 		}
 
 		/**
@@ -997,13 +993,26 @@ public class Url implements Serializable
 		public String toString(final Charset charset)
 		{
 			StringBuilder result = new StringBuilder();
+			appendTo(result, charset);
+			return result.toString();
+		}
+
+		/**
+		 * Appends the encoded parameter to the given builder.
+		 * 
+		 * @param result
+		 *            builder to append to
+		 * @param charset
+		 *            charset used to encode name and value
+		 */
+		private void appendTo(final StringBuilder result, final Charset charset)
+		{
 			result.append(encodeParameter(getName(), charset));
 			if (!Strings.isEmpty(getValue()))
 			{
 				result.append('=');
 				result.append(encodeParameter(getValue(), charset));
 			}
-			return result.toString();
 		}
 	}
 
@@ -1157,6 +1166,20 @@ public class Url implements Serializable
 		Args.notNull(charset, "charset");
 
 		StringBuilder path = new StringBuilder();
+		appendPath(path, charset);
+		return path.toString();
+	}
+
+	/**
+	 * Appends the encoded path to the given builder.
+	 * 
+	 * @param path
+	 *            builder to append to
+	 * @param charset
+	 *            character set for encoding
+	 */
+	private void appendPath(final StringBuilder path, final Charset charset)
+	{
 		boolean slash = false;
 
 		for (String segment : getSegments())
@@ -1168,7 +1191,6 @@ public class Url implements Serializable
 			path.append(encodeSegment(segment, charset));
 			slash = true;
 		}
-		return path.toString();
 	}
 
 	/**
@@ -1195,23 +1217,36 @@ public class Url implements Serializable
 		Args.notNull(charset, "charset");
 
 		String queryString = null;
-		List<QueryParameter> queryParameters = getQueryParameters();
 
-		if (queryParameters.size() != 0)
+		if (getQueryParameters().size() != 0)
 		{
 			StringBuilder query = new StringBuilder();
+			appendQueryString(query, charset);
+			queryString = query.toString();
+		}
+		return queryString;
+	}
 
-			for (QueryParameter parameter : queryParameters)
+	/**
+	 * Appends the encoded query parameters, without any leading "?", to the given builder.
+	 * 
+	 * @param query
+	 *            builder to append to
+	 * @param charset
+	 *            character set for encoding
+	 */
+	private void appendQueryString(final StringBuilder query, final Charset charset)
+	{
+		final int start = query.length();
+
+		for (QueryParameter parameter : getQueryParameters())
+		{
+			if (query.length() != start)
 			{
-				if (query.length() != 0)
-				{
-					query.append('&');
-				}
-				query.append(parameter.toString(charset));
+				query.append('&');
 			}
-			queryString = query.toString();
+			parameter.appendTo(query, charset);
 		}
-		return queryString;
 	}
 
 	/**
@@ -17,6 +17,7 @@
 package org.apache.wicket.request.http;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 import javax.servlet.http.Cookie;
 
@@ -225,6 +226,18 @@ public abstract class WebResponse extends Response
 	 */
 	public abstract void flush();
 
+	/**
+	 * Gets the charset text written to this response is encoded in, if the response accepts that
+	 * text as bytes too, i.e. {@link #write(byte[])} may be mixed with {@link #write(CharSequence)}.
+	 * Static markup whose bytes are known already is then written without encoding it again.
+	 * 
+	 * @return the charset or {@code null} if text has to be written as text
+	 */
+	public Charset getEncodingCharset()
+	{
+		return null;
+	}
+
 	/**
 	 * Make this response non-cacheable
 	 */
@@ -18,8 +18,11 @@ package org.apache.wicket.request.mapper;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.wicket.request.IRequestHandler;
@@ -34,6 +37,9 @@ import org.slf4j.LoggerFactory;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * {@link IMountedRequestMapper}s are indexed by their mount prefix, so only the mappers whose
+ * prefix matches the url of the request are asked for their compatibility score.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -95,27 +101,118 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		}
 	}
 
+	/**
+	 * A node of the index of the mappers by their mount prefix
+	 */
+	private static class PrefixNode
+	{
+		private final Map<String, PrefixNode> children = new HashMap<>();
+
+		/** the mappers whose prefix ends at this node, with their position in the mappers list */
+		private final List<IndexedMapper> mappers = new ArrayList<>();
+	}
+
+	private static class IndexedMapper
+	{
+		private final IRequestMapper mapper;
+
+		private final int position;
+
+		private IndexedMapper(IRequestMapper mapper, int position)
+		{
+			this.mapper = mapper;
+			this.position = position;
+		}
+	}
+
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<>();
 
+	/** the index of the registered mappers, rebuilt on every change */
+	private volatile PrefixNode index = new PrefixNode();
+
 	@Override
-	public CompoundRequestMapper add(final IRequestMapper mapper)
+	public synchronized CompoundRequestMapper add(final IRequestMapper mapper)
 	{
 		mappers.add(0, mapper);
+		index = buildIndex();
 		return this;
 	}
 
 	@Override
-	public CompoundRequestMapper remove(final IRequestMapper mapper)
+	public synchronized CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
 		mappers.remove(mapper);
+		index = buildIndex();
 		return this;
 	}
 
+	private PrefixNode buildIndex()
+	{
+		PrefixNode root = new PrefixNode();
+		int position = 0;
+		for (IRequestMapper mapper : mappers)
+		{
+			PrefixNode node = root;
+			String[] prefix = null;
+			if (mapper instanceof IMountedRequestMapper)
+			{
+				prefix = ((IMountedRequestMapper)mapper).getMountPrefix();
+			}
+			if (prefix != null)
+			{
+				for (String segment : prefix)
+				{
+					node = node.children.computeIfAbsent(segment.toLowerCase(Locale.ROOT),
+						s -> new PrefixNode());
+				}
+			}
+			node.mappers.add(new IndexedMapper(mapper, position++));
+		}
+		return root;
+	}
+
+	/**
+	 * Collects the mappers which may map the url, in the order of their registration.
+	 * 
+	 * @param url
+	 * @return the candidate mappers
+	 */
+	private List<IRequestMapper> getCandidates(final Url url)
+	{
+		if (url == null || url.getSegments().isEmpty())
+		{
+			// all mappers may map the home page
+			return mappers;
+		}
+
+		List<String> segments = url.getSegments();
+		List<IndexedMapper> candidates = new ArrayList<>();
+		PrefixNode node = index;
+		for (int i = 0; node != null; i++)
+		{
+			candidates.addAll(node.mappers);
+			if (i == segments.size())
+			{
+				break;
+			}
+			node = node.children.get(segments.get(i).toLowerCase(Locale.ROOT));
+		}
+
+		candidates.sort((a, b) -> Integer.compare(a.position, b.position));
+
+		List<IRequestMapper> result = new ArrayList<>(candidates.size());
+		for (IndexedMapper candidate : candidates)
+		{
+			result.add(candidate.mapper);
+		}
+		return result;
+	}
+
 	/**
 	 * Searches the registered {@link IRequestMapper}s to find one that can map the {@link Request}.
 	 * Each registered {@link IRequestMapper} is asked to provide its compatibility score. Then the
 	 * mappers are asked to map the request in order depending on the provided compatibility
-	 * score.
+	 * score. {@link IMountedRequestMapper}s whose mount prefix does not match the url are skipped.
 	 * <p>
 	 * The mapper with highest compatibility score which can map the request is returned.
 	 * 
@@ -126,9 +223,10 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	@Override
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<>(mappers.size());
+		List<IRequestMapper> candidates = getCandidates(request.getUrl());
+		List<MapperWithScore> list = new ArrayList<>(candidates.size());
 
-		for (IRequestMapper mapper : this)
+		for (IRequestMapper mapper : candidates)
 		{
 			int score = mapper.getCompatibilityScore(request);
 			list.add(new MapperWithScore(mapper, score));
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestMapper;
+
+/**
+ * A {@link IRequestMapper} which maps only requests to urls below a static path. The
+ * {@link CompoundRequestMapper} uses this path to skip the mapper for all other urls, without
+ * asking for its compatibility score.
+ */
+public interface IMountedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the static segments every mapped url starts with. The mapper must not map a request
+	 * whose url has segments but does not start with these ones. The segments are compared
+	 * ignoring their case, so case insensitive mappers may report their prefix too. Requests to
+	 * urls without any segments are always passed to the mapper.
+	 * 
+	 * @return the leading segments of the mount path, possibly empty, or {@code null} if the
+	 *         mapper cannot tell
+	 */
+	String[] getMountPrefix();
+}
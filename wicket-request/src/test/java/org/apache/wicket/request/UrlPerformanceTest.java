@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.encoding.UrlDecoder;
+import org.apache.wicket.util.encoding.UrlEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Measures the cost of parsing and rendering typical urls of a Wicket application.
+ */
+@Category(SlowTests.class)
+public class UrlPerformanceTest extends Assert
+{
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int ITERATIONS = 100000;
+
+	private static final String[] URLS = {
+			"wicket/bookmarkable/org.apache.wicket.examples.HomePage?0",
+			"wicket/page?3-1.ILinkListener-form-list-0-link",
+			"./products/category/books?page=2&sort=title&order=asc",
+			"http://localhost:8080/app/wicket/resource/org.apache.wicket.Application/style-ver-1234.css",
+			"search?q=caf%C3%A9+au+lait&filter=a%26b" };
+
+	private long consumed;
+
+	private long parse()
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			consumed += Url.parse(URLS[i % URLS.length]).getSegments().size();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private long render(Url[] urls)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			consumed += urls[i % urls.length].toString().length();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private long encodeDecode()
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			String segment = "segment" + (i & 7);
+			consumed += UrlEncoder.PATH_INSTANCE.encode(segment, StandardCharsets.UTF_8).length();
+			consumed += UrlDecoder.QUERY_INSTANCE.decode(segment, StandardCharsets.UTF_8).length();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Prints the average time per url for parsing, rendering and encoding.
+	 */
+	@Test
+	public void parseAndRender()
+	{
+		Url[] urls = new Url[URLS.length];
+		for (int i = 0; i < URLS.length; i++)
+		{
+			urls[i] = Url.parse(URLS[i]);
+		}
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			parse();
+			render(urls);
+			encodeDecode();
+		}
+
+		System.out.println(String.format("parse:         %6d ns/url", parse() / ITERATIONS));
+		System.out.println(String.format("render:        %6d ns/url", render(urls) / ITERATIONS));
+		System.out.println(String.format("encode/decode: %6d ns/segment", encodeDecode() /
+			ITERATIONS));
+
+		assertTrue(consumed > 0);
+	}
+}
@@ -979,4 +979,40 @@ public class UrlTest
 		checkUrl(url, "http", "[::1]", 1234, "", "myapp");
 		
 	}
+
+	/**
+	 * Empty segments, including leading and trailing ones, are kept while parsing
+	 */
+	@Test
+	public void parseKeepsEmptySegments()
+	{
+		checkSegments(Url.parse("/"), "", "");
+		checkSegments(Url.parse("a//b/"), "a", "", "b", "");
+		checkSegments(Url.parse("//host/a/"), "", "a", "");
+		checkSegments(Url.parse("a/b?x=y"), "a", "b");
+		checkQueryParams(Url.parse("a?&&x=1&&y&"), "x", "1", "y", "");
+	}
+
+	/**
+	 * Rendering must produce the same string the url was parsed from
+	 */
+	@Test
+	public void renderParsedUrl()
+	{
+		String[] urls = { "wicket/bookmarkable/org.apache.wicket.Page?0-1.ILinkListener-link",
+				"a%20b/c%2Fd/?x=%C3%A4+%26&y", "../../a/b/", "/", "a/b#fragment" };
+		for (String s : urls)
+		{
+			assertEquals(s, Url.parse(s).toString());
+		}
+
+		Url full = Url.parse("https://host:8443/a/b?c=d");
+		assertEquals("https://host:8443/a/b?c=d", full.toString(StringMode.FULL));
+		assertEquals("/a/b", full.getPath());
+		assertEquals("c=d", full.getQueryString());
+
+		Url relative = Url.parse("a");
+		relative.setHost("host");
+		assertEquals("//host/a", relative.toString(StringMode.FULL));
+	}
 }
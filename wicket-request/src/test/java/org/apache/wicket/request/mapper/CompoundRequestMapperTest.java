@@ -16,6 +16,15 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
 import org.junit.Assert;
 import org.junit.Test;
@@ -47,4 +56,137 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	/**
+	 * Mounted mappers with another prefix are skipped, the others are asked in the order of their
+	 * score and registration.
+	 */
+	@Test
+	public void mountPrefix()
+	{
+		List<String> asked = new ArrayList<>();
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(new TestMapper("any", null, 0, asked));
+		compound.add(new TestMapper("root", new String[0], 1, asked));
+		compound.add(new TestMapper("foo", new String[] { "foo" }, 1, asked));
+		compound.add(new TestMapper("fooBar", new String[] { "foo", "bar" }, 2, asked));
+		compound.add(new TestMapper("baz", new String[] { "baz" }, 5, asked));
+		compound.add(new TestMapper("foo2", new String[] { "FOO" }, 1, asked));
+
+		assertNull(compound.mapRequest(request("foo/bar/x")));
+		assertEquals(Arrays.asList("fooBar", "foo2", "foo", "root", "any"), asked);
+
+		asked.clear();
+		assertNull(compound.mapRequest(request("foo/baz")));
+		assertEquals(Arrays.asList("foo2", "foo", "root", "any"), asked);
+
+		asked.clear();
+		assertNull(compound.mapRequest(request("other")));
+		assertEquals(Arrays.asList("root", "any"), asked);
+
+		// all mappers are asked for the home page
+		asked.clear();
+		assertNull(compound.mapRequest(request("")));
+		assertEquals(6, asked.size());
+	}
+
+	/**
+	 * Removed mappers are removed from the index too.
+	 */
+	@Test
+	public void removeMountedMapper()
+	{
+		List<String> asked = new ArrayList<>();
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		TestMapper foo = new TestMapper("foo", new String[] { "foo" }, 1, asked);
+		compound.add(foo);
+		compound.add(new TestMapper("any", null, 0, asked));
+		compound.remove(foo);
+
+		assertNull(compound.mapRequest(request("foo")));
+		assertEquals(Arrays.asList("any"), asked);
+	}
+
+	private static Request request(final String url)
+	{
+		return new Request()
+		{
+			@Override
+			public Url getUrl()
+			{
+				return Url.parse(url);
+			}
+
+			@Override
+			public Url getClientUrl()
+			{
+				return getUrl();
+			}
+
+			@Override
+			public Locale getLocale()
+			{
+				return Locale.ROOT;
+			}
+
+			@Override
+			public Charset getCharset()
+			{
+				return Charset.forName("UTF-8");
+			}
+
+			@Override
+			public Object getContainerRequest()
+			{
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Records the mappers asked to map a request
+	 */
+	private static class TestMapper implements IMountedRequestMapper
+	{
+		private final String name;
+
+		private final String[] prefix;
+
+		private final int score;
+
+		private final List<String> asked;
+
+		private TestMapper(String name, String[] prefix, int score, List<String> asked)
+		{
+			this.name = name;
+			this.prefix = prefix;
+			this.score = score;
+			this.asked = asked;
+		}
+
+		@Override
+		public String[] getMountPrefix()
+		{
+			return prefix;
+		}
+
+		@Override
+		public IRequestHandler mapRequest(Request request)
+		{
+			asked.add(name);
+			return null;
+		}
+
+		@Override
+		public int getCompatibilityScore(Request request)
+		{
+			return score;
+		}
+
+		@Override
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			return null;
+		}
+	}
 }
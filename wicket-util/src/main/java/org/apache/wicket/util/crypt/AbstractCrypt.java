@@ -16,7 +16,8 @@
  */
 package org.apache.wicket.util.crypt;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Base64;
 import java.util.UUID;
@@ -35,7 +36,7 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractCrypt implements ICrypt
 {
 	/** Encoding used to convert java String from and to byte[] */
-	private static final String CHARACTER_ENCODING = "UTF-8";
+	private static final Charset CHARACTER_ENCODING = StandardCharsets.UTF_8;
 
 	/** Log. */
 	private static final Logger log = LoggerFactory.getLogger(AbstractCrypt.class);
@@ -63,7 +64,7 @@ public abstract class AbstractCrypt implements ICrypt
 	{
 		try
 		{
-			byte[] decoded = java.util.Base64.getUrlDecoder().decode(text);
+			byte[] decoded = Base64.getUrlDecoder().decode(text);
 			return new String(decryptByteArray(decoded), CHARACTER_ENCODING);
 		}
 		catch (Exception ex)
@@ -86,20 +87,13 @@ public abstract class AbstractCrypt implements ICrypt
 		try
 		{
 			byte[] encrypted = encryptStringToByteArray(plainText);
-			Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
-			byte[] encoded = encoder.encode(encrypted);
-			return new String(encoded, CHARACTER_ENCODING);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(encrypted);
 		}
 		catch (GeneralSecurityException e)
 		{
 			log.error("Unable to encrypt text '" + plainText + "'", e);
 			return null;
 		}
-		catch (UnsupportedEncodingException e)
-		{
-			log.error("Unable to encrypt text '" + plainText + "'", e);
-			return null;
-		}
 	}
 
 	/**
@@ -168,13 +162,6 @@ public abstract class AbstractCrypt implements ICrypt
 	private byte[] encryptStringToByteArray(final String plainText)
 		throws GeneralSecurityException
 	{
-		try
-		{
-			return crypt(plainText.getBytes(CHARACTER_ENCODING), Cipher.ENCRYPT_MODE);
-		}
-		catch (UnsupportedEncodingException ex)
-		{
-			throw new RuntimeException(ex.getMessage());
-		}
+		return crypt(plainText.getBytes(CHARACTER_ENCODING), Cipher.ENCRYPT_MODE);
 	}
 }
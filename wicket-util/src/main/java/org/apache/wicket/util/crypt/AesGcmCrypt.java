@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts and authenticates strings with AES in Galois/Counter Mode. Unlike {@link SunJceCrypt}
+ * a manipulated cipher text is detected and rejected.
+ * <p>
+ * The AES key is derived from the {@link #setKey(String) key} with {@value #KEY_DERIVATION}
+ * once, the ciphers are pooled. Every encryption uses a new random initialization vector, which
+ * is prepended to the cipher text; so the same text is encrypted differently each time.
+ * <p>
+ * To use this crypt, put the following code in your application's init:
+ * 
+ * <pre>
+ * getSecuritySettings().setCryptFactory(
+ * 	new CryptFactoryCachingDecorator(new ClassCryptFactory(AesGcmCrypt.class, key)));
+ * </pre>
+ */
+public class AesGcmCrypt extends AbstractCrypt
+{
+	/** The algorithm used to derive the AES key */
+	public static final String KEY_DERIVATION = "PBKDF2WithHmacSHA256";
+
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+	/** Salt for the key derivation */
+	private static final byte[] SALT = { (byte)0x3b, (byte)0x9e, (byte)0x51, (byte)0x07,
+			(byte)0xc4, (byte)0x2d, (byte)0x88, (byte)0xf6 };
+
+	private static final int ITERATIONS = 10000;
+
+	/** the length of the AES key in bits, available without the unlimited strength policy */
+	private static final int KEY_LENGTH = 128;
+
+	/** the length of the initialization vector in bytes */
+	private static final int IV_LENGTH = 12;
+
+	/** the length of the authentication tag in bits */
+	private static final int TAG_LENGTH = 128;
+
+	/** the maximum number of idle ciphers kept for reuse */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final BlockingQueue<Cipher> ciphers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	/** the key derived from the current {@link #getKey() key} */
+	private volatile SecretKey secretKey;
+
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		secretKey = null;
+	}
+
+	@Override
+	protected byte[] crypt(final byte[] input, final int mode) throws GeneralSecurityException
+	{
+		SecretKey key = secretKey;
+		if (key == null)
+		{
+			key = generateSecretKey();
+			secretKey = key;
+		}
+
+		Cipher cipher = ciphers.poll();
+		if (cipher == null)
+		{
+			cipher = Cipher.getInstance(TRANSFORMATION);
+		}
+
+		byte[] result;
+		if (mode == Cipher.ENCRYPT_MODE)
+		{
+			byte[] iv = new byte[IV_LENGTH];
+			RANDOM.nextBytes(iv);
+			cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+
+			result = new byte[IV_LENGTH + cipher.getOutputSize(input.length)];
+			System.arraycopy(iv, 0, result, 0, IV_LENGTH);
+			cipher.doFinal(input, 0, input.length, result, IV_LENGTH);
+		}
+		else if (mode == Cipher.DECRYPT_MODE)
+		{
+			if (input.length < IV_LENGTH + TAG_LENGTH / 8)
+			{
+				throw new GeneralSecurityException("The cipher text is too short");
+			}
+			cipher.init(Cipher.DECRYPT_MODE, key,
+				new GCMParameterSpec(TAG_LENGTH, input, 0, IV_LENGTH));
+			result = cipher.doFinal(input, IV_LENGTH, input.length - IV_LENGTH);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported mode: " + mode);
+		}
+
+		ciphers.offer(cipher);
+		return result;
+	}
+
+	/**
+	 * Derives the AES key from the {@link #getKey() key}.
+	 * 
+	 * @return the AES key
+	 * @throws GeneralSecurityException
+	 */
+	protected SecretKey generateSecretKey() throws GeneralSecurityException
+	{
+		SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(KEY_DERIVATION);
+		PBEKeySpec spec = new PBEKeySpec(getKey().toCharArray(), SALT, ITERATIONS, KEY_LENGTH);
+		try
+		{
+			return new SecretKeySpec(keyFactory.generateSecret(spec).getEncoded(), "AES");
+		}
+		finally
+		{
+			spec.clearPassword();
+		}
+	}
+}
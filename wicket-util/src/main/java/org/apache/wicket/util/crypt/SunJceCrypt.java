@@ -21,6 +21,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -36,6 +38,10 @@ import org.apache.wicket.util.lang.Args;
  * implementation is based around Sun's security providers and uses the <a
  * href="http://www.ietf.org/rfc/rfc2898.txt">PBEWithMD5AndDES</a> method to encrypt and decrypt the
  * data.
+ * <p>
+ * The secret key is generated once per {@link #setKey(String) key} and the initialized ciphers are
+ * pooled, so a page with many encrypted urls does not pay for the lookup of the security
+ * providers and the key derivation over and over again.
  * 
  * @author Juergen Donnerstag
  */
@@ -55,9 +61,15 @@ public class SunJceCrypt extends AbstractCrypt
 
 	private static final PBEParameterSpec PARAMETER_SPEC = new PBEParameterSpec(SALT, COUNT);
 
+	/** the maximum number of idle ciphers kept for reuse per mode */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
 	/** The name of encryption method (cipher) */
 	private final String cryptMethod;
 
+	/** the ciphers for the current key, replaced when the key changes */
+	private volatile CipherPool ciphers;
+
 	/**
 	 * Constructor
 	 */
@@ -93,10 +105,35 @@ public class SunJceCrypt extends AbstractCrypt
 	protected byte[] crypt(final byte[] input, final int mode)
 		throws GeneralSecurityException
 	{
-		SecretKey key = generateSecretKey();
-		AlgorithmParameterSpec spec = createParameterSpec();
-		Cipher ciph = createCipher(key, spec, mode);
-		return ciph.doFinal(input);
+		CipherPool pool = ciphers;
+		if (pool == null)
+		{
+			pool = new CipherPool(generateSecretKey());
+			ciphers = pool;
+		}
+
+		BlockingQueue<Cipher> idle = pool.getIdleCiphers(mode);
+		Cipher ciph = idle != null ? idle.poll() : null;
+		if (ciph == null)
+		{
+			ciph = createCipher(pool.key, createParameterSpec(), mode);
+		}
+
+		byte[] result = ciph.doFinal(input);
+
+		// doFinal() resets the cipher to its initialized state
+		if (idle != null)
+		{
+			idle.offer(ciph);
+		}
+		return result;
+	}
+
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		ciphers = null;
 	}
 
 	/**
@@ -153,4 +190,38 @@ public class SunJceCrypt extends AbstractCrypt
 	{
 		return new PBEKeySpec(getKey().toCharArray());
 	}
+
+	/**
+	 * The secret key and the idle ciphers initialized with it
+	 */
+	private static class CipherPool
+	{
+		private final SecretKey key;
+
+		private final BlockingQueue<Cipher> encryptCiphers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		private final BlockingQueue<Cipher> decryptCiphers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		private CipherPool(SecretKey key)
+		{
+			this.key = key;
+		}
+
+		/**
+		 * @return the idle ciphers for the mode, {@code null} if ciphers of this mode are not
+		 *         reused
+		 */
+		private BlockingQueue<Cipher> getIdleCiphers(int mode)
+		{
+			switch (mode)
+			{
+				case Cipher.ENCRYPT_MODE :
+					return encryptCiphers;
+				case Cipher.DECRYPT_MODE :
+					return decryptCiphers;
+				default :
+					return null;
+			}
+		}
+	}
 }
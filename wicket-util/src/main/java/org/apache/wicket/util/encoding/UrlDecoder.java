@@ -18,7 +18,10 @@ package org.apache.wicket.util.encoding;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,7 +80,14 @@ public class UrlDecoder
 	 */
 	public String decode(final String s, final Charset enc)
 	{
-		return decode(s, enc.name());
+		if (Strings.isEmpty(s) || needsDecoding(s) == false)
+		{
+			return s;
+		}
+
+		Args.notNull(enc, "enc");
+
+		return decodeEscaped(s, enc);
 	}
 
 	/**
@@ -95,16 +105,87 @@ public class UrlDecoder
 			return s;
 		}
 
-		int numChars = s.length();
-		StringBuilder sb = new StringBuilder(numChars > 500 ? numChars / 2 : numChars);
-		int i = 0;
-
 		if (enc.length() == 0)
 		{
 			throw new RuntimeException(new UnsupportedEncodingException(
 				"URLDecoder: empty string enc parameter"));
 		}
 
+		if (needsDecoding(s) == false)
+		{
+			return s;
+		}
+
+		Charset charset;
+		try
+		{
+			charset = Charset.forName(enc);
+		}
+		catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+		{
+			throw new RuntimeException(new UnsupportedEncodingException(enc));
+		}
+		return decodeEscaped(s, charset);
+	}
+
+	/**
+	 * Checks whether decoding would change the given string.
+	 * 
+	 * @param s
+	 *            string to check
+	 * @return {@code true} if the string contains escapes, pluses to decode or null characters
+	 */
+	private boolean needsDecoding(final String s)
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '%' || c == '\0' || (c == '+' && decodePlus))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses the two hex digits of an escape.
+	 * 
+	 * @param s
+	 *            string to decode
+	 * @param i
+	 *            index of the first digit
+	 * @return the decoded byte
+	 * @throws NumberFormatException
+	 *             if the characters are no valid hex number
+	 */
+	private static int parseHex(final String s, final int i)
+	{
+		int high = Character.digit(s.charAt(i), 16);
+		int low = Character.digit(s.charAt(i + 1), 16);
+		if (high < 0 || low < 0)
+		{
+			// let Integer handle signs and report illegal characters
+			return Integer.parseInt(s.substring(i, i + 2), 16);
+		}
+		return (high << 4) | low;
+	}
+
+	/**
+	 * Decodes the given string which is known to contain characters to decode.
+	 * 
+	 * @param s
+	 *            string to decode
+	 * @param enc
+	 *            encoding to decode with
+	 * @return decoded string
+	 */
+	private String decodeEscaped(final String s, final Charset enc)
+	{
+		int numChars = s.length();
+		StringBuilder sb = new StringBuilder(numChars > 500 ? numChars / 2 : numChars);
+		int i = 0;
+
 		char c;
 		byte[] bytes = null;
 		while (i < numChars)
@@ -136,7 +217,7 @@ public class UrlDecoder
 
 						while (((i + 2) < numChars) && (c == '%'))
 						{
-							bytes[pos++] = (byte)Integer.parseInt(s.substring(i + 1, i + 3), 16);
+							bytes[pos++] = (byte)parseHex(s, i + 1);
 							i += 3;
 							if (i < numChars)
 							{
@@ -154,14 +235,7 @@ public class UrlDecoder
 							break;
 						}
 
-						try
-						{
-							sb.append(new String(bytes, 0, pos, enc));
-						}
-						catch (UnsupportedEncodingException e)
-						{
-							throw new RuntimeException(e);
-						}
+						sb.append(new String(bytes, 0, pos, enc));
 					}
 					catch (NumberFormatException e)
 					{
@@ -183,4 +257,4 @@ public class UrlDecoder
 		// that way none will come through
 		return sb.toString().replace("\0", "NULL");
 	}
-}
\ No newline at end of file
+}
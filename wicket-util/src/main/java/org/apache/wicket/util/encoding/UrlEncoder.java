@@ -16,7 +16,6 @@
  */
 package org.apache.wicket.util.encoding;
 
-import java.io.CharArrayWriter;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
@@ -56,6 +55,9 @@ public class UrlEncoder
 	// used in decoding
 	protected static final int caseDiff = ('a' - 'A');
 
+	// uppercase hex digits used for the escapes
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
 	/**
 	 * Encoder used to encode name or value components of a query string.<br/>
 	 * <br/>
@@ -222,7 +224,6 @@ public class UrlEncoder
 				break;
 		}
 	}
-
 	/**
 	 * @param s
 	 *            string to encode
@@ -233,7 +234,15 @@ public class UrlEncoder
 	 */
 	public String encode(final String s, final Charset charset)
 	{
-		return encode(s, charset.name());
+		Args.notNull(charset, "charset");
+
+		final String unsafe = s.replace("\0", "NULL");
+		if (isSafe(unsafe))
+		{
+			// nothing to encode, so there is no need to copy the input
+			return unsafe;
+		}
+		return encodeUnsafe(unsafe, charset);
 	}
 
 	/**
@@ -247,9 +256,7 @@ public class UrlEncoder
 	public String encode(final String unsafeInput, final String charsetName)
 	{
 		final String s = unsafeInput.replace("\0", "NULL");
-		StringBuilder out = new StringBuilder(s.length());
 		Charset charset;
-		CharArrayWriter charArrayWriter = new CharArrayWriter();
 
 		Args.notNull(charsetName, "charsetName");
 
@@ -262,27 +269,65 @@ public class UrlEncoder
 			throw new RuntimeException(new UnsupportedEncodingException(charsetName));
 		}
 
+		if (isSafe(s))
+		{
+			return s;
+		}
+		return encodeUnsafe(s, charset);
+	}
+
+	/**
+	 * Checks whether the given string can be used as it is, i.e. encoding would not change it.
+	 * 
+	 * @param s
+	 *            string to check
+	 * @return {@code true} if no character has to be encoded
+	 */
+	private boolean isSafe(final String s)
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == ' ' || dontNeedEncoding.get(c) == false)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the given string which is known to contain characters that have to be encoded.
+	 * 
+	 * @param s
+	 *            string to encode, without any null characters
+	 * @param charset
+	 *            charset to use for encoding
+	 * @return encoded string
+	 */
+	private String encodeUnsafe(final String s, final Charset charset)
+	{
+		StringBuilder out = new StringBuilder(s.length() + 16);
+
 		for (int i = 0; i < s.length();)
 		{
 			int c = s.charAt(i);
 
-			// System.out.println("Examining character: " + c);
 			if (dontNeedEncoding.get(c))
 			{
 				if (c == ' ')
 				{
 					c = '+';
 				}
-				// System.out.println("Storing: " + c);
 				out.append((char)c);
 				i++;
 			}
 			else
 			{
 				// convert to external encoding before hex conversion
+				final int start = i;
 				do
 				{
-					charArrayWriter.write(c);
 					/*
 					 * If this character represents the start of a Unicode surrogate pair, then pass
 					 * in two characters. It's not clear what should be done if a bytes reserved in
@@ -291,22 +336,11 @@ public class UrlEncoder
 					 */
 					if ((c >= 0xD800) && (c <= 0xDBFF))
 					{
-						/*
-						 * System.out.println(Integer.toHexString(c) + " is high surrogate");
-						 */
 						if ((i + 1) < s.length())
 						{
 							int d = s.charAt(i + 1);
-							/*
-							 * System.out.println("\tExamining " + Integer.toHexString(d));
-							 */
 							if ((d >= 0xDC00) && (d <= 0xDFFF))
 							{
-								/*
-								 * System.out.println("\t" + Integer.toHexString(d) + " is low
-								 * surrogate");
-								 */
-								charArrayWriter.write(d);
 								i++;
 							}
 						}
@@ -315,28 +349,13 @@ public class UrlEncoder
 				}
 				while ((i < s.length()) && !dontNeedEncoding.get((c = s.charAt(i))));
 
-				charArrayWriter.flush();
-				String str = new String(charArrayWriter.toCharArray());
-				byte[] ba = str.getBytes(charset);
+				byte[] ba = s.substring(start, i).getBytes(charset);
 				for (byte b : ba)
 				{
 					out.append('%');
-					char ch = Character.forDigit((b >> 4) & 0xF, 16);
-					// converting to use uppercase letter as part of
-					// the hex value if ch is a letter.
-					if (Character.isLetter(ch))
-					{
-						ch -= caseDiff;
-					}
-					out.append(ch);
-					ch = Character.forDigit(b & 0xF, 16);
-					if (Character.isLetter(ch))
-					{
-						ch -= caseDiff;
-					}
-					out.append(ch);
+					out.append(HEX_DIGITS[(b >> 4) & 0xF]);
+					out.append(HEX_DIGITS[b & 0xF]);
 				}
-				charArrayWriter.reset();
 			}
 		}
 
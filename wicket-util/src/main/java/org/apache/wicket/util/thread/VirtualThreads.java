@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to virtual threads (Java 21) without requiring them at compile or run time. On older
+ * JVMs no virtual thread executor is available and callers fall back to platform threads.
+ */
+public final class VirtualThreads
+{
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+	/** {@code Executors.newVirtualThreadPerTaskExecutor()}, {@code null} if not available */
+	private static final Method NEW_EXECUTOR = findNewExecutor();
+
+	/**
+	 * Construct.
+	 */
+	private VirtualThreads()
+	{
+	}
+
+	private static Method findNewExecutor()
+	{
+		try
+		{
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return {@code true} if the JVM may support virtual threads
+	 */
+	public static boolean isAvailable()
+	{
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates an executor which starts a new virtual thread for each task.
+	 * 
+	 * @return the executor, or {@code null} if the JVM does not support virtual threads or has
+	 *         them disabled
+	 */
+	public static ExecutorService newExecutor()
+	{
+		if (NEW_EXECUTOR == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return (ExecutorService)NEW_EXECUTOR.invoke(null);
+		}
+		catch (IllegalAccessException | InvocationTargetException e)
+		{
+			// e.g. a preview feature which is not enabled
+			log.debug("Virtual threads are not available", e);
+			return null;
+		}
+	}
+}
@@ -219,7 +219,7 @@ public class ValueMap extends LinkedHashMap<String, Object> implements IValueMap
 	 * @see java.util.Map#clear()
 	 */
 	@Override
-	public final void clear()
+	public void clear()
 	{
 		checkMutability();
 		super.clear();
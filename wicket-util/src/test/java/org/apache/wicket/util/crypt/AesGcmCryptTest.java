@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AesGcmCrypt}
+ */
+public class AesGcmCryptTest extends Assert
+{
+	/**
+	 * Encrypted text can be decrypted.
+	 */
+	@Test
+	public void roundTrip()
+	{
+		AesGcmCrypt crypt = new AesGcmCrypt();
+		crypt.setKey("secret");
+
+		String text = "wicket/bookmarkable/org.apache.wicket.MockPage?0-1.ILinkListener-link&ä=ö";
+		String encrypted = crypt.encryptUrlSafe(text);
+		assertEquals(text, crypt.decryptUrlSafe(encrypted));
+		assertTrue(encrypted.matches("[A-Za-z0-9_-]+"));
+
+		// a random initialization vector for each encryption
+		assertNotEquals(encrypted, crypt.encryptUrlSafe(text));
+
+		assertEquals("", crypt.decryptUrlSafe(crypt.encryptUrlSafe("")));
+	}
+
+	/**
+	 * Manipulated cipher texts are rejected.
+	 */
+	@Test
+	public void tampered()
+	{
+		AesGcmCrypt crypt = new AesGcmCrypt();
+		crypt.setKey("secret");
+
+		char[] encrypted = crypt.encryptUrlSafe("some/url").toCharArray();
+		int last = encrypted.length - 1;
+		encrypted[last] = encrypted[last] == 'A' ? 'B' : 'A';
+		assertNull(crypt.decryptUrlSafe(new String(encrypted)));
+
+		assertNull(crypt.decryptUrlSafe("abc"));
+	}
+
+	/**
+	 * Changing the key invalidates the cipher texts of the old key.
+	 */
+	@Test
+	public void changeKey()
+	{
+		AesGcmCrypt crypt = new AesGcmCrypt();
+		crypt.setKey("first");
+		String encrypted = crypt.encryptUrlSafe("text");
+
+		crypt.setKey("second");
+		assertNull(crypt.decryptUrlSafe(encrypted));
+		assertEquals("text", crypt.decryptUrlSafe(crypt.encryptUrlSafe("text")));
+	}
+}
@@ -18,6 +18,7 @@ package org.apache.wicket.util.crypt;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
@@ -45,6 +46,23 @@ public class SunJceCryptTest extends Assert
 		assertThat(new String(decrypted), is(equalTo(input)));
 	}
 
+	/**
+	 * The pooled ciphers are discarded when the key changes
+	 */
+	@Test
+	public void changeKey()
+	{
+		SunJceCrypt crypt = new SunJceCrypt();
+		crypt.setKey("first");
+		String encrypted = crypt.encryptUrlSafe("input");
+		assertThat(crypt.decryptUrlSafe(encrypted), is(equalTo("input")));
+		assertThat(crypt.encryptUrlSafe("input"), is(equalTo(encrypted)));
+
+		crypt.setKey("second");
+		assertThat(crypt.encryptUrlSafe("input"), is(not(equalTo(encrypted))));
+		assertThat(crypt.decryptUrlSafe(crypt.encryptUrlSafe("input")), is(equalTo("input")));
+	}
+
 	/**
 	 * Uses <em>PBEWithMD5AndTripleDES</em> if unlimited cryptography is installed
 	 */
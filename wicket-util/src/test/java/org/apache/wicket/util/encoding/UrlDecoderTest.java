@@ -17,6 +17,9 @@
 package org.apache.wicket.util.encoding;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
@@ -59,4 +62,30 @@ public class UrlDecoderTest
 		decoded = UrlDecoder.QUERY_INSTANCE.decode(url, "UTF-8");
 		assertEquals("http://localhost/test?a=b", decoded);
 	}
+
+	/**
+	 * Strings without anything to decode are returned as they are
+	 */
+	@Test
+	public void returnSameInstanceWhenNothingToDecode()
+	{
+		String path = "some/path-with.dots_and~tilde";
+		assertSame(path, UrlDecoder.PATH_INSTANCE.decode(path, StandardCharsets.UTF_8));
+		assertSame(path, UrlDecoder.QUERY_INSTANCE.decode(path, "UTF-8"));
+
+		String plus = "a+b";
+		assertSame(plus, UrlDecoder.PATH_INSTANCE.decode(plus, StandardCharsets.UTF_8));
+		assertEquals("a b", UrlDecoder.QUERY_INSTANCE.decode(plus, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Mixed case hex digits and multi byte sequences
+	 */
+	@Test
+	public void decodeHexDigits()
+	{
+		assertEquals("\u00e4\u00f6/", UrlDecoder.PATH_INSTANCE.decode("%C3%A4%c3%b6%2F",
+			StandardCharsets.UTF_8));
+		assertEquals("zza", UrlDecoder.PATH_INSTANCE.decode("%zza", StandardCharsets.UTF_8));
+	}
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.util.encoding;
 
+import java.nio.charset.StandardCharsets;
+
 import org.apache.wicket.util.crypt.CharEncoding;
 import org.apache.wicket.util.encoding.UrlEncoder;
 import org.junit.Assert;
@@ -98,4 +100,27 @@ public class UrlEncoderTest extends Assert
 		assertEquals("someone%27s%20badNULL%20url",
 			UrlEncoder.PATH_INSTANCE.encode("someone's bad\0 url", CharEncoding.UTF_8));
 	}
+
+	/**
+	 * Strings without anything to encode are returned as they are
+	 */
+	@Test
+	public void returnSameInstanceWhenNothingToEncode()
+	{
+		String segment = "some-segment.with_safe~chars";
+		assertSame(segment, UrlEncoder.PATH_INSTANCE.encode(segment, StandardCharsets.UTF_8));
+		assertSame(segment, UrlEncoder.QUERY_INSTANCE.encode(segment, CharEncoding.UTF_8));
+
+		assertEquals("a+b", UrlEncoder.QUERY_INSTANCE.encode("a b", StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Multi byte characters and surrogate pairs
+	 */
+	@Test
+	public void encodeMultiByteCharacters()
+	{
+		assertEquals("%C3%A4-%F0%9F%98%80", UrlEncoder.PATH_INSTANCE.encode("\u00e4-\ud83d\ude00",
+			StandardCharsets.UTF_8));
+	}
 }